@@ -181,23 +181,87 @@ public class Agent {
             result.put("org.lucee.extension.debugger.coreinject.ExprEvaluator$Lucee6Evaluator", 1);
             result.put("org.lucee.extension.debugger.coreinject.ExprEvaluator$Lucee5Evaluator", 1);
 
+            result.put("org.lucee.extension.debugger.coreinject.AppFilter", 0);
+            result.put("org.lucee.extension.debugger.coreinject.BreakpointCondition", 0);
+            result.put("org.lucee.extension.debugger.coreinject.BreakpointCondition$Path", 0);
+            result.put("org.lucee.extension.debugger.coreinject.BreakpointCondition$ScopeResolver", 1);
+            result.put("org.lucee.extension.debugger.coreinject.BreakpointIndex", 0);
+            result.put("org.lucee.extension.debugger.coreinject.BreakpointIndex$FileBreakpoints", 0);
+            result.put("org.lucee.extension.debugger.coreinject.BreakpointIndex$LineBreakpoint", 0);
+            result.put("org.lucee.extension.debugger.coreinject.BreakpointLimits", 0);
+            result.put("org.lucee.extension.debugger.coreinject.CallTree", 0);
+            result.put("org.lucee.extension.debugger.coreinject.CfStack", 0);
+            result.put("org.lucee.extension.debugger.coreinject.CfValueDebuggerBridge$MarkerTrait$Snapshot", 0);
+            result.put("org.lucee.extension.debugger.coreinject.CfmlProfiler", 0);
+            result.put("org.lucee.extension.debugger.coreinject.CfmlProfiler$FrameFields", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$1", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$2", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$And", 1);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Compare", 1);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Compiled", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$IsNull", 1);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Kind", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Len", 1);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Literal", 1);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Node", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Not", 1);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Or", 1);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Parser", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Resolver", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Token", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Unsupported", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConditionCompiler$Var", 1);
+            result.put("org.lucee.extension.debugger.coreinject.ConsoleOutputPipeline", 0);
+            result.put("org.lucee.extension.debugger.coreinject.ConsoleOutputPipeline$Entry", 0);
+            result.put("org.lucee.extension.debugger.coreinject.FunctionBreakpointMatcher", 0);
+            result.put("org.lucee.extension.debugger.coreinject.FunctionBreakpointMatcher$Entry", 0);
+            result.put("org.lucee.extension.debugger.coreinject.FunctionBreakpointMatcher$TrieBuilder", 0);
+            result.put("org.lucee.extension.debugger.coreinject.FunctionBreakpointMatcher$TrieNode", 0);
+            result.put("org.lucee.extension.debugger.coreinject.HitCondition", 0);
+            result.put("org.lucee.extension.debugger.coreinject.LineCoverage", 0);
+            result.put("org.lucee.extension.debugger.coreinject.LineCoverage$FileCoverage", 0);
+            result.put("org.lucee.extension.debugger.coreinject.LogMessage", 0);
+            result.put("org.lucee.extension.debugger.coreinject.LuceeHandles", 0);
+            result.put("org.lucee.extension.debugger.coreinject.PauseEpoch", 0);
+            result.put("org.lucee.extension.debugger.coreinject.RequestFilter", 0);
+            result.put("org.lucee.extension.debugger.coreinject.RequestTracer", 0);
+            result.put("org.lucee.extension.debugger.coreinject.RequestTracer$ThreadTrace", 0);
+            result.put("org.lucee.extension.debugger.coreinject.RequestVerdicts", 0);
+            result.put("org.lucee.extension.debugger.coreinject.RequestVerdicts$Verdict", 0);
+            result.put("org.lucee.extension.debugger.coreinject.SnapshotCopier", 0);
+            result.put("org.lucee.extension.debugger.coreinject.SnapshotStore", 0);
+            result.put("org.lucee.extension.debugger.coreinject.SnapshotStore$Snapshot", 0);
+            result.put("org.lucee.extension.debugger.coreinject.StackDepthTracker", 0);
+            result.put("org.lucee.extension.debugger.coreinject.StackDepthTracker$ClassHandle", 0);
+            result.put("org.lucee.extension.debugger.coreinject.SuspendLimiter", 0);
+            result.put("org.lucee.extension.debugger.coreinject.SuspendWatchdog", 0);
+            result.put("org.lucee.extension.debugger.coreinject.SuspendWatchdog$Timeout", 0);
+            result.put("org.lucee.extension.debugger.coreinject.TraceBuffer", 0);
+
             result.put("org.lucee.extension.debugger.coreinject.frame.DebugFrame", 0);
             result.put("org.lucee.extension.debugger.coreinject.frame.Frame", 1);
             result.put("org.lucee.extension.debugger.coreinject.frame.Frame$FrameContext", 1);
             result.put("org.lucee.extension.debugger.coreinject.frame.Frame$FrameContext$SupplierOrNull", 1);
-            result.put("org.lucee.extension.debugger.coreinject.frame.DummyFrame", 1);
             result.put("org.lucee.extension.debugger.coreinject.frame.NativeDebugFrame", 1);
+            result.put("org.lucee.extension.debugger.coreinject.frame.SnapshotFrame", 0);
 
             // Native debugger classes - not used in agent mode but need to be in the map
             result.put("org.lucee.extension.debugger.coreinject.NativeLuceeVm", 0);
             result.put("org.lucee.extension.debugger.coreinject.NativeLuceeVm$1", 0);
             result.put("org.lucee.extension.debugger.coreinject.NativeLuceeVm$2", 0);
             result.put("org.lucee.extension.debugger.coreinject.NativeLuceeVm$3", 0);
+            result.put("org.lucee.extension.debugger.coreinject.NativeLuceeVm$4", 0);
             result.put("org.lucee.extension.debugger.coreinject.NativeDebuggerListener", 0);
             result.put("org.lucee.extension.debugger.coreinject.NativeDebuggerListener$1", 0);
             result.put("org.lucee.extension.debugger.coreinject.NativeDebuggerListener$CachedExecutableLines", 0);
             result.put("org.lucee.extension.debugger.coreinject.NativeDebuggerListener$StepState", 0);
             result.put("org.lucee.extension.debugger.coreinject.NativeDebuggerListener$SuspendLocation", 0);
+            result.put("org.lucee.extension.debugger.coreinject.NativeDebuggerListener$BreakpointCapCallback", 0);
+            result.put("org.lucee.extension.debugger.coreinject.NativeDebuggerListener$Reservation", 0);
+            result.put("org.lucee.extension.debugger.coreinject.NativeDebuggerListener$SnapshotCallback", 0);
+            result.put("org.lucee.extension.debugger.coreinject.NativeDebuggerListener$SuspendGate", 0);
+            result.put("org.lucee.extension.debugger.coreinject.NativeDebuggerListener$SuspendedThread", 0);
             result.put("org.lucee.extension.debugger.coreinject.StepMode", 0);
 
             // Utility classes - no hierarchies, all order 0
@@ -206,6 +270,10 @@ public class Agent {
             result.put("org.lucee.extension.debugger.util.ConcurrentWeakKeyMap$LookupKey", 0);
             result.put("org.lucee.extension.debugger.util.ExpiringLruCache", 0);
             result.put("org.lucee.extension.debugger.util.ExpiringLruCache$Entry", 0);
+            result.put("org.lucee.extension.debugger.util.CanonicalPathCache", 0);
+            result.put("org.lucee.extension.debugger.util.CanonicalPathCache$Entry", 0);
+            result.put("org.lucee.extension.debugger.util.Glob", 0);
+            result.put("org.lucee.extension.debugger.util.MpscRingBuffer", 0);
 
             return result;
         }
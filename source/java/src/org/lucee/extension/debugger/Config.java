@@ -2,6 +2,8 @@ package org.lucee.extension.debugger;
 
 import java.io.File;
 
+import org.lucee.extension.debugger.util.CanonicalPathCache;
+
 public class Config {
     private final boolean fsIsCaseSensitive_;
     // we probably never want to step into this (the a=b in `function foo(a=b) { ... }` )
@@ -9,11 +11,17 @@ public class Config {
     private boolean stepIntoUdfDefaultValueInitFrames_ = false;
 
     /**
-     * Static cache of filesystem case sensitivity.
-     * Set once at startup when Config is instantiated.
-     * Used by canonicalizeFileName() to skip lowercase on case-sensitive filesystems.
+     * Max distinct raw paths remembered by the canonical path cache.
+     */
+    private static final int CANONICAL_PATH_CACHE_SIZE = 8192;
+
+    /**
+     * Cache of raw path -> canonical path, shared by every canonicalizeFileName() caller
+     * (breakpoint lookup, onSuspend, shortenPath, DAP path transforms).
+     * Case sensitivity is set once at startup when Config is instantiated; the cache is
+     * replaced if it changes, since that changes the canonical form.
      */
-    private static volatile boolean staticFsIsCaseSensitive = false;
+    private static volatile CanonicalPathCache pathCache = new CanonicalPathCache(CANONICAL_PATH_CACHE_SIZE, false);
 
     /**
      * Base path prefix for shortening paths in log output.
@@ -24,7 +32,9 @@ public class Config {
     public Config(boolean fsIsCaseSensitive) {
         this.fsIsCaseSensitive_ = fsIsCaseSensitive;
         // Cache for static access
-        staticFsIsCaseSensitive = fsIsCaseSensitive;
+        if (pathCache.isCaseSensitive() != fsIsCaseSensitive) {
+            pathCache = new CanonicalPathCache(CANONICAL_PATH_CACHE_SIZE, fsIsCaseSensitive);
+        }
     }
 
     public boolean getStepIntoUdfDefaultValueInitFrames() {
@@ -65,11 +75,19 @@ public class Config {
         return fsIsCaseSensitive_;
     }
 
+    /**
+     * Normalize slashes, and lowercase on case-insensitive filesystems (Windows).
+     * Served from a bounded cache - see CanonicalPathCache.
+     */
     public static String canonicalizeFileName(String s) {
-        // Normalize slashes (always needed)
-        String normalized = s.replaceAll("[\\\\/]+", "/");
-        // Only lowercase on case-insensitive filesystems (Windows)
-        return staticFsIsCaseSensitive ? normalized : normalized.toLowerCase();
+        return pathCache.get(s);
+    }
+
+    /**
+     * Hit/miss counters for the canonical path cache, for diagnostics.
+     */
+    public static String getCanonicalPathCacheStats() {
+        return pathCache.toString();
     }
 
     /**
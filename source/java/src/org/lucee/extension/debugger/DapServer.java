@@ -7,10 +7,14 @@ import java.net.BindException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
@@ -177,6 +181,15 @@ public class DapServer implements IDebugProtocolServer {
             clientProxy_.stopped(event);
             Log.debug("Sent DAP stopped event for pause, thread=" + javaThreadId);
         });
+
+        // Register continued callback (a thread resumed by the suspend watchdog)
+        this.luceeVm_.registerContinuedEventCallback(javaThreadId -> {
+            var event = new ContinuedEventArguments();
+            event.setThreadId((int)(long)javaThreadId);
+            event.setAllThreadsContinued(false);
+            clientProxy_.continued(event);
+            Log.debug("Sent DAP continued event, thread=" + javaThreadId);
+        });
     }
 
     static class DapEntry {
@@ -265,9 +278,17 @@ public class DapServer implements IDebugProtocolServer {
                 } finally {
                     // Clear DAP client FIRST to avoid broken pipe when setDapClientConnected logs
                     Log.setDapClient(null);
+                    // A profiler nobody can dump any more is just overhead
+                    luceeVm.stopProfiler();
                     // Mark DAP client as disconnected - disables breakpoint() BIF suspension (native mode only)
                     if (luceeVm instanceof NativeLuceeVm) {
                         NativeDebuggerListener.setDapClientConnected(false);
+                        // Nobody to stop for - stop paying the per-line execution log callback
+                        disableNativeExecutionLog();
+                    }
+                    else {
+                        // Agent mode: back to no-op hooks in instrumented pages
+                        DebugHooks.setAttached(false);
                     }
                     try { socket.close(); } catch (Exception ignored) {}
                     System.out.println("[luceedebug] Client socket closed, returning to accept loop");
@@ -347,13 +368,15 @@ public class DapServer implements IDebugProtocolServer {
         c.setSupportsSingleThreadExecutionRequests(true); // but, vscode does not (from the stack frame panel at least?)
 
         c.setSupportsConditionalBreakpoints(true);
-        c.setSupportsHitConditionalBreakpoints(false); // still shows UI for it though
-        c.setSupportsLogPoints(false); // still shows UI for it though
 
         // Native-mode-only capabilities (require Lucee 7.1+ DebuggerRegistry)
         // Also check if debugger is actually enabled (LUCEE_DAP_BREAKPOINT not set to false)
         boolean isNativeMode = luceeVm_ instanceof NativeLuceeVm && EnvUtil.isDebuggerEnabled();
 
+        // Logpoints and hit conditions are evaluated in NativeDebuggerListener.shouldSuspend()
+        c.setSupportsHitConditionalBreakpoints(isNativeMode);
+        c.setSupportsLogPoints(isNativeMode);
+
         // Exception breakpoint filters - only supported in native mode with debugger enabled
         if (isNativeMode) {
             var uncaughtFilter = new ExceptionBreakpointsFilter();
@@ -368,6 +391,16 @@ public class DapServer implements IDebugProtocolServer {
         c.setSupportsCompletionsRequest(isNativeMode);
         c.setSupportsFunctionBreakpoints(isNativeMode);
 
+        // Snapshot breakpoints capture the frames in NativeDebuggerListener.shouldSuspend() and continue
+        if (isNativeMode) {
+            var snapshotMode = new BreakpointMode();
+            snapshotMode.setMode("snapshot");
+            snapshotMode.setLabel("Snapshot");
+            snapshotMode.setDescription("Capture locals and continue without suspending");
+            snapshotMode.setAppliesTo(new String[] { BreakpointModeApplicability.SOURCE });
+            c.setBreakpointModes(new BreakpointMode[] { snapshotMode });
+        }
+
         Log.debug("Returning capabilities (nativeMode=" + isNativeMode + ") with exceptionBreakpointFilters: " + Arrays.toString(c.getExceptionBreakpointFilters()));
 
         return CompletableFuture.completedFuture(c);
@@ -431,6 +464,10 @@ public class DapServer implements IDebugProtocolServer {
         return obj instanceof Boolean ? ((Boolean)obj) : defaultValue;
     }
 
+    private int getAsInt(Object obj, int defaultValue) {
+        return obj instanceof Number ? ((Number)obj).intValue() : defaultValue;
+    }
+
     @Override
     public CompletableFuture<Void> attach(Map<String, Object> args) {
         // Configure logging from launch.json (before other logging)
@@ -457,6 +494,18 @@ public class DapServer implements IDebugProtocolServer {
             Log.info("Expression evaluation disabled");
         }
 
+        luceeVm_.configureSnapshots(
+            getAsInt(args.get("snapshotMaxDepth"), 0),
+            getAsInt(args.get("snapshotMaxValues"), 0),
+            getAsInt(args.get("snapshotMaxCount"), 0));
+
+        if (luceeVm_ instanceof NativeLuceeVm) {
+            NativeDebuggerListener.setRequestFilter(args.get("requestFilter"));
+            NativeDebuggerListener.setAppFilter(args.get("appFilter"));
+            NativeDebuggerListener.setMaxSuspendedThreads(getAsInt(args.get("maxSuspendedThreads"), 0));
+            NativeDebuggerListener.setMaxSuspendSeconds(getAsInt(args.get("maxSuspendSeconds"), 0));
+        }
+
         clientProxy_.initialized();
 
         if (pathTransforms.size() == 0) {
@@ -537,9 +586,26 @@ public class DapServer implements IDebugProtocolServer {
         }
 
         secretValidated = true;
+        // Pages have called no-op hooks while nobody was attached; link them to the DebugManager
+        DebugHooks.setAttached(true);
         return true;
     }
 
+    /**
+     * Turn the execution log back off after a native-mode client detaches.
+     * Reflective like validateSecret(), since ExtensionActivator is only active in native mode.
+     */
+    private static void disableNativeExecutionLog() {
+        try {
+            Class<?> activatorClass = Class.forName("org.lucee.extension.debugger.extension.ExtensionActivator");
+            if ((Boolean) activatorClass.getMethod("isNativeModeActive").invoke(null)) {
+                activatorClass.getMethod("disableExecutionLog").invoke(null);
+            }
+        } catch (Exception e) {
+            Log.error("Failed to disable execution log", e);
+        }
+    }
+
     /**
      * Helper to reject requests when not authorized.
      * Returns a failed CompletableFuture with appropriate error message.
@@ -782,13 +848,19 @@ public class DapServer implements IDebugProtocolServer {
         final int size = args.getBreakpoints().length;
         final int[] lines = new int[size];
         final String[] exprs = new String[size];
+        final String[] hitConditions = new String[size];
+        final String[] logMessages = new String[size];
+        final String[] modes = new String[size];
         for (int i = 0; i < size; ++i) {
             lines[i] = args.getBreakpoints()[i].getLine();
             exprs[i] = args.getBreakpoints()[i].getCondition();
+            hitConditions[i] = args.getBreakpoints()[i].getHitCondition();
+            logMessages[i] = args.getBreakpoints()[i].getLogMessage();
+            modes[i] = args.getBreakpoints()[i].getMode();
         }
 
         var result = new ArrayList<Breakpoint>();
-        for (IBreakpoint bp : luceeVm_.bindBreakpoints(idePath, serverAbsPath, lines, exprs)) {
+        for (IBreakpoint bp : luceeVm_.bindBreakpoints(idePath, serverAbsPath, lines, exprs, hitConditions, logMessages, modes)) {
             result.add(map_cfBreakpoint_to_lsp4jBreakpoint(bp));
         }
 
@@ -800,9 +872,12 @@ public class DapServer implements IDebugProtocolServer {
 
     private Breakpoint map_cfBreakpoint_to_lsp4jBreakpoint(IBreakpoint cfBreakpoint) {
         var bp = new Breakpoint();
-        bp.setLine(cfBreakpoint.getLine());
+        if (cfBreakpoint.getLine() > 0) { // function breakpoints have no line
+            bp.setLine(cfBreakpoint.getLine());
+        }
         bp.setId(cfBreakpoint.getID());
         bp.setVerified(cfBreakpoint.getIsBound());
+        bp.setMessage(cfBreakpoint.getMessage());
         return bp;
     }
 
@@ -902,21 +977,24 @@ public class DapServer implements IDebugProtocolServer {
 
 		String[] names = new String[bps.length];
 		String[] conditions = new String[bps.length];
+		String[] hitConditions = new String[bps.length];
 
 		for (int i = 0; i < bps.length; i++) {
 			names[i] = bps[i].getName();
 			conditions[i] = bps[i].getCondition();
+			hitConditions[i] = bps[i].getHitCondition();
 			Log.debug("  Function breakpoint: " + names[i] +
-				(conditions[i] != null ? " condition=" + conditions[i] : ""));
+				(conditions[i] != null ? " condition=" + conditions[i] : "") +
+				(hitConditions[i] != null ? " hitCondition=" + hitConditions[i] : ""));
 		}
 
-		NativeDebuggerListener.setFunctionBreakpoints(names, conditions);
+		IBreakpoint[] bound = ((NativeLuceeVm) luceeVm_).bindFunctionBreakpoints(names, conditions, hitConditions);
 
 		// Build response - mark all as verified (we can't validate until runtime)
 		Breakpoint[] result = new Breakpoint[bps.length];
 		for (int i = 0; i < bps.length; i++) {
 			Breakpoint bp = new Breakpoint();
-			bp.setId(i + 1);
+			bp.setId(bound[i].getID());
 			bp.setVerified(true);
 			bp.setMessage("Function breakpoint: " + names[i]);
 			result[i] = bp;
@@ -1160,6 +1238,8 @@ public class DapServer implements IDebugProtocolServer {
         /** [original, transformed][] */
         private String[][] breakpoints;
         private String[] pathTransforms;
+        /** canonical path cache hit/miss counters */
+        private String canonicalPathCacheStats;
 
         public String[] getCanonicalFilenames() {
             return canonicalFilenames;
@@ -1181,6 +1261,13 @@ public class DapServer implements IDebugProtocolServer {
         public void setPathTransforms(String[] v) {
             this.pathTransforms = v;
         }
+
+        public String getCanonicalPathCacheStats() {
+            return canonicalPathCacheStats;
+        }
+        public void setCanonicalPathCacheStats(String v) {
+            this.canonicalPathCacheStats = v;
+        }
         
         @Override
         public String toString() {
@@ -1188,6 +1275,7 @@ public class DapServer implements IDebugProtocolServer {
             b.add("canonicalFilenames", this.canonicalFilenames);
             b.add("breakpoints", this.breakpoints);
             b.add("pathTransforms", this.pathTransforms);
+            b.add("canonicalPathCacheStats", this.canonicalPathCacheStats);
             return b.toString();
         }
 
@@ -1232,6 +1320,10 @@ public class DapServer implements IDebugProtocolServer {
                 return false;
             }
 
+            if (!Objects.equals(this.canonicalPathCacheStats, other.canonicalPathCacheStats)) {
+                return false;
+            }
+
             return true;
         }
     }
@@ -1252,7 +1344,709 @@ public class DapServer implements IDebugProtocolServer {
             transforms.add(v.asTraceString());
         }
         response.setPathTransforms(transforms.toArray(new String[0]));
+        response.setCanonicalPathCacheStats(Config.getCanonicalPathCacheStats());
+
+        return CompletableFuture.completedFuture(response);
+	}
+
+    class ProfilerArguments {
+        /** sample period in ms; 0 = default */
+        private int intervalMs;
+        /** discard samples from earlier runs */
+        private boolean reset;
+
+        public int getIntervalMs() {
+            return intervalMs;
+        }
+        public void setIntervalMs(int v) {
+            this.intervalMs = v;
+        }
+
+        public boolean getReset() {
+            return reset;
+        }
+        public void setReset(boolean v) {
+            this.reset = v;
+        }
+
+        @Override
+        public String toString() {
+            ToStringBuilder b = new ToStringBuilder(this);
+            b.add("intervalMs", this.intervalMs);
+            b.add("reset", this.reset);
+            return b.toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (this.getClass() != obj.getClass()) {
+                return false;
+            }
+            ProfilerArguments other = (ProfilerArguments) obj;
+            return this.intervalMs == other.intervalMs && this.reset == other.reset;
+        }
+    }
+
+    class ProfilerResponse {
+        private boolean running;
+        private int intervalMs;
+        private long samples;
+        private long truncatedSamples;
+        private int nodes;
+        private long elapsedMs;
+        /** collapsed stacks ("frame;frame count" per line); only set by profilerDump */
+        private String collapsed;
+
+        ProfilerResponse(ILuceeVm.ProfilerStatus status) {
+            this.running = status.running;
+            this.intervalMs = status.intervalMs;
+            this.samples = status.samples;
+            this.truncatedSamples = status.truncatedSamples;
+            this.nodes = status.nodes;
+            this.elapsedMs = status.elapsedMs;
+        }
+
+        public boolean getRunning() {
+            return running;
+        }
+        public int getIntervalMs() {
+            return intervalMs;
+        }
+        public long getSamples() {
+            return samples;
+        }
+        public long getTruncatedSamples() {
+            return truncatedSamples;
+        }
+        public int getNodes() {
+            return nodes;
+        }
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+        public String getCollapsed() {
+            return collapsed;
+        }
+        public void setCollapsed(String v) {
+            this.collapsed = v;
+        }
+
+        @Override
+        public String toString() {
+            ToStringBuilder b = new ToStringBuilder(this);
+            b.add("running", this.running);
+            b.add("intervalMs", this.intervalMs);
+            b.add("samples", this.samples);
+            b.add("truncatedSamples", this.truncatedSamples);
+            b.add("nodes", this.nodes);
+            b.add("elapsedMs", this.elapsedMs);
+            b.add("collapsed", this.collapsed);
+            return b.toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (this.getClass() != obj.getClass()) {
+                return false;
+            }
+            ProfilerResponse other = (ProfilerResponse) obj;
+            return this.running == other.running
+                && this.intervalMs == other.intervalMs
+                && this.samples == other.samples
+                && this.truncatedSamples == other.truncatedSamples
+                && this.nodes == other.nodes
+                && this.elapsedMs == other.elapsedMs
+                && Objects.equals(this.collapsed, other.collapsed);
+        }
+    }
+
+    private <T> CompletableFuture<T> invalidRequest(String message) {
+        var result = new CompletableFuture<T>();
+        var error = new ResponseError(ResponseErrorCode.InvalidRequest, message, null);
+        result.completeExceptionally(new ResponseErrorException(error));
+        return result;
+    }
+
+    @JsonRequest
+	CompletableFuture<ProfilerResponse> profilerStart(ProfilerArguments args) {
+        if (!secretValidated) return notAuthorized();
+        var status = luceeVm_.startProfiler(args == null ? 0 : args.intervalMs, args != null && args.reset);
+        if (status == null) return invalidRequest("Profiler requires native mode (Lucee 7.1+)");
+        return CompletableFuture.completedFuture(new ProfilerResponse(status));
+	}
+
+    @JsonRequest
+	CompletableFuture<ProfilerResponse> profilerStop(ProfilerArguments args) {
+        if (!secretValidated) return notAuthorized();
+        var status = luceeVm_.stopProfiler();
+        if (status == null) return invalidRequest("Profiler requires native mode (Lucee 7.1+)");
+        return CompletableFuture.completedFuture(new ProfilerResponse(status));
+	}
+
+    @JsonRequest
+	CompletableFuture<ProfilerResponse> profilerDump(ProfilerArguments args) {
+        if (!secretValidated) return notAuthorized();
+        var status = luceeVm_.getProfilerStatus();
+        if (status == null) return invalidRequest("Profiler requires native mode (Lucee 7.1+)");
+        var response = new ProfilerResponse(status);
+        response.setCollapsed(luceeVm_.getProfileCollapsed());
+        return CompletableFuture.completedFuture(response);
+	}
+
+    class CoverageArguments {
+        /** coverageStart: discard lines recorded by earlier runs */
+        private boolean reset;
+        /** coverageReport: write the LCOV report to this server-side file instead of returning it */
+        private String path;
+
+        public boolean getReset() {
+            return reset;
+        }
+        public void setReset(boolean v) {
+            this.reset = v;
+        }
+
+        public String getPath() {
+            return path;
+        }
+        public void setPath(String v) {
+            this.path = v;
+        }
+
+        @Override
+        public String toString() {
+            ToStringBuilder b = new ToStringBuilder(this);
+            b.add("reset", this.reset);
+            b.add("path", this.path);
+            return b.toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (this.getClass() != obj.getClass()) {
+                return false;
+            }
+            CoverageArguments other = (CoverageArguments) obj;
+            return this.reset == other.reset && Objects.equals(this.path, other.path);
+        }
+    }
+
+    class CoverageResponse {
+        private boolean running;
+        private int files;
+        private long linesHit;
+        /** coverageReport: the LCOV report, unless it was written to a file */
+        private String lcov;
+        /** coverageReport: the file the report was written to */
+        private String path;
+
+        CoverageResponse(ILuceeVm.CoverageStatus status) {
+            this.running = status.running;
+            this.files = status.files;
+            this.linesHit = status.linesHit;
+        }
+
+        public boolean getRunning() {
+            return running;
+        }
+        public int getFiles() {
+            return files;
+        }
+        public long getLinesHit() {
+            return linesHit;
+        }
+        public String getLcov() {
+            return lcov;
+        }
+        public void setLcov(String v) {
+            this.lcov = v;
+        }
+        public String getPath() {
+            return path;
+        }
+        public void setPath(String v) {
+            this.path = v;
+        }
+
+        @Override
+        public String toString() {
+            ToStringBuilder b = new ToStringBuilder(this);
+            b.add("running", this.running);
+            b.add("files", this.files);
+            b.add("linesHit", this.linesHit);
+            b.add("lcov", this.lcov);
+            b.add("path", this.path);
+            return b.toString();
+        }
 
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (this.getClass() != obj.getClass()) {
+                return false;
+            }
+            CoverageResponse other = (CoverageResponse) obj;
+            return this.running == other.running
+                && this.files == other.files
+                && this.linesHit == other.linesHit
+                && Objects.equals(this.lcov, other.lcov)
+                && Objects.equals(this.path, other.path);
+        }
+    }
+
+    @JsonRequest
+	CompletableFuture<CoverageResponse> coverageStart(CoverageArguments args) {
+        if (!secretValidated) return notAuthorized();
+        var status = luceeVm_.startCoverage(args != null && args.reset);
+        if (status == null) return invalidRequest("Coverage requires native mode (Lucee 7.1+)");
+        return CompletableFuture.completedFuture(new CoverageResponse(status));
+	}
+
+    @JsonRequest
+	CompletableFuture<CoverageResponse> coverageStop(CoverageArguments args) {
+        if (!secretValidated) return notAuthorized();
+        var status = luceeVm_.stopCoverage();
+        if (status == null) return invalidRequest("Coverage requires native mode (Lucee 7.1+)");
+        return CompletableFuture.completedFuture(new CoverageResponse(status));
+	}
+
+    @JsonRequest
+	CompletableFuture<CoverageResponse> coverageReport(CoverageArguments args) {
+        if (!secretValidated) return notAuthorized();
+        var status = luceeVm_.getCoverageStatus();
+        if (status == null) return invalidRequest("Coverage requires native mode (Lucee 7.1+)");
+        // SF: paths are written as the IDE sees them, so the report lines up with the workspace
+        String lcov = luceeVm_.getCoverageLcov(this::applyPathTransformsServerToIde);
+        var response = new CoverageResponse(status);
+        String path = args != null ? args.path : null;
+        if (path == null || path.isEmpty()) {
+            response.setLcov(lcov);
+        }
+        else {
+            try {
+                Files.write(Paths.get(path), lcov.getBytes(StandardCharsets.UTF_8));
+            }
+            catch (Exception e) {
+                Log.error("Failed to write coverage report to " + path, e);
+                return invalidRequest("Failed to write coverage report: " + e.getMessage());
+            }
+            Log.info("Coverage report written to " + path);
+            response.setPath(path);
+        }
+        return CompletableFuture.completedFuture(response);
+	}
+
+    class TraceArguments {
+        /** traceStart: glob on the request URI, e.g. "/api/*" */
+        private String urlFilter;
+        /** traceStart: glob on the request thread name */
+        private String threadFilter;
+        /** traceStart: server-side directory for trace files */
+        private String directory;
+        /** traceStart: events recorded per request */
+        private int maxEvents;
+        /** traceStart: requests traced at the same time */
+        private int maxConcurrent;
+
+        public String getUrlFilter() {
+            return urlFilter;
+        }
+        public void setUrlFilter(String v) {
+            this.urlFilter = v;
+        }
+
+        public String getThreadFilter() {
+            return threadFilter;
+        }
+        public void setThreadFilter(String v) {
+            this.threadFilter = v;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+        public void setDirectory(String v) {
+            this.directory = v;
+        }
+
+        public int getMaxEvents() {
+            return maxEvents;
+        }
+        public void setMaxEvents(int v) {
+            this.maxEvents = v;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+        public void setMaxConcurrent(int v) {
+            this.maxConcurrent = v;
+        }
+
+        @Override
+        public String toString() {
+            ToStringBuilder b = new ToStringBuilder(this);
+            b.add("urlFilter", this.urlFilter);
+            b.add("threadFilter", this.threadFilter);
+            b.add("directory", this.directory);
+            b.add("maxEvents", this.maxEvents);
+            b.add("maxConcurrent", this.maxConcurrent);
+            return b.toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (this.getClass() != obj.getClass()) {
+                return false;
+            }
+            TraceArguments other = (TraceArguments) obj;
+            return Objects.equals(this.urlFilter, other.urlFilter)
+                && Objects.equals(this.threadFilter, other.threadFilter)
+                && Objects.equals(this.directory, other.directory)
+                && this.maxEvents == other.maxEvents
+                && this.maxConcurrent == other.maxConcurrent;
+        }
+    }
+
+    class TraceResponse {
+        private boolean running;
+        private String urlFilter;
+        private String threadFilter;
+        private String directory;
+        private int maxEvents;
+        private long tracesWritten;
+        private long droppedRequests;
+        private long truncatedTraces;
+        private String[] files;
+
+        TraceResponse(ILuceeVm.TraceStatus status) {
+            this.running = status.running;
+            this.urlFilter = status.urlFilter;
+            this.threadFilter = status.threadFilter;
+            this.directory = status.directory;
+            this.maxEvents = status.maxEvents;
+            this.tracesWritten = status.tracesWritten;
+            this.droppedRequests = status.droppedRequests;
+            this.truncatedTraces = status.truncatedTraces;
+            this.files = status.files;
+        }
+
+        public boolean getRunning() {
+            return running;
+        }
+        public String getUrlFilter() {
+            return urlFilter;
+        }
+        public String getThreadFilter() {
+            return threadFilter;
+        }
+        public String getDirectory() {
+            return directory;
+        }
+        public int getMaxEvents() {
+            return maxEvents;
+        }
+        public long getTracesWritten() {
+            return tracesWritten;
+        }
+        public long getDroppedRequests() {
+            return droppedRequests;
+        }
+        public long getTruncatedTraces() {
+            return truncatedTraces;
+        }
+        public String[] getFiles() {
+            return files;
+        }
+
+        @Override
+        public String toString() {
+            ToStringBuilder b = new ToStringBuilder(this);
+            b.add("running", this.running);
+            b.add("urlFilter", this.urlFilter);
+            b.add("threadFilter", this.threadFilter);
+            b.add("directory", this.directory);
+            b.add("maxEvents", this.maxEvents);
+            b.add("tracesWritten", this.tracesWritten);
+            b.add("droppedRequests", this.droppedRequests);
+            b.add("truncatedTraces", this.truncatedTraces);
+            b.add("files", this.files);
+            return b.toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (this.getClass() != obj.getClass()) {
+                return false;
+            }
+            TraceResponse other = (TraceResponse) obj;
+            return this.running == other.running
+                && Objects.equals(this.urlFilter, other.urlFilter)
+                && Objects.equals(this.threadFilter, other.threadFilter)
+                && Objects.equals(this.directory, other.directory)
+                && this.maxEvents == other.maxEvents
+                && this.tracesWritten == other.tracesWritten
+                && this.droppedRequests == other.droppedRequests
+                && this.truncatedTraces == other.truncatedTraces
+                && Arrays.equals(this.files, other.files);
+        }
+    }
+
+    @JsonRequest
+	CompletableFuture<TraceResponse> traceStart(TraceArguments args) {
+        if (!secretValidated) return notAuthorized();
+        if (args == null) args = new TraceArguments();
+        ILuceeVm.TraceStatus status;
+        try {
+            status = luceeVm_.startTracing(args.urlFilter, args.threadFilter, args.directory, args.maxEvents, args.maxConcurrent);
+        }
+        catch (Exception e) {
+            Log.error("Failed to start request tracing", e);
+            return invalidRequest("Failed to start tracing: " + e.getMessage());
+        }
+        if (status == null) return invalidRequest("Tracing requires native mode (Lucee 7.1+)");
+        return CompletableFuture.completedFuture(new TraceResponse(status));
+	}
+
+    @JsonRequest
+	CompletableFuture<TraceResponse> traceStop(TraceArguments args) {
+        if (!secretValidated) return notAuthorized();
+        var status = luceeVm_.stopTracing();
+        if (status == null) return invalidRequest("Tracing requires native mode (Lucee 7.1+)");
+        return CompletableFuture.completedFuture(new TraceResponse(status));
+	}
+
+    @JsonRequest
+	CompletableFuture<TraceResponse> traceStatus(TraceArguments args) {
+        if (!secretValidated) return notAuthorized();
+        var status = luceeVm_.getTracingStatus();
+        if (status == null) return invalidRequest("Tracing requires native mode (Lucee 7.1+)");
+        return CompletableFuture.completedFuture(new TraceResponse(status));
+	}
+
+    class SnapshotArguments {
+        @Override
+        public String toString() {
+            return new ToStringBuilder(this).toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj != null && this.getClass() == obj.getClass();
+        }
+    }
+
+    class SnapshotListResponse {
+        private SnapshotEntry[] snapshots;
+
+        public SnapshotEntry[] getSnapshots() {
+            return snapshots;
+        }
+        public void setSnapshots(SnapshotEntry[] v) {
+            this.snapshots = v;
+        }
+
+        @Override
+        public String toString() {
+            ToStringBuilder b = new ToStringBuilder(this);
+            b.add("snapshots", this.snapshots);
+            return b.toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (this.getClass() != obj.getClass()) {
+                return false;
+            }
+            SnapshotListResponse other = (SnapshotListResponse) obj;
+            return Arrays.equals(this.snapshots, other.snapshots);
+        }
+    }
+
+    class SnapshotEntry {
+        private int id;
+        /** virtual thread id; stackTrace / scopes / variables on it browse the captured frames */
+        private long threadId;
+        private String path;
+        private int line;
+        private String threadName;
+        private long timestamp;
+        private int frames;
+        private int values;
+        private boolean truncated;
+
+        SnapshotEntry(ILuceeVm.SnapshotInfo info, String idePath) {
+            this.id = info.id;
+            this.threadId = info.threadId;
+            this.path = idePath;
+            this.line = info.line;
+            this.threadName = info.threadName;
+            this.timestamp = info.timestamp;
+            this.frames = info.frames;
+            this.values = info.values;
+            this.truncated = info.truncated;
+        }
+
+        public int getId() {
+            return id;
+        }
+        public long getThreadId() {
+            return threadId;
+        }
+        public String getPath() {
+            return path;
+        }
+        public int getLine() {
+            return line;
+        }
+        public String getThreadName() {
+            return threadName;
+        }
+        public long getTimestamp() {
+            return timestamp;
+        }
+        public int getFrames() {
+            return frames;
+        }
+        public int getValues() {
+            return values;
+        }
+        public boolean getTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public String toString() {
+            ToStringBuilder b = new ToStringBuilder(this);
+            b.add("id", this.id);
+            b.add("threadId", this.threadId);
+            b.add("path", this.path);
+            b.add("line", this.line);
+            b.add("threadName", this.threadName);
+            b.add("timestamp", this.timestamp);
+            b.add("frames", this.frames);
+            b.add("values", this.values);
+            b.add("truncated", this.truncated);
+            return b.toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (this.getClass() != obj.getClass()) {
+                return false;
+            }
+            SnapshotEntry other = (SnapshotEntry) obj;
+            return this.id == other.id
+                && this.threadId == other.threadId
+                && Objects.equals(this.path, other.path)
+                && this.line == other.line
+                && Objects.equals(this.threadName, other.threadName)
+                && this.timestamp == other.timestamp
+                && this.frames == other.frames
+                && this.values == other.values
+                && this.truncated == other.truncated;
+        }
+    }
+
+    class SnapshotClearResponse {
+        private int cleared;
+
+        public int getCleared() {
+            return cleared;
+        }
+        public void setCleared(int v) {
+            this.cleared = v;
+        }
+
+        @Override
+        public String toString() {
+            ToStringBuilder b = new ToStringBuilder(this);
+            b.add("cleared", this.cleared);
+            return b.toString();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (this.getClass() != obj.getClass()) {
+                return false;
+            }
+            SnapshotClearResponse other = (SnapshotClearResponse) obj;
+            return this.cleared == other.cleared;
+        }
+    }
+
+    @JsonRequest
+	CompletableFuture<SnapshotListResponse> snapshotList(SnapshotArguments args) {
+        if (!secretValidated) return notAuthorized();
+        var infos = luceeVm_.getSnapshots();
+        if (infos == null) return invalidRequest("Snapshots require native mode (Lucee 7.1+)");
+        var entries = new SnapshotEntry[infos.length];
+        for (int i = 0; i < infos.length; i++) {
+            entries[i] = new SnapshotEntry(infos[i], applyPathTransformsServerToIde(infos[i].file));
+        }
+        var response = new SnapshotListResponse();
+        response.setSnapshots(entries);
+        return CompletableFuture.completedFuture(response);
+	}
+
+    @JsonRequest
+	CompletableFuture<SnapshotClearResponse> snapshotClear(SnapshotArguments args) {
+        if (!secretValidated) return notAuthorized();
+        var response = new SnapshotClearResponse();
+        response.setCleared(luceeVm_.clearSnapshots());
         return CompletableFuture.completedFuture(response);
 	}
 
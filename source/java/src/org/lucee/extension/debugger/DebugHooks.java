@@ -0,0 +1,129 @@
+package org.lucee.extension.debugger;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.ArrayList;
+
+/**
+ * Call sites for the hooks CfmOrCfc emits into instrumented pages (agent mode).
+ *
+ * Pages call the hooks through invokedynamic, and every call site of a hook
+ * is bound to one shared MutableCallSite. While no client is attached the
+ * targets are constants - push returns no frame, step does nothing - which
+ * the JIT inlines to nothing, so a page costs about what it did uninstrumented.
+ * Attaching relinks the sites to the DebugManager, bound as a constant
+ * receiver; detaching relinks them back. Compiled pages that inlined the old
+ * target are deoptimized by the JVM.
+ *
+ * Like GlobalIDebugManagerHolder this lives outside coreinject, so pages see
+ * it through boot delegation whatever loader they were defined in. It never
+ * names a Lucee class: the hook types, PageContext included, come from the
+ * pages' own call sites.
+ */
+public final class DebugHooks {
+
+    public static final String BOOTSTRAP_NAME = "bootstrap";
+    public static final String BOOTSTRAP_DESCRIPTOR = MethodType.methodType(
+        CallSite.class, MethodHandles.Lookup.class, String.class, MethodType.class).toMethodDescriptorString();
+
+    // Call site names are the IDebugManager methods they call.
+    // push : (PageContext, sourceFilePath) => frame handle, null if not pushed; the page pops only what it pushed
+    public static final String PUSH_CF_FRAME = "pushCfFrame";
+    public static final String PUSH_CF_FUNCTION_DEFAULT_VALUE_INITIALIZATION_FRAME = "pushCfFunctionDefaultValueInitializationFrame";
+    // step : (frame handle, currentLine) => void
+    public static final String STEP = "luceedebug_stepNotificationEntry_step";
+    // stepAfterCompletedUdfCall : () => void
+    public static final String STEP_AFTER_COMPLETED_UDF_CALL = "luceedebug_stepNotificationEntry_stepAfterCompletedUdfCall";
+
+    private static final class Hook {
+        final String name;
+        final MutableCallSite site;
+
+        Hook(String name, MethodType type) {
+            this.name = name;
+            this.site = new MutableCallSite(type);
+        }
+    }
+
+    // One per hook name and type; a second Lucee engine in the JVM would bring its own PageContext type
+    private static final ArrayList<Hook> hooks = new ArrayList<>();
+    private static IDebugManager linkedTo = null; // null = detached
+
+    private DebugHooks() {
+    }
+
+    /**
+     * Bootstrap method for the invokedynamic instructions CfmOrCfc emits.
+     */
+    public static synchronized CallSite bootstrap(MethodHandles.Lookup caller, String name, MethodType type) {
+        for (Hook hook : hooks) {
+            if (hook.name.equals(name) && hook.site.type().equals(type)) {
+                return hook.site;
+            }
+        }
+        boolean push = name.equals(PUSH_CF_FRAME) || name.equals(PUSH_CF_FUNCTION_DEFAULT_VALUE_INITIALIZATION_FRAME);
+        boolean step = name.equals(STEP) || name.equals(STEP_AFTER_COMPLETED_UDF_CALL);
+        if (!(push && type.returnType() == Object.class) && !(step && type.returnType() == void.class)) {
+            throw new IllegalArgumentException("[luceedebug] unknown debugger hook: " + name + type);
+        }
+        Hook hook = new Hook(name, type);
+        hook.site.setTarget(target(hook, linkedTo));
+        hooks.add(hook);
+        return hook.site;
+    }
+
+    /**
+     * Link the hooks to the DebugManager while a client is attached, to no-ops otherwise.
+     * Called by DapServer on attach and on disconnect.
+     */
+    public static synchronized void setAttached(boolean attached) {
+        IDebugManager debugManager = attached ? GlobalIDebugManagerHolder.debugManager : null;
+        if (attached && debugManager == null) {
+            System.out.println("[luceedebug] no DebugManager loaded - debugger hooks stay disabled");
+            return;
+        }
+        if (debugManager == linkedTo) {
+            return;
+        }
+        linkedTo = debugManager;
+        var sites = new MutableCallSite[hooks.size()];
+        for (int i = 0; i < sites.length; i++) {
+            Hook hook = hooks.get(i);
+            hook.site.setTarget(target(hook, debugManager));
+            sites[i] = hook.site;
+        }
+        MutableCallSite.syncAll(sites);
+    }
+
+    public static synchronized boolean isAttached() {
+        return linkedTo != null;
+    }
+
+    private static MethodHandle target(Hook hook, IDebugManager debugManager) {
+        MethodType type = hook.site.type();
+        if (debugManager == null) {
+            // push returns null (nothing pushed), step does nothing
+            return MethodHandles.empty(type);
+        }
+        try {
+            // Straight into the DebugManager: the step handler looks for the step method names on the stack
+            return MethodHandles.publicLookup()
+                .findVirtual(IDebugManager.class, hook.name, type)
+                .bindTo(debugManager);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("[luceedebug] failed to link debugger hook " + hook.name, e);
+        }
+    }
+
+    /**
+     * True for frames the hook call sites put between an instrumented page and the DebugManager.
+     * @param declaringTypeName binary name of the frame's class
+     */
+    public static boolean isHookLinkageFrame(String declaringTypeName) {
+        return declaringTypeName.startsWith("java.lang.invoke.");
+    }
+}
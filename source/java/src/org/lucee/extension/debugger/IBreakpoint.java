@@ -6,4 +6,11 @@ public interface IBreakpoint {
     public int getID();
 
     public boolean getIsBound();
+
+    /**
+     * Reason shown to the user, e.g. why a breakpoint was disabled; null for none.
+     */
+    default String getMessage() {
+        return null;
+    }
 }
@@ -18,20 +18,24 @@ public interface IDebugManager {
     void spawnWorker(Config config, String jdwpHost, int jdwpPort, String debugHost, int debugPort);
     /**
      * most common frame type
+     * @return handle on the pushed frame, which instrumented pages pass back on each line of it
      */
-    public void pushCfFrame(PageContext pc, String sourceFilePath);
+    public Object pushCfFrame(PageContext pc, String sourceFilePath);
     /**
      * a "default value initialization frame" is the frame that does default function value init,
      * like setting a,b,c in the following:
      * `function foo(a=1,b=2,c=3) {}; foo(42);` <-- init frame will be stepped into twice, once for `b`, once for `c`; `a` is not default init'd
      */
-    public void pushCfFunctionDefaultValueInitializationFrame(PageContext pageContext, String sourceFilePath);
+    public Object pushCfFunctionDefaultValueInitializationFrame(PageContext pageContext, String sourceFilePath);
     public void popCfFrame();
 
     // these method names are "magic" in that they serve as tags
     // when scanning the stack for "where did we transition from lucee to luceedebug code".
     // These must be the only "entry points" from lucee compiled CF files into luceedebug.
-    public void luceedebug_stepNotificationEntry_step(int currentLine);
+    /**
+     * @param frame handle pushCfFrame returned for the frame running the line, null if it wasn't pushed
+     */
+    public void luceedebug_stepNotificationEntry_step(Object frame, int currentLine);
     public void luceedebug_stepNotificationEntry_stepAfterCompletedUdfCall();
     static public boolean isStepNotificationEntryFunc(String methodName) {
         return methodName.startsWith("luceedebug_stepNotificationEntry_");
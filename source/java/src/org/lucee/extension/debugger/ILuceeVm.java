@@ -1,7 +1,9 @@
 package org.lucee.extension.debugger;
 
+import java.io.IOException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 import org.eclipse.lsp4j.debug.CompletionItem;
 
@@ -60,6 +62,22 @@ public interface ILuceeVm {
 
     public IBreakpoint[] bindBreakpoints(RawIdePath idePath, CanonicalServerAbsPath serverAbsPath, int[] lines, String[] exprs);
 
+    /**
+     * Bind breakpoints with DAP hit conditions and logpoint messages (parallel to lines, entries may be null).
+     * Only native mode supports these; the default ignores them.
+     */
+    default IBreakpoint[] bindBreakpoints(RawIdePath idePath, CanonicalServerAbsPath serverAbsPath, int[] lines, String[] exprs, String[] hitConditions, String[] logMessages) {
+        return bindBreakpoints(idePath, serverAbsPath, lines, exprs);
+    }
+
+    /**
+     * As above, plus DAP breakpoint modes (parallel to lines, entries may be null).
+     * "snapshot" captures the frames and continues instead of suspending (native mode only).
+     */
+    default IBreakpoint[] bindBreakpoints(RawIdePath idePath, CanonicalServerAbsPath serverAbsPath, int[] lines, String[] exprs, String[] hitConditions, String[] logMessages, String[] modes) {
+        return bindBreakpoints(idePath, serverAbsPath, lines, exprs, hitConditions, logMessages);
+    }
+
     public void continue_(long threadID);
 
     public void continueAll();
@@ -127,6 +145,12 @@ public interface ILuceeVm {
      */
     public void registerPauseEventCallback(Consumer<Long> cb);
 
+    /**
+     * Register callback for threads resumed by the server rather than the client
+     * (native mode only), e.g. by the suspend watchdog. Called with the Java thread ID.
+     */
+    default void registerContinuedEventCallback(Consumer<Long> cb) {}
+
     /**
      * Get the exception that caused a thread to suspend.
      * Returns null if the thread is not suspended due to an exception.
@@ -134,4 +158,170 @@ public interface ILuceeVm {
      * @return The exception, or null
      */
     public Throwable getExceptionForThread(long threadId);
+
+    public static class ProfilerStatus {
+        public boolean running;
+        public int intervalMs;
+        public long samples;
+        /** samples cut short because the call tree hit its node limit */
+        public long truncatedSamples;
+        public int nodes;
+        public long elapsedMs;
+    }
+
+    /**
+     * Start the sampling CFML profiler, or change its interval if it is running (native mode only).
+     * @param intervalMs sample period in ms, 0 for the default
+     * @param reset discard samples from earlier runs
+     * @return profiler status, or null if profiling is not supported
+     */
+    default ProfilerStatus startProfiler(int intervalMs, boolean reset) {
+        return null;
+    }
+
+    /**
+     * Stop the profiler; samples are kept until the next reset.
+     * @return profiler status, or null if profiling is not supported
+     */
+    default ProfilerStatus stopProfiler() {
+        return null;
+    }
+
+    /**
+     * @return profiler status, or null if profiling is not supported
+     */
+    default ProfilerStatus getProfilerStatus() {
+        return null;
+    }
+
+    /**
+     * Samples so far in collapsed-stack format ("frame;frame;frame count" per line),
+     * the input format of flame graph tools.
+     * @return the profile, or null if profiling is not supported
+     */
+    default String getProfileCollapsed() {
+        return null;
+    }
+
+    public static class CoverageStatus {
+        public boolean running;
+        public int files;
+        public long linesHit;
+    }
+
+    /**
+     * Start recording executed lines (native mode only).
+     * @param reset discard lines recorded by earlier runs
+     * @return coverage status, or null if coverage is not supported
+     */
+    default CoverageStatus startCoverage(boolean reset) {
+        return null;
+    }
+
+    /**
+     * Stop recording; recorded lines are kept until the next reset.
+     * @return coverage status, or null if coverage is not supported
+     */
+    default CoverageStatus stopCoverage() {
+        return null;
+    }
+
+    /**
+     * @return coverage status, or null if coverage is not supported
+     */
+    default CoverageStatus getCoverageStatus() {
+        return null;
+    }
+
+    /**
+     * Recorded coverage as an LCOV tracefile.
+     * @param pathMapper maps server paths to the paths written in the report
+     * @return the report, or null if coverage is not supported
+     */
+    default String getCoverageLcov(UnaryOperator<String> pathMapper) {
+        return null;
+    }
+
+    public static class TraceStatus {
+        public boolean running;
+        public String urlFilter;
+        public String threadFilter;
+        public String directory;
+        public int maxEvents;
+        public long tracesWritten;
+        /** matching requests not traced because every buffer was in use */
+        public long droppedRequests;
+        /** traces that hit maxEvents and lost their later events */
+        public long truncatedTraces;
+        /** most recently written trace files, oldest first */
+        public String[] files;
+    }
+
+    /**
+     * Start tracing matching requests to Chrome trace-event files, replacing any
+     * trace already running (native mode only).
+     * @param urlFilter glob on the request URI, null for any
+     * @param threadFilter glob on the thread name, null for any
+     * @param directory server-side output directory, null for the default
+     * @param maxEvents events recorded per request, 0 for the default
+     * @param maxConcurrent requests traced at the same time, 0 for the default
+     * @return trace status, or null if tracing is not supported
+     * @throws IOException if the output directory can't be created
+     */
+    default TraceStatus startTracing(String urlFilter, String threadFilter, String directory, int maxEvents, int maxConcurrent) throws IOException {
+        return null;
+    }
+
+    /**
+     * Stop tracing; requests still in flight are written as they are.
+     * @return trace status, or null if tracing is not supported
+     */
+    default TraceStatus stopTracing() {
+        return null;
+    }
+
+    /**
+     * @return trace status, or null if tracing is not supported
+     */
+    default TraceStatus getTracingStatus() {
+        return null;
+    }
+
+    public static class SnapshotInfo {
+        public int id;
+        /** virtual thread id; stackTrace on it browses the captured frames */
+        public long threadId;
+        public String file;
+        public int line;
+        public String threadName;
+        /** epoch millis */
+        public long timestamp;
+        public int frames;
+        public int values;
+        /** true if values were summarized or cut to stay within the snapshot budget */
+        public boolean truncated;
+    }
+
+    /**
+     * Set snapshot budgets; values <= 0 keep the current setting (native mode only).
+     * @param maxDepth container nesting copied below each scope
+     * @param maxValues values copied per snapshot
+     * @param maxCount snapshots kept; the oldest are dropped
+     */
+    default void configureSnapshots(int maxDepth, int maxValues, int maxCount) {
+    }
+
+    /**
+     * @return stored snapshots, oldest first, or null if snapshots are not supported
+     */
+    default SnapshotInfo[] getSnapshots() {
+        return null;
+    }
+
+    /**
+     * @return number of snapshots removed
+     */
+    default int clearSnapshots() {
+        return 0;
+    }
 }
@@ -1,5 +1,7 @@
 package org.lucee.extension.debugger;
 
+import java.util.function.Supplier;
+
 import org.eclipse.lsp4j.debug.OutputEventArguments;
 import org.eclipse.lsp4j.debug.OutputEventArgumentsCategory;
 import org.eclipse.lsp4j.debug.services.IDebugProtocolClient;
@@ -148,6 +150,103 @@ public class Log {
 		logToLuceeException(message, t);
 	}
 
+	/**
+	 * True if debug messages go anywhere (DAP at logLevel debug+, or the
+	 * LUCEE_DEBUGGER_DEBUG console). Guard any debug logging that needs
+	 * primitives boxed or other work done to build its message.
+	 */
+	public static boolean isDebugEnabled() {
+		return internalDebug || LogLevel.DEBUG.isEnabled(logLevel);
+	}
+
+	/**
+	 * True if trace messages go anywhere. See isDebugEnabled().
+	 */
+	public static boolean isTraceEnabled() {
+		return internalDebug || LogLevel.TRACE.isEnabled(logLevel);
+	}
+
+	/**
+	 * Log a debug message built only when debug is enabled.
+	 * Use a non-capturing lambda, or guard with isDebugEnabled(), on hot paths -
+	 * a capturing lambda is itself an allocation.
+	 */
+	public static void debug(Supplier<String> message) {
+		if (isDebugEnabled()) {
+			debug(message.get());
+		}
+	}
+
+	/**
+	 * Log a debug message with "{}" placeholders, formatted only when debug is enabled.
+	 * Primitive arguments are boxed before the level is checked; guard those with
+	 * isDebugEnabled().
+	 */
+	public static void debug(String format, Object arg) {
+		if (isDebugEnabled()) {
+			debug(format(format, arg));
+		}
+	}
+
+	public static void debug(String format, Object arg1, Object arg2) {
+		if (isDebugEnabled()) {
+			debug(format(format, arg1, arg2));
+		}
+	}
+
+	public static void debug(String format, Object arg1, Object arg2, Object arg3) {
+		if (isDebugEnabled()) {
+			debug(format(format, arg1, arg2, arg3));
+		}
+	}
+
+	/**
+	 * Log a trace message built only when trace is enabled.
+	 */
+	public static void trace(Supplier<String> message) {
+		if (isTraceEnabled()) {
+			trace(message.get());
+		}
+	}
+
+	/**
+	 * Log a trace message with "{}" placeholders, formatted only when trace is enabled.
+	 */
+	public static void trace(String format, Object arg) {
+		if (isTraceEnabled()) {
+			trace(format(format, arg));
+		}
+	}
+
+	public static void trace(String format, Object arg1, Object arg2) {
+		if (isTraceEnabled()) {
+			trace(format(format, arg1, arg2));
+		}
+	}
+
+	public static void trace(String format, Object arg1, Object arg2, Object arg3) {
+		if (isTraceEnabled()) {
+			trace(format(format, arg1, arg2, arg3));
+		}
+	}
+
+	/**
+	 * Substitute args for "{}" placeholders in order. Extra placeholders are kept
+	 * as-is, extra args are ignored.
+	 */
+	static String format(String format, Object... args) {
+		StringBuilder sb = new StringBuilder(format.length() + 16 * args.length);
+		int argIdx = 0;
+		int from = 0;
+		int at;
+		while (argIdx < args.length && (at = format.indexOf("{}", from)) >= 0) {
+			sb.append(format, from, at).append(args[argIdx++]);
+			from = at + 2;
+		}
+		sb.append(format, from, format.length());
+		return sb.toString();
+	}
+
 	/**
 	 * Log a debug message.
 	 * Shown in the DAP debug console when logLevel is "debug" or higher.
@@ -222,7 +321,8 @@ public class Log {
 	 * Only sends to DAP, not to System.out.
 	 */
 	public static void exception(Throwable t) {
-		if (!logExceptions) {
+		// Only sent to DAP - skip building the CFML stack trace when nobody is listening
+		if (!logExceptions || dapClient == null) {
 			return;
 		}
 		StringBuilder sb = new StringBuilder();
@@ -289,6 +389,25 @@ public class Log {
 		}
 	}
 
+	/**
+	 * Send rendered logpoint messages, one per line, to the DAP client.
+	 * Unlike the log methods, no prefix and no log level - the user asked for this output.
+	 * Called by the console output flusher, never on a request thread.
+	 */
+	public static void logpoint(String lines) {
+		IDebugProtocolClient client = dapClient;
+		if (client != null) {
+			try {
+				var args = new OutputEventArguments();
+				args.setCategory(OutputEventArgumentsCategory.CONSOLE);
+				args.setOutput(lines);
+				client.output(args);
+			} catch (Exception e) {
+				// Silently ignore - a logpoint must never break the request
+			}
+		}
+	}
+
 	/**
 	 * Send log to DAP client if connected.
 	 */
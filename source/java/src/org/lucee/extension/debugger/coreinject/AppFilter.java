@@ -0,0 +1,140 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import lucee.commons.io.res.Resource;
+import lucee.runtime.Mapping;
+import lucee.runtime.PageContext;
+import lucee.runtime.PageSource;
+import lucee.runtime.listener.ApplicationContext;
+
+import org.lucee.extension.debugger.Log;
+
+/**
+ * The applications the debugger works on, so one attached to a node running
+ * dozens of web contexts leaves the other tenants alone. Set from the attach
+ * config's appFilter:
+ *
+ *   "appFilter": {
+ *     "applications": [ "shop", "shop-*" ],  // glob on this.name
+ *     "webroots": "/var/www/shop",            // glob on the web context's root directory
+ *     "mappings": [ "/shop" ]                 // glob on the virtual path of the request's base template mapping
+ *   }
+ *
+ * A request is in scope if any one of the given globs matches. Outside the
+ * scope every native hook returns straight away: no breakpoints, stepping,
+ * pausing, exceptions, console output, coverage or tracing.
+ *
+ * Like RequestFilter the verdict is cached per request (see RequestVerdicts).
+ * The application context is part of the key: it changes once Application.cfc
+ * has run, and lines before that (its pseudo-constructor) only match on
+ * webroot or mapping.
+ */
+final class AppFilter {
+
+	private final String[] applications;
+	private final String[] webroots;
+	private final String[] mappings;
+	private final String description;
+	private final RequestVerdicts<ApplicationContext> verdicts = new RequestVerdicts<>( "App filter", this::evaluate );
+
+	private AppFilter( String[] applications, String[] webroots, String[] mappings, String description ) {
+		this.applications = applications;
+		this.webroots = webroots;
+		this.mappings = mappings;
+		this.description = description;
+	}
+
+	/**
+	 * @param config the attach config's appFilter object
+	 * @return the filter, or null if config is not a map or sets nothing
+	 */
+	static AppFilter of( Object config ) {
+		if ( !( config instanceof Map ) ) {
+			return null;
+		}
+		Map<?, ?> map = (Map<?, ?>) config;
+		List<String> applications = RequestVerdicts.strings( map.get( "applications" ) );
+		List<String> webroots = paths( RequestVerdicts.strings( map.get( "webroots" ) ) );
+		List<String> mappings = paths( RequestVerdicts.strings( map.get( "mappings" ) ) );
+		if ( applications.isEmpty() && webroots.isEmpty() && mappings.isEmpty() ) {
+			return null;
+		}
+		StringBuilder desc = new StringBuilder();
+		if ( !applications.isEmpty() ) desc.append( "applications=" ).append( applications ).append( ' ' );
+		if ( !webroots.isEmpty() ) desc.append( "webroots=" ).append( webroots ).append( ' ' );
+		if ( !mappings.isEmpty() ) desc.append( "mappings=" ).append( mappings ).append( ' ' );
+		return new AppFilter( applications.toArray( new String[0] ), webroots.toArray( new String[0] ),
+			mappings.toArray( new String[0] ), desc.toString().trim() );
+	}
+
+	/**
+	 * Is the request pc is running in scope? Evaluated once per request per thread,
+	 * and again once its application context is set.
+	 */
+	boolean matches( PageContext pc ) {
+		return verdicts.matches( pc, pc.getApplicationContext() );
+	}
+
+	private boolean evaluate( PageContext pc, ApplicationContext appContext ) {
+		String name = null;
+		String webroot = null;
+		String mapping = null;
+		try {
+			if ( appContext != null ) {
+				name = appContext.getName();
+			}
+			if ( webroots.length > 0 ) {
+				Resource root = pc.getConfig().getRootDirectory();
+				webroot = root != null ? root.getAbsolutePath() : null;
+			}
+			if ( mappings.length > 0 ) {
+				PageSource base = pc.getBasePageSource();
+				Mapping m = base != null ? base.getMapping() : null;
+				mapping = m != null ? m.getVirtual() : null;
+			}
+		}
+		catch ( Throwable t ) {
+			Log.debug( "App filter could not read request: " + t );
+		}
+		return test( name, webroot, mapping );
+	}
+
+	/**
+	 * The matching rules, separate from Lucee's API. Any argument may be null.
+	 */
+	boolean test( String application, String webroot, String mapping ) {
+		return RequestVerdicts.anyGlob( applications, application )
+			|| RequestVerdicts.anyGlob( webroots, normalize( webroot ) )
+			|| RequestVerdicts.anyGlob( mappings, normalize( mapping ) );
+	}
+
+	/**
+	 * Forward slashes and no trailing slash, so "C:\www\" and "/shop/" match "C:/www" and "/shop".
+	 */
+	static String normalize( String path ) {
+		if ( path == null ) {
+			return null;
+		}
+		String p = path.replace( '\\', '/' );
+		while ( p.length() > 1 && p.endsWith( "/" ) ) {
+			p = p.substring( 0, p.length() - 1 );
+		}
+		return p;
+	}
+
+	private static List<String> paths( List<String> globs ) {
+		List<String> result = new ArrayList<>( globs.size() );
+		for ( String glob : globs ) {
+			result.add( normalize( glob ) );
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return description;
+	}
+}
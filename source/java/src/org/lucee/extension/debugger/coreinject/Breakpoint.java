@@ -7,22 +7,32 @@ class Breakpoint implements IBreakpoint {
     final int line;
     final DapBreakpointID ID;
     final boolean isBound;
+    final String message;
 
-    private Breakpoint(int line, DapBreakpointID ID, boolean isBound) {
+    private Breakpoint(int line, DapBreakpointID ID, boolean isBound, String message) {
         this.line = line;
         this.ID = ID;
         this.isBound = isBound;
+        this.message = message;
     }
 
     public static Breakpoint Bound(int line, DapBreakpointID ID) {
-        return new Breakpoint(line, ID, true);
+        return new Breakpoint(line, ID, true, null);
     }
 
     public static Breakpoint Unbound(int line, DapBreakpointID ID) {
-        return new Breakpoint(line, ID, false);
+        return new Breakpoint(line, ID, false, null);
+    }
+
+    /**
+     * A breakpoint that stopped taking effect, e.g. after reaching its hit cap.
+     */
+    public static Breakpoint Disabled(int line, DapBreakpointID ID, String message) {
+        return new Breakpoint(line, ID, false, message);
     }
 
     public int getLine() { return line; }
     public int getID() { return ID.get(); }
     public boolean getIsBound() { return isBound; }
+    public String getMessage() { return message; }
 }
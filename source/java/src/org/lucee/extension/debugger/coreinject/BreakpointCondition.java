@@ -0,0 +1,168 @@
+package org.lucee.extension.debugger.coreinject;
+
+import lucee.runtime.Component;
+import lucee.runtime.PageContext;
+import lucee.loader.engine.CFMLEngineFactory;
+import lucee.runtime.exp.PageException;
+import lucee.runtime.type.Collection;
+
+import org.lucee.extension.debugger.Log;
+
+/**
+ * A breakpoint condition, prepared once when the breakpoint is set.
+ *
+ * Simple conditions are compiled to a Java predicate (see ConditionCompiler) and
+ * evaluated directly against the PageContext scopes. Everything else, and any
+ * case the predicate can't decide, goes through Lucee's Evaluate +
+ * Caster.toBooleanValue, via MethodHandles resolved once per Lucee classloader.
+ */
+final class BreakpointCondition {
+
+	final String expression;
+	private final Object[] evaluateArgs;
+	private final ConditionCompiler.Compiled fastPath; // null = CFML only
+
+	private BreakpointCondition( String expression ) {
+		this.expression = expression;
+		this.evaluateArgs = new Object[] { expression };
+		this.fastPath = ConditionCompiler.compile( expression, SCOPE_RESOLVER );
+	}
+
+	/**
+	 * @return a prepared condition, or null for a null/empty expression (unconditional)
+	 */
+	static BreakpointCondition of( String expression ) {
+		if ( expression == null || expression.isEmpty() ) {
+			return null;
+		}
+		return new BreakpointCondition( expression );
+	}
+
+	/**
+	 * Evaluate the condition in pc and return its boolean result.
+	 * Returns false if evaluation fails (exception, timeout, etc.).
+	 */
+	boolean evaluate( PageContext pc ) {
+		if ( fastPath != null ) {
+			try {
+				return fastPath.test( pc );
+			}
+			catch ( RuntimeException e ) {
+				// FALLBACK or an unexpected lookup failure - CFML has the final say
+			}
+		}
+		return evaluateCfml( pc );
+	}
+
+	/**
+	 * True if this condition has a compiled Java fast path.
+	 */
+	boolean hasFastPath() {
+		return fastPath != null;
+	}
+
+	/**
+	 * Evaluate via Lucee's Evaluate, bypassing the fast path.
+	 */
+	boolean evaluateCfml( PageContext pc ) {
+		try {
+			LuceeHandles handles = LuceeHandles.forLoader( pc.getClass().getClassLoader() );
+			Object result = (Object) handles.evaluate.invokeExact( pc, evaluateArgs );
+			return (boolean) handles.toBoolean.invokeExact( result );
+		}
+		catch ( Throwable e ) {
+			// Condition evaluation failed - don't suspend
+			Log.error( "Condition evaluation failed: " + e.getMessage() );
+			return false;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	/**
+	 * Resolves variables against the PageContext scopes. Scope-qualified names use
+	 * that scope; anything else goes through the undefined scope, which applies
+	 * Lucee's own lookup order.
+	 */
+	static final ConditionCompiler.Resolver SCOPE_RESOLVER = new ScopeResolver();
+
+	/**
+	 * A variable path with its segments made into keys once, when the condition is compiled.
+	 */
+	private static final class Path {
+		final String first;
+		final Collection.Key[] keys;
+
+		Path( String[] path ) {
+			this.first = path[0];
+			this.keys = new Collection.Key[path.length];
+			for ( int i = 0; i < path.length; i++ ) {
+				keys[i] = CFMLEngineFactory.getInstance().getCreationUtil().createKey( path[i] );
+			}
+		}
+	}
+
+	private static final class ScopeResolver implements ConditionCompiler.Resolver {
+
+		public Object prepare( String[] path ) {
+			return new Path( path );
+		}
+
+		public Object lookup( Object context, Object prepared ) {
+			PageContext pc = (PageContext) context;
+			Path path = (Path) prepared;
+			Object current;
+			int i;
+			try {
+				Collection scope = scopeFor( pc, path.first );
+				if ( scope != null ) {
+					if ( path.keys.length == 1 ) {
+						// bare scope reference, e.g. `url eq ""` - not a simple value
+						throw ConditionCompiler.FALLBACK;
+					}
+					current = scope;
+					i = 1;
+				}
+				else {
+					current = pc.undefinedScope();
+					i = 0;
+				}
+			}
+			catch ( PageException e ) {
+				// scope not enabled (session, application, ...) - let CFML report it
+				throw ConditionCompiler.FALLBACK;
+			}
+			for ( ; i < path.keys.length; i++ ) {
+				if ( !( current instanceof Collection ) || current instanceof Component ) {
+					// components may have implicit accessors, java objects have fields - not ours to guess
+					throw ConditionCompiler.FALLBACK;
+				}
+				current = ( (Collection) current ).get( path.keys[i], ConditionCompiler.MISSING );
+				if ( current == ConditionCompiler.MISSING ) {
+					return ConditionCompiler.MISSING;
+				}
+			}
+			return current;
+		}
+	}
+
+	private static Collection scopeFor( PageContext pc, String name ) throws PageException {
+		switch ( name ) {
+			case "local": return pc.localScope();
+			case "arguments": return pc.argumentsScope();
+			case "variables": return pc.variablesScope();
+			case "url": return pc.urlScope();
+			case "form": return pc.formScope();
+			case "request": return pc.requestScope();
+			case "cgi": return pc.cgiScope();
+			case "cookie": return pc.cookieScope();
+			case "application": return pc.applicationScope();
+			case "session": return pc.sessionScope();
+			case "server": return pc.serverScope();
+			default: return null;
+		}
+	}
+}
@@ -0,0 +1,403 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.lucee.extension.debugger.Config;
+
+/**
+ * Immutable line breakpoint index used by NativeDebuggerListener.shouldSuspend().
+ *
+ * Layout: canonical file path -> FileBreakpoints, where FileBreakpoints is a
+ * line bitset plus a sparse table holding only the lines that carry extra data
+ * (condition, hit condition, limits, log message, snapshot). Every mutation builds a new index (copy-on-write);
+ * readers grab the current reference and never lock.
+ *
+ * Raw paths coming from Lucee are resolved to their FileBreakpoints once and
+ * memoized per index, so repeated lookups for files without breakpoints are a
+ * single hash probe - no canonicalization, no allocation.
+ */
+final class BreakpointIndex {
+
+	static final BreakpointIndex EMPTY = new BreakpointIndex( Collections.emptyMap() );
+
+	/**
+	 * Upper bound on memoized raw paths; the memo is simply dropped when exceeded.
+	 */
+	private static final int MAX_RESOLVED_PATHS = 4096;
+
+	private final Map<String, FileBreakpoints> byFile;
+	private final ConcurrentHashMap<String, FileBreakpoints> resolved = new ConcurrentHashMap<>();
+	private final int count;
+	final int minLine;
+	final int maxLine;
+
+	private BreakpointIndex( Map<String, FileBreakpoints> byFile ) {
+		this.byFile = byFile;
+		int total = 0;
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for ( FileBreakpoints fb : byFile.values() ) {
+			total += fb.count;
+			if ( fb.minLine < min ) min = fb.minLine;
+			if ( fb.maxLine > max ) max = fb.maxLine;
+		}
+		this.count = total;
+		this.minLine = min;
+		this.maxLine = max;
+	}
+
+	int size() {
+		return count;
+	}
+
+	boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * Resolve a raw (non-canonical) path to its breakpoints.
+	 * @return the file's breakpoints, or null if the file has none
+	 */
+	FileBreakpoints forFile( String rawFile ) {
+		if ( count == 0 || rawFile == null ) {
+			return null;
+		}
+		FileBreakpoints fb = resolved.get( rawFile );
+		if ( fb == null ) {
+			fb = byFile.get( Config.canonicalizeFileName( rawFile ) );
+			if ( fb == null ) {
+				fb = FileBreakpoints.NONE;
+			}
+			if ( resolved.size() >= MAX_RESOLVED_PATHS ) {
+				resolved.clear();
+			}
+			resolved.put( rawFile, fb );
+		}
+		return fb == FileBreakpoints.NONE ? null : fb;
+	}
+
+	/**
+	 * Check for a breakpoint by raw path and line.
+	 */
+	boolean hasBreakpoint( String rawFile, int line ) {
+		if ( line < minLine || line > maxLine ) {
+			return false;
+		}
+		FileBreakpoints fb = forFile( rawFile );
+		return fb != null && fb.hasLine( line );
+	}
+
+	/**
+	 * @return a new index with the breakpoint added (or replaced if the line already has one)
+	 */
+	BreakpointIndex with( String canonFile, LineBreakpoint bp ) {
+		Map<String, FileBreakpoints> copy = new HashMap<>( byFile );
+		FileBreakpoints existing = copy.get( canonFile );
+		copy.put( canonFile, existing == null ? FileBreakpoints.of( bp ) : existing.with( bp ) );
+		return new BreakpointIndex( copy );
+	}
+
+	/**
+	 * @return a new index without the breakpoint, or this if it wasn't present
+	 */
+	BreakpointIndex without( String canonFile, int line ) {
+		FileBreakpoints existing = byFile.get( canonFile );
+		if ( existing == null || !existing.hasLine( line ) ) {
+			return this;
+		}
+		Map<String, FileBreakpoints> copy = new HashMap<>( byFile );
+		FileBreakpoints updated = existing.without( line );
+		if ( updated == null ) {
+			copy.remove( canonFile );
+		}
+		else {
+			copy.put( canonFile, updated );
+		}
+		return new BreakpointIndex( copy );
+	}
+
+	/**
+	 * @return a new index with only the file's breakpoints on the given lines, or this if nothing was removed
+	 */
+	BreakpointIndex retainLines( String canonFile, Set<Integer> lines ) {
+		FileBreakpoints existing = byFile.get( canonFile );
+		if ( existing == null ) {
+			return this;
+		}
+		FileBreakpoints updated = existing;
+		for ( int line : existing.lines() ) {
+			if ( !lines.contains( line ) ) {
+				updated = updated.without( line );
+				if ( updated == null ) break;
+			}
+		}
+		if ( updated == existing ) {
+			return this;
+		}
+		Map<String, FileBreakpoints> copy = new HashMap<>( byFile );
+		if ( updated == null ) {
+			copy.remove( canonFile );
+		}
+		else {
+			copy.put( canonFile, updated );
+		}
+		return new BreakpointIndex( copy );
+	}
+
+	/**
+	 * @return a new index without any breakpoints for the file, or this if it had none
+	 */
+	BreakpointIndex withoutFile( String canonFile ) {
+		if ( !byFile.containsKey( canonFile ) ) {
+			return this;
+		}
+		Map<String, FileBreakpoints> copy = new HashMap<>( byFile );
+		copy.remove( canonFile );
+		return new BreakpointIndex( copy );
+	}
+
+	/**
+	 * Check for a breakpoint by canonical path and line.
+	 */
+	boolean contains( String canonFile, int line ) {
+		FileBreakpoints fb = byFile.get( canonFile );
+		return fb != null && fb.hasLine( line );
+	}
+
+	/**
+	 * The breakpoint on a line by canonical path.
+	 * @return its details, or null if the line has no breakpoint or an unconditional one
+	 */
+	LineBreakpoint get( String canonFile, int line ) {
+		FileBreakpoints fb = byFile.get( canonFile );
+		return fb != null ? fb.detailsFor( line ) : null;
+	}
+
+	/**
+	 * @return all breakpoints as [canonicalFile, line] pairs, sorted by file then line
+	 */
+	List<Object[]> entries() {
+		List<String> files = new ArrayList<>( byFile.keySet() );
+		Collections.sort( files );
+		List<Object[]> result = new ArrayList<>( count );
+		for ( String file : files ) {
+			for ( int line : byFile.get( file ).lines() ) {
+				result.add( new Object[] { file, line } );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * A single line breakpoint. Plain breakpoints are not stored in the sparse
+	 * table - only their line bit is set.
+	 *
+	 * The hit counter lives on the breakpoint instance, so it survives index
+	 * rebuilds for other lines and files, and the client resending it unchanged. Hits without a hit condition only need
+	 * a total and go to a striped LongAdder; a hit condition needs the exact
+	 * ordinal of each hit, so those use a single AtomicLong.
+	 */
+	static final class LineBreakpoint {
+		final int line;
+		final BreakpointCondition condition; // null = unconditional
+		final HitCondition hitCondition;     // null = every hit
+		final LogMessage logMessage;         // non-null = logpoint, never suspends
+		final boolean snapshot;              // capture frames and continue, never suspends
+		final BreakpointLimits limits;       // null = no rate limit, sampling or cap
+		private final LongAdder hits = new LongAdder();
+		private final AtomicLong orderedHits = new AtomicLong();
+
+		LineBreakpoint( int line, BreakpointCondition condition ) {
+			this( line, condition, null, null );
+		}
+
+		LineBreakpoint( int line, BreakpointCondition condition, HitCondition hitCondition, LogMessage logMessage ) {
+			this( line, condition, hitCondition, logMessage, false );
+		}
+
+		LineBreakpoint( int line, BreakpointCondition condition, HitCondition hitCondition, LogMessage logMessage, boolean snapshot ) {
+			this( line, condition, hitCondition, null, logMessage, snapshot );
+		}
+
+		LineBreakpoint( int line, BreakpointCondition condition, HitCondition hitCondition, BreakpointLimits limits, LogMessage logMessage, boolean snapshot ) {
+			this.line = line;
+			this.condition = condition;
+			this.hitCondition = hitCondition;
+			this.limits = limits;
+			this.logMessage = logMessage;
+			this.snapshot = snapshot;
+		}
+
+		/**
+		 * True if this breakpoint needs an entry in the sparse table.
+		 */
+		boolean hasDetails() {
+			return condition != null || hitCondition != null || limits != null || logMessage != null || snapshot;
+		}
+
+		/**
+		 * True if other was set with the same condition, hit condition, limits, log
+		 * message and mode, so keeping this one (and its hit count) changes nothing.
+		 */
+		boolean sameSpec( LineBreakpoint other ) {
+			return line == other.line && snapshot == other.snapshot
+				&& Objects.equals( condition != null ? condition.expression : null, other.condition != null ? other.condition.expression : null )
+				&& Objects.equals( hitCondition != null ? hitCondition.expression : null, other.hitCondition != null ? other.hitCondition.expression : null )
+				&& Objects.equals( limits != null ? limits.expression : null, other.limits != null ? other.limits.expression : null )
+				&& Objects.equals( logMessage != null ? logMessage.template : null, other.logMessage != null ? other.logMessage.template : null );
+		}
+
+		/**
+		 * Count a hit (condition already passed) and apply the hit condition.
+		 * @return true if this hit should take effect (suspend or log)
+		 */
+		boolean recordHit() {
+			if ( hitCondition == null ) {
+				hits.increment();
+				return true;
+			}
+			return hitCondition.matches( orderedHits.incrementAndGet() );
+		}
+
+		long hitCount() {
+			return hits.sum() + orderedHits.get();
+		}
+	}
+
+	/**
+	 * Breakpoints for one file: a bitset of lines plus a sorted sparse table of
+	 * the lines that carry details.
+	 */
+	static final class FileBreakpoints {
+		static final FileBreakpoints NONE = new FileBreakpoints( new long[0], new int[0], new LineBreakpoint[0] );
+
+		private final long[] lineBits;
+		private final int[] detailLines;          // sorted
+		private final LineBreakpoint[] details;   // parallel to detailLines
+		final int count;
+		final int minLine;
+		final int maxLine;
+
+		private FileBreakpoints( long[] lineBits, int[] detailLines, LineBreakpoint[] details ) {
+			this.lineBits = lineBits;
+			this.detailLines = detailLines;
+			this.details = details;
+			int n = 0;
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			for ( int w = 0; w < lineBits.length; w++ ) {
+				long bits = lineBits[w];
+				if ( bits == 0 ) continue;
+				n += Long.bitCount( bits );
+				int lo = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+				int hi = ( w << 6 ) + 63 - Long.numberOfLeadingZeros( bits );
+				if ( lo < min ) min = lo;
+				if ( hi > max ) max = hi;
+			}
+			this.count = n;
+			this.minLine = min;
+			this.maxLine = max;
+		}
+
+		static FileBreakpoints of( LineBreakpoint bp ) {
+			return NONE.with( bp );
+		}
+
+		boolean hasLine( int line ) {
+			int word = line >>> 6;
+			return line >= 0 && word < lineBits.length && ( lineBits[word] & ( 1L << line ) ) != 0;
+		}
+
+		/**
+		 * @return the sparse-table entry for line, or null if the line has no
+		 *         breakpoint or an unconditional one
+		 */
+		LineBreakpoint detailsFor( int line ) {
+			int idx = Arrays.binarySearch( detailLines, line );
+			return idx >= 0 ? details[idx] : null;
+		}
+
+		int[] lines() {
+			int[] result = new int[count];
+			int j = 0;
+			for ( int w = 0; w < lineBits.length; w++ ) {
+				long bits = lineBits[w];
+				while ( bits != 0 ) {
+					result[j++] = ( w << 6 ) + Long.numberOfTrailingZeros( bits );
+					bits &= bits - 1;
+				}
+			}
+			return result;
+		}
+
+		FileBreakpoints with( LineBreakpoint bp ) {
+			int line = bp.line;
+			int word = line >>> 6;
+			long[] bits = Arrays.copyOf( lineBits, Math.max( lineBits.length, word + 1 ) );
+			bits[word] |= 1L << line;
+
+			int idx = Arrays.binarySearch( detailLines, line );
+			int[] newLines = detailLines;
+			LineBreakpoint[] newDetails = details;
+			if ( idx >= 0 ) {
+				if ( bp.hasDetails() ) {
+					newDetails = details.clone();
+					newDetails[idx] = bp;
+				}
+				else {
+					newLines = removeAt( detailLines, idx );
+					newDetails = removeAt( details, idx );
+				}
+			}
+			else if ( bp.hasDetails() ) {
+				int ins = -idx - 1;
+				newLines = new int[detailLines.length + 1];
+				newDetails = new LineBreakpoint[details.length + 1];
+				System.arraycopy( detailLines, 0, newLines, 0, ins );
+				System.arraycopy( details, 0, newDetails, 0, ins );
+				newLines[ins] = line;
+				newDetails[ins] = bp;
+				System.arraycopy( detailLines, ins, newLines, ins + 1, detailLines.length - ins );
+				System.arraycopy( details, ins, newDetails, ins + 1, details.length - ins );
+			}
+			return new FileBreakpoints( bits, newLines, newDetails );
+		}
+
+		/**
+		 * @return the file's breakpoints without line, or null if none remain
+		 */
+		FileBreakpoints without( int line ) {
+			long[] bits = lineBits.clone();
+			bits[line >>> 6] &= ~( 1L << line );
+			int idx = Arrays.binarySearch( detailLines, line );
+			FileBreakpoints result = idx >= 0
+				? new FileBreakpoints( bits, removeAt( detailLines, idx ), removeAt( details, idx ) )
+				: new FileBreakpoints( bits, detailLines, details );
+			return result.count == 0 ? null : result;
+		}
+
+		private static int[] removeAt( int[] arr, int idx ) {
+			int[] result = new int[arr.length - 1];
+			System.arraycopy( arr, 0, result, 0, idx );
+			System.arraycopy( arr, idx + 1, result, idx, arr.length - idx - 1 );
+			return result;
+		}
+
+		private static LineBreakpoint[] removeAt( LineBreakpoint[] arr, int idx ) {
+			LineBreakpoint[] result = new LineBreakpoint[arr.length - 1];
+			System.arraycopy( arr, 0, result, 0, idx );
+			System.arraycopy( arr, idx + 1, result, idx, arr.length - idx - 1 );
+			return result;
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.lucee.extension.debugger.Log;
+
+/**
+ * Per-breakpoint rate limit, sampling, hit cap and suspended thread limit, so a
+ * breakpoint in a hot path can't suspend or evaluate thousands of times a second.
+ *
+ * DAP breakpoints have no field for these, so they ride along in the hit
+ * condition as clauses separated by ';' or ',', next to an ordinary hit count
+ * condition (see HitCondition):
+ *   rate N/s   at most N hits per second (N may be fractional), bursts of up to N
+ *   sample P%  act on a random P percent of hits (or "sample 0.1")
+ *   max N      act on N hits, then disable the breakpoint
+ *   threads N  at most N threads suspended here at once, further hits are skipped
+ * e.g. "rate 5/s; max 100" or ">=10, sample 1%, threads 2".
+ *
+ * admit() runs before the breakpoint's condition, so rejected hits cost no
+ * evaluation; fire() runs once the condition and hit condition passed. Both
+ * are lock-free: the rate limit is a token bucket kept as a single theoretical
+ * arrival time (GCRA) updated by CAS, the cap a counter.
+ */
+final class BreakpointLimits {
+
+	/** fire() results */
+	static final int REJECTED = 0, FIRED = 1, LAST = 2;
+
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	final String expression;
+	final double ratePerSecond; // 0 = unlimited
+	final double sample;        // 1 = every hit
+	final long maxHits;         // 0 = no cap
+	final SuspendLimiter threads; // null = no per-breakpoint suspended thread limit
+
+	private final long intervalNanos;
+	private final long burstNanos;
+	// Token bucket: the time the bucket is next empty; a hit is admitted if that stays within burstNanos of now
+	private final AtomicLong tat;
+	private final AtomicLong fired = new AtomicLong();
+	private volatile boolean exhausted;
+
+	BreakpointLimits( String expression, double ratePerSecond, double sample, long maxHits, int maxThreads ) {
+		this.expression = expression;
+		this.ratePerSecond = ratePerSecond;
+		this.sample = sample;
+		this.maxHits = maxHits;
+		this.threads = maxThreads > 0 ? new SuspendLimiter( maxThreads ) : null;
+		if ( ratePerSecond > 0 ) {
+			this.intervalNanos = Math.max( 1, (long) ( NANOS_PER_SECOND / ratePerSecond ) );
+			this.burstNanos = intervalNanos * Math.max( 1, (long) ratePerSecond );
+		}
+		else {
+			this.intervalNanos = 0;
+			this.burstNanos = 0;
+		}
+		this.tat = new AtomicLong( System.nanoTime() );
+	}
+
+	/**
+	 * @return the limits in a hit condition, or null if it has none (invalid clauses are logged and ignored)
+	 */
+	static BreakpointLimits of( String hitCondition ) {
+		if ( hitCondition == null ) {
+			return null;
+		}
+		double rate = 0;
+		double sample = 1;
+		long max = 0;
+		int threads = 0;
+		boolean any = false;
+		for ( String clause : hitCondition.split( "[;,]" ) ) {
+			String s = clause.trim().toLowerCase();
+			try {
+				if ( s.startsWith( "rate" ) ) {
+					String v = value( s, "rate" );
+					if ( v.endsWith( "/s" ) ) v = v.substring( 0, v.length() - 2 ).trim();
+					rate = Double.parseDouble( v );
+					if ( !( rate > 0 ) ) throw new NumberFormatException();
+					any = true;
+				}
+				else if ( s.startsWith( "sample" ) ) {
+					String v = value( s, "sample" );
+					sample = v.endsWith( "%" )
+						? Double.parseDouble( v.substring( 0, v.length() - 1 ).trim() ) / 100
+						: Double.parseDouble( v );
+					if ( !( sample > 0 && sample <= 1 ) ) throw new NumberFormatException();
+					any = true;
+				}
+				else if ( s.startsWith( "max" ) ) {
+					max = Long.parseLong( value( s, "max" ) );
+					if ( max <= 0 ) throw new NumberFormatException();
+					any = true;
+				}
+				else if ( s.startsWith( "threads" ) ) {
+					threads = Integer.parseInt( value( s, "threads" ) );
+					if ( threads <= 0 ) throw new NumberFormatException();
+					any = true;
+				}
+			}
+			catch ( NumberFormatException e ) {
+				Log.warn( "Ignoring invalid breakpoint limit: " + clause.trim() );
+			}
+		}
+		return any ? new BreakpointLimits( hitCondition.trim(), rate, sample, max, threads ) : null;
+	}
+
+	/**
+	 * @return the hit condition without its limit clauses, for HitCondition.of(); null if nothing is left
+	 */
+	static String countCondition( String hitCondition ) {
+		if ( hitCondition == null ) {
+			return null;
+		}
+		String result = null;
+		for ( String clause : hitCondition.split( "[;,]" ) ) {
+			String s = clause.trim();
+			if ( s.isEmpty() || isLimitClause( s ) ) {
+				continue;
+			}
+			result = result == null ? s : result + ";" + s; // more than one is invalid - let HitCondition say so
+		}
+		return result;
+	}
+
+	private static boolean isLimitClause( String clause ) {
+		String s = clause.toLowerCase();
+		return s.startsWith( "rate" ) || s.startsWith( "sample" ) || s.startsWith( "max" ) || s.startsWith( "threads" );
+	}
+
+	private static String value( String clause, String keyword ) {
+		String v = clause.substring( keyword.length() ).trim();
+		if ( v.startsWith( "=" ) || v.startsWith( ":" ) ) {
+			v = v.substring( 1 ).trim();
+		}
+		return v;
+	}
+
+	/**
+	 * Called before the breakpoint's condition.
+	 * @return false to ignore this hit: disabled by the cap, not sampled, or over the rate
+	 */
+	boolean admit() {
+		if ( exhausted ) {
+			return false;
+		}
+		if ( sample < 1 && ThreadLocalRandom.current().nextDouble() >= sample ) {
+			return false;
+		}
+		return intervalNanos == 0 || takeToken( System.nanoTime() );
+	}
+
+	boolean takeToken( long now ) {
+		for ( ;; ) {
+			long current = tat.get();
+			long next = ( current - now < 0 ? now : current ) + intervalNanos;
+			if ( next - now > burstNanos ) {
+				return false;
+			}
+			if ( tat.compareAndSet( current, next ) ) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Count a hit that passed the condition and hit condition.
+	 * @return FIRED, LAST if this hit reached the cap (the breakpoint is now disabled), or REJECTED if already past it
+	 */
+	int fire() {
+		if ( maxHits == 0 ) {
+			return FIRED;
+		}
+		long n = fired.incrementAndGet();
+		if ( n > maxHits ) {
+			return REJECTED;
+		}
+		if ( n == maxHits ) {
+			exhausted = true;
+			return LAST;
+		}
+		return FIRED;
+	}
+
+	boolean isExhausted() {
+		return exhausted;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+}
@@ -0,0 +1,201 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.Arrays;
+
+/**
+ * Aggregated CFML call tree for the sampling profiler.
+ *
+ * Nodes are (function, file, line) under their caller, stored in parallel
+ * arrays indexed by node id with int links (first child / next sibling) and
+ * long sample counters, so a long profiling session is a handful of arrays
+ * rather than an object per node. Node 0 is the root.
+ *
+ * Strings from DebuggerFrames are the same instances sample after sample, so
+ * child lookup compares by identity first. Once maxNodes is reached new paths
+ * are not added; their samples are charged to the deepest existing node and
+ * counted in truncatedSamples().
+ *
+ * Not thread-safe; CfmlProfiler serializes access.
+ */
+final class CallTree {
+
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	private final int maxNodes;
+	private int size;
+
+	private String[] function;
+	private String[] file;
+	private int[] line;
+	private int[] parent;
+	private int[] firstChild;
+	private int[] nextSibling;
+	private long[] total; // samples with this node on the stack
+	private long[] self;  // samples with this node on top
+
+	private long samples;
+	private long truncatedSamples;
+
+	CallTree( int maxNodes ) {
+		this.maxNodes = Math.max( 1, maxNodes );
+		allocate( Math.min( this.maxNodes, 256 ) );
+		clear();
+	}
+
+	private void allocate( int capacity ) {
+		function = new String[capacity];
+		file = new String[capacity];
+		line = new int[capacity];
+		parent = new int[capacity];
+		firstChild = new int[capacity];
+		nextSibling = new int[capacity];
+		total = new long[capacity];
+		self = new long[capacity];
+	}
+
+	void clear() {
+		if ( function.length > 256 ) {
+			allocate( 256 );
+		}
+		else {
+			Arrays.fill( function, null );
+			Arrays.fill( file, null );
+		}
+		size = 1;
+		parent[ROOT] = NONE;
+		firstChild[ROOT] = NONE;
+		nextSibling[ROOT] = NONE;
+		total[ROOT] = 0;
+		self[ROOT] = 0;
+		samples = 0;
+		truncatedSamples = 0;
+	}
+
+	/**
+	 * Fold one stack sample in. Arrays are outermost frame first; only [0, depth) is read.
+	 */
+	void add( String[] functions, String[] files, int[] lines, int depth ) {
+		samples++;
+		int node = ROOT;
+		total[ROOT]++;
+		for ( int i = 0; i < depth; i++ ) {
+			int child = findOrAddChild( node, functions[i], files[i], lines[i] );
+			if ( child == NONE ) {
+				truncatedSamples++;
+				break;
+			}
+			node = child;
+			total[node]++;
+		}
+		self[node]++;
+	}
+
+	private int findOrAddChild( int node, String fn, String path, int ln ) {
+		int last = NONE;
+		for ( int c = firstChild[node]; c != NONE; c = nextSibling[c] ) {
+			if ( line[c] == ln && same( function[c], fn ) && same( file[c], path ) ) {
+				return c;
+			}
+			last = c;
+		}
+		if ( size >= maxNodes ) {
+			return NONE;
+		}
+		if ( size == function.length ) {
+			grow();
+		}
+		int id = size++;
+		function[id] = fn;
+		file[id] = path;
+		line[id] = ln;
+		parent[id] = node;
+		firstChild[id] = NONE;
+		nextSibling[id] = NONE;
+		total[id] = 0;
+		self[id] = 0;
+		if ( last == NONE ) {
+			firstChild[node] = id;
+		}
+		else {
+			nextSibling[last] = id;
+		}
+		return id;
+	}
+
+	private static boolean same( String a, String b ) {
+		return a == b || ( a != null && a.equals( b ) );
+	}
+
+	private void grow() {
+		int capacity = (int) Math.min( maxNodes, function.length * 2L );
+		function = Arrays.copyOf( function, capacity );
+		file = Arrays.copyOf( file, capacity );
+		line = Arrays.copyOf( line, capacity );
+		parent = Arrays.copyOf( parent, capacity );
+		firstChild = Arrays.copyOf( firstChild, capacity );
+		nextSibling = Arrays.copyOf( nextSibling, capacity );
+		total = Arrays.copyOf( total, capacity );
+		self = Arrays.copyOf( self, capacity );
+	}
+
+	long samples() {
+		return samples;
+	}
+
+	long truncatedSamples() {
+		return truncatedSamples;
+	}
+
+	/**
+	 * Number of nodes, not counting the root.
+	 */
+	int nodeCount() {
+		return size - 1;
+	}
+
+	/**
+	 * Collapsed-stack text, one line per distinct stack: "frame;frame;frame count".
+	 * This is the input format of flamegraph.pl, speedscope and similar tools.
+	 */
+	String toCollapsed() {
+		StringBuilder out = new StringBuilder();
+		StringBuilder path = new StringBuilder();
+		appendCollapsed( ROOT, path, out );
+		return out.toString();
+	}
+
+	private void appendCollapsed( int node, StringBuilder path, StringBuilder out ) {
+		int mark = path.length();
+		if ( node != ROOT ) {
+			if ( parent[node] != ROOT ) {
+				path.append( ';' );
+			}
+			appendFrame( path, node );
+		}
+		if ( self[node] > 0 && node != ROOT ) {
+			out.append( path ).append( ' ' ).append( self[node] ).append( '\n' );
+		}
+		for ( int c = firstChild[node]; c != NONE; c = nextSibling[c] ) {
+			appendCollapsed( c, path, out );
+		}
+		path.setLength( mark );
+	}
+
+	private void appendFrame( StringBuilder sb, int node ) {
+		appendSanitized( sb, function[node] != null ? function[node] : "??" );
+		sb.append( " (" );
+		appendSanitized( sb, file[node] != null ? file[node] : "??" );
+		sb.append( ':' ).append( line[node] ).append( ')' );
+	}
+
+	/**
+	 * ';' separates frames and newlines separate stacks in collapsed format.
+	 */
+	private static void appendSanitized( StringBuilder sb, String s ) {
+		for ( int i = 0; i < s.length(); i++ ) {
+			char c = s.charAt( i );
+			sb.append( c == ';' ? ':' : c == '\n' || c == '\r' ? ' ' : c );
+		}
+	}
+}
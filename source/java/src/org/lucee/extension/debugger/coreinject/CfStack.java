@@ -0,0 +1,164 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.Arrays;
+
+import lucee.runtime.PageContext;
+import lucee.runtime.PageContextImpl;
+import lucee.runtime.type.Collection;
+import lucee.runtime.type.scope.Argument;
+import lucee.runtime.type.scope.Local;
+import lucee.runtime.type.scope.Variables;
+
+import org.lucee.extension.debugger.coreinject.frame.Frame;
+import org.lucee.extension.debugger.coreinject.frame.Frame.FrameContext;
+
+/**
+ * One thread's CFML call stack in agent mode, as parallel arrays.
+ *
+ * Instrumented pages push and pop on every UDF call of every request, so a
+ * push only records what a Frame needs later: the PageContext, the source
+ * path (the constant the page passes, so the reference is its id), the
+ * callee's local, arguments and variables scopes and called name, which the
+ * engine swaps out once the call returns, and flags. The line is an int slot
+ * the step hook writes. Nothing is allocated once the arrays have grown to
+ * the thread's deepest stack.
+ *
+ * Frames, with their ids and scope wrappers, are made by materialize() when
+ * the debugger asks about a suspended thread, and kept per slot until popped
+ * so ids stay stable while the client looks at them. The request-wide scopes
+ * are read once, when the first frame is pushed.
+ *
+ * The owning thread pushes, pops and writes lines; other threads only read,
+ * while it is suspended. Not otherwise thread-safe.
+ */
+final class CfStack {
+
+	static final int UDF_DEFAULT_VALUE_INIT = 1;
+	// Pushed while the first frame's scopes were being read (see push); never shown
+	static final int UNTRACKED = 2;
+
+	private PageContext[] pageContexts = new PageContext[16];
+	private String[] sourcePaths = new String[16];
+	private Local[] locals = new Local[16];
+	private Argument[] arguments = new Argument[16];
+	private Variables[] variables = new Variables[16];
+	private Collection.Key[] calledNames = new Collection.Key[16];
+	private int[] lines = new int[16];
+	private byte[] flags = new byte[16];
+	private Frame[] frames = new Frame[16];
+	private int size = 0;
+
+	// Request-wide scopes, shared by every frame of the request
+	private FrameContext root = null;
+	private boolean capturingRoot = false;
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Record a call; the line is 0 until its first step notification.
+	 */
+	void push( PageContext pageContext, String sourcePath, int flag ) {
+		if ( size == pageContexts.length ) {
+			grow();
+		}
+		final int i = size;
+		pageContexts[i] = pageContext;
+		sourcePaths[i] = sourcePath;
+		lines[i] = 0;
+		flags[i] = (byte) ( capturingRoot ? flag | UNTRACKED : flag );
+		try {
+			locals[i] = pageContext.localScope();
+			arguments[i] = pageContext.argumentsScope();
+			variables[i] = pageContext.variablesScope();
+			calledNames[i] = pageContext instanceof PageContextImpl ? ( (PageContextImpl) pageContext ).getActiveUDFCalledName() : null;
+		}
+		catch ( Throwable e ) {
+			// same as FrameContext: a scope we can't read is a scope we don't show
+		}
+		size = i + 1;
+
+		if ( i == 0 ) {
+			// https://github.com/softwareCobbler/luceedebug/issues/68
+			// Reading the request scopes can run more CFML (deserializing CFCs from the session
+			// scope calls their pseudo-constructors), which pushes more frames. Those are kept
+			// so pops balance, but marked untracked.
+			capturingRoot = true;
+			try {
+				root = FrameContext.capture( pageContext );
+			}
+			finally {
+				capturingRoot = false;
+			}
+		}
+	}
+
+	/**
+	 * @return the popped call's Frame if it was materialized, else null
+	 */
+	Frame pop() {
+		final int i = --size;
+		final Frame frame = frames[i];
+		pageContexts[i] = null;
+		sourcePaths[i] = null;
+		locals[i] = null;
+		arguments[i] = null;
+		variables[i] = null;
+		calledNames[i] = null;
+		frames[i] = null;
+		if ( i == 0 ) {
+			root = null;
+		}
+		return frame;
+	}
+
+	void setLine( int line ) {
+		if ( size > 0 ) {
+			lines[size - 1] = line;
+		}
+	}
+
+	int getLine( int i ) {
+		return lines[i];
+	}
+
+	boolean isTracked( int i ) {
+		return ( flags[i] & UNTRACKED ) == 0;
+	}
+
+	boolean isUdfDefaultValueInit( int i ) {
+		return ( flags[i] & UDF_DEFAULT_VALUE_INIT ) != 0;
+	}
+
+	/**
+	 * The Frame for slot i, made on first use; its line is brought up to date on every call.
+	 * Only for tracked slots.
+	 */
+	Frame materialize( int i, ValTracker valTracker ) {
+		Frame frame = frames[i];
+		if ( frame == null ) {
+			final FrameContext context = i == 0
+				? root
+				: FrameContext.of( pageContexts[i], root, locals[i], arguments[i], variables[i] );
+			frame = Frame.of( sourcePaths[i], i, valTracker, context, calledNames[i] );
+			frame.isUdfDefaultValueInitFrame = isUdfDefaultValueInit( i );
+			frames[i] = frame;
+		}
+		frame.setLine( lines[i] );
+		return frame;
+	}
+
+	private void grow() {
+		final int n = pageContexts.length * 2;
+		pageContexts = Arrays.copyOf( pageContexts, n );
+		sourcePaths = Arrays.copyOf( sourcePaths, n );
+		locals = Arrays.copyOf( locals, n );
+		arguments = Arrays.copyOf( arguments, n );
+		variables = Arrays.copyOf( variables, n );
+		calledNames = Arrays.copyOf( calledNames, n );
+		lines = Arrays.copyOf( lines, n );
+		flags = Arrays.copyOf( flags, n );
+		frames = Arrays.copyOf( frames, n );
+	}
+}
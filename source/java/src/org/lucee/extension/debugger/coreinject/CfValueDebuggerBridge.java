@@ -5,6 +5,7 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -64,6 +65,26 @@ public class CfValueDebuggerBridge implements ICfValueDebuggerBridge {
                 this.scopelike = scopelike;
             }
         }
+
+        /**
+         * Detached copy of a CFML value taken by a snapshot breakpoint: named members
+         * (struct, scope, component), indexed items (array, query rows), or neither
+         * (a value that was summarized rather than copied). The label is what the
+         * variables view shows as its value.
+         */
+        public static class Snapshot {
+            public final String label;
+            public final Map<String, Object> members;
+            public final List<Object> items;
+            public Snapshot(String label, Map<String, Object> members, List<Object> items) {
+                this.label = label;
+                this.members = members;
+                this.items = items;
+            }
+            public boolean isExpandable() {
+                return members != null || items != null;
+            }
+        }
     }
 
     /**
@@ -100,7 +121,17 @@ public class CfValueDebuggerBridge implements ICfValueDebuggerBridge {
         final boolean namedOK = maybeNull_which == null || maybeNull_which == IDebugEntity.DebugEntityType.NAMED;
         final boolean indexedOK = maybeNull_which == null || maybeNull_which == IDebugEntity.DebugEntityType.INDEXED;
 
-        if (obj instanceof MarkerTrait.Scope && namedOK) {
+        if (obj instanceof MarkerTrait.Snapshot) {
+            var snapshot = (MarkerTrait.Snapshot)obj;
+            if (snapshot.members != null && namedOK) {
+                return getAsMaplike(valTracker, snapshot.members, parentPath, frameId);
+            }
+            if (snapshot.items != null && indexedOK) {
+                return getAsList(valTracker, snapshot.items, parentPath, frameId);
+            }
+            return new IDebugEntity[0];
+        }
+        else if (obj instanceof MarkerTrait.Scope && namedOK) {
             @SuppressWarnings("unchecked")
             var m = (Map<String, Object>)(((MarkerTrait.Scope)obj).scopelike);
             return getAsMaplike(valTracker, m, parentPath, frameId);
@@ -133,7 +164,7 @@ public class CfValueDebuggerBridge implements ICfValueDebuggerBridge {
      * Check if an object is a "noisy" component function that should be hidden in debug output.
      * Uses class name comparison to avoid ClassNotFoundException in OSGi extension mode.
      */
-    private static boolean isNoisyComponentFunction(Object obj) {
+    static boolean isNoisyComponentFunction(Object obj) {
         String className = obj.getClass().getName();
         // Discard UDFGetterProperty, UDFSetterProperty, UDFImpl (noisy)
         // But retain Lambda and Closure (useful)
@@ -204,6 +235,20 @@ public class CfValueDebuggerBridge implements ICfValueDebuggerBridge {
         return result.toArray(new IDebugEntity[result.size()]);
     }
 
+    private static IDebugEntity[] getAsList(ValTracker valTracker, List<Object> items, String parentPath, Long frameId) {
+        ArrayList<IDebugEntity> result = new ArrayList<>();
+
+        // cf 1-indexed
+        for (int i = 0; i < items.size(); ++i) {
+            IDebugEntity val = maybeNull_asValue(valTracker, Integer.toString(i + 1), items.get(i), parentPath, frameId);
+            if (val != null) {
+                result.add(val);
+            }
+        }
+
+        return result.toArray(new IDebugEntity[result.size()]);
+    }
+
     public IDebugEntity maybeNull_asValue(String name) {
         return maybeNull_asValue(valTracker, name, obj, true, false, null, null);
     }
@@ -253,6 +298,13 @@ public class CfValueDebuggerBridge implements ICfValueDebuggerBridge {
         else if (obj instanceof Date) {
             val.value = obj.toString();
         }
+        else if (obj instanceof MarkerTrait.Snapshot) {
+            var snapshot = (MarkerTrait.Snapshot)obj;
+            val.value = snapshot.label;
+            if (snapshot.isExpandable()) {
+                val.variablesReference = valTracker.registerObjectWithPathAndFrameId(obj, childPath, frameId).id;
+            }
+        }
         else if (obj instanceof Array) {
             int len = ((Array)obj).size();
             val.value = "Array (" + len + ")";
@@ -334,7 +386,11 @@ public class CfValueDebuggerBridge implements ICfValueDebuggerBridge {
     }
 
     public int getNamedVariablesCount() {
-        if (obj instanceof Map) {
+        if (obj instanceof MarkerTrait.Snapshot) {
+            var members = ((MarkerTrait.Snapshot)obj).members;
+            return members != null ? members.size() : 0;
+        }
+        else if (obj instanceof Map) {
             return ((Map<?,?>)obj).size();
         }
         else {
@@ -343,7 +399,11 @@ public class CfValueDebuggerBridge implements ICfValueDebuggerBridge {
     }
 
     public int getIndexedVariablesCount() {
-        if (isInstanceOf(obj, "lucee.runtime.type.scope.Argument")) {
+        if (obj instanceof MarkerTrait.Snapshot) {
+            var items = ((MarkerTrait.Snapshot)obj).items;
+            return items != null ? items.size() : 0;
+        }
+        else if (isInstanceOf(obj, "lucee.runtime.type.scope.Argument")) {
             // `arguments` scope is both an Array and a Map, which represents the possiblity that a function is called with named args or positional args.
             // It seems like saner default behavior to report it only as having named variables, and zero indexed variables.
             return 0;
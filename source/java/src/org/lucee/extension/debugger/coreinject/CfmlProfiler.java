@@ -0,0 +1,266 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import lucee.runtime.PageContext;
+import lucee.runtime.PageSource;
+
+import org.lucee.extension.debugger.Log;
+
+/**
+ * Sampling CFML profiler for native mode.
+ *
+ * A daemon thread wakes every interval, walks the active PageContexts (the same
+ * set the thread listing shows), reads each one's DebuggerFrame stack without
+ * stopping it and folds (function, file, line) per frame into a CallTree.
+ * Threads suspended in the debugger are skipped.
+ *
+ * Overhead is bounded three ways: stacks deeper than MAX_DEPTH are cut at the
+ * innermost end, the tree stops growing at MAX_NODES, and the sampler stretches
+ * its period so sampling takes at most 1/OVERHEAD_RATIO of its wall time.
+ *
+ * Frames are read from a running thread, so a sample can be torn; the frame
+ * arrays are copies and anything unexpected just skips that sample.
+ */
+final class CfmlProfiler {
+
+	static final int DEFAULT_INTERVAL_MS = 10;
+	static final int MIN_INTERVAL_MS = 1;
+	static final int MAX_INTERVAL_MS = 1000;
+	static final int MAX_DEPTH = 256;
+	static final int MAX_NODES = 100_000;
+	private static final int OVERHEAD_RATIO = 20;
+	private static final String REQUEST_FRAME = "<request>";
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType( Object.class, Object.class );
+	private static final MethodType NAME_TYPE = MethodType.methodType( String.class, Object.class );
+
+	/**
+	 * DebuggerFrame field getters, resolved for one frame class.
+	 */
+	private static final class FrameFields {
+		final Class<?> owner;
+		final MethodHandle functionName;
+		final MethodHandle pageSource;
+
+		FrameFields( Class<?> owner ) throws ReflectiveOperationException {
+			this.owner = owner;
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			this.functionName = lookup.unreflectGetter( owner.getField( "functionName" ) ).asType( NAME_TYPE );
+			this.pageSource = lookup.unreflectGetter( owner.getField( "pageSource" ) ).asType( GETTER_TYPE );
+		}
+	}
+
+	private final Supplier<List<PageContext>> activePageContexts;
+	private final CallTree tree = new CallTree( MAX_NODES );
+
+	// Sampler-thread scratch, reused for every sample
+	private final String[] functions = new String[MAX_DEPTH];
+	private final String[] files = new String[MAX_DEPTH];
+	private final int[] lines = new int[MAX_DEPTH];
+	private FrameFields fields;
+	// Direct-mapped PageSource -> display path cache, so paths are identical instances across samples
+	private final Object[] pathKeys = new Object[256];
+	private final String[] pathValues = new String[256];
+
+	private volatile Thread sampler;
+	private volatile int intervalMs = DEFAULT_INTERVAL_MS;
+	private volatile long startedAt;
+	private volatile long activeNanos;
+
+	CfmlProfiler( Supplier<List<PageContext>> activePageContexts ) {
+		this.activePageContexts = activePageContexts;
+	}
+
+	/**
+	 * Start sampling, or change the interval if already running.
+	 * @param intervalMs sample period; values <= 0 mean the default, others are clamped
+	 * @param reset discard samples from earlier runs
+	 */
+	synchronized void start( int intervalMs, boolean reset ) {
+		this.intervalMs = intervalMs <= 0 ? DEFAULT_INTERVAL_MS : Math.max( MIN_INTERVAL_MS, Math.min( MAX_INTERVAL_MS, intervalMs ) );
+		if ( reset ) {
+			synchronized ( tree ) {
+				tree.clear();
+				activeNanos = 0;
+			}
+		}
+		if ( sampler != null ) {
+			return;
+		}
+		startedAt = System.nanoTime();
+		Thread t = new Thread( this::run, "luceedebug-profiler" );
+		t.setDaemon( true );
+		sampler = t;
+		t.start();
+		Log.info( "Profiler started, interval " + this.intervalMs + "ms" );
+	}
+
+	/**
+	 * Stop sampling. Samples are kept for dump() until the next reset.
+	 */
+	synchronized void stop() {
+		Thread t = sampler;
+		if ( t == null ) {
+			return;
+		}
+		sampler = null;
+		LockSupport.unpark( t );
+		activeNanos += System.nanoTime() - startedAt;
+		Log.info( "Profiler stopped" );
+	}
+
+	boolean isRunning() {
+		return sampler != null;
+	}
+
+	int intervalMs() {
+		return intervalMs;
+	}
+
+	long samples() {
+		synchronized ( tree ) {
+			return tree.samples();
+		}
+	}
+
+	int nodeCount() {
+		synchronized ( tree ) {
+			return tree.nodeCount();
+		}
+	}
+
+	long truncatedSamples() {
+		synchronized ( tree ) {
+			return tree.truncatedSamples();
+		}
+	}
+
+	/**
+	 * Total time spent sampling, including the current run.
+	 */
+	long elapsedMillis() {
+		long nanos = activeNanos;
+		if ( sampler != null ) {
+			nanos += System.nanoTime() - startedAt;
+		}
+		return TimeUnit.NANOSECONDS.toMillis( nanos );
+	}
+
+	/**
+	 * Collapsed-stack export of everything sampled since the last reset.
+	 */
+	String toCollapsed() {
+		synchronized ( tree ) {
+			return tree.toCollapsed();
+		}
+	}
+
+	private void run() {
+		Thread self = Thread.currentThread();
+		while ( sampler == self ) {
+			long start = System.nanoTime();
+			try {
+				sampleAll();
+			}
+			catch ( Throwable t ) {
+				Log.debug( "Profiler: sampling round failed: {}", t );
+			}
+			long cost = System.nanoTime() - start;
+			long period = Math.max( TimeUnit.MILLISECONDS.toNanos( intervalMs ), cost * OVERHEAD_RATIO );
+			LockSupport.parkNanos( this, period - cost );
+		}
+		synchronized ( tree ) {
+			Arrays.fill( pathKeys, null );
+			Arrays.fill( pathValues, null );
+		}
+	}
+
+	void sampleAll() throws Throwable {
+		List<PageContext> pcs = activePageContexts.get();
+		synchronized ( tree ) {
+			for ( PageContext pc : pcs ) {
+				Thread thread = pc.getThread();
+				if ( thread == null || NativeDebuggerListener.isNativelySuspended( thread.getId() ) ) {
+					continue;
+				}
+				int depth = readStack( pc );
+				if ( depth > 0 ) {
+					tree.add( functions, files, lines, depth );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fill the scratch arrays with pc's stack, outermost first: the request's base
+	 * template, then each DebuggerFrame.
+	 * @return number of frames, 0 to skip this sample
+	 */
+	private int readStack( PageContext pc ) {
+		try {
+			PageSource base = pc.getBasePageSource();
+			if ( base == null ) {
+				return 0;
+			}
+			functions[0] = REQUEST_FRAME;
+			files[0] = displayPath( base );
+			lines[0] = 0;
+			int depth = 1;
+
+			Object[] frames = StackDepthTracker.getFrames( pc );
+			if ( frames == null ) {
+				return depth;
+			}
+			for ( Object frame : frames ) {
+				if ( frame == null ) {
+					continue;
+				}
+				if ( depth == MAX_DEPTH ) {
+					break;
+				}
+				FrameFields f = fields;
+				if ( f == null || f.owner != frame.getClass() ) {
+					f = new FrameFields( frame.getClass() );
+					fields = f;
+				}
+				String path = displayPath( f.pageSource.invokeExact( frame ) );
+				String name = (String) f.functionName.invokeExact( frame );
+				if ( name == null ) {
+					// include frames have no function name - show the included file, like the stack view
+					name = path != null ? path.substring( Math.max( path.lastIndexOf( '/' ), path.lastIndexOf( '\\' ) ) + 1 ) : null;
+				}
+				functions[depth] = name;
+				files[depth] = path;
+				lines[depth] = StackDepthTracker.getLine( frame );
+				depth++;
+			}
+			return depth;
+		}
+		catch ( Throwable t ) {
+			// Torn read of a running request, or a frame layout we don't know - skip it
+			return 0;
+		}
+	}
+
+	private String displayPath( Object pageSource ) {
+		if ( !( pageSource instanceof PageSource ) ) {
+			return null;
+		}
+		int slot = System.identityHashCode( pageSource ) & ( pathKeys.length - 1 );
+		if ( pathKeys[slot] == pageSource ) {
+			return pathValues[slot];
+		}
+		String path = ( (PageSource) pageSource ).getDisplayPath();
+		pathKeys[slot] = pageSource;
+		pathValues[slot] = path;
+		return path;
+	}
+}
@@ -0,0 +1,633 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles a safe subset of CFML breakpoint conditions into a Java predicate,
+ * so the common cases (`id == 42`, `arguments.userId eq "abc"`, `len(items) gt 100`,
+ * `isNull(x)`) don't go through Lucee's Evaluate on every hit.
+ *
+ * Supported:
+ * - variable references: `x`, `scope.x`, `a.b.c` (dot access only, no brackets)
+ * - literals: numbers, quoted strings without `#`, true/false
+ * - comparisons: == != < <= > >= eq neq is "is not" lt lte le gt gte ge
+ * - boolean logic: and or not && || ! and parentheses
+ * - BIFs: len(x), isNull(x)
+ *
+ * Anything else fails to compile (compile() returns null) and the caller
+ * evaluates the condition through CFML. At runtime, anything whose CFML
+ * semantics we don't reproduce exactly (undefined variables, complex values,
+ * strings that might be dates, ...) throws FALLBACK and the caller again
+ * falls back to CFML - so the fast path never answers differently than
+ * Lucee would, it only answers faster.
+ */
+final class ConditionCompiler {
+
+	/**
+	 * Returned by a Resolver when a variable doesn't exist.
+	 */
+	static final Object MISSING = new Object();
+
+	/**
+	 * Thrown when a compiled condition can't decide; the caller re-evaluates via CFML.
+	 * Preallocated and stackless - it's control flow, not an error.
+	 */
+	static final RuntimeException FALLBACK = new RuntimeException( "fallback to CFML evaluation", null, false, false ) {
+		private static final long serialVersionUID = 1L;
+	};
+
+	/**
+	 * Variable lookup. path[0] is the first (lowercased) name segment, which may
+	 * be a scope name.
+	 */
+	interface Resolver {
+		/**
+		 * Called once per variable when the condition is compiled; the result is
+		 * what lookup() gets for that variable on every evaluation.
+		 */
+		Object prepare( String[] path );
+
+		/**
+		 * Return MISSING if the variable doesn't exist, or throw FALLBACK if the
+		 * lookup can't be done faithfully.
+		 */
+		Object lookup( Object context, Object prepared );
+	}
+
+	/**
+	 * A compiled condition.
+	 */
+	static final class Compiled {
+		private final Node root;
+		private final Resolver resolver;
+
+		private Compiled( Node root, Resolver resolver ) {
+			this.root = root;
+			this.resolver = resolver;
+		}
+
+		/**
+		 * @throws RuntimeException FALLBACK if CFML evaluation is needed
+		 */
+		boolean test( Object context ) {
+			return toBool( root.eval( resolver, context ) );
+		}
+
+		/**
+		 * Evaluate without coercing to boolean (used for logpoint interpolation).
+		 * @throws RuntimeException FALLBACK if CFML evaluation is needed
+		 */
+		Object value( Object context ) {
+			return root.eval( resolver, context );
+		}
+	}
+
+	/**
+	 * Names the CFML compiler resolves specially rather than through scope lookup.
+	 */
+	private static final Set<String> UNSUPPORTED_ROOTS = new HashSet<>( Arrays.asList(
+		"this", "super", "thread", "cfthread", "attributes", "caller", "client", "cluster", "cfcatch", "null" ) );
+
+	private ConditionCompiler() {}
+
+	/**
+	 * @param resolver prepares the condition's variables now and looks them up when it's evaluated
+	 * @return the compiled condition, or null if the expression is outside the supported subset
+	 */
+	static Compiled compile( String expression, Resolver resolver ) {
+		if ( expression == null ) {
+			return null;
+		}
+		try {
+			Parser p = new Parser( tokenize( expression ), resolver );
+			Node root = p.parseOr();
+			if ( p.pos != p.tokens.size() ) {
+				return null;
+			}
+			return new Compiled( root, resolver );
+		}
+		catch ( Unsupported e ) {
+			return null;
+		}
+	}
+
+	// ========== Tokenizer ==========
+
+	private static final class Unsupported extends Exception {
+		private static final long serialVersionUID = 1L;
+		Unsupported() {
+			super( null, null, false, false );
+		}
+	}
+
+	private enum Kind { IDENT, NUMBER, STRING, OP, LPAREN, RPAREN, COMMA, DOT }
+
+	private static final class Token {
+		final Kind kind;
+		final String text; // idents/ops lowercased, strings unquoted
+
+		Token( Kind kind, String text ) {
+			this.kind = kind;
+			this.text = text;
+		}
+
+		boolean is( Kind k, String t ) {
+			return kind == k && text.equals( t );
+		}
+	}
+
+	private static List<Token> tokenize( String s ) throws Unsupported {
+		List<Token> tokens = new ArrayList<>();
+		int i = 0;
+		int n = s.length();
+		while ( i < n ) {
+			char c = s.charAt( i );
+			if ( Character.isWhitespace( c ) ) {
+				i++;
+			}
+			else if ( c == '(' ) {
+				tokens.add( new Token( Kind.LPAREN, "(" ) );
+				i++;
+			}
+			else if ( c == ')' ) {
+				tokens.add( new Token( Kind.RPAREN, ")" ) );
+				i++;
+			}
+			else if ( c == ',' ) {
+				tokens.add( new Token( Kind.COMMA, "," ) );
+				i++;
+			}
+			else if ( c == '.' && !( i + 1 < n && isDigit( s.charAt( i + 1 ) ) ) ) {
+				tokens.add( new Token( Kind.DOT, "." ) );
+				i++;
+			}
+			else if ( c == '"' || c == '\'' ) {
+				StringBuilder sb = new StringBuilder();
+				i++;
+				while ( true ) {
+					if ( i >= n ) throw new Unsupported();
+					char d = s.charAt( i );
+					if ( d == '#' ) throw new Unsupported(); // interpolation
+					if ( d == c ) {
+						if ( i + 1 < n && s.charAt( i + 1 ) == c ) { // doubled quote escape
+							sb.append( c );
+							i += 2;
+							continue;
+						}
+						i++;
+						break;
+					}
+					sb.append( d );
+					i++;
+				}
+				tokens.add( new Token( Kind.STRING, sb.toString() ) );
+			}
+			else if ( isDigit( c ) || c == '.' ) {
+				int start = i;
+				while ( i < n && ( isDigit( s.charAt( i ) ) || s.charAt( i ) == '.' ) ) i++;
+				if ( i < n && Character.isLetter( s.charAt( i ) ) ) throw new Unsupported(); // 1e3, 10px, ...
+				tokens.add( new Token( Kind.NUMBER, s.substring( start, i ) ) );
+			}
+			else if ( Character.isLetter( c ) || c == '_' || c == '$' ) {
+				int start = i;
+				while ( i < n && ( Character.isLetterOrDigit( s.charAt( i ) ) || s.charAt( i ) == '_' || s.charAt( i ) == '$' ) ) i++;
+				tokens.add( new Token( Kind.IDENT, s.substring( start, i ).toLowerCase( Locale.ROOT ) ) );
+			}
+			else {
+				String two = i + 1 < n ? s.substring( i, i + 2 ) : "";
+				if ( two.equals( "==" ) || two.equals( "!=" ) || two.equals( "<=" ) || two.equals( ">=" )
+						|| two.equals( "&&" ) || two.equals( "||" ) ) {
+					tokens.add( new Token( Kind.OP, two ) );
+					i += 2;
+				}
+				else if ( c == '<' || c == '>' || c == '!' ) {
+					tokens.add( new Token( Kind.OP, String.valueOf( c ) ) );
+					i++;
+				}
+				else {
+					// + - * / & [ ] { } = etc. - not in the subset
+					throw new Unsupported();
+				}
+			}
+		}
+		return tokens;
+	}
+
+	private static boolean isDigit( char c ) {
+		return c >= '0' && c <= '9';
+	}
+
+	// ========== Parser ==========
+
+	private static final class Parser {
+		final List<Token> tokens;
+		final Resolver resolver;
+		int pos = 0;
+
+		Parser( List<Token> tokens, Resolver resolver ) {
+			this.tokens = tokens;
+			this.resolver = resolver;
+		}
+
+		Token peek() {
+			return pos < tokens.size() ? tokens.get( pos ) : null;
+		}
+
+		Token peek( int ahead ) {
+			return pos + ahead < tokens.size() ? tokens.get( pos + ahead ) : null;
+		}
+
+		boolean accept( Kind k, String t ) {
+			Token tok = peek();
+			if ( tok != null && tok.is( k, t ) ) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		void expect( Kind k ) throws Unsupported {
+			Token tok = peek();
+			if ( tok == null || tok.kind != k ) throw new Unsupported();
+			pos++;
+		}
+
+		Node parseOr() throws Unsupported {
+			Node left = parseAnd();
+			while ( accept( Kind.IDENT, "or" ) || accept( Kind.OP, "||" ) ) {
+				left = new Or( left, parseAnd() );
+			}
+			return left;
+		}
+
+		Node parseAnd() throws Unsupported {
+			Node left = parseNot();
+			while ( accept( Kind.IDENT, "and" ) || accept( Kind.OP, "&&" ) ) {
+				left = new And( left, parseNot() );
+			}
+			return left;
+		}
+
+		Node parseNot() throws Unsupported {
+			if ( accept( Kind.IDENT, "not" ) || accept( Kind.OP, "!" ) ) {
+				return new Not( parseNot() );
+			}
+			return parseComparison();
+		}
+
+		Node parseComparison() throws Unsupported {
+			Node left = parseOperand();
+			Token tok = peek();
+			if ( tok == null ) return left;
+			int op;
+			if ( tok.kind == Kind.OP ) {
+				switch ( tok.text ) {
+					case "==": op = Compare.EQ; break;
+					case "!=": op = Compare.NEQ; break;
+					case "<": op = Compare.LT; break;
+					case "<=": op = Compare.LTE; break;
+					case ">": op = Compare.GT; break;
+					case ">=": op = Compare.GTE; break;
+					default: return left;
+				}
+				pos++;
+			}
+			else if ( tok.kind == Kind.IDENT ) {
+				switch ( tok.text ) {
+					case "eq": op = Compare.EQ; break;
+					case "neq": op = Compare.NEQ; break;
+					case "is":
+						op = Compare.EQ;
+						if ( peek( 1 ) != null && peek( 1 ).is( Kind.IDENT, "not" ) ) {
+							op = Compare.NEQ;
+							pos++;
+						}
+						break;
+					case "lt": op = Compare.LT; break;
+					case "lte":
+					case "le": op = Compare.LTE; break;
+					case "gt": op = Compare.GT; break;
+					case "gte":
+					case "ge": op = Compare.GTE; break;
+					case "and":
+					case "or":
+						return left;
+					default:
+						// contains, eqv, imp, xor, "less than", ... - not in the subset
+						throw new Unsupported();
+				}
+				pos++;
+			}
+			else {
+				return left;
+			}
+			return new Compare( op, left, parseOperand() );
+		}
+
+		Node parseOperand() throws Unsupported {
+			Token tok = peek();
+			if ( tok == null ) throw new Unsupported();
+			switch ( tok.kind ) {
+				case LPAREN: {
+					pos++;
+					Node inner = parseOr();
+					expect( Kind.RPAREN );
+					return inner;
+				}
+				case NUMBER:
+					pos++;
+					try {
+						return new Literal( Double.valueOf( tok.text ) );
+					}
+					catch ( NumberFormatException e ) {
+						throw new Unsupported();
+					}
+				case STRING:
+					pos++;
+					return new Literal( tok.text );
+				case IDENT: {
+					if ( tok.text.equals( "true" ) || tok.text.equals( "false" ) ) {
+						pos++;
+						return new Literal( Boolean.valueOf( tok.text ) );
+					}
+					Token next = peek( 1 );
+					if ( next != null && next.kind == Kind.LPAREN ) {
+						return parseCall();
+					}
+					return parseVar();
+				}
+				default:
+					throw new Unsupported();
+			}
+		}
+
+		Node parseCall() throws Unsupported {
+			String name = peek().text;
+			pos += 2; // name (
+			Node arg;
+			switch ( name ) {
+				case "len":
+					arg = parseOr();
+					expect( Kind.RPAREN );
+					return new Len( arg );
+				case "isnull":
+					arg = parseVar();
+					expect( Kind.RPAREN );
+					return new IsNull( (Var) arg );
+				default:
+					throw new Unsupported();
+			}
+		}
+
+		Node parseVar() throws Unsupported {
+			List<String> path = new ArrayList<>();
+			Token tok = peek();
+			if ( tok == null || tok.kind != Kind.IDENT ) throw new Unsupported();
+			if ( UNSUPPORTED_ROOTS.contains( tok.text ) ) throw new Unsupported();
+			path.add( tok.text );
+			pos++;
+			while ( accept( Kind.DOT, "." ) ) {
+				tok = peek();
+				if ( tok == null || tok.kind != Kind.IDENT ) throw new Unsupported();
+				path.add( tok.text );
+				pos++;
+			}
+			return new Var( resolver.prepare( path.toArray( new String[0] ) ) );
+		}
+	}
+
+	// ========== Nodes ==========
+
+	private interface Node {
+		Object eval( Resolver resolver, Object context );
+	}
+
+	private static final class Literal implements Node {
+		final Object value;
+
+		Literal( Object value ) {
+			this.value = value;
+		}
+
+		public Object eval( Resolver resolver, Object context ) {
+			return value;
+		}
+	}
+
+	private static final class Var implements Node {
+		final Object path; // as the Resolver prepared it
+
+		Var( Object path ) {
+			this.path = path;
+		}
+
+		public Object eval( Resolver resolver, Object context ) {
+			Object v = resolver.lookup( context, path );
+			if ( v == MISSING || v == null ) {
+				// CFML raises "variable is undefined" - let CFML produce that
+				throw FALLBACK;
+			}
+			return v;
+		}
+	}
+
+	private static final class IsNull implements Node {
+		final Var var;
+
+		IsNull( Var var ) {
+			this.var = var;
+		}
+
+		public Object eval( Resolver resolver, Object context ) {
+			Object v = resolver.lookup( context, var.path );
+			return v == MISSING || v == null ? Boolean.TRUE : Boolean.FALSE;
+		}
+	}
+
+	private static final class Len implements Node {
+		final Node arg;
+
+		Len( Node arg ) {
+			this.arg = arg;
+		}
+
+		public Object eval( Resolver resolver, Object context ) {
+			Object v = arg.eval( resolver, context );
+			if ( v instanceof CharSequence ) return (double) ( (CharSequence) v ).length();
+			if ( v instanceof lucee.runtime.type.Array ) return (double) ( (lucee.runtime.type.Array) v ).size();
+			if ( v instanceof lucee.runtime.type.Struct ) return (double) ( (lucee.runtime.type.Struct) v ).size();
+			if ( v instanceof Collection ) return (double) ( (Collection<?>) v ).size();
+			if ( v instanceof Map ) return (double) ( (Map<?, ?>) v ).size();
+			// numbers (formatting rules), queries, binary, ... - let CFML decide
+			throw FALLBACK;
+		}
+	}
+
+	private static final class Not implements Node {
+		final Node operand;
+
+		Not( Node operand ) {
+			this.operand = operand;
+		}
+
+		public Object eval( Resolver resolver, Object context ) {
+			return toBool( operand.eval( resolver, context ) ) ? Boolean.FALSE : Boolean.TRUE;
+		}
+	}
+
+	private static final class And implements Node {
+		final Node left, right;
+
+		And( Node left, Node right ) {
+			this.left = left;
+			this.right = right;
+		}
+
+		public Object eval( Resolver resolver, Object context ) {
+			return toBool( left.eval( resolver, context ) ) && toBool( right.eval( resolver, context ) ) ? Boolean.TRUE : Boolean.FALSE;
+		}
+	}
+
+	private static final class Or implements Node {
+		final Node left, right;
+
+		Or( Node left, Node right ) {
+			this.left = left;
+			this.right = right;
+		}
+
+		public Object eval( Resolver resolver, Object context ) {
+			return toBool( left.eval( resolver, context ) ) || toBool( right.eval( resolver, context ) ) ? Boolean.TRUE : Boolean.FALSE;
+		}
+	}
+
+	private static final class Compare implements Node {
+		static final int EQ = 0, NEQ = 1, LT = 2, LTE = 3, GT = 4, GTE = 5;
+		final int op;
+		final Node left, right;
+
+		Compare( int op, Node left, Node right ) {
+			this.op = op;
+			this.left = left;
+			this.right = right;
+		}
+
+		public Object eval( Resolver resolver, Object context ) {
+			int cmp = compare( left.eval( resolver, context ), right.eval( resolver, context ) );
+			boolean result;
+			switch ( op ) {
+				case EQ: result = cmp == 0; break;
+				case NEQ: result = cmp != 0; break;
+				case LT: result = cmp < 0; break;
+				case LTE: result = cmp <= 0; break;
+				case GT: result = cmp > 0; break;
+				default: result = cmp >= 0; break;
+			}
+			return result ? Boolean.TRUE : Boolean.FALSE;
+		}
+	}
+
+	// ========== CFML value semantics (conservative) ==========
+
+	/**
+	 * Compare two simple values the way CFML does, or throw FALLBACK.
+	 * Numbers (and numeric strings) compare numerically, booleans only against
+	 * booleans, other strings case-insensitively. Non-numeric strings containing
+	 * digits might be dates, which CFML compares as dates - those fall back.
+	 */
+	static int compare( Object left, Object right ) {
+		if ( left instanceof Boolean || right instanceof Boolean ) {
+			if ( left instanceof Boolean && right instanceof Boolean ) {
+				return Boolean.compare( (Boolean) left, (Boolean) right );
+			}
+			throw FALLBACK;
+		}
+		double l = toNumberOrNaN( left );
+		double r = toNumberOrNaN( right );
+		if ( !Double.isNaN( l ) && !Double.isNaN( r ) ) {
+			return Double.compare( l, r ) == 0 ? 0 : ( l < r ? -1 : 1 );
+		}
+		String ls = toSimpleString( left, l );
+		String rs = toSimpleString( right, r );
+		return ls.compareToIgnoreCase( rs );
+	}
+
+	private static double toNumberOrNaN( Object v ) {
+		if ( v instanceof Number ) {
+			return ( (Number) v ).doubleValue();
+		}
+		if ( v instanceof String ) {
+			return parseNumber( (String) v );
+		}
+		throw FALLBACK;
+	}
+
+	private static String toSimpleString( Object v, double asNumber ) {
+		if ( v instanceof String ) {
+			String s = (String) v;
+			if ( Double.isNaN( asNumber ) && containsDigit( s ) ) {
+				throw FALLBACK; // possibly a date
+			}
+			return s;
+		}
+		// a number compared against a non-numeric string: CFML compares as strings,
+		// and number-to-string formatting is its own can of worms
+		throw FALLBACK;
+	}
+
+	/**
+	 * Strict decimal parse: optional sign, digits, optional fraction. NaN if not numeric.
+	 */
+	static double parseNumber( String s ) {
+		int n = s.length();
+		if ( n == 0 || n > 32 ) return Double.NaN;
+		int i = 0;
+		if ( s.charAt( 0 ) == '-' || s.charAt( 0 ) == '+' ) i++;
+		boolean digits = false;
+		boolean dot = false;
+		for ( ; i < n; i++ ) {
+			char c = s.charAt( i );
+			if ( isDigit( c ) ) {
+				digits = true;
+			}
+			else if ( c == '.' && !dot ) {
+				dot = true;
+			}
+			else {
+				return Double.NaN;
+			}
+		}
+		return digits ? Double.parseDouble( s ) : Double.NaN;
+	}
+
+	private static boolean containsDigit( String s ) {
+		for ( int i = 0; i < s.length(); i++ ) {
+			if ( isDigit( s.charAt( i ) ) ) return true;
+		}
+		return false;
+	}
+
+	static boolean toBool( Object v ) {
+		if ( v instanceof Boolean ) {
+			return (Boolean) v;
+		}
+		if ( v instanceof Number ) {
+			return ( (Number) v ).doubleValue() != 0;
+		}
+		if ( v instanceof String ) {
+			String s = ( (String) v ).trim();
+			if ( s.equalsIgnoreCase( "true" ) || s.equalsIgnoreCase( "yes" ) ) return true;
+			if ( s.equalsIgnoreCase( "false" ) || s.equalsIgnoreCase( "no" ) ) return false;
+			double d = parseNumber( s );
+			if ( !Double.isNaN( d ) ) return d != 0;
+		}
+		throw FALLBACK;
+	}
+}
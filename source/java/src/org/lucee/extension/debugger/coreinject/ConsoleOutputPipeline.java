@@ -0,0 +1,207 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.lucee.extension.debugger.Log;
+import org.lucee.extension.debugger.util.MpscRingBuffer;
+
+/**
+ * Batches System.out/err writes captured by NativeDebuggerListener.onOutput(),
+ * and logpoint messages, into as few DAP OutputEvents as possible.
+ *
+ * Writers (request threads) only append to a bounded lock-free ring and never
+ * block: when the ring or the character budget is full the write is dropped and
+ * counted. A single daemon thread drains the ring, concatenating consecutive
+ * writes of the same kind into one event of at most MAX_EVENT_CHARS, at most
+ * every FLUSH_INTERVAL (sooner once a full event's worth is buffered). Dropped
+ * output is reported to the client as one stderr line after the next flush.
+ *
+ * The flusher must not write to System.out/err itself - that would feed back
+ * into onOutput().
+ */
+final class ConsoleOutputPipeline {
+
+	static final int RING_CAPACITY = 4096;
+	static final long MAX_BUFFERED_CHARS = 1024 * 1024;
+	static final int MAX_EVENT_CHARS = 16 * 1024;
+	static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos( 20 );
+
+	private static final int STDOUT = 0;
+	private static final int STDERR = 1;
+	private static final int LOGPOINT = 2;
+
+	/**
+	 * One captured write.
+	 */
+	private static final class Entry {
+		final String text;
+		final int kind;
+
+		Entry( String text, int kind ) {
+			this.text = text;
+			this.kind = kind;
+		}
+	}
+
+	private final MpscRingBuffer<Entry> ring = new MpscRingBuffer<>( RING_CAPACITY );
+	private final AtomicLong bufferedChars = new AtomicLong();
+	private final AtomicLong droppedChars = new AtomicLong();
+	// Consumer side: the flusher thread and flush() callers take turns under this lock
+	private final Object drainLock = new Object();
+	private final StringBuilder batch = new StringBuilder();
+
+	private volatile Thread flusher;
+	private volatile boolean flusherIdle;
+
+	/**
+	 * Queue a write. Never blocks; drops (and counts) the text if the buffer is full.
+	 */
+	void offer( String text, boolean stderr ) {
+		offer( text, stderr ? STDERR : STDOUT );
+	}
+
+	/**
+	 * Queue a rendered logpoint message, sent as one line in order with the console output around it.
+	 * Never blocks, same as offer().
+	 */
+	void offerLogpoint( String message ) {
+		offer( message, LOGPOINT );
+	}
+
+	private void offer( String text, int kind ) {
+		if ( text == null || text.isEmpty() ) {
+			return;
+		}
+		int len = text.length();
+		long buffered = bufferedChars.addAndGet( len );
+		if ( buffered > MAX_BUFFERED_CHARS || !ring.offer( new Entry( text, kind ) ) ) {
+			bufferedChars.addAndGet( -len );
+			droppedChars.addAndGet( len );
+			return;
+		}
+		Thread t = flusher;
+		if ( t == null ) {
+			t = startFlusher();
+		}
+		if ( flusherIdle || buffered >= MAX_EVENT_CHARS ) {
+			LockSupport.unpark( t );
+		}
+	}
+
+	/**
+	 * Send everything buffered so far on the calling thread.
+	 * Called before a stopped event so the client sees output written up to the suspend point first.
+	 */
+	void flush() {
+		drain();
+	}
+
+	/**
+	 * Throw away buffered output and the dropped count, e.g. when the client disconnects.
+	 */
+	void clear() {
+		synchronized ( drainLock ) {
+			Entry e;
+			while ( ( e = ring.poll() ) != null ) {
+				bufferedChars.addAndGet( -e.text.length() );
+			}
+			droppedChars.set( 0 );
+		}
+	}
+
+	/**
+	 * Characters dropped since the last report.
+	 */
+	long droppedChars() {
+		return droppedChars.get();
+	}
+
+	private synchronized Thread startFlusher() {
+		Thread t = flusher;
+		if ( t == null ) {
+			t = new Thread( this::runFlusher, "luceedebug-output-flusher" );
+			t.setDaemon( true );
+			flusher = t;
+			t.start();
+		}
+		return t;
+	}
+
+	private void runFlusher() {
+		boolean backlog = false;
+		while ( true ) {
+			try {
+				if ( ring.isEmpty() ) {
+					backlog = false;
+					if ( droppedChars.get() > 0 ) {
+						drain(); // just the dropped-output notice
+						continue;
+					}
+					// Writers check flusherIdle after publishing, so one of us sees the other
+					flusherIdle = true;
+					if ( ring.isEmpty() ) {
+						LockSupport.park( this );
+					}
+					flusherIdle = false;
+					continue;
+				}
+				// First write after idle: let a burst of small writes accumulate, cut short
+				// once a full event is buffered. While behind, drain back to back.
+				if ( !backlog && bufferedChars.get() < MAX_EVENT_CHARS ) {
+					LockSupport.parkNanos( this, FLUSH_INTERVAL_NANOS );
+				}
+				drain();
+				backlog = true;
+			}
+			catch ( Throwable t ) {
+				// Keep the flusher alive; nowhere safe to log to from here
+			}
+		}
+	}
+
+	private void drain() {
+		synchronized ( drainLock ) {
+			int batchKind = STDOUT;
+			Entry e;
+			while ( ( e = ring.poll() ) != null ) {
+				bufferedChars.addAndGet( -e.text.length() );
+				if ( batch.length() > 0
+						&& ( e.kind != batchKind || batch.length() + e.text.length() > MAX_EVENT_CHARS ) ) {
+					send( batchKind );
+				}
+				batchKind = e.kind;
+				batch.append( e.text );
+				if ( e.kind == LOGPOINT ) {
+					batch.append( '\n' );
+				}
+			}
+			if ( batch.length() > 0 ) {
+				send( batchKind );
+			}
+			long dropped = droppedChars.getAndSet( 0 );
+			if ( dropped > 0 ) {
+				Log.systemOutput( "[luceedebug] " + dropped + " characters of console output dropped (output buffer full)\n", true );
+			}
+		}
+	}
+
+	private void send( int kind ) {
+		String text = batch.toString();
+		// Don't hang on to one huge batch's backing array
+		if ( batch.capacity() > MAX_EVENT_CHARS * 2 ) {
+			batch.setLength( 0 );
+			batch.trimToSize();
+		}
+		else {
+			batch.setLength( 0 );
+		}
+		if ( kind == LOGPOINT ) {
+			Log.logpoint( text );
+		}
+		else {
+			Log.systemOutput( text, kind == STDERR );
+		}
+	}
+}
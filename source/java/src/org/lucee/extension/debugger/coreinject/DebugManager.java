@@ -436,18 +436,12 @@ public class DebugManager implements IDebugManager {
         // somewhere between determining the index of the last element and attempting to access the last element.
         // It is not expected to happen often, so just catch/log/return false in this case.
         try {
-            if (stack.isEmpty()) {
+            final int top = stack.size() - 1;
+            if (top < 0 || !stack.isTracked(top)) {
                 return false;
             }
 
-            DebugFrame frame = stack.get(stack.size() - 1); // n.b. stack can be empty despite our prior check
-
-            if (frame instanceof Frame) {
-                return doEvaluateAsBoolean((Frame)frame, expr);
-            }
-            else {
-                return false;
-            }
+            return doEvaluateAsBoolean(materialize(stack, top), expr);
         }
         catch (IndexOutOfBoundsException e) {
             System.out.println("[luceedebug]: evaluateAsBooleanForConditionalBreakpoint oob stack read, returning `false`");
@@ -488,12 +482,13 @@ public class DebugManager implements IDebugManager {
 
     private final Cleaner cleaner = Cleaner.create();
 
-    // MapMaker().concurrencyLevel(4).weakKeys().makeMap() ---> ~20% overhead on pushFrame/popFrame
-    // ConcurrentHashMap                                   ---> ~10% overhead on pushFrame/popFrame
-    // Collections.synchronizedMap(new HashMap<>());       ---> ~12% overhead on pushFrame/popFrame
-    private final ConcurrentHashMap<Thread, ArrayList<DebugFrame>> cfStackByThread = new ConcurrentHashMap<>();
+    // Each thread pushes/pops/steps on its own CfStack, reached through a ThreadLocal; stacks with frames
+    // are also listed by thread for the debugger, which is a map write per request rather than per call.
+    private final ThreadLocal<CfStack> cfStack = ThreadLocal.withInitial(CfStack::new);
+    private final ConcurrentHashMap<Thread, CfStack> cfStackByThread = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<Thread, WeakReference<PageContext>> pageContextByThread = new ConcurrentHashMap<>();
 
+    // Only frames the debugger has asked about; see CfStack.materialize
     private final ConcurrentHashMap<Long, DebugFrame> frameByFrameID = new ConcurrentHashMap<>();
     
     /**
@@ -534,32 +529,40 @@ public class DebugManager implements IDebugManager {
     }
 
     synchronized public IDebugFrame[] getCfStack(Thread thread) {
-        ArrayList<DebugFrame> stack = cfStackByThread.get(thread);
+        CfStack stack = cfStackByThread.get(thread);
 
         // Agent mode: only use bytecode-instrumented frames, no native fallback
-        if (stack == null || stack.isEmpty()) {
+        if (stack == null || stack.size() == 0) {
             return new Frame[0];
         }
 
-        ArrayList<DebugFrame> result = new ArrayList<>();
+        ArrayList<Frame> result = new ArrayList<>();
         result.ensureCapacity(stack.size());
 
         // go backwards, "most recent first"
         for (int i = stack.size() - 1; i >= 0; --i) {
-            DebugFrame frame = stack.get(i);
-            if (frame.getLine() == 0) {
+            if (stack.getLine(i) == 0) {
                 // Frame line not yet set - step notification hasn't run yet
                 // This can happen when breakpoint fires before first line executes
                 continue;
             }
-            else {
-                result.add(frame);
+            else if (stack.isTracked(i)) {
+                result.add(materialize(stack, i));
             }
         }
 
         return result.toArray(new Frame[result.size()]);
     }
 
+    /**
+     * Frame objects exist only for calls the debugger has asked about, from when it asks until the call returns.
+     */
+    private Frame materialize(CfStack stack, int i) {
+        Frame frame = stack.materialize(i, valTracker);
+        frameByFrameID.putIfAbsent(frame.getId(), frame);
+        return frame;
+    }
+
     static class CfStepRequest {
         // same enum values as jdwp / jvmti
         static final int STEP_INTO = 0;
@@ -585,8 +588,8 @@ public class DebugManager implements IDebugManager {
     };
 
     public void registerStepRequest(Thread thread, int type) {
-        DebugFrame frame = getTopmostFrame(thread);
-        if (frame == null) {
+        CfStack stack = cfStackByThread.get(thread);
+        if (stack == null || stack.size() == 0) {
             System.err.println("[luceedebug] registerStepRequest: no frames for thread '" + thread + "' (type=" + type + ") - step request ignored");
             return;
         }
@@ -597,7 +600,7 @@ public class DebugManager implements IDebugManager {
             case CfStepRequest.STEP_OVER:
                 // fallthrough
             case CfStepRequest.STEP_OUT: {
-                stepRequestByThread.put(thread, new CfStepRequest(frame.getDepth(), type));
+                stepRequestByThread.put(thread, new CfStepRequest(stack.size() - 1, type));
                 hasAnyStepRequests = true;
                 return;
             }
@@ -619,12 +622,19 @@ public class DebugManager implements IDebugManager {
         hasAnyStepRequests = !stepRequestByThread.isEmpty();
     }
 
-    public void luceedebug_stepNotificationEntry_step(int lineNumber) {
-        Thread currentThread = Thread.currentThread();
+    public void luceedebug_stepNotificationEntry_step(Object frame, int lineNumber) {
+        if (frame == null) {
+            // the frame running this line was entered before a client attached, so it is on no stack
+            return;
+        }
+
+        // The handle is this thread's stack, as pushCfFrame returned it to the running frame,
+        // which is on top: no per-thread lookup on every line
+        CfStack stack = (CfStack) frame;
 
         // ALWAYS update the frame's line number, even when not stepping
         // This is required for breakpoints to work - they need to know the current line
-        DebugFrame frame = maybeUpdateTopmostFrame(currentThread, lineNumber);
+        stack.setLine(lineNumber);
 
         // Fast path: if not stepping, we're done after updating line number
         if (!hasAnyStepRequests) {
@@ -633,13 +643,15 @@ public class DebugManager implements IDebugManager {
 
         final int minDistanceToLuceedebugStepNotificationEntryFrame = 0;
 
+        Thread currentThread = Thread.currentThread();
         CfStepRequest request = stepRequestByThread.get(currentThread);
+        final int top = stack.size() - 1;
         if (request == null) {
             return;
         }
-        else if (frame instanceof Frame) {
+        else if (top >= 0 && stack.isTracked(top)) {
             request.__debug__steps++;
-            maybeNotifyOfStepCompletion(currentThread, (Frame) frame, request, minDistanceToLuceedebugStepNotificationEntryFrame + 1, System.nanoTime());
+            maybeNotifyOfStepCompletion(currentThread, top, stack.isUdfDefaultValueInit(top), request, minDistanceToLuceedebugStepNotificationEntryFrame + 1, System.nanoTime());
         }
         else {
             // no-op
@@ -660,9 +672,10 @@ public class DebugManager implements IDebugManager {
         final int minDistanceToLuceedebugStepNotificationEntryFrame = 0;
 
         Thread currentThread = Thread.currentThread();
-        DebugFrame frame = getTopmostFrame(currentThread);
+        CfStack stack = cfStack.get();
+        final int top = stack.size() - 1;
 
-        if (frame == null) {
+        if (top < 0) {
             // just popped last frame?
             return;
         }
@@ -671,17 +684,20 @@ public class DebugManager implements IDebugManager {
         if (request == null) {
             return;
         }
-        else if (frame instanceof Frame) {
+        else if (stack.isTracked(top)) {
             request.__debug__steps++;
-            maybeNotifyOfStepCompletion(currentThread, (Frame)frame, request, minDistanceToLuceedebugStepNotificationEntryFrame + 1, System.nanoTime());
+            maybeNotifyOfStepCompletion(currentThread, top, stack.isUdfDefaultValueInit(top), request, minDistanceToLuceedebugStepNotificationEntryFrame + 1, System.nanoTime());
         }
         else {
             // no-op
         }
     }
 
-    private void maybeNotifyOfStepCompletion(Thread currentThread, Frame frame, CfStepRequest request, int minDistanceToLuceedebugStepNotificationEntryFrame, long start) {
-        if (frame.isUdfDefaultValueInitFrame && !config_.getStepIntoUdfDefaultValueInitFrames()) {
+    /**
+     * @param depth depth of the thread's topmost frame, 0 for the first
+     */
+    private void maybeNotifyOfStepCompletion(Thread currentThread, int depth, boolean isUdfDefaultValueInitFrame, CfStepRequest request, int minDistanceToLuceedebugStepNotificationEntryFrame, long start) {
+        if (isUdfDefaultValueInitFrame && !config_.getStepIntoUdfDefaultValueInitFrames()) {
             return;
         }
 
@@ -691,7 +707,7 @@ public class DebugManager implements IDebugManager {
             notifyStep(currentThread, minDistanceToLuceedebugStepNotificationEntryFrame + 1);
         }
         else if (request.type == CfStepRequest.STEP_OVER) {
-            if (frame.getDepth() > request.startDepth) {
+            if (depth > request.startDepth) {
                 long end = System.nanoTime();
                 request.__debug__stepOverhead += (end - start);
                 return;
@@ -701,7 +717,7 @@ public class DebugManager implements IDebugManager {
                 // double elapsed_ms = (end - request.__debug__startTime) / 1e6;
                 // double stepsPerMs = request.__debug__steps / elapsed_ms;
 
-                // System.out.println("  currentframedepth=" + frame.getDepth() + ", startframedepth=" + request.startDepth + ", notifying native of step occurence...");
+                // System.out.println("  currentframedepth=" + depth + ", startframedepth=" + request.startDepth + ", notifying native of step occurence...");
                 // System.out.println("    " + request.__debug__steps + " cf steps in " + elapsed_ms + "ms for " + stepsPerMs + " steps/ms, overhead was " + (request.__debug__stepOverhead / 1e6) + "ms");
 
                 clearStepRequest(currentThread);
@@ -709,7 +725,7 @@ public class DebugManager implements IDebugManager {
             }
         }
         else if (request.type == CfStepRequest.STEP_OUT) {
-            if (frame.getDepth() >= request.startDepth) {
+            if (depth >= request.startDepth) {
                 // stepping out, we need to have popped a frame to notify
                 return;
             }
@@ -723,98 +739,48 @@ public class DebugManager implements IDebugManager {
         }
     }
 
-    private DebugFrame maybeUpdateTopmostFrame(Thread thread, int lineNumber) {
-        DebugFrame frame = getTopmostFrame(thread);
-        if (frame == null) {
-            return null;
-        }
-        frame.setLine(lineNumber);
-        return frame;
+    public Object pushCfFrame(PageContext pageContext, String sourceFilePath) {
+        return pushCfFrame(pageContext, sourceFilePath, 0);
     }
 
-    private DebugFrame getTopmostFrame(Thread thread) {
-        ArrayList<DebugFrame> stack = cfStackByThread.get(thread);
-        if (stack == null || stack.size() == 0) {
-            return null;
-        }
-        return stack.get(stack.size() - 1);
+    public Object pushCfFunctionDefaultValueInitializationFrame(PageContext pageContext, String sourceFilePath) {
+        return pushCfFrame(pageContext, sourceFilePath, CfStack.UDF_DEFAULT_VALUE_INIT);
     }
 
-    public void pushCfFrame(PageContext pageContext, String sourceFilePath) {
-        maybe_pushCfFrame_worker(pageContext, sourceFilePath);
-    }
-    
-    private DebugFrame maybe_pushCfFrame_worker(PageContext pageContext, String sourceFilePath) {
-        Thread currentThread = Thread.currentThread();
-
-        ArrayList<DebugFrame> stack = cfStackByThread.get(currentThread);
-
-        // The null case means "fresh stack", this is the first frame
-        // Frame length shouldn't ever be zero, we should tear it down when it hits zero
-        if (stack == null || stack.size() == 0) {
-            ArrayList<DebugFrame> list = new ArrayList<>();
-            cfStackByThread.put(currentThread, list);
-            stack = list;
+    /**
+     * @return the frame handle for the step hook - the thread's stack, whose top the pushed frame stays while its lines run
+     */
+    private CfStack pushCfFrame(PageContext pageContext, String sourceFilePath, int flag) {
+        CfStack stack = cfStack.get();
 
+        // Empty means "fresh stack", this is the first frame of the request
+        if (stack.size() == 0) {
+            Thread currentThread = Thread.currentThread();
+            cfStackByThread.put(currentThread, stack);
             pageContextByThread.put(currentThread, new WeakReference<>(pageContext));
         }
 
-        final int depth = stack.size(); // first frame is frame 0, and prior to pushing the first frame the stack is length 0; next frame is frame 1, and prior to pushing it the stack is of length 1, ...
-        
-        FrameContext maybeBaseFrame = stack.size() == 0
-            ? null
-            : stack.get(0) instanceof Frame ? ((Frame)stack.get(0)).getFrameContext() : null;
-
-        final DebugFrame frame = DebugFrame.makeFrame(
-            sourceFilePath,
-            depth,
-            valTracker,
-            pageContext,
-            maybeBaseFrame
-        );
-
-        stack.add(frame);
-
-        // if (stepRequestByThread.containsKey(currentThread)) {
-        //     System.out.println("pushed frame during active step request:");
-        //     System.out.println("  " + frame.getName() + " @ " + frame.getSourceFilePath() + ":" + frame.getLine());
-        // }
-
-        frameByFrameID.put(frame.getId(), frame);
-
-        return frame;
-    }
-
-    public void pushCfFunctionDefaultValueInitializationFrame(PageContext pageContext, String sourceFilePath) {
-        DebugFrame frame = maybe_pushCfFrame_worker(pageContext, sourceFilePath);
-        if (frame instanceof Frame) {
-            ((Frame)frame).isUdfDefaultValueInitFrame = true;
-        }
+        // No Frame here: see CfStack
+        stack.push(pageContext, sourceFilePath, flag);
+        return stack;
     }
 
     public void popCfFrame() {
-        Thread currentThread = Thread.currentThread();
-        ArrayList<DebugFrame> maybeNull_frameListing = cfStackByThread.get(currentThread);
+        CfStack stack = cfStack.get();
 
-        if (maybeNull_frameListing == null) {
-            // error case, maybe throw
-            // we should not be popping from a non-existent thing
+        if (stack.size() == 0) {
+            System.err.println("[luceedebug] popFrame: frame stack for thread '" + Thread.currentThread() + "' is empty - ignoring pop");
             return;
         }
 
-        DebugFrame poppedFrame = null;
-
-        if (maybeNull_frameListing.isEmpty()) {
-            System.err.println("[luceedebug] popFrame: frame stack for thread '" + currentThread + "' is empty - ignoring pop");
-            return;
-        }
-        else {
-            poppedFrame = maybeNull_frameListing.remove(maybeNull_frameListing.size() - 1);
-            frameByFrameID.remove(poppedFrame.getId());
+        Frame maybeNull_poppedFrame = stack.pop();
+        if (maybeNull_poppedFrame != null) {
+            frameByFrameID.remove(maybeNull_poppedFrame.getId());
         }
 
-        if (maybeNull_frameListing.size() == 0) {
-            // we popped the last frame, so we destroy the whole stack
+        if (stack.size() == 0) {
+            // we popped the last frame, so the thread has no stack to show
+            Thread currentThread = Thread.currentThread();
             cfStackByThread.remove(currentThread);
             pageContextByThread.remove(currentThread);
             
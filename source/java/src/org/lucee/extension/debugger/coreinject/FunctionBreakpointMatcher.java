@@ -0,0 +1,392 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lucee.runtime.PageContext;
+
+/**
+ * Immutable matcher for function breakpoints, used by NativeDebuggerListener.onFunctionEntry().
+ *
+ * Exact names live in an open-addressing hash table keyed by a case-insensitive
+ * hash computed straight from the incoming name; wildcard names ("on*") live in
+ * a prefix trie walked one char at a time. Component qualifiers
+ * ("User.save") are a secondary check on the matched entries. A call that
+ * matches nothing - nearly every UDF call - is a hash probe plus a short trie
+ * walk, with no lowercasing, substring or other allocation.
+ *
+ * Case folding is per char (Character.toLowerCase) on both sides, so it agrees
+ * with itself but not with locale-specific String.toLowerCase rules.
+ */
+final class FunctionBreakpointMatcher {
+
+	static final FunctionBreakpointMatcher EMPTY = new FunctionBreakpointMatcher( new Entry[0] );
+
+	/**
+	 * One function breakpoint.
+	 */
+	static final class Entry {
+		final String spec;                   // as set by the client, for logging
+		final String name;                   // lowercase function name, without a trailing '*'
+		final String component;              // component qualifier as given, null = any
+		final BreakpointCondition condition; // null = unconditional
+		final boolean wildcard;
+		final HitCondition hitCondition;     // null = every hit
+		final BreakpointLimits limits;       // null = no rate limit, sampling or cap
+		final int index;                     // position in the client's list
+		final int previousIndex;             // position in the previous list if carried over from it, -1 if new
+		private final AtomicLong hits;
+
+		private Entry( String spec, String name, String component, BreakpointCondition condition, boolean wildcard,
+				HitCondition hitCondition, BreakpointLimits limits, int index, int previousIndex, AtomicLong hits ) {
+			this.spec = spec;
+			this.name = name;
+			this.component = component;
+			this.condition = condition;
+			this.wildcard = wildcard;
+			this.hitCondition = hitCondition;
+			this.limits = limits;
+			this.index = index;
+			this.previousIndex = previousIndex;
+			this.hits = hits;
+		}
+
+		/**
+		 * Parse "method", "Component.method", "on*" or "Component.on*".
+		 * @param hitCondition DAP hit condition, may carry limit clauses (see BreakpointLimits); null for none
+		 */
+		static Entry parse( String spec, BreakpointCondition condition, String hitCondition, int index ) {
+			String name = spec.trim();
+			int dot = name.lastIndexOf( '.' );
+			String component = null;
+			if ( dot > 0 ) {
+				component = name.substring( 0, dot );
+				name = name.substring( dot + 1 );
+			}
+			boolean wildcard = name.endsWith( "*" );
+			if ( wildcard ) {
+				name = name.substring( 0, name.length() - 1 );
+			}
+			return new Entry( spec, fold( name ), component, condition, wildcard,
+				HitCondition.of( BreakpointLimits.countCondition( hitCondition ) ), BreakpointLimits.of( hitCondition ), index, -1, new AtomicLong() );
+		}
+
+		/**
+		 * True if other was set with the same name, condition, hit condition and limits.
+		 */
+		boolean sameSpec( Entry other ) {
+			return spec.equals( other.spec )
+				&& Objects.equals( condition != null ? condition.expression : null, other.condition != null ? other.condition.expression : null )
+				&& Objects.equals( hitCondition != null ? hitCondition.expression : null, other.hitCondition != null ? other.hitCondition.expression : null )
+				&& Objects.equals( limits != null ? limits.expression : null, other.limits != null ? other.limits.expression : null );
+		}
+
+		/**
+		 * This entry at its new index, with previous's hit count, rate limit and hit cap.
+		 */
+		Entry carriedFrom( Entry previous ) {
+			return new Entry( spec, name, component, condition, wildcard, hitCondition, previous.limits, index, previous.index, previous.hits );
+		}
+
+		boolean componentMatches( String componentName ) {
+			return component == null || ( componentName != null && component.equalsIgnoreCase( componentName ) );
+		}
+
+		@Override
+		public String toString() {
+			return spec
+				+ ( component != null ? " (component: " + component + ")" : "" )
+				+ ( wildcard ? " (wildcard)" : "" )
+				+ ( condition != null ? " condition: " + condition : "" )
+				+ ( hitCondition != null ? " hitCondition: " + hitCondition : "" )
+				+ ( limits != null ? " limits: " + limits : "" );
+		}
+	}
+
+	/**
+	 * Prefix trie node. Children are a sorted char array searched by binary search.
+	 */
+	private static final class TrieNode {
+		final char[] keys;
+		final TrieNode[] children;
+		final Entry[] terminals; // wildcards whose prefix ends here, null if none
+
+		TrieNode( char[] keys, TrieNode[] children, Entry[] terminals ) {
+			this.keys = keys;
+			this.children = children;
+			this.terminals = terminals;
+		}
+
+		TrieNode child( char c ) {
+			int idx = Arrays.binarySearch( keys, c );
+			return idx >= 0 ? children[idx] : null;
+		}
+	}
+
+	/**
+	 * Mutable trie node used while building.
+	 */
+	private static final class TrieBuilder {
+		final TreeMap<Character, TrieBuilder> children = new TreeMap<>();
+		final List<Entry> terminals = new ArrayList<>();
+
+		void add( Entry e ) {
+			TrieBuilder node = this;
+			for ( int i = 0; i < e.name.length(); i++ ) {
+				node = node.children.computeIfAbsent( e.name.charAt( i ), k -> new TrieBuilder() );
+			}
+			node.terminals.add( e );
+		}
+
+		TrieNode freeze() {
+			char[] keys = new char[children.size()];
+			TrieNode[] nodes = new TrieNode[children.size()];
+			int i = 0;
+			for ( Map.Entry<Character, TrieBuilder> child : children.entrySet() ) {
+				keys[i] = child.getKey();
+				nodes[i] = child.getValue().freeze();
+				i++;
+			}
+			return new TrieNode( keys, nodes, terminals.isEmpty() ? null : terminals.toArray( new Entry[0] ) );
+		}
+	}
+
+	private final Entry[] entries;
+	// Exact names: open addressing, linear probing. slotNames[i] == null means empty.
+	private final String[] slotNames;
+	private final int[] slotHashes;
+	private final Entry[][] slotEntries;
+	private final int mask;
+	private final TrieNode wildcards; // null if there are no wildcard breakpoints
+	// Exact names only: lengths outside [minExactLen, maxExactLen] skip the hash probe
+	private final int minExactLen;
+	private final int maxExactLen;
+
+	private FunctionBreakpointMatcher( Entry[] entries ) {
+		this.entries = entries;
+
+		// Group exact entries by name, keeping client order within a group
+		Map<String, List<Entry>> exact = new TreeMap<>();
+		TrieBuilder trie = null;
+		int minLen = Integer.MAX_VALUE;
+		int maxLen = Integer.MIN_VALUE;
+		for ( Entry e : entries ) {
+			if ( e.wildcard ) {
+				if ( trie == null ) trie = new TrieBuilder();
+				trie.add( e );
+			}
+			else {
+				exact.computeIfAbsent( e.name, k -> new ArrayList<>() ).add( e );
+				minLen = Math.min( minLen, e.name.length() );
+				maxLen = Math.max( maxLen, e.name.length() );
+			}
+		}
+		this.wildcards = trie == null ? null : trie.freeze();
+		this.minExactLen = minLen;
+		this.maxExactLen = maxLen;
+
+		int capacity = Integer.highestOneBit( Math.max( 4, exact.size() * 2 ) - 1 ) << 1;
+		this.mask = capacity - 1;
+		this.slotNames = new String[capacity];
+		this.slotHashes = new int[capacity];
+		this.slotEntries = new Entry[capacity][];
+		for ( Map.Entry<String, List<Entry>> group : exact.entrySet() ) {
+			String name = group.getKey();
+			int h = foldedHash( name );
+			int slot = spread( h ) & mask;
+			while ( slotNames[slot] != null ) {
+				slot = ( slot + 1 ) & mask;
+			}
+			slotNames[slot] = name;
+			slotHashes[slot] = h;
+			slotEntries[slot] = group.getValue().toArray( new Entry[0] );
+		}
+	}
+
+	static FunctionBreakpointMatcher of( String[] names, String[] conditions ) {
+		return of( names, conditions, null );
+	}
+
+	/**
+	 * Build a matcher. names, conditions and hitConditions are parallel; the last two may be null or shorter.
+	 * Hit conditions may carry limit clauses (see BreakpointLimits).
+	 */
+	static FunctionBreakpointMatcher of( String[] names, String[] conditions, String[] hitConditions ) {
+		return of( names, conditions, hitConditions, EMPTY );
+	}
+
+	/**
+	 * Build a matcher replacing previous. Clients resend every function breakpoint when
+	 * one changes, so an entry set the same way as one in previous takes over its hit
+	 * count, rate limit and hit cap (see Entry.previousIndex).
+	 */
+	static FunctionBreakpointMatcher of( String[] names, String[] conditions, String[] hitConditions, FunctionBreakpointMatcher previous ) {
+		if ( names == null || names.length == 0 ) {
+			return EMPTY;
+		}
+		Entry[] old = previous.entries;
+		boolean[] taken = new boolean[old.length];
+		Entry[] entries = new Entry[names.length];
+		for ( int i = 0; i < names.length; i++ ) {
+			BreakpointCondition condition = BreakpointCondition.of(
+				conditions != null && i < conditions.length ? conditions[i] : null );
+			String hitCondition = hitConditions != null && i < hitConditions.length ? hitConditions[i] : null;
+			Entry e = Entry.parse( names[i], condition, hitCondition, i );
+			for ( int j = 0; j < old.length; j++ ) {
+				if ( !taken[j] && old[j].sameSpec( e ) ) {
+					taken[j] = true;
+					e = e.carriedFrom( old[j] );
+					break;
+				}
+			}
+			entries[i] = e;
+		}
+		return new FunctionBreakpointMatcher( entries );
+	}
+
+	int size() {
+		return entries.length;
+	}
+
+	boolean isEmpty() {
+		return entries.length == 0;
+	}
+
+	Entry[] entries() {
+		return entries.clone();
+	}
+
+	Entry match( PageContext pc, String functionName, String componentName ) {
+		return match( pc, functionName, componentName, null );
+	}
+
+	/**
+	 * Find the first breakpoint matching a function entry that its limits admit and
+	 * whose condition and hit condition (if any) hold. The caller counts the hit
+	 * against the entry's cap.
+	 * @param pc used only to evaluate the filter and conditions; may be null when there are none
+	 * @param filter request filter checked once a name matches, before limits and conditions; null for none
+	 * @return the matching entry, or null
+	 */
+	Entry match( PageContext pc, String functionName, String componentName, RequestFilter filter ) {
+		if ( functionName == null ) {
+			return null;
+		}
+		Entry hit = null;
+		int len = functionName.length();
+		if ( len >= minExactLen && len <= maxExactLen ) {
+			hit = matchExact( pc, functionName, componentName, filter );
+		}
+		if ( hit == null && wildcards != null ) {
+			hit = matchWildcard( pc, functionName, componentName, filter );
+		}
+		return hit;
+	}
+
+	private Entry matchExact( PageContext pc, String functionName, String componentName, RequestFilter filter ) {
+		int h = foldedHash( functionName );
+		int slot = spread( h ) & mask;
+		String name;
+		while ( ( name = slotNames[slot] ) != null ) {
+			if ( slotHashes[slot] == h && foldedEquals( name, functionName ) ) {
+				return firstPassing( slotEntries[slot], pc, componentName, filter );
+			}
+			slot = ( slot + 1 ) & mask;
+		}
+		return null;
+	}
+
+	private Entry matchWildcard( PageContext pc, String functionName, String componentName, RequestFilter filter ) {
+		TrieNode node = wildcards;
+		int len = functionName.length();
+		for ( int i = 0; ; i++ ) {
+			if ( node.terminals != null ) {
+				Entry hit = firstPassing( node.terminals, pc, componentName, filter );
+				if ( hit != null ) {
+					return hit;
+				}
+			}
+			if ( i == len ) {
+				return null;
+			}
+			node = node.child( fold( functionName.charAt( i ) ) );
+			if ( node == null ) {
+				return null;
+			}
+		}
+	}
+
+	private static Entry firstPassing( Entry[] candidates, PageContext pc, String componentName, RequestFilter filter ) {
+		for ( Entry e : candidates ) {
+			if ( !e.componentMatches( componentName ) ) {
+				continue;
+			}
+			// Other people's requests are out regardless of the entry
+			if ( filter != null && !filter.matches( pc ) ) {
+				return null;
+			}
+			// Limits first: a rate-limited or unsampled hit must not cost a condition evaluation
+			if ( e.limits != null && !e.limits.admit() ) {
+				continue;
+			}
+			if ( e.condition != null && !e.condition.evaluate( pc ) ) {
+				continue;
+			}
+			if ( e.hitCondition != null && !e.hitCondition.matches( e.hits.incrementAndGet() ) ) {
+				continue;
+			}
+			return e;
+		}
+		return null;
+	}
+
+	// ========== case folding without allocation ==========
+
+	static char fold( char c ) {
+		if ( c < 0x80 ) {
+			return c >= 'A' && c <= 'Z' ? (char) ( c + ( 'a' - 'A' ) ) : c;
+		}
+		return Character.toLowerCase( c );
+	}
+
+	private static String fold( String s ) {
+		char[] chars = s.toCharArray();
+		for ( int i = 0; i < chars.length; i++ ) {
+			chars[i] = fold( chars[i] );
+		}
+		return new String( chars );
+	}
+
+	static int foldedHash( String s ) {
+		int h = 0;
+		for ( int i = 0; i < s.length(); i++ ) {
+			h = 31 * h + fold( s.charAt( i ) );
+		}
+		return h;
+	}
+
+	/**
+	 * @param folded an already folded string
+	 */
+	private static boolean foldedEquals( String folded, String s ) {
+		int len = folded.length();
+		if ( s.length() != len ) {
+			return false;
+		}
+		for ( int i = 0; i < len; i++ ) {
+			if ( folded.charAt( i ) != fold( s.charAt( i ) ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int spread( int h ) {
+		return h ^ ( h >>> 16 );
+	}
+}
@@ -0,0 +1,86 @@
+package org.lucee.extension.debugger.coreinject;
+
+import org.lucee.extension.debugger.Log;
+
+/**
+ * A DAP hit condition, parsed once when the breakpoint is set.
+ *
+ * Supported forms (whitespace allowed after the operator):
+ *   N, ==N   stop on the Nth hit only
+ *   >N, >=N  stop on every hit after / from the Nth
+ *   <N, <=N  stop on every hit before / up to the Nth
+ *   %N       stop on every Nth hit
+ *
+ * Hits are counted only when the breakpoint's condition (if any) is true.
+ */
+final class HitCondition {
+
+	// Operators - plain ints rather than an enum, so switching on them needs no synthetic classes
+	private static final int EQ = 0, GT = 1, GE = 2, LT = 3, LE = 4, MOD = 5;
+
+	final String expression;
+	private final int op;
+	private final long n;
+
+	private HitCondition( String expression, int op, long n ) {
+		this.expression = expression;
+		this.op = op;
+		this.n = n;
+	}
+
+	/**
+	 * @return the parsed hit condition, or null for a null/empty/invalid expression
+	 *         (invalid ones are logged and treated as "always")
+	 */
+	static HitCondition of( String expression ) {
+		if ( expression == null ) {
+			return null;
+		}
+		String s = expression.trim();
+		if ( s.isEmpty() ) {
+			return null;
+		}
+		int op;
+		int i;
+		if ( s.startsWith( "==" ) ) { op = EQ; i = 2; }
+		else if ( s.startsWith( ">=" ) ) { op = GE; i = 2; }
+		else if ( s.startsWith( "<=" ) ) { op = LE; i = 2; }
+		else if ( s.startsWith( ">" ) ) { op = GT; i = 1; }
+		else if ( s.startsWith( "<" ) ) { op = LT; i = 1; }
+		else if ( s.startsWith( "%" ) ) { op = MOD; i = 1; }
+		else if ( s.startsWith( "=" ) ) { op = EQ; i = 1; }
+		else { op = EQ; i = 0; }
+		long n;
+		try {
+			n = Long.parseLong( s.substring( i ).trim() );
+		}
+		catch ( NumberFormatException e ) {
+			n = -1;
+		}
+		if ( n < 0 || ( op == MOD && n == 0 ) ) {
+			Log.warn( "Ignoring invalid hit condition: " + expression );
+			return null;
+		}
+		return new HitCondition( expression, op, n );
+	}
+
+	/**
+	 * @param hitCount 1-based ordinal of the current hit
+	 */
+	boolean matches( long hitCount ) {
+		switch ( op ) {
+			case EQ: return hitCount == n;
+			case GT: return hitCount > n;
+			case GE: return hitCount >= n;
+			case LT: return hitCount < n;
+			case LE: return hitCount <= n;
+			case MOD: return hitCount % n == 0;
+			default: return false;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+}
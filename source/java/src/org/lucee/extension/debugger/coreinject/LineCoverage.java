@@ -0,0 +1,203 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Executed-line recorder for coverage mode, fed from NativeDebuggerListener.shouldSuspend().
+ *
+ * One bitset per file, one bit per line, in an AtomicLongArray. Recording a
+ * line is a map lookup plus a read of the word; only the first hit of a line
+ * does a CAS, so steady-state recording is read-only and allocation-free.
+ * Bitsets grow (rarely) under a per-file lock; a writer that raced a grow
+ * re-applies its bit to the new array, or the grow picks it up.
+ *
+ * Counts are not kept - LCOV output reports 1 for every executed line.
+ */
+final class LineCoverage {
+
+	/**
+	 * Executed lines of one file.
+	 */
+	static final class FileCoverage {
+		final String path;
+		private volatile AtomicLongArray words;
+
+		FileCoverage( String path ) {
+			this.path = path;
+			this.words = new AtomicLongArray( 4 ); // lines 0-255
+		}
+
+		void set( int line ) {
+			if ( line <= 0 ) {
+				return;
+			}
+			int idx = line >>> 6;
+			long bit = 1L << line;
+			AtomicLongArray w = words;
+			while ( true ) {
+				if ( idx >= w.length() ) {
+					w = grow( idx );
+				}
+				long cur = w.get( idx );
+				while ( ( cur & bit ) == 0 && !w.compareAndSet( idx, cur, cur | bit ) ) {
+					cur = w.get( idx );
+				}
+				AtomicLongArray now = words;
+				if ( now == w ) {
+					return;
+				}
+				// Grown while we were setting the bit - it may have been copied before we set it
+				w = now;
+			}
+		}
+
+		boolean isSet( int line ) {
+			AtomicLongArray w = words;
+			int idx = line >>> 6;
+			return line > 0 && idx < w.length() && ( w.get( idx ) & ( 1L << line ) ) != 0;
+		}
+
+		/**
+		 * Executed lines, ascending.
+		 */
+		int[] lines() {
+			AtomicLongArray w = words;
+			int count = 0;
+			for ( int i = 0; i < w.length(); i++ ) {
+				count += Long.bitCount( w.get( i ) );
+			}
+			int[] result = new int[count];
+			int n = 0;
+			for ( int i = 0; i < w.length() && n < count; i++ ) {
+				long word = w.get( i );
+				while ( word != 0 && n < count ) {
+					result[n++] = ( i << 6 ) + Long.numberOfTrailingZeros( word );
+					word &= word - 1;
+				}
+			}
+			return n == count ? result : Arrays.copyOf( result, n );
+		}
+
+		private synchronized AtomicLongArray grow( int idx ) {
+			AtomicLongArray old = words;
+			if ( idx < old.length() ) {
+				return old;
+			}
+			AtomicLongArray grown = new AtomicLongArray( Math.max( idx + 1, old.length() * 2 ) );
+			for ( int i = 0; i < old.length(); i++ ) {
+				grown.set( i, old.get( i ) );
+			}
+			words = grown;
+			// A writer that set a bit in old after the copy but still saw old as
+			// current has returned; its bit is in old by now, so copy again.
+			// Writers that see grown re-apply their bits themselves.
+			for ( int i = 0; i < old.length(); i++ ) {
+				long bits = old.get( i );
+				if ( bits != 0 ) {
+					grown.accumulateAndGet( i, bits, ( a, b ) -> a | b );
+				}
+			}
+			return grown;
+		}
+	}
+
+	private final ConcurrentHashMap<String, FileCoverage> files = new ConcurrentHashMap<>();
+
+	/**
+	 * Record that a line ran. Hot path.
+	 */
+	void hit( String file, int line ) {
+		if ( file == null ) {
+			return;
+		}
+		FileCoverage fc = files.get( file );
+		if ( fc == null ) {
+			fc = files.computeIfAbsent( file, FileCoverage::new );
+		}
+		fc.set( line );
+	}
+
+	void clear() {
+		files.clear();
+	}
+
+	int fileCount() {
+		return files.size();
+	}
+
+	long linesHit() {
+		long total = 0;
+		for ( FileCoverage fc : files.values() ) {
+			total += fc.lines().length;
+		}
+		return total;
+	}
+
+	FileCoverage forFile( String file ) {
+		return files.get( file );
+	}
+
+	/**
+	 * Render as LCOV tracefile: one SF/DA.../LF/LH/end_of_record block per file, files sorted by path.
+	 * @param pathMapper maps server paths to the paths written in SF (e.g. IDE paths)
+	 * @param executableLines executable lines for a server path, so unexecuted lines appear with
+	 *        count 0; may return null or an empty array if unknown
+	 */
+	String toLcov( UnaryOperator<String> pathMapper, Function<String, int[]> executableLines ) {
+		List<String> paths = new ArrayList<>( files.keySet() );
+		Collections.sort( paths );
+		StringBuilder sb = new StringBuilder();
+		for ( String path : paths ) {
+			FileCoverage fc = files.get( path );
+			if ( fc == null ) {
+				continue;
+			}
+			int[] hit = fc.lines();
+			int[] executable = executableLines != null ? executableLines.apply( path ) : null;
+			int[] all = union( executable, hit );
+
+			sb.append( "TN:\n" );
+			sb.append( "SF:" ).append( pathMapper != null ? pathMapper.apply( path ) : path ).append( '\n' );
+			for ( int line : all ) {
+				sb.append( "DA:" ).append( line ).append( ',' ).append( Arrays.binarySearch( hit, line ) >= 0 ? 1 : 0 ).append( '\n' );
+			}
+			sb.append( "LF:" ).append( all.length ).append( '\n' );
+			sb.append( "LH:" ).append( hit.length ).append( '\n' );
+			sb.append( "end_of_record\n" );
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Sorted union of two ascending arrays (the first may be unsorted or null).
+	 */
+	private static int[] union( int[] a, int[] sortedB ) {
+		if ( a == null || a.length == 0 ) {
+			return sortedB;
+		}
+		int[] sortedA = a.clone();
+		Arrays.sort( sortedA );
+		int[] out = new int[sortedA.length + sortedB.length];
+		int i = 0, j = 0, n = 0;
+		while ( i < sortedA.length || j < sortedB.length ) {
+			int next;
+			if ( j >= sortedB.length || ( i < sortedA.length && sortedA[i] <= sortedB[j] ) ) {
+				next = sortedA[i++];
+			}
+			else {
+				next = sortedB[j++];
+			}
+			if ( next > 0 && ( n == 0 || out[n - 1] != next ) ) {
+				out[n++] = next;
+			}
+		}
+		return Arrays.copyOf( out, n );
+	}
+}
@@ -0,0 +1,149 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lucee.runtime.PageContext;
+import lucee.runtime.type.Collection;
+
+/**
+ * A logpoint message, parsed once when the breakpoint is set.
+ *
+ * Text inside {braces} is a CFML expression, e.g. "id={arguments.id} n={len(items)}".
+ * Expressions go through the same Java fast path as breakpoint conditions
+ * (ConditionCompiler) and fall back to Lucee's Evaluate. Simple values are
+ * rendered with Caster.toString, complex ones as JSON. A failing expression
+ * renders as "<error: message>" - a logpoint never throws and never suspends.
+ * An unmatched '{' is kept as literal text.
+ */
+final class LogMessage {
+
+	final String template;
+	// Parallel arrays: literal text before each expression, plus a trailing literal
+	private final String[] literals;
+	private final String[] expressions;
+	private final Object[][] evaluateArgs;
+	private final ConditionCompiler.Compiled[] fastPaths; // entries null = CFML only
+
+	private LogMessage( String template, List<String> literals, List<String> expressions ) {
+		this.template = template;
+		this.literals = literals.toArray( new String[0] );
+		this.expressions = expressions.toArray( new String[0] );
+		int n = this.expressions.length;
+		this.evaluateArgs = new Object[n][];
+		this.fastPaths = new ConditionCompiler.Compiled[n];
+		for ( int i = 0; i < n; i++ ) {
+			evaluateArgs[i] = new Object[] { this.expressions[i] };
+			fastPaths[i] = ConditionCompiler.compile( this.expressions[i], BreakpointCondition.SCOPE_RESOLVER );
+		}
+	}
+
+	/**
+	 * @return a parsed message, or null for a null/empty template (not a logpoint)
+	 */
+	static LogMessage of( String template ) {
+		if ( template == null || template.isEmpty() ) {
+			return null;
+		}
+		List<String> literals = new ArrayList<>();
+		List<String> expressions = new ArrayList<>();
+		StringBuilder text = new StringBuilder();
+		int len = template.length();
+		int i = 0;
+		while ( i < len ) {
+			char c = template.charAt( i );
+			if ( c == '{' ) {
+				int end = findClose( template, i + 1 );
+				if ( end > i + 1 ) {
+					literals.add( text.toString() );
+					text.setLength( 0 );
+					expressions.add( template.substring( i + 1, end ).trim() );
+					i = end + 1;
+					continue;
+				}
+			}
+			text.append( c );
+			i++;
+		}
+		literals.add( text.toString() );
+		return new LogMessage( template, literals, expressions );
+	}
+
+	/**
+	 * Find the '}' closing a '{' at from-1, allowing nested braces (struct literals).
+	 * @return its index, or -1 if unmatched
+	 */
+	private static int findClose( String s, int from ) {
+		int depth = 1;
+		for ( int i = from; i < s.length(); i++ ) {
+			char c = s.charAt( i );
+			if ( c == '{' ) {
+				depth++;
+			}
+			else if ( c == '}' && --depth == 0 ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Render the message in pc.
+	 */
+	String format( PageContext pc ) {
+		if ( expressions.length == 0 ) {
+			return literals[0];
+		}
+		StringBuilder sb = new StringBuilder( template.length() + 32 );
+		for ( int i = 0; i < expressions.length; i++ ) {
+			sb.append( literals[i] );
+			sb.append( render( pc, i ) );
+		}
+		sb.append( literals[expressions.length] );
+		return sb.toString();
+	}
+
+	private String render( PageContext pc, int i ) {
+		LuceeHandles handles;
+		try {
+			handles = LuceeHandles.forLoader( pc.getClass().getClassLoader() );
+		}
+		catch ( Throwable e ) {
+			return "<error: " + e.getMessage() + ">";
+		}
+		Object value = null;
+		boolean resolved = false;
+		if ( fastPaths[i] != null ) {
+			try {
+				value = fastPaths[i].value( pc );
+				resolved = true;
+			}
+			catch ( RuntimeException e ) {
+				// FALLBACK - evaluate via CFML below
+			}
+		}
+		try {
+			if ( !resolved ) {
+				value = (Object) handles.evaluate.invokeExact( pc, evaluateArgs[i] );
+			}
+			if ( value instanceof Collection ) {
+				return (String) handles.serializeJSON.invokeExact( pc, value );
+			}
+		}
+		catch ( Throwable e ) {
+			return "<error: " + e.getMessage() + ">";
+		}
+		try {
+			return (String) handles.toString.invokeExact( value );
+		}
+		catch ( Throwable e ) {
+			// Not castable to a CFML string (java object etc.)
+			return String.valueOf( value );
+		}
+	}
+
+	@Override
+	public String toString() {
+		return template;
+	}
+}
@@ -0,0 +1,55 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import lucee.runtime.PageContext;
+
+import org.lucee.extension.debugger.util.ConcurrentWeakKeyMap;
+
+/**
+ * Handles into Lucee core, resolved once per core classloader (Lucee may be
+ * reloaded with a new loader, so this is not a single static).
+ */
+final class LuceeHandles {
+	private static final ConcurrentWeakKeyMap<ClassLoader, LuceeHandles> byLoader = new ConcurrentWeakKeyMap<>();
+	// Almost always a single loader - check it by identity before the map
+	private static volatile LuceeHandles last;
+
+	final ClassLoader loader;
+	final MethodHandle evaluate;      // (PageContext, Object[]) -> Object
+	final MethodHandle toBoolean;     // (Object) -> boolean
+	final MethodHandle toString;      // (Object) -> String
+	final MethodHandle serializeJSON; // (PageContext, Object) -> String
+
+	private LuceeHandles( ClassLoader loader ) throws ReflectiveOperationException {
+		this.loader = loader;
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		Class<?> evaluateClass = loader.loadClass( "lucee.runtime.functions.dynamicEvaluation.Evaluate" );
+		this.evaluate = lookup.findStatic( evaluateClass, "call",
+			MethodType.methodType( Object.class, PageContext.class, Object[].class ) );
+		Class<?> casterClass = loader.loadClass( "lucee.runtime.op.Caster" );
+		this.toBoolean = lookup.findStatic( casterClass, "toBooleanValue",
+			MethodType.methodType( boolean.class, Object.class ) );
+		this.toString = lookup.findStatic( casterClass, "toString",
+			MethodType.methodType( String.class, Object.class ) );
+		Class<?> serializeClass = loader.loadClass( "lucee.runtime.functions.conversion.SerializeJSON" );
+		this.serializeJSON = lookup.findStatic( serializeClass, "call",
+			MethodType.methodType( String.class, PageContext.class, Object.class ) );
+	}
+
+	static LuceeHandles forLoader( ClassLoader loader ) throws ReflectiveOperationException {
+		LuceeHandles h = last;
+		if ( h != null && h.loader == loader ) {
+			return h;
+		}
+		h = byLoader.get( loader );
+		if ( h == null ) {
+			h = new LuceeHandles( loader );
+			byLoader.put( loader, h );
+		}
+		last = h;
+		return h;
+	}
+}
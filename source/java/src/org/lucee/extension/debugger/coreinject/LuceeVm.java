@@ -398,7 +398,8 @@ public class LuceeVm implements ILuceeVm {
                      * 2) IDebugManager.CfStepCallback.call() // the outer lambda here
                      * 3) <...various DebugManager frames...>
                      * 4) DebugManager step handler frame
-                     * 5) topmost lucee frame on an InvokeInterface instruction, getting us into DebugManager step handler
+                     * 5) topmost lucee frame on an InvokeInterface (or InvokeDynamic, with method handle frames between it and (4))
+                     *    instruction, getting us into DebugManager step handler
                      * 6) <...various Lucee frames...>
                      * 
                      * We want to scan until we find (4). Once we've found (4), the frame below it is guaranteed to be the topmost lucee frame
@@ -414,12 +415,18 @@ public class LuceeVm implements ILuceeVm {
                      */
                     for (int i = minDistanceToLuceedebugBaseFrame; i < Integer.MAX_VALUE; i++) {
                         if (IDebugManager.isStepNotificationEntryFunc(threadRef.frame(i).location().method().name())) {
-                            var stepInvokingCfFrame = threadRef.frame(i+1);
+                            // Pages reach the DebugManager through invokedynamic (see DebugHooks);
+                            // skip the method handle frames in between
+                            int cfFrameIndex = i + 1;
+                            while (DebugHooks.isHookLinkageFrame(threadRef.frame(cfFrameIndex).location().declaringType().name())) {
+                                cfFrameIndex++;
+                            }
+                            var stepInvokingCfFrame = threadRef.frame(cfFrameIndex);
                             var location = stepInvokingCfFrame
                                 .location()
                                 .method()
                                 .locationOfCodeIndex(
-                                    // frame is executing an invokeInterface instruction;
+                                    // frame is executing an invokeInterface or invokeDynamic instruction (same size);
                                     // set the next breakpoint exactly after this instruction.
                                     stepInvokingCfFrame
                                         .location()
@@ -2,19 +2,24 @@ package org.lucee.extension.debugger.coreinject;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import lucee.loader.engine.CFMLEngineFactory;
 import lucee.runtime.PageContext;
+import lucee.runtime.engine.ThreadLocalPageContext;
 
 import org.lucee.extension.debugger.Config;
 import org.lucee.extension.debugger.Log;
@@ -51,46 +56,77 @@ public class NativeDebuggerListener {
 	}
 
 	/**
-	 * Breakpoint storage - parallel arrays for fast lookup.
-	 * Writers synchronize on breakpointLock, readers just access the arrays.
-	 * The volatile hasSuspendConditions provides the memory barrier for visibility.
+	 * Line breakpoint storage - immutable per-file index (see BreakpointIndex).
+	 * Writers synchronize on breakpointLock and publish a new index, readers
+	 * just read the volatile reference.
 	 */
 	private static final Object breakpointLock = new Object();
-	private static int[] bpLines = new int[0];
-	private static String[] bpFiles = new String[0];
-	private static String[] bpConditions = new String[0];  // null entries for unconditional
+	private static volatile BreakpointIndex breakpoints = BreakpointIndex.EMPTY;
 
 	/**
-	 * Pre-computed bounds for fast rejection in shouldSuspend().
-	 * Updated whenever breakpoints change.
+	 * Function breakpoint storage - immutable matcher (see FunctionBreakpointMatcher).
+	 * Writers synchronize on funcBpLock and publish a new matcher, readers just
+	 * read the volatile reference.
 	 */
-	private static int bpMinLine = Integer.MAX_VALUE;
-	private static int bpMaxLine = Integer.MIN_VALUE;
-	private static int bpMaxPathLen = 0;
+	private static final Object funcBpLock = new Object();
+	private static volatile FunctionBreakpointMatcher funcBps = FunctionBreakpointMatcher.EMPTY;
+	private static volatile boolean hasFuncBps = false;
 
 	/**
-	 * Function breakpoint storage - parallel arrays for fast lookup.
-	 * Writers synchronize on funcBpLock, readers just access the arrays.
+	 * Map of Java thread ID -> WeakReference<PageContext> for natively suspended threads.
+	 * Used to call debuggerResume() when DAP continue is received.
+	 * Note: We use PageContext (loader interface) not PageContextImpl to avoid class loading cycles.
+	 * Every entry holds a slot in suspendLimiter, given back by whoever removes it (see release()).
 	 */
-	private static final Object funcBpLock = new Object();
-	private static String[] funcBpNames = new String[0];        // lowercase function names
-	private static String[] funcBpComponents = new String[0];   // lowercase component names (null = any)
-	private static String[] funcBpConditions = new String[0];   // CFML conditions (null = unconditional)
-	private static boolean[] funcBpIsWildcard = new boolean[0]; // true if name ends with *
+	private static final ConcurrentHashMap<Long, SuspendedThread> nativelySuspendedThreads = new ConcurrentHashMap<>();
 
 	/**
-	 * Pre-computed bounds for fast rejection in onFunctionEntry().
+	 * A suspended thread's PageContext, the suspend slots it holds and its watchdog timeout.
 	 */
-	private static int funcBpMinLen = Integer.MAX_VALUE;
-	private static int funcBpMaxLen = Integer.MIN_VALUE;
-	private static volatile boolean hasFuncBps = false;
+	private static final class SuspendedThread extends WeakReference<PageContext> {
+		final SuspendLimiter breakpointLimiter; // the breakpoint's own "threads N" limit, or null
+		final String where;                     // breakpoint location, for reporting skipped hits
+		final long suspendedAt = System.nanoTime();
+		volatile SuspendWatchdog.Timeout timeout;
+
+		SuspendedThread(PageContext pc, SuspendLimiter breakpointLimiter, String where) {
+			super(pc);
+			this.breakpointLimiter = breakpointLimiter;
+			this.where = where;
+		}
+
+		/**
+		 * Give back the slots and stop the watchdog. Called once, by whoever removed the entry from the map.
+		 */
+		void release() {
+			SuspendWatchdog.Timeout t = timeout;
+			if (t != null) {
+				t.cancel();
+			}
+			releaseSlots(breakpointLimiter, where);
+		}
+	}
 
 	/**
-	 * Map of Java thread ID -> WeakReference<PageContext> for natively suspended threads.
-	 * Used to call debuggerResume() when DAP continue is received.
-	 * Note: We use PageContext (loader interface) not PageContextImpl to avoid class loading cycles.
+	 * Caps how many threads may be suspended at once (maxSuspendedThreads, 0 = unlimited).
+	 * Breakpoint hits and pause-all take a slot in shouldSuspend() before suspending and are
+	 * skipped when none is free; suspensions the user asked for on a single thread (stepping,
+	 * pausing it) always get one.
 	 */
-	private static final ConcurrentHashMap<Long, WeakReference<PageContext>> nativelySuspendedThreads = new ConcurrentHashMap<>();
+	private static final SuspendLimiter suspendLimiter = new SuspendLimiter(0);
+
+	/**
+	 * Slots a thread took in shouldSuspend(), onFunctionEntry() or onException() and hands
+	 * to its map entry in onSuspend(), which Lucee calls straight after on the same thread.
+	 * Only read and written by the owning thread.
+	 */
+	private static final class Reservation {
+		boolean held;
+		SuspendLimiter breakpointLimiter;
+		String where;
+	}
+
+	private static final ThreadLocal<Reservation> reservation = ThreadLocal.withInitial(Reservation::new);
 
 	/**
 	 * Suspend location info for threads (file and line where suspended).
@@ -168,6 +204,17 @@ public class NativeDebuggerListener {
 	 */
 	private static volatile boolean dapClientConnected = false;
 
+	/**
+	 * Request attributes a request must match for breakpoints to fire on it; null = every request.
+	 */
+	private static volatile RequestFilter requestFilter = null;
+
+	/**
+	 * Applications the debugger works on; null = every application. The hooks read it from the
+	 * suspend gate.
+	 */
+	private static volatile AppFilter appFilter = null;
+
 	/**
 	 * Flag to break on uncaught exceptions.
 	 * Set via DAP setExceptionBreakpoints request.
@@ -181,11 +228,73 @@ public class NativeDebuggerListener {
 	private static volatile boolean consoleOutput = true;
 
 	/**
-	 * Fast-path flag: true when there's anything that could cause a suspend.
-	 * When false, shouldSuspend() returns immediately without any work.
-	 * Updated whenever breakpoints, exceptions, or stepping state changes.
+	 * Buffers onOutput() text and logpoint messages and sends them to the DAP client in batches.
+	 */
+	private static final ConsoleOutputPipeline consoleOutputPipeline = new ConsoleOutputPipeline();
+
+	/**
+	 * Executed lines recorded by coverage mode. Kept after coverage stops, until reset.
+	 */
+	private static final LineCoverage coverageData = new LineCoverage();
+
+	/**
+	 * coverageData while coverage mode is on, null otherwise. shouldSuspend() reads it from the gate.
 	 */
-	private static volatile boolean hasSuspendConditions = false;
+	private static volatile LineCoverage coverage = null;
+
+	/**
+	 * Request tracer while tracing is on, null otherwise. The hooks read it from the gate.
+	 */
+	private static volatile RequestTracer tracer = null;
+
+	/**
+	 * Fast-path gate for shouldSuspend(), rebuilt whenever breakpoints, stepping,
+	 * pause state, the app filter, coverage or tracing changes. Global state (line
+	 * breakpoints exist, pause-all) is kept apart from the short list of threads
+	 * that are stepping or asked to pause, so stepping one request leaves every
+	 * other thread on a single volatile read.
+	 */
+	private static volatile SuspendGate suspendGate = SuspendGate.CLOSED;
+	private static final Object suspendGateLock = new Object();
+
+	/**
+	 * Immutable snapshot read once per line by shouldSuspend().
+	 */
+	private static final class SuspendGate {
+		static final SuspendGate CLOSED = new SuspendGate(false, 0, new long[0], null, null, null);
+
+		final boolean lineBreakpoints; // client connected and at least one line breakpoint
+		final long pauseEpoch;         // open pause-all epoch, 0 if none (see PauseEpoch)
+		final long[] threadIds;        // threads stepping or with a pending pause request
+		final AppFilter apps;          // see appFilter
+		final LineCoverage coverage;   // see coverage
+		final RequestTracer tracer;    // see tracer
+		final boolean suspends;        // a line may suspend: any of the first three set
+		final boolean idle;            // nothing to do for a line: no suspending, coverage or tracing
+
+		SuspendGate(boolean lineBreakpoints, long pauseEpoch, long[] threadIds, AppFilter apps, LineCoverage coverage, RequestTracer tracer) {
+			this.lineBreakpoints = lineBreakpoints;
+			this.pauseEpoch = pauseEpoch;
+			this.threadIds = threadIds;
+			this.apps = apps;
+			this.coverage = coverage;
+			this.tracer = tracer;
+			this.suspends = lineBreakpoints || pauseEpoch != 0 || threadIds.length != 0;
+			this.idle = !suspends && coverage == null && tracer == null;
+		}
+
+		/**
+		 * True if the thread has stepping or pause state to check.
+		 * The list is a handful of threads at most, so a linear scan beats hashing.
+		 */
+		boolean targets(long threadId) {
+			long[] ids = threadIds;
+			for (int i = 0; i < ids.length; i++) {
+				if (ids[i] == threadId) return true;
+			}
+			return false;
+		}
+	}
 
 	/**
 	 * Per-thread stepping state.
@@ -195,9 +304,15 @@ public class NativeDebuggerListener {
 	/**
 	 * Threads that have been requested to pause.
 	 * Checked in shouldSuspend() - when a thread is in this set it will pause at the next CFML line.
+	 * Pause-all doesn't use this, see pauseAll.
 	 */
 	private static final ConcurrentHashMap<Long, Boolean> threadsToPause = new ConcurrentHashMap<>();
 
+	/**
+	 * Broadcast pause for the "All CFML Threads" entry, published through the suspend gate.
+	 */
+	private static final PauseEpoch pauseAll = new PauseEpoch();
+
 	/**
 	 * Threads that suspended due to a pause request.
 	 * Set in shouldSuspend() when consuming a pause request, consumed in onSuspend().
@@ -211,30 +326,38 @@ public class NativeDebuggerListener {
 	private static volatile Consumer<Long> onNativePauseCallback = null;
 
 	/**
-	 * Update hasSuspendConditions flag based on current state.
-	 * Called whenever breakpoints, exception settings, stepping, or pause state changes.
+	 * Takes a snapshot for a snapshot breakpoint, on the request thread.
 	 */
-	private static void updateHasSuspendConditions() {
-		hasSuspendConditions = dapClientConnected &&
-			(bpLines.length > 0 || hasFuncBps || breakOnUncaughtExceptions || !steppingThreads.isEmpty() || !threadsToPause.isEmpty());
+	public interface SnapshotCallback {
+		void capture(PageContext pc, String file, int line);
 	}
 
 	/**
-	 * Rebuild breakpoint bounds after any modification.
-	 * Must be called while holding breakpointLock.
+	 * Callback to capture snapshots. NativeLuceeVm owns the store.
+	 */
+	private static volatile SnapshotCallback onSnapshotCallback = null;
+
+	/**
+	 * Rebuild the shouldSuspend() gate from current state.
+	 * Called whenever breakpoints, exception settings, stepping, pause state, the app
+	 * filter, coverage or tracing changes.
+	 * Serialized so the last rebuild always sees every change made before it.
 	 */
-	private static void rebuildBreakpointBounds() {
-		int min = Integer.MAX_VALUE;
-		int max = Integer.MIN_VALUE;
-		int maxLen = 0;
-		for (int i = 0; i < bpLines.length; i++) {
-			if (bpLines[i] < min) min = bpLines[i];
-			if (bpLines[i] > max) max = bpLines[i];
-			if (bpFiles[i].length() > maxLen) maxLen = bpFiles[i].length();
+	private static void updateSuspendGate() {
+		synchronized (suspendGateLock) {
+			if (!dapClientConnected) {
+				suspendGate = SuspendGate.CLOSED;
+				return;
+			}
+			Set<Long> ids = new HashSet<>(steppingThreads.keySet());
+			ids.addAll(threadsToPause.keySet());
+			long[] threadIds = new long[ids.size()];
+			int i = 0;
+			for (Long id : ids) {
+				threadIds[i++] = id;
+			}
+			suspendGate = new SuspendGate(!breakpoints.isEmpty(), pauseAll.current(), threadIds, appFilter, coverage, tracer);
 		}
-		bpMinLine = min;
-		bpMaxLine = max;
-		bpMaxPathLen = maxLen;
 	}
 
 	/**
@@ -243,6 +366,8 @@ public class NativeDebuggerListener {
 	private static class StepState {
 		final StepMode mode;
 		final int startDepth;
+		// Only touched by the stepping thread itself, from shouldSuspend()
+		final StackDepthTracker depthTracker = new StackDepthTracker();
 
 		StepState(StepMode mode, int startDepth) {
 			this.mode = mode;
@@ -250,12 +375,6 @@ public class NativeDebuggerListener {
 		}
 	}
 
-	/**
-	 * Cached reflection method for DebuggerFrame.getLine().
-	 * Initialized lazily on first use in getStackDepth().
-	 */
-	private static volatile Method debuggerFrameGetLineMethod = null;
-
 	public static void setNativeMode(boolean enabled) {
 		nativeMode = enabled;
 		Log.info("Native mode: " + enabled);
@@ -297,6 +416,29 @@ public class NativeDebuggerListener {
 		onNativePauseCallback = callback;
 	}
 
+	/**
+	 * Told when a breakpoint reaches its hit cap and disables itself.
+	 */
+	public interface BreakpointCapCallback {
+		/** @param canonFile canonicalized path, as used by addBreakpoint */
+		void lineBreakpointCapped(String canonFile, int line);
+		/** @param index position in the array given to setFunctionBreakpoints */
+		void functionBreakpointCapped(int index);
+	}
+
+	private static volatile BreakpointCapCallback onBreakpointCapCallback = null;
+
+	public static void setOnBreakpointCapCallback(BreakpointCapCallback callback) {
+		onBreakpointCapCallback = callback;
+	}
+
+	/**
+	 * Set the callback that captures snapshot breakpoint hits.
+	 */
+	public static void setOnSnapshotCallback(SnapshotCallback callback) {
+		onSnapshotCallback = callback;
+	}
+
 	/**
 	 * Add a breakpoint at the given file and line.
 	 */
@@ -309,39 +451,66 @@ public class NativeDebuggerListener {
 	 * @param condition CFML expression to evaluate, or null for unconditional breakpoint
 	 */
 	public static void addBreakpoint(String file, int line, String condition) {
+		addBreakpoint(file, line, condition, null, null);
+	}
+
+	/**
+	 * Add a breakpoint at the given file and line.
+	 * @param condition CFML expression to evaluate, or null for unconditional breakpoint
+	 * @param hitCondition DAP hit condition (e.g. "5", ">=10", "%3") plus optional limit clauses
+	 *        (e.g. "rate 5/s; max 100", see BreakpointLimits), or null to act on every hit
+	 * @param logMessage logpoint message with {expression} interpolation, or null for a suspending breakpoint
+	 */
+	public static void addBreakpoint(String file, int line, String condition, String hitCondition, String logMessage) {
+		addBreakpoint(file, line, condition, hitCondition, logMessage, false);
+	}
+
+	/**
+	 * Add a breakpoint at the given file and line. If the line already has one set the
+	 * same way, that one is kept, with its hit count, rate limit and hit cap.
+	 * @param snapshot capture a snapshot of the frames and continue instead of suspending
+	 * @return true if an identical breakpoint was already set and has been kept
+	 */
+	public static boolean addBreakpoint(String file, int line, String condition, String hitCondition, String logMessage, boolean snapshot) {
 		String canonFile = Config.canonicalizeFileName(file);
-		String newCondition = (condition != null && !condition.isEmpty()) ? condition : null;
+		// Prepared once here, not on every hit
+		BreakpointCondition newCondition = BreakpointCondition.of(condition);
+		HitCondition newHitCondition = HitCondition.of(BreakpointLimits.countCondition(hitCondition));
+		BreakpointLimits newLimits = BreakpointLimits.of(hitCondition);
+		LogMessage newLogMessage = LogMessage.of(logMessage);
+		BreakpointIndex.LineBreakpoint bp =
+			new BreakpointIndex.LineBreakpoint(line, newCondition, newHitCondition, newLimits, newLogMessage, snapshot);
+		boolean existed;
 		synchronized (breakpointLock) {
-			// Check if already exists - update condition if so
-			for (int i = 0; i < bpLines.length; i++) {
-				if (bpLines[i] == line && bpFiles[i].equals(canonFile)) {
-					// Copy-on-write: create new array for thread safety
-					String[] newConditions = bpConditions.clone();
-					newConditions[i] = newCondition;
-					bpConditions = newConditions;
-					Log.info("Breakpoint updated: " + Config.shortenPath(canonFile) + ":" + line);
-					return;
+			BreakpointIndex current = breakpoints;
+			existed = current.contains(canonFile, line);
+			if (existed) {
+				BreakpointIndex.LineBreakpoint old = current.get(canonFile, line);
+				if (old == null ? !bp.hasDetails() : old.sameSpec(bp)) {
+					return true;
 				}
 			}
-			// Add new breakpoint
-			int len = bpLines.length;
-			int[] newLines = new int[len + 1];
-			String[] newFiles = new String[len + 1];
-			String[] newConditions = new String[len + 1];
-			System.arraycopy(bpLines, 0, newLines, 0, len);
-			System.arraycopy(bpFiles, 0, newFiles, 0, len);
-			System.arraycopy(bpConditions, 0, newConditions, 0, len);
-			newLines[len] = line;
-			newFiles[len] = canonFile;
-			newConditions[len] = newCondition;
-			bpLines = newLines;
-			bpFiles = newFiles;
-			bpConditions = newConditions;
-			rebuildBreakpointBounds();
-		}
-		updateHasSuspendConditions();
-		Log.info("Breakpoint set: " + Config.shortenPath(canonFile) + ":" + line +
-			(newCondition != null ? " condition=" + newCondition : ""));
+			breakpoints = current.with(canonFile, bp);
+		}
+		if (existed) {
+			Log.info("Breakpoint updated: " + Config.shortenPath(canonFile) + ":" + line);
+			return false;
+		}
+		updateSuspendGate();
+		Log.info((snapshot ? "Snapshot breakpoint set: " : newLogMessage != null ? "Logpoint set: " : "Breakpoint set: ") + Config.shortenPath(canonFile) + ":" + line +
+			(newCondition != null ? " condition=" + newCondition : "") +
+			(newHitCondition != null ? " hitCondition=" + newHitCondition : "") +
+			(newLimits != null ? " limits=" + newLimits : "") +
+			(newLogMessage != null ? " logMessage=" + newLogMessage : ""));
+		return false;
+	}
+
+	/**
+	 * True if the breakpoint at the given file and line has reached its hit cap.
+	 */
+	public static boolean isBreakpointCapped(String file, int line) {
+		BreakpointIndex.LineBreakpoint bp = breakpoints.get(Config.canonicalizeFileName(file), line);
+		return bp != null && bp.limits != null && bp.limits.isExhausted();
 	}
 
 	/**
@@ -350,66 +519,43 @@ public class NativeDebuggerListener {
 	public static void removeBreakpoint(String file, int line) {
 		String canonFile = Config.canonicalizeFileName(file);
 		synchronized (breakpointLock) {
-			int idx = -1;
-			for (int i = 0; i < bpLines.length; i++) {
-				if (bpLines[i] == line && bpFiles[i].equals(canonFile)) {
-					idx = i;
-					break;
-				}
-			}
-			if (idx < 0) return;  // not found
-
-			int len = bpLines.length;
-			int[] newLines = new int[len - 1];
-			String[] newFiles = new String[len - 1];
-			String[] newConditions = new String[len - 1];
-			System.arraycopy(bpLines, 0, newLines, 0, idx);
-			System.arraycopy(bpLines, idx + 1, newLines, idx, len - idx - 1);
-			System.arraycopy(bpFiles, 0, newFiles, 0, idx);
-			System.arraycopy(bpFiles, idx + 1, newFiles, idx, len - idx - 1);
-			System.arraycopy(bpConditions, 0, newConditions, 0, idx);
-			System.arraycopy(bpConditions, idx + 1, newConditions, idx, len - idx - 1);
-			bpLines = newLines;
-			bpFiles = newFiles;
-			bpConditions = newConditions;
-			rebuildBreakpointBounds();
-		}
-		updateHasSuspendConditions();
+			BreakpointIndex current = breakpoints;
+			BreakpointIndex updated = current.without(canonFile, line);
+			if (updated == current) return;  // not found
+			breakpoints = updated;
+		}
+		updateSuspendGate();
 		Log.info("Breakpoint removed: " + Config.shortenPath(canonFile) + ":" + line);
 	}
 
+	/**
+	 * Remove a file's breakpoints on any line not in lines.
+	 */
+	public static void retainBreakpointsForFile(String file, Set<Integer> lines) {
+		String canonFile = Config.canonicalizeFileName(file);
+		synchronized (breakpointLock) {
+			BreakpointIndex current = breakpoints;
+			BreakpointIndex updated = current.retainLines(canonFile, lines);
+			if (updated == current) return;  // nothing to remove
+			breakpoints = updated;
+		}
+		updateSuspendGate();
+		Log.debug(() -> "Breakpoints removed: " + Config.shortenPath(file));
+	}
+
 	/**
 	 * Clear all breakpoints for a given file.
 	 */
 	public static void clearBreakpointsForFile(String file) {
 		String canonFile = Config.canonicalizeFileName(file);
 		synchronized (breakpointLock) {
-			// Count how many to keep
-			int keepCount = 0;
-			for (int i = 0; i < bpFiles.length; i++) {
-				if (!bpFiles[i].equals(canonFile)) keepCount++;
-			}
-			if (keepCount == bpFiles.length) return;  // nothing to remove
-
-			int[] newLines = new int[keepCount];
-			String[] newFiles = new String[keepCount];
-			String[] newConditions = new String[keepCount];
-			int j = 0;
-			for (int i = 0; i < bpFiles.length; i++) {
-				if (!bpFiles[i].equals(canonFile)) {
-					newLines[j] = bpLines[i];
-					newFiles[j] = bpFiles[i];
-					newConditions[j] = bpConditions[i];
-					j++;
-				}
-			}
-			bpLines = newLines;
-			bpFiles = newFiles;
-			bpConditions = newConditions;
-			rebuildBreakpointBounds();
+			BreakpointIndex current = breakpoints;
+			BreakpointIndex updated = current.withoutFile(canonFile);
+			if (updated == current) return;  // nothing to remove
+			breakpoints = updated;
 		}
-		updateHasSuspendConditions();
-		Log.debug("Breakpoints cleared: " + Config.shortenPath(file));
+		updateSuspendGate();
+		Log.debug(() -> "Breakpoints cleared: " + Config.shortenPath(file));
 	}
 
 	/**
@@ -417,14 +563,9 @@ public class NativeDebuggerListener {
 	 */
 	public static void clearAllBreakpoints() {
 		synchronized (breakpointLock) {
-			bpLines = new int[0];
-			bpFiles = new String[0];
-			bpConditions = new String[0];
-			bpMinLine = Integer.MAX_VALUE;
-			bpMaxLine = Integer.MIN_VALUE;
-			bpMaxPathLen = 0;
-		}
-		updateHasSuspendConditions();
+			breakpoints = BreakpointIndex.EMPTY;
+		}
+		updateSuspendGate();
 		Log.debug("Breakpoints cleared: all");
 	}
 
@@ -432,7 +573,7 @@ public class NativeDebuggerListener {
 	 * Get breakpoint count (for debugging).
 	 */
 	public static int getBreakpointCount() {
-		return bpLines.length;
+		return breakpoints.size();
 	}
 
 	/**
@@ -441,12 +582,11 @@ public class NativeDebuggerListener {
 	 * @return Array of [serverPath, "line:N"] pairs
 	 */
 	public static String[][] getBreakpointDetails() {
-		int[] lines = bpLines;
-		String[] files = bpFiles;
-		String[][] result = new String[lines.length][2];
-		for (int i = 0; i < lines.length; i++) {
-			result[i][0] = files[i];
-			result[i][1] = "line:" + lines[i];
+		List<Object[]> entries = breakpoints.entries();
+		String[][] result = new String[entries.size()][2];
+		for (int i = 0; i < result.length; i++) {
+			result[i][0] = (String) entries.get(i)[0];
+			result[i][1] = "line:" + entries.get(i)[1];
 		}
 		return result;
 	}
@@ -529,23 +669,91 @@ public class NativeDebuggerListener {
 	 * @return true if the thread was found and resumed, false otherwise
 	 */
 	public static boolean resumeNativeThread(long javaThreadId) {
-		Log.debug("resumeNativeThread: thread=" + javaThreadId + ", map=" + nativelySuspendedThreads.keySet());
-		WeakReference<PageContext> pcRef = nativelySuspendedThreads.remove(javaThreadId);
+		if (Log.isDebugEnabled()) {
+			Log.debug("resumeNativeThread: thread=" + javaThreadId + ", map=" + nativelySuspendedThreads.keySet());
+		}
+		SuspendedThread pcRef = nativelySuspendedThreads.remove(javaThreadId);
 		if (pcRef == null) {
 			Log.warn("resumeNativeThread: thread " + javaThreadId + " not in map!");
 			return false;
 		}
+		pcRef.release();
 		PageContext pc = pcRef.get();
 		if (pc == null) {
 			Log.warn("resumeNativeThread: PageContext for thread " + javaThreadId + " was GC'd!");
 			return false;
 		}
-		Log.debug("resumeNativeThread: calling debuggerResume() for thread " + javaThreadId);
+		if (Log.isDebugEnabled()) {
+			Log.debug("resumeNativeThread: calling debuggerResume() for thread {}", javaThreadId);
+		}
+		boolean resumed = debuggerResume(pc);
+		if (resumed && Log.isDebugEnabled()) {
+			Log.debug("resumeNativeThread: debuggerResume() completed for thread {}", javaThreadId);
+		}
+		return resumed;
+	}
+
+	/**
+	 * Threads released per batch by resumeAllNativeThreads().
+	 */
+	private static final int RESUME_BATCH_SIZE = 64;
+
+	/**
+	 * Resume all natively suspended threads, and end any pause-all so they don't stop again.
+	 * The suspended map is drained in one pass, then the threads are released in batches,
+	 * yielding between batches so woken requests get going before the next batch wakes.
+	 * @return the number of threads resumed
+	 */
+	public static int resumeAllNativeThreads() {
+		if (pauseAll.close()) {
+			updateSuspendGate();
+		}
+		List<PageContext> suspended = new ArrayList<>(nativelySuspendedThreads.size());
+		for (Map.Entry<Long, SuspendedThread> e : nativelySuspendedThreads.entrySet()) {
+			// Only the caller that removes an entry releases it: resumeNativeThread(), onResume() or
+			// the watchdog may take it first, and the thread may have suspended again since
+			SuspendedThread entry = e.getValue();
+			if (!nativelySuspendedThreads.remove(e.getKey(), entry)) {
+				continue;
+			}
+			entry.release();
+			PageContext pc = entry.get();
+			if (pc != null) {
+				suspended.add(pc);
+			}
+		}
+		int resumed = 0;
+		for (int i = 0; i < suspended.size(); i++) {
+			if (debuggerResume(suspended.get(i))) {
+				resumed++;
+			}
+			if ((i + 1) % RESUME_BATCH_SIZE == 0) {
+				Thread.yield();
+			}
+		}
+		if (resumed > 0 && Log.isDebugEnabled()) {
+			Log.debug("resumeAllNativeThreads: resumed {} threads", resumed);
+		}
+		return resumed;
+	}
+
+	/**
+	 * debuggerResume() by PageContext class - one reflective lookup rather than one per resume.
+	 */
+	private static volatile Method debuggerResumeMethod;
+
+	/**
+	 * Call debuggerResume() on a suspended thread's PageContext.
+	 * Uses reflection since debuggerResume() is a Lucee7+ method not in the loader interface.
+	 */
+	private static boolean debuggerResume(PageContext pc) {
 		try {
-			// Call debuggerResume() via reflection (Lucee7+ method)
-			Method resumeMethod = pc.getClass().getMethod("debuggerResume");
-			resumeMethod.invoke(pc);
-			Log.debug("resumeNativeThread: debuggerResume() completed for thread " + javaThreadId);
+			Method m = debuggerResumeMethod;
+			if (m == null || !m.getDeclaringClass().isInstance(pc)) {
+				m = pc.getClass().getMethod("debuggerResume");
+				debuggerResumeMethod = m;
+			}
+			m.invoke(pc);
 			return true;
 		} catch (NoSuchMethodException e) {
 			Log.error("debuggerResume() not available (pre-Lucee7?)");
@@ -556,15 +764,6 @@ public class NativeDebuggerListener {
 		}
 	}
 
-	/**
-	 * Resume all natively suspended threads.
-	 */
-	public static void resumeAllNativeThreads() {
-		for (Long threadId : nativelySuspendedThreads.keySet()) {
-			resumeNativeThread(threadId);
-		}
-	}
-
 	// ========== Pause methods ==========
 
 	/**
@@ -582,13 +781,15 @@ public class NativeDebuggerListener {
 	 */
 	public static void requestPause(long threadId) {
 		if (threadId == 0 || threadId == ALL_THREADS_VIRTUAL_ID) {
-			// Pause all - we set a flag that shouldSuspend() will check for any thread
-			threadsToPause.put(0L, Boolean.TRUE);
+			// Pause all - open a new epoch, every running thread stops at its next line
+			pauseAll.open();
 		} else {
 			threadsToPause.put(threadId, Boolean.TRUE);
 		}
-		updateHasSuspendConditions();
-		Log.debug("Pause requested for thread: " + (threadId == 0 || threadId == ALL_THREADS_VIRTUAL_ID ? "all" : threadId));
+		updateSuspendGate();
+		if (Log.isDebugEnabled()) {
+			Log.debug("Pause requested for thread: {}", threadId == 0 || threadId == ALL_THREADS_VIRTUAL_ID ? "all" : threadId);
+		}
 	}
 
 	/**
@@ -596,13 +797,8 @@ public class NativeDebuggerListener {
 	 * Clears the request after checking (pause is consumed).
 	 */
 	private static boolean consumePauseRequest(long threadId) {
-		// Check for specific thread first, then "pause all"
 		if (threadsToPause.remove(threadId) != null) {
-			updateHasSuspendConditions();
-			return true;
-		}
-		if (threadsToPause.remove(0L) != null) {
-			updateHasSuspendConditions();
+			updateSuspendGate();
 			return true;
 		}
 		return false;
@@ -618,8 +814,10 @@ public class NativeDebuggerListener {
 	 */
 	public static void startStepping(long threadId, StepMode mode, int currentDepth) {
 		steppingThreads.put(threadId, new StepState(mode, currentDepth));
-		updateHasSuspendConditions();
-		Log.debug("Start stepping: thread=" + threadId + " mode=" + mode + " depth=" + currentDepth);
+		updateSuspendGate();
+		if (Log.isDebugEnabled()) {
+			Log.debug("Start stepping: thread={} mode={} depth={}", threadId, mode, currentDepth);
+		}
 	}
 
 	/**
@@ -627,42 +825,36 @@ public class NativeDebuggerListener {
 	 */
 	public static void stopStepping(long threadId) {
 		steppingThreads.remove(threadId);
-		updateHasSuspendConditions();
+		updateSuspendGate();
 	}
 
 	/**
 	 * Get the current stack depth for a PageContext.
-	 * Uses reflection to get debugger frames.
+	 * Full walk over the debugger frames; see StackDepthTracker for the per-line variant.
 	 * Only counts frames with line > 0 to match NativeDebugFrame.getNativeFrames() filtering.
 	 */
 	public static int getStackDepth(PageContext pc) {
 		try {
-			Method getFrames = pc.getClass().getMethod("getDebuggerFrames");
-			Object[] frames = (Object[]) getFrames.invoke(pc);
-			if (frames == null || frames.length == 0) return 0;
-
-			// Cache the getLine method on first use
-			Method getLine = debuggerFrameGetLineMethod;
-			if (getLine == null) {
-				getLine = frames[0].getClass().getMethod("getLine");
-				debuggerFrameGetLineMethod = getLine;
-			}
-
-			// Count only frames with line > 0 (matching getNativeFrames filtering)
-			// Frames start with line=0 before first ExecutionLog.start() call
-			int count = 0;
-			for (Object frame : frames) {
-				int line = (int) getLine.invoke(frame);
-				if (line > 0) count++;
-			}
-			return count;
-		} catch (Exception e) {
+			return StackDepthTracker.fullDepth(pc);
+		} catch (Throwable e) {
 			// Log error - silent failure could cause incorrect step behavior
 			Log.error("Error getting stack depth: " + e.getMessage());
 			return 0;
 		}
 	}
 
+	/**
+	 * Stack depth for a stepping thread, reusing what its tracker counted on the previous line.
+	 */
+	private static int getStackDepth(PageContext pc, StepState stepState) {
+		try {
+			return stepState.depthTracker.depth(pc);
+		} catch (Throwable e) {
+			Log.error("Error getting stack depth: " + e.getMessage());
+			return 0;
+		}
+	}
+
 	// ========== DebuggerListener interface methods ==========
 
 	/**
@@ -671,11 +863,16 @@ public class NativeDebuggerListener {
 	 */
 	public static void onSuspend(PageContext pc, String file, int line, String label) {
 		long threadId = Thread.currentThread().getId();
-		Log.debug("onSuspend: thread=" + threadId + " file=" + Config.shortenPath(file) + " line=" + line);
+		if (Log.isDebugEnabled()) {
+			Log.debug("onSuspend: thread=" + threadId + " file=" + Config.shortenPath(file) + " line=" + line);
+		}
 
 		// Check if we were stepping BEFORE clearing state
 		StepState stepState = steppingThreads.remove(threadId);
 		boolean wasStepping = (stepState != null);
+		if (wasStepping) {
+			updateSuspendGate();
+		}
 
 		// Check if we paused due to user pause request
 		boolean wasPaused = pausedThreads.remove(threadId) != null;
@@ -686,15 +883,39 @@ public class NativeDebuggerListener {
 		// Check if there's a pending exception for this thread (from onException)
 		Throwable pendingException = pendingExceptions.remove(threadId);
 
-		// Track the suspended thread so we can resume it later
+		// Track the suspended thread so we can resume it later, with the slots reserved for it.
+		// Suspensions nothing reserved for (stepping, pausing one thread, breakpoint()) still count.
 		// We store PageContext (not PageContextImpl) to avoid class loading cycles
-		nativelySuspendedThreads.put(threadId, new WeakReference<>(pc));
-		Log.debug("onSuspend: added thread " + threadId + " to map, map=" + nativelySuspendedThreads.keySet());
+		Reservation r = reservation.get();
+		SuspendedThread entry;
+		if (r.held) {
+			entry = new SuspendedThread(pc, r.breakpointLimiter, r.where);
+			r.held = false;
+			r.breakpointLimiter = null;
+			r.where = null;
+		} else {
+			suspendLimiter.acquire();
+			entry = new SuspendedThread(pc, null, null);
+		}
+		SuspendedThread previous = nativelySuspendedThreads.put(threadId, entry);
+		if (previous != null) {
+			previous.release();
+		}
+		long budget = suspendBudgetNanos;
+		if (budget > 0) {
+			entry.timeout = watchdog.schedule(threadId, entry, budget);
+		}
+		if (Log.isDebugEnabled()) {
+			Log.debug("onSuspend: added thread " + threadId + " to map, map=" + nativelySuspendedThreads.keySet());
+		}
 
 		// Store suspend location for stack trace (needed when no native DebuggerFrames exist)
 		// Include the exception if we're suspending due to one
 		suspendLocations.put(threadId, new SuspendLocation(file, line, label, pendingException));
 
+		// Output written before the suspend point should reach the client before the stopped event
+		consoleOutputPipeline.flush();
+
 		// Fire appropriate callback - exception takes precedence, then breakpoint, then pause, then step
 		if (pendingException != null) {
 			// Stopped due to uncaught exception
@@ -734,10 +955,15 @@ public class NativeDebuggerListener {
 	 */
 	public static void onResume(PageContext pc) {
 		long threadId = Thread.currentThread().getId();
-		Log.debug("Resume: thread=" + threadId);
+		if (Log.isDebugEnabled()) {
+			Log.debug("Resume: thread={}", threadId);
+		}
 
-		// Remove from suspended threads map and location
-		nativelySuspendedThreads.remove(threadId);
+		// Remove from suspended threads map and location (already gone if resumed through the debugger)
+		SuspendedThread entry = nativelySuspendedThreads.remove(threadId);
+		if (entry != null) {
+			entry.release();
+		}
 		suspendLocations.remove(threadId);
 	}
 
@@ -758,7 +984,7 @@ public class NativeDebuggerListener {
 		if (!connected) {
 			onClientDisconnect();
 		}
-		updateHasSuspendConditions();
+		updateSuspendGate();
 		Log.info("DAP client connected: " + connected);
 	}
 
@@ -783,6 +1009,13 @@ public class NativeDebuggerListener {
 		// Reset exception settings
 		breakOnUncaughtExceptions = false;
 		consoleOutput = false;
+		consoleOutputPipeline.clear();
+
+		// Lines stop reaching shouldSuspend() without a client; keep what was recorded
+		coverage = null;
+		stopTracing();
+		requestFilter = null;
+		appFilter = null;
 
 		// Note: We intentionally keep breakpoints - they'll be inactive
 		// since dapClientConnected=false, and will be replaced on next connect
@@ -796,7 +1029,7 @@ public class NativeDebuggerListener {
 	 */
 	public static void setBreakOnUncaughtExceptions(boolean enabled) {
 		breakOnUncaughtExceptions = enabled;
-		updateHasSuspendConditions();
+		updateSuspendGate();
 		Log.info("Exception breakpoints: " + (enabled ? "uncaught" : "none"));
 	}
 
@@ -818,7 +1051,8 @@ public class NativeDebuggerListener {
 
 	/**
 	 * Called by Lucee's DebuggerPrintStream when output is written to System.out/err.
-	 * Forwards to DAP client if consoleOutput is enabled.
+	 * Forwards to DAP client if consoleOutput is enabled. The text is queued and sent
+	 * by a background flusher, so the writing thread never waits on the client.
 	 *
 	 * @param text The text that was written
 	 * @param isStdErr true if stderr, false if stdout
@@ -827,7 +1061,13 @@ public class NativeDebuggerListener {
 		if (!consoleOutput || !dapClientConnected) {
 			return;
 		}
-		Log.systemOutput(text, isStdErr);
+		// Output from another application's request; other threads (server logs) still go through
+		AppFilter apps = suspendGate.apps;
+		PageContext pc;
+		if (apps != null && (pc = ThreadLocalPageContext.get()) != null && !apps.matches(pc)) {
+			return;
+		}
+		consoleOutputPipeline.offer(text, isStdErr);
 	}
 
 	/**
@@ -840,7 +1080,15 @@ public class NativeDebuggerListener {
 	 * @return true to suspend execution
 	 */
 	public static boolean onException(PageContext pc, Throwable exception, boolean caught) {
-		Log.debug("onException called: caught=" + caught + ", exception=" + exception.getClass().getName() + ", breakOnUncaught=" + breakOnUncaughtExceptions + ", dapConnected=" + dapClientConnected);
+		AppFilter apps = suspendGate.apps;
+		if (apps != null && !apps.matches(pc)) {
+			return false;
+		}
+
+		// Called for every exception Lucee handles - build nothing unless debug is on
+		if (Log.isDebugEnabled()) {
+			Log.debug("onException called: caught=" + caught + ", exception=" + exception.getClass().getName() + ", breakOnUncaught=" + breakOnUncaughtExceptions + ", dapConnected=" + dapClientConnected);
+		}
 
 		// Log exception to debug console if enabled (both caught and uncaught)
 		Log.exception(exception);
@@ -850,12 +1098,16 @@ public class NativeDebuggerListener {
 			return false;
 		}
 		boolean shouldSuspend = shouldBreakOnUncaughtExceptions();
+		if (shouldSuspend) {
+			RequestFilter filter = requestFilter;
+			shouldSuspend = (filter == null || filter.matches(pc)) && reserveSuspend(null, null, 0, null);
+		}
 		if (shouldSuspend) {
 			// Store exception for this thread - will be consumed in onSuspend
 			long threadId = Thread.currentThread().getId();
 			pendingExceptions.put(threadId, exception);
 		}
-		Log.debug("onException returning: " + shouldSuspend);
+		Log.debug("onException returning: {}", shouldSuspend);
 		return shouldSuspend;
 	}
 
@@ -865,46 +1117,78 @@ public class NativeDebuggerListener {
 	 * Must be fast - this is on the hot path.
 	 */
 	public static boolean shouldSuspend(PageContext pc, String file, int line) {
-		// Fast path - nothing could possibly cause a suspend
-		if (!hasSuspendConditions) {
+		// Fast path - one volatile read. With no line breakpoints, no thread
+		// stepping or pausing, no coverage and no tracing, this returns without
+		// touching any map or the app filter.
+		SuspendGate gate = suspendGate;
+		if (gate.idle) {
+			return false;
+		}
+		// Another application on this node - nothing below applies to it
+		AppFilter apps = gate.apps;
+		if (apps != null && !apps.matches(pc)) {
+			return false;
+		}
+		LineCoverage cov = gate.coverage;
+		if (cov != null) {
+			cov.hit(file, line);
+		}
+		RequestTracer tr = gate.tracer;
+		if (tr != null) {
+			tr.onLine(pc, file, line);
+		}
+		if (!gate.suspends) {
 			return false;
 		}
 
-		// Check breakpoints with fast bounds rejection
-		// Grab local refs - volatile hasSuspendConditions provides memory barrier
-		int[] lines = bpLines;
-		if (lines.length > 0) {
-			// Bounds check - reject 99% of lines instantly
-			if (line >= bpMinLine && line <= bpMaxLine) {
-				// Line is in range - check for matching line numbers first
-				// Only canonicalize file path if we find a line match (rare)
-				String[] files = bpFiles;
-				String[] conditions = bpConditions;
-				String canonFile = null;  // lazy init
-				for (int i = 0; i < lines.length; i++) {
-					if (lines[i] == line) {
-						// Line matches - now check file (canonicalize once)
-						if (canonFile == null) {
-							// Length check before expensive canonicalization
-							if (file.length() > bpMaxPathLen) {
-								break;  // file too long, can't match any breakpoint
-							}
-							canonFile = Config.canonicalizeFileName(file);
+		// Check breakpoints - line bounds reject most lines, then one hash probe
+		// on the raw path (canonicalized at most once per path per index)
+		BreakpointIndex index = breakpoints;
+		if (gate.lineBreakpoints && line >= index.minLine && line <= index.maxLine) {
+			BreakpointIndex.FileBreakpoints fileBps = index.forFile(file);
+			RequestFilter filter;
+			if (fileBps != null && fileBps.hasLine(line)
+					&& ((filter = requestFilter) == null || filter.matches(pc))) {
+				// Hit! Plain breakpoints have no sparse-table entry
+				BreakpointIndex.LineBreakpoint bp = fileBps.detailsFor(line);
+				if (bp == null) {
+					if (reserveSuspend(null, file, line, null)) {
+						return true;
+					}
+				}
+				else {
+					// Limits first: a rate-limited or unsampled hit must not cost a condition evaluation
+					BreakpointLimits limits = bp.limits;
+					if ((limits == null || limits.admit())
+							&& (bp.condition == null || bp.condition.evaluate(pc)) && bp.recordHit()
+							&& (limits == null || fireLimited(limits, file, line, null))) {
+						if (bp.snapshot) {
+							takeSnapshot(pc, file, line);
 						}
-						if (files[i].equals(canonFile)) {
-							// Hit! Check condition if present
-							String condition = conditions[i];
-							if (condition != null) {
-								return evaluateCondition(pc, condition);
-							}
+						if (bp.logMessage != null) {
+							consoleOutputPipeline.offerLogpoint(bp.logMessage.format(pc));
+						}
+						else if (!bp.snapshot && reserveSuspend(limits != null ? limits.threads : null, file, line, null)) {
 							return true;
 						}
 					}
 				}
+				// Logpoint, snapshot, limited, at the suspend limit or condition not met - still honour a pending pause/step below
 			}
 		}
 
+		// Pause-all: every thread stops once per epoch, a thread-local compare
 		long threadId = Thread.currentThread().getId();
+		long epoch = gate.pauseEpoch;
+		if (epoch != 0 && pauseAll.claim(epoch) && reserveSuspend(null, file, line, null)) {
+			pausedThreads.put(threadId, Boolean.TRUE);
+			return true;
+		}
+
+		// Stepping/pause state only exists for the threads listed in the gate
+		if (!gate.targets(threadId)) {
+			return false;
+		}
 
 		// Check for pause request (user clicked pause button)
 		if (consumePauseRequest(threadId)) {
@@ -918,20 +1202,18 @@ public class NativeDebuggerListener {
 			return false;
 		}
 
-		int currentDepth = getStackDepth(pc);
-
 		switch (stepState.mode) {
 			case STEP_INTO:
-				// Always stop on next line
+				// Always stop on next line - no depth needed
 				return true;
 
 			case STEP_OVER:
 				// Stop when at same or shallower depth
-				return currentDepth <= stepState.startDepth;
+				return getStackDepth(pc, stepState) <= stepState.startDepth;
 
 			case STEP_OUT:
 				// Stop when shallower than start depth
-				return currentDepth < stepState.startDepth;
+				return getStackDepth(pc, stepState) < stepState.startDepth;
 
 			default:
 				return false;
@@ -939,42 +1221,283 @@ public class NativeDebuggerListener {
 	}
 
 	/**
-	 * Evaluate a CFML condition expression and return its boolean result.
-	 * Returns false if evaluation fails (exception, timeout, etc.).
-	 * Uses reflection to call Lucee's Evaluate function to avoid classloader issues.
+	 * Count a hit against a breakpoint's cap, disabling it when the cap is reached.
+	 * @param func the function breakpoint, or null for a line breakpoint at file:line
+	 * @return true if the hit takes effect
 	 */
-	private static boolean evaluateCondition(PageContext pc, String condition) {
+	private static boolean fireLimited(BreakpointLimits limits, String file, int line, FunctionBreakpointMatcher.Entry func) {
+		int result = limits.fire();
+		if (result == BreakpointLimits.LAST) {
+			String where = func != null ? "function " + func.spec : Config.shortenPath(file) + ":" + line;
+			Log.info("Breakpoint disabled after " + limits.maxHits + " hits: " + where);
+			BreakpointCapCallback callback = onBreakpointCapCallback;
+			if (callback != null) {
+				try {
+					if (func != null) {
+						callback.functionBreakpointCapped(func.index);
+					} else {
+						callback.lineBreakpointCapped(Config.canonicalizeFileName(file), line);
+					}
+				} catch (Throwable t) {
+					Log.error("Breakpoint cap callback failed", t);
+				}
+			}
+		}
+		return result != BreakpointLimits.REJECTED;
+	}
+
+	/**
+	 * Capture a snapshot for a snapshot breakpoint. The request continues either way.
+	 */
+	private static void takeSnapshot(PageContext pc, String file, int line) {
+		SnapshotCallback callback = onSnapshotCallback;
+		if (callback == null) {
+			return;
+		}
 		try {
-			// Use reflection to call Evaluate.call() through Lucee's classloader
-			ClassLoader luceeLoader = pc.getClass().getClassLoader();
-			Class<?> evaluateClass = luceeLoader.loadClass("lucee.runtime.functions.dynamicEvaluation.Evaluate");
-			Method callMethod = evaluateClass.getMethod("call", PageContext.class, Object[].class);
-			Object result = callMethod.invoke(null, pc, new Object[]{ condition });
-
-			// Cast result to boolean using Lucee's Caster
-			Class<?> casterClass = luceeLoader.loadClass("lucee.runtime.op.Caster");
-			Method toBooleanMethod = casterClass.getMethod("toBoolean", Object.class);
-			return (Boolean) toBooleanMethod.invoke(null, result);
-		} catch (Exception e) {
-			// Condition evaluation failed - don't suspend
-			Log.error("Condition evaluation failed: " + e.getMessage());
+			callback.capture(pc, file, line);
+		} catch (Throwable t) {
+			Log.error("Snapshot failed at " + file + ":" + line, t);
+		}
+	}
+
+	// ========== Request filter ==========
+
+	/**
+	 * Set the request filter from the attach config's requestFilter object, replacing any
+	 * earlier one. Breakpoints then only fire on requests that match it (see RequestFilter).
+	 * @param config the requestFilter map, or null to fire on every request
+	 */
+	public static void setRequestFilter(Object config) {
+		RequestFilter filter = RequestFilter.of(config);
+		requestFilter = filter;
+		if (filter != null) {
+			Log.info("Breakpoints limited to requests matching " + filter);
+		}
+	}
+
+	/**
+	 * Set the applications to debug from the attach config's appFilter object, replacing any
+	 * earlier one. Requests of other applications then skip every native hook (see AppFilter).
+	 * @param config the appFilter map, or null to debug every application
+	 */
+	public static void setAppFilter(Object config) {
+		AppFilter filter = AppFilter.of(config);
+		appFilter = filter;
+		updateSuspendGate();
+		if (filter != null) {
+			Log.info("Debugging limited to " + filter);
+		}
+	}
+
+	// ========== Suspend watchdog ==========
+
+	/**
+	 * How long a thread may stay suspended before the watchdog resumes it (maxSuspendSeconds), 0 = forever.
+	 */
+	private static volatile long suspendBudgetNanos = 0;
+
+	private static final SuspendWatchdog watchdog = new SuspendWatchdog(NativeDebuggerListener::suspendBudgetExceeded);
+
+	/**
+	 * Called with the Java thread ID when the watchdog resumes a thread.
+	 */
+	private static volatile Consumer<Long> onWatchdogResumeCallback = null;
+
+	public static void setOnWatchdogResumeCallback(Consumer<Long> callback) {
+		onWatchdogResumeCallback = callback;
+	}
+
+	/**
+	 * Set how long a thread may stay suspended, from the attach config's maxSuspendSeconds.
+	 * Applies to suspensions from now on.
+	 * @param seconds the budget, 0 for no limit
+	 */
+	public static void setMaxSuspendSeconds(int seconds) {
+		suspendBudgetNanos = seconds > 0 ? TimeUnit.SECONDS.toNanos(seconds) : 0;
+		if (seconds > 0) {
+			Log.info("Suspended threads will be resumed after " + seconds + "s");
+		}
+	}
+
+	/**
+	 * Watchdog expiry, on the watchdog thread. Resumes the thread unless it was resumed
+	 * (and maybe suspended again) meanwhile - the map entry must still be the one timed.
+	 * The request then carries on, and its own request timeout applies as usual.
+	 */
+	private static void suspendBudgetExceeded(SuspendWatchdog.Timeout timeout) {
+		SuspendedThread entry = (SuspendedThread) timeout.owner;
+		if (!nativelySuspendedThreads.remove(timeout.threadId, entry)) {
+			return;
+		}
+		entry.release();
+		long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - entry.suspendedAt);
+		PageContext pc = entry.get();
+		if (pc == null || !debuggerResume(pc)) {
+			return;
+		}
+		Log.warn("Thread " + timeout.threadId + " was suspended for " + seconds + "s, over maxSuspendSeconds - resumed");
+		Consumer<Long> callback = onWatchdogResumeCallback;
+		if (callback != null) {
+			callback.accept(timeout.threadId);
+		}
+	}
+
+	// ========== Suspended thread limits ==========
+
+	/**
+	 * Set how many threads may be suspended at once, from the attach config's maxSuspendedThreads.
+	 * @param max the limit, 0 for no limit
+	 */
+	public static void setMaxSuspendedThreads(int max) {
+		suspendLimiter.setMax(max);
+		if (max > 0) {
+			Log.info("At most " + max + " threads will be suspended at once");
+		}
+	}
+
+	/**
+	 * Take a slot in the global limit, and in the breakpoint's own one if it has a "threads N"
+	 * clause, for the suspension this thread is about to ask Lucee for. Either limit being
+	 * full skips the hit instead, counting it for reporting.
+	 * @param breakpointLimiter the breakpoint's limiter, or null
+	 * @param file the line breakpoint's file, or null
+	 * @param line the line breakpoint's line, or 0
+	 * @param func the function breakpoint hit, or null
+	 * @return true to suspend
+	 */
+	private static boolean reserveSuspend(SuspendLimiter breakpointLimiter, String file, int line,
+			FunctionBreakpointMatcher.Entry func) {
+		Reservation r = reservation.get();
+		if (r.held) {
+			// Reserved earlier but Lucee never suspended - don't leak the slots
+			releaseSlots(r.breakpointLimiter, r.where);
+			r.held = false;
+		}
+		if (breakpointLimiter != null && !breakpointLimiter.tryAcquire()) {
+			skipped(breakpointLimiter, location(file, line, func));
 			return false;
 		}
+		if (!suspendLimiter.tryAcquire()) {
+			if (breakpointLimiter != null) {
+				breakpointLimiter.release();
+			}
+			skipped(suspendLimiter, null);
+			return false;
+		}
+		r.held = true;
+		r.breakpointLimiter = breakpointLimiter;
+		r.where = breakpointLimiter != null ? location(file, line, func) : null;
+		return true;
+	}
+
+	private static void releaseSlots(SuspendLimiter breakpointLimiter, String where) {
+		long skipped = suspendLimiter.release();
+		if (skipped > 0) {
+			Log.info("Skipped " + skipped + " hits while " + suspendLimiter.getMax() + " threads were suspended");
+		}
+		if (breakpointLimiter != null) {
+			skipped = breakpointLimiter.release();
+			if (skipped > 0) {
+				Log.info("Skipped " + skipped + " hits on " + where + " while " + breakpointLimiter.getMax() + " threads were suspended there");
+			}
+		}
+	}
+
+	/**
+	 * Count a hit skipped at a limit; the first since a thread last resumed is reported.
+	 * @param where the breakpoint for a per-breakpoint limit, null for the global one
+	 */
+	private static void skipped(SuspendLimiter limiter, String where) {
+		if (limiter.skip() == 1) {
+			Log.warn(where == null
+				? "Suspended thread limit reached (" + limiter.getMax() + ") - further hits are skipped until a thread resumes"
+				: "Suspended thread limit reached on " + where + " (" + limiter.getMax() + ") - further hits there are skipped until a thread resumes");
+		}
+	}
+
+	private static String location(String file, int line, FunctionBreakpointMatcher.Entry func) {
+		if (func != null) {
+			return "function " + func.spec;
+		}
+		return file != null ? Config.shortenPath(file) + ":" + line : "exception";
+	}
+
+	// ========== Coverage ==========
+
+	/**
+	 * Start recording executed lines.
+	 * @param reset discard lines recorded by earlier runs
+	 */
+	public static void startCoverage(boolean reset) {
+		if (reset) {
+			coverageData.clear();
+		}
+		coverage = coverageData;
+		updateSuspendGate();
+		Log.info("Coverage recording started");
+	}
+
+	/**
+	 * Stop recording; recorded lines are kept for export.
+	 */
+	public static void stopCoverage() {
+		if (coverage != null) {
+			coverage = null;
+			updateSuspendGate();
+			Log.info("Coverage recording stopped");
+		}
+	}
+
+	public static boolean isCoverageRunning() {
+		return coverage != null;
+	}
+
+	static LineCoverage getCoverageData() {
+		return coverageData;
+	}
+
+	// ========== Request tracing ==========
+
+	/**
+	 * Start tracing requests, replacing any tracer already running.
+	 */
+	static synchronized void startTracing(RequestTracer next) throws IOException {
+		stopTracing();
+		next.start();
+		tracer = next;
+		updateSuspendGate();
+	}
+
+	/**
+	 * Stop tracing; the tracer writes out requests still in flight.
+	 * @return the stopped tracer, for its final status, or null if none was running
+	 */
+	static synchronized RequestTracer stopTracing() {
+		RequestTracer tr = tracer;
+		if (tr != null) {
+			tracer = null;
+			updateSuspendGate();
+			tr.stop();
+		}
+		return tr;
+	}
+
+	static RequestTracer getTracer() {
+		return tracer;
 	}
 
 	/**
 	 * Check if a breakpoint exists at the given file and line.
 	 */
 	public static boolean hasBreakpoint(String file, int line) {
-		String canonFile = Config.canonicalizeFileName(file);
-		int[] lines = bpLines;
-		String[] files = bpFiles;
-		for (int i = 0; i < lines.length; i++) {
-			if (lines[i] == line && files[i].equals(canonFile)) {
-				return true;
-			}
+		BreakpointIndex index = breakpoints;
+		if (!index.hasBreakpoint(file, line)) {
+			return false;
 		}
-		return false;
+		// Logpoints never suspend, so stopping on one is a step/pause, not a breakpoint
+		BreakpointIndex.LineBreakpoint bp = index.forFile(file).detailsFor(line);
+		return bp == null || bp.logMessage == null;
 	}
 
 	/**
@@ -1017,7 +1540,7 @@ public class NativeDebuggerListener {
 			}
 			else {
 				// File is outside webroot - can't load it via PageSource
-				Log.debug( "getExecutableLines: file outside webroot: " + absolutePath );
+				Log.debug( "getExecutableLines: file outside webroot: {}", absolutePath );
 				return new int[0];
 			}
 
@@ -1025,7 +1548,7 @@ public class NativeDebuggerListener {
 			Method getPageSourceMethod = pc.getClass().getMethod( "getPageSource", String.class );
 			Object ps = getPageSourceMethod.invoke( pc, relativePath );
 			if ( ps == null ) {
-				Log.debug( "getExecutableLines: no PageSource for " + absolutePath );
+				Log.debug( "getExecutableLines: no PageSource for {}", absolutePath );
 				return new int[0];
 			}
 
@@ -1033,12 +1556,26 @@ public class NativeDebuggerListener {
 			Method loadPageMethod = ps.getClass().getMethod( "loadPage", PageContext.class, boolean.class );
 			Object page = loadPageMethod.invoke( ps, pc, false );
 			if ( page == null ) {
-				Log.debug( "getExecutableLines: failed to load page " + absolutePath );
+				Log.debug( "getExecutableLines: failed to load page {}", absolutePath );
 				return new int[0];
 			}
 
 			// Get executable lines from compiled Page class - returns Object[] {compileTime, lines}
-			Method getExecLinesMethod = page.getClass().getMethod( "getExecutableLines" );
+			Method getExecLinesMethod;
+			try {
+				getExecLinesMethod = page.getClass().getMethod( "getExecutableLines" );
+			}
+			catch ( NoSuchMethodException e ) {
+				// Loaded before attach turned the execution log on - drop it and load again,
+				// so the first breakpoint of the session binds against debugger bytecode
+				Log.debug( "getExecutableLines: reloading {} compiled without debug info", absolutePath );
+				ps.getClass().getMethod( "flush" ).invoke( ps );
+				page = loadPageMethod.invoke( ps, pc, false );
+				if ( page == null ) {
+					throw e;
+				}
+				getExecLinesMethod = page.getClass().getMethod( "getExecutableLines" );
+			}
 			Object result = getExecLinesMethod.invoke( page );
 
 			// Handle old Lucee versions that return int[] directly
@@ -1055,14 +1592,14 @@ public class NativeDebuggerListener {
 				// Check cache
 				CachedExecutableLines cached = executableLinesCache.get( absolutePath );
 				if ( cached != null && cached.compileTime == compileTime ) {
-					Log.debug( "getExecutableLines: cache hit for " + absolutePath );
+					Log.debug( "getExecutableLines: cache hit for {}", absolutePath );
 					return cached.lines;
 				}
 
 				// Cache miss or stale - update cache
 				int[] resultLines = lines != null ? lines : new int[0];
 				executableLinesCache.put( absolutePath, new CachedExecutableLines( compileTime, resultLines ) );
-				Log.debug( "getExecutableLines: cached " + resultLines.length + " lines for " + absolutePath );
+				Log.debug( "getExecutableLines: cached {} lines for {}", resultLines.length, absolutePath );
 				return resultLines;
 			}
 
@@ -1083,7 +1620,7 @@ public class NativeDebuggerListener {
 			return new int[0];
 		}
 		catch ( Exception e ) {
-			Log.debug( "getExecutableLines failed for " + absolutePath + ": " + e.getClass().getName() + ": " + e.getMessage() );
+			Log.debug( "getExecutableLines failed for {}: {}: {}", absolutePath, e.getClass().getName(), e.getMessage() );
 			return new int[0];
 		}
 	}
@@ -1118,7 +1655,7 @@ public class NativeDebuggerListener {
 				}
 			}
 		} catch (Exception e) {
-			Log.debug("getAnyActivePageContext failed: " + e.getMessage());
+			Log.debug("getAnyActivePageContext failed: {}", e.getMessage());
 		}
 		return null;
 	}
@@ -1146,7 +1683,7 @@ public class NativeDebuggerListener {
 				}
 			}
 		} catch (Exception e) {
-			Log.debug("createTemporaryPageContext failed: " + e.getMessage());
+			Log.debug("createTemporaryPageContext failed: {}", e.getMessage());
 		}
 		return null;
 	}
@@ -1160,59 +1697,41 @@ public class NativeDebuggerListener {
 	 */
 	public static boolean onFunctionEntry( PageContext pc, String functionName,
 											String componentName, String file, int startLine ) {
-		// Fast path - no function breakpoints
-		if ( !hasFuncBps || !dapClientConnected ) {
+		// Fast path - no function breakpoints and no tracing
+		SuspendGate gate = suspendGate;
+		RequestTracer tr = gate.tracer;
+		boolean funcBpsActive = hasFuncBps && dapClientConnected;
+		if ( tr == null && !funcBpsActive ) {
 			return false;
 		}
-
-		int len = functionName.length();
-
-		// Length bounds check - rejects 99% of calls instantly
-		if ( len < funcBpMinLen || len > funcBpMaxLen ) {
+		AppFilter apps = gate.apps;
+		if ( apps != null && !apps.matches( pc ) ) {
 			return false;
 		}
-
-		// Normalize for case-insensitive matching
-		String lowerFunc = functionName.toLowerCase();
-		String lowerComp = componentName != null ? componentName.toLowerCase() : null;
-
-		// Check each breakpoint
-		String[] names = funcBpNames;
-		String[] comps = funcBpComponents;
-		String[] conds = funcBpConditions;
-		boolean[] wilds = funcBpIsWildcard;
-
-		for ( int i = 0; i < names.length; i++ ) {
-			// Check component qualifier first (if specified)
-			if ( comps[i] != null && ( lowerComp == null || !lowerComp.equals( comps[i] ) ) ) {
-				continue;
-			}
-
-			// Check function name match
-			boolean match;
-			if ( wilds[i] ) {
-				// Wildcard: "on*" matches "onRequestStart"
-				String prefix = names[i].substring( 0, names[i].length() - 1 );
-				match = lowerFunc.startsWith( prefix );
-			}
-			else {
-				match = lowerFunc.equals( names[i] );
-			}
-
-			if ( match ) {
-				// Check condition if present
-				if ( conds[i] != null ) {
-					if ( !evaluateCondition( pc, conds[i] ) ) {
-						continue;
-					}
-				}
-				Log.debug( "Function breakpoint hit: " + functionName +
-					( componentName != null ? " in " + componentName : "" ) );
-				return true;
-			}
+		if ( tr != null ) {
+			tr.onFunctionEntry( pc, functionName, componentName, file, startLine );
+		}
+		if ( !funcBpsActive ) {
+			return false;
 		}
 
-		return false;
+		// Hash probe for exact names, trie walk for wildcards - no allocation on a miss
+		// (the request filter is checked only once a name matches)
+		FunctionBreakpointMatcher.Entry hit = funcBps.match( pc, functionName, componentName, requestFilter );
+		if ( hit == null ) {
+			return false;
+		}
+		if ( hit.limits != null && !fireLimited( hit.limits, null, 0, hit ) ) {
+			return false;
+		}
+		if ( !reserveSuspend( hit.limits != null ? hit.limits.threads : null, null, 0, hit ) ) {
+			return false;
+		}
+		if ( Log.isDebugEnabled() ) {
+			Log.debug( "Function breakpoint hit: " + functionName +
+				( componentName != null ? " in " + componentName : "" ) );
+		}
+		return true;
 	}
 
 	/**
@@ -1220,68 +1739,39 @@ public class NativeDebuggerListener {
 	 * Called from DapServer.setFunctionBreakpoints().
 	 */
 	public static void setFunctionBreakpoints( String[] names, String[] conditions ) {
-		synchronized ( funcBpLock ) {
-			int count = names.length;
-			String[] newNames = new String[count];
-			String[] newComps = new String[count];
-			String[] newConds = new String[count];
-			boolean[] newWilds = new boolean[count];
-
-			int minLen = Integer.MAX_VALUE;
-			int maxLen = Integer.MIN_VALUE;
-
-			for ( int i = 0; i < count; i++ ) {
-				String name = names[i].trim();
-				String condition = ( conditions != null && i < conditions.length && conditions[i] != null && !conditions[i].isEmpty() )
-									? conditions[i] : null;
-
-				// Parse qualified name: "Component.method" or just "method"
-				int dot = name.lastIndexOf( '.' );
-				String compName = null;
-				String funcName = name;
-				if ( dot > 0 ) {
-					compName = name.substring( 0, dot ).toLowerCase();
-					funcName = name.substring( dot + 1 );
-				}
-
-				// Check for wildcard
-				boolean isWild = funcName.endsWith( "*" );
-
-				// Store lowercase for case-insensitive matching
-				newNames[i] = funcName.toLowerCase();
-				newComps[i] = compName;
-				newConds[i] = condition;
-				newWilds[i] = isWild;
-
-				// Update bounds (for wildcards, use prefix length)
-				int effectiveLen = isWild ? funcName.length() - 1 : funcName.length();
-				if ( !isWild ) {
-					// Exact match: bounds are exact length
-					if ( effectiveLen < minLen ) minLen = effectiveLen;
-					if ( effectiveLen > maxLen ) maxLen = effectiveLen;
-				}
-				else {
-					// Wildcard: any length >= prefix is possible
-					if ( effectiveLen < minLen ) minLen = effectiveLen;
-					maxLen = Integer.MAX_VALUE; // can't bound max for wildcards
-				}
-
-				Log.debug( "Function breakpoint: " + name +
-					( compName != null ? " (component: " + compName + ")" : "" ) +
-					( isWild ? " (wildcard)" : "" ) +
-					( condition != null ? " condition: " + condition : "" ) );
-			}
+		setFunctionBreakpoints( names, conditions, null );
+	}
 
-			funcBpNames = newNames;
-			funcBpComponents = newComps;
-			funcBpConditions = newConds;
-			funcBpIsWildcard = newWilds;
-			funcBpMinLen = count > 0 ? minLen : Integer.MAX_VALUE;
-			funcBpMaxLen = count > 0 ? maxLen : Integer.MIN_VALUE;
+	/**
+	 * Set function breakpoints (replaces all existing). One set the same way as an existing
+	 * one keeps its hit count, rate limit and hit cap.
+	 * @param hitConditions parallel to names, may be null; DAP hit conditions with optional limit clauses
+	 * @return for each breakpoint, its position in the previous list if it was kept, or -1
+	 */
+	public static int[] setFunctionBreakpoints( String[] names, String[] conditions, String[] hitConditions ) {
+		FunctionBreakpointMatcher matcher;
+		synchronized ( funcBpLock ) {
+			matcher = FunctionBreakpointMatcher.of( names, conditions, hitConditions, funcBps );
+			funcBps = matcher;
+			hasFuncBps = !matcher.isEmpty();
 		}
-		hasFuncBps = funcBpNames.length > 0;
-		updateHasSuspendConditions();
-		Log.info( "Function breakpoints set: " + funcBpNames.length );
+		FunctionBreakpointMatcher.Entry[] entries = matcher.entries();
+		int[] previous = new int[entries.length];
+		for ( FunctionBreakpointMatcher.Entry e : entries ) {
+			previous[e.index] = e.previousIndex;
+			Log.debug( "Function breakpoint: {}", e );
+		}
+		updateSuspendGate();
+		Log.info( "Function breakpoints set: " + matcher.size() );
+		return previous;
+	}
+
+	/**
+	 * True if the function breakpoint at index (as given to setFunctionBreakpoints) has reached its hit cap.
+	 */
+	public static boolean isFunctionBreakpointCapped( int index ) {
+		FunctionBreakpointMatcher.Entry[] entries = funcBps.entries();
+		return index < entries.length && entries[index].limits != null && entries[index].limits.isExhausted();
 	}
 
 	/**
@@ -1289,15 +1779,11 @@ public class NativeDebuggerListener {
 	 */
 	public static void clearFunctionBreakpoints() {
 		synchronized ( funcBpLock ) {
-			funcBpNames = new String[0];
-			funcBpComponents = new String[0];
-			funcBpConditions = new String[0];
-			funcBpIsWildcard = new boolean[0];
-			funcBpMinLen = Integer.MAX_VALUE;
-			funcBpMaxLen = Integer.MIN_VALUE;
-		}
-		hasFuncBps = false;
-		updateHasSuspendConditions();
+			funcBps = FunctionBreakpointMatcher.EMPTY;
+			hasFuncBps = false;
+		}
+		updateSuspendGate();
 		Log.debug( "Function breakpoints cleared" );
 	}
+
 }
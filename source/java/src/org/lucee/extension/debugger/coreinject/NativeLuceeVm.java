@@ -1,8 +1,11 @@
 package org.lucee.extension.debugger.coreinject;
 
+import java.io.IOException;
 import java.lang.ref.Cleaner;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -12,6 +15,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 import org.eclipse.lsp4j.debug.CompletionItem;
 import org.eclipse.lsp4j.debug.CompletionItemType;
@@ -22,7 +26,6 @@ import lucee.loader.engine.CFMLEngineWrapper;
 import lucee.runtime.CFMLFactory;
 import lucee.runtime.CFMLFactoryImpl;
 import lucee.runtime.PageContext;
-import lucee.runtime.PageContextImpl;
 import lucee.runtime.dump.DumpData;
 import lucee.runtime.dump.DumpProperties;
 import lucee.runtime.dump.DumpUtil;
@@ -33,6 +36,7 @@ import lucee.runtime.ext.function.BIF;
 
 import org.lucee.extension.debugger.*;
 import org.lucee.extension.debugger.coreinject.frame.NativeDebugFrame;
+import org.lucee.extension.debugger.coreinject.frame.SnapshotFrame;
 import org.lucee.extension.debugger.strong.DapBreakpointID;
 import org.lucee.extension.debugger.strong.CanonicalServerAbsPath;
 import org.lucee.extension.debugger.strong.RawIdePath;
@@ -56,10 +60,20 @@ public class NativeLuceeVm implements ILuceeVm {
 	private BiConsumer<Long, String> nativeBreakpointEventCallback = null;
 	private Consumer<Long> exceptionEventCallback = null;
 	private Consumer<Long> pauseEventCallback = null;
+	private Consumer<Long> continuedEventCallback = null;
 	private Consumer<BreakpointsChangedEvent> breakpointsChangedCallback = null;
 
 	private AtomicInteger breakpointID = new AtomicInteger();
 
+	// DAP ids of bound breakpoints, so a breakpoint that disables itself at its
+	// hit cap can be reported to the client. Line: canonical file -> line -> id.
+	private final ConcurrentHashMap<String, Map<Integer, DapBreakpointID>> lineBreakpointIds = new ConcurrentHashMap<>();
+	private volatile DapBreakpointID[] functionBreakpointIds = new DapBreakpointID[0];
+	private static final String CAPPED_MESSAGE = "Hit cap reached - breakpoint disabled";
+
+	private final CfmlProfiler profiler = new CfmlProfiler(NativeLuceeVm::getActivePageContexts);
+	private final SnapshotStore snapshots = new SnapshotStore();
+
 	// Cache of frame ID -> frame for scope/variable lookups.
 	// Side map tracks which frame IDs belong to each suspended thread so we
 	// can evict them on resume — otherwise frameCache grows unbounded and
@@ -108,12 +122,54 @@ public class NativeLuceeVm implements ILuceeVm {
 				pauseEventCallback.accept(javaThreadId);
 			}
 		});
+
+		// Register suspend watchdog callback (runs on the watchdog thread, the thread is already resumed)
+		NativeDebuggerListener.setOnWatchdogResumeCallback(javaThreadId -> {
+			evictFramesForThread(javaThreadId);
+			if (continuedEventCallback != null) {
+				continuedEventCallback.accept(javaThreadId);
+			}
+		});
+
+		// Register breakpoint hit cap callback (runs on the request thread)
+		NativeDebuggerListener.setOnBreakpointCapCallback(new NativeDebuggerListener.BreakpointCapCallback() {
+			@Override
+			public void lineBreakpointCapped(String canonFile, int line) {
+				Map<Integer, DapBreakpointID> ids = lineBreakpointIds.get(canonFile);
+				DapBreakpointID id = ids != null ? ids.get(line) : null;
+				if (id != null) {
+					notifyCapped(line, id);
+				}
+			}
+
+			@Override
+			public void functionBreakpointCapped(int index) {
+				DapBreakpointID[] ids = functionBreakpointIds;
+				if (index < ids.length) {
+					notifyCapped(0, ids[index]);
+				}
+			}
+		});
+
+		// Register snapshot breakpoint callback (runs on the request thread)
+		NativeDebuggerListener.setOnSnapshotCallback((pc, file, line) -> {
+			snapshots.capture(pc, file, line, valTracker, luceeClassLoader);
+		});
 	}
 
 	private DapBreakpointID nextDapBreakpointID() {
 		return new DapBreakpointID(breakpointID.incrementAndGet());
 	}
 
+	private void notifyCapped(int line, DapBreakpointID id) {
+		Consumer<BreakpointsChangedEvent> cb = breakpointsChangedCallback;
+		if (cb != null) {
+			cb.accept(BreakpointsChangedEvent.justChanges(new IBreakpoint[] {
+				Breakpoint.Disabled(line, id, CAPPED_MESSAGE)
+			}));
+		}
+	}
+
 	// ========== Callback registration ==========
 
 	@Override
@@ -159,23 +215,11 @@ public class NativeLuceeVm implements ILuceeVm {
 		}
 
 		try {
-			// CFMLEngineFactory.getInstance() returns the wrapper; unwrap to the impl,
-			// which exposes getCFMLFactories(). Mirrors Lucee core's own usage at
-			// FDControllerImpl.java:103 in 7.1.
-			CFMLEngineWrapper wrapper = (CFMLEngineWrapper) CFMLEngineFactory.getInstance();
-			CFMLEngineImpl engine = (CFMLEngineImpl) wrapper.getEngine();
-
-			for (CFMLFactory factory : engine.getCFMLFactories().values()) {
-				try {
-					for (PageContextImpl pc : ((CFMLFactoryImpl) factory).getActivePageContexts().values()) {
-						Thread thread = pc.getThread();
-						if (thread != null && !seenThreadIds.contains(thread.getId())) {
-							result.add(new ThreadInfo(thread.getId(), thread.getName()));
-							seenThreadIds.add(thread.getId());
-						}
-					}
-				} catch (Exception e) {
-					// Skip this factory
+			for (PageContext pc : getActivePageContexts()) {
+				Thread thread = pc.getThread();
+				if (thread != null && !seenThreadIds.contains(thread.getId())) {
+					result.add(new ThreadInfo(thread.getId(), thread.getName()));
+					seenThreadIds.add(thread.getId());
 				}
 			}
 		} catch (Exception e) {
@@ -189,16 +233,53 @@ public class NativeLuceeVm implements ILuceeVm {
 			result.add(0, new ThreadInfo(ALL_THREADS_VIRTUAL_ID, "All CFML Threads"));
 		}
 
-		Log.debug("Thread listing: " + result.size() + " threads");
+		if (Log.isDebugEnabled()) {
+			Log.debug("Thread listing: {} threads", result.size());
+		}
 		return result.toArray(new ThreadInfo[0]);
 	}
 
+	/**
+	 * PageContexts of requests currently running, across all CFML factories.
+	 */
+	static List<PageContext> getActivePageContexts() {
+		var result = new ArrayList<PageContext>();
+		// CFMLEngineFactory.getInstance() returns the wrapper; unwrap to the impl,
+		// which exposes getCFMLFactories(). Mirrors Lucee core's own usage at
+		// FDControllerImpl.java:103 in 7.1.
+		CFMLEngineWrapper wrapper = (CFMLEngineWrapper) CFMLEngineFactory.getInstance();
+		CFMLEngineImpl engine = (CFMLEngineImpl) wrapper.getEngine();
+
+		for (CFMLFactory factory : engine.getCFMLFactories().values()) {
+			try {
+				result.addAll(((CFMLFactoryImpl) factory).getActivePageContexts().values());
+			} catch (Exception e) {
+				// Skip this factory
+			}
+		}
+		return result;
+	}
+
 	@Override
 	public IDebugFrame[] getStackTrace(long threadID) {
+		if (SnapshotStore.isSnapshotThreadId(threadID)) {
+			IDebugFrame[] frames = snapshots.frames(threadID);
+			if (frames == null) {
+				if (Log.isDebugEnabled()) {
+					Log.debug("getStackTrace: no snapshot for thread {}", threadID);
+				}
+				return new IDebugFrame[0];
+			}
+			cacheFrames(threadID, frames);
+			return frames;
+		}
+
 		// In native mode, get frames from the suspended thread's PageContext
 		PageContext pc = NativeDebuggerListener.getPageContext(threadID);
 		if (pc == null) {
-			Log.debug("getStackTrace: no PageContext for thread " + threadID);
+			if (Log.isDebugEnabled()) {
+				Log.debug("getStackTrace: no PageContext for thread {}", threadID);
+			}
 			return new IDebugFrame[0];
 		}
 
@@ -206,13 +287,26 @@ public class NativeLuceeVm implements ILuceeVm {
 		// Pass threadID so it can create synthetic frame for top-level code
 		IDebugFrame[] frames = NativeDebugFrame.getNativeFrames(pc, valTracker, threadID, luceeClassLoader);
 		if (frames == null) {
-			Log.debug("getStackTrace: no native frames for thread " + threadID);
+			if (Log.isDebugEnabled()) {
+				Log.debug("getStackTrace: no native frames for thread {}", threadID);
+			}
 			return new IDebugFrame[0];
 		}
 
-		// Cache frames for later scope/variable lookups, replacing any frames
-		// we cached for a prior suspension of this same thread (a thread can
-		// only be suspended at one location at a time).
+		cacheFrames(threadID, frames);
+
+		if (Log.isTraceEnabled()) {
+			Log.trace("getStackTrace: returning {} frames for thread {}", frames.length, threadID);
+		}
+		return frames;
+	}
+
+	/**
+	 * Cache frames for later scope/variable lookups, replacing any frames
+	 * we cached for a prior suspension of this same thread (a thread can
+	 * only be suspended at one location at a time).
+	 */
+	private void cacheFrames(long threadID, IDebugFrame[] frames) {
 		evictFramesForThread(threadID);
 		long[] ids = new long[frames.length];
 		for (int i = 0; i < frames.length; i++) {
@@ -220,9 +314,6 @@ public class NativeLuceeVm implements ILuceeVm {
 			ids[i] = frames[i].getId();
 		}
 		frameIdsByThreadId.put(threadID, ids);
-
-		Log.trace("getStackTrace: returning " + frames.length + " frames for thread " + threadID);
-		return frames;
 	}
 
 	/**
@@ -253,7 +344,9 @@ public class NativeLuceeVm implements ILuceeVm {
 		// Look up frame from cache
 		IDebugFrame frame = frameCache.get(frameID);
 		if (frame == null) {
-			Log.debug("getScopes: frame " + frameID + " not found in cache");
+			if (Log.isDebugEnabled()) {
+				Log.debug("getScopes: frame {} not found in cache", frameID);
+			}
 			return new IDebugEntity[0];
 		}
 		return frame.getScopes();
@@ -278,7 +371,9 @@ public class NativeLuceeVm implements ILuceeVm {
 		// Look up the object by its variablesReference ID
 		var maybeObj = valTracker.maybeGetFromId(variablesReference);
 		if (maybeObj.isEmpty()) {
-			Log.debug("getVariables: variablesReference " + variablesReference + " not found");
+			if (Log.isDebugEnabled()) {
+				Log.debug("getVariables: variablesReference {} not found", variablesReference);
+			}
 			return new IDebugEntity[0];
 		}
 		Object obj = maybeObj.get().obj;
@@ -292,8 +387,21 @@ public class NativeLuceeVm implements ILuceeVm {
 
 	@Override
 	public IBreakpoint[] bindBreakpoints(RawIdePath idePath, CanonicalServerAbsPath serverPath, int[] lines, String[] exprs) {
-		// Clear existing native breakpoints for this file
-		NativeDebuggerListener.clearBreakpointsForFile(serverPath.get());
+		return bindBreakpoints(idePath, serverPath, lines, exprs, null, null, null);
+	}
+
+	@Override
+	public IBreakpoint[] bindBreakpoints(RawIdePath idePath, CanonicalServerAbsPath serverPath, int[] lines, String[] exprs, String[] hitConditions, String[] logMessages) {
+		return bindBreakpoints(idePath, serverPath, lines, exprs, hitConditions, logMessages, null);
+	}
+
+	@Override
+	public IBreakpoint[] bindBreakpoints(RawIdePath idePath, CanonicalServerAbsPath serverPath, int[] lines, String[] exprs, String[] hitConditions, String[] logMessages, String[] modes) {
+		// Clients resend every breakpoint in the file when one changes. Breakpoints set the
+		// same way as before are kept, with their hit counts, limits and DAP ids; the
+		// file's other breakpoints are removed once the new set is in.
+		String canonFile = Config.canonicalizeFileName(serverPath.get());
+		Map<Integer, DapBreakpointID> previousIds = lineBreakpointIds.getOrDefault(canonFile, Map.of());
 
 		// Get executable lines to validate breakpoints
 		int[] executableLines = getExecutableLines(serverPath.get());
@@ -302,21 +410,34 @@ public class NativeLuceeVm implements ILuceeVm {
 			validLines.add(line);
 		}
 
-		// Add native breakpoints with optional conditions
+		// Add native breakpoints with optional conditions, hit conditions, log messages and modes
 		IBreakpoint[] result = new Breakpoint[lines.length];
+		Map<Integer, DapBreakpointID> ids = new ConcurrentHashMap<>();
 		for (int i = 0; i < lines.length; i++) {
 			String condition = (exprs != null && i < exprs.length) ? exprs[i] : null;
+			String hitCondition = (hitConditions != null && i < hitConditions.length) ? hitConditions[i] : null;
+			String logMessage = (logMessages != null && i < logMessages.length) ? logMessages[i] : null;
+			boolean snapshot = modes != null && i < modes.length && "snapshot".equals(modes[i]);
 			int requestedLine = lines[i];
 
 			if (validLines.contains(requestedLine)) {
-				// Valid executable line - add breakpoint and mark as bound
-				NativeDebuggerListener.addBreakpoint(serverPath.get(), requestedLine, condition);
-				result[i] = Breakpoint.Bound(requestedLine, nextDapBreakpointID());
+				// Valid executable line - add breakpoint and mark as bound, or disabled if it kept a reached cap
+				boolean kept = NativeDebuggerListener.addBreakpoint(serverPath.get(), requestedLine, condition, hitCondition, logMessage, snapshot);
+				DapBreakpointID id = kept ? previousIds.get(requestedLine) : null;
+				if (id == null) {
+					id = nextDapBreakpointID();
+				}
+				ids.put(requestedLine, id);
+				result[i] = kept && NativeDebuggerListener.isBreakpointCapped(serverPath.get(), requestedLine)
+					? Breakpoint.Disabled(requestedLine, id, CAPPED_MESSAGE)
+					: Breakpoint.Bound(requestedLine, id);
 			} else {
 				// Not an executable line - mark as unbound (unverified)
 				result[i] = Breakpoint.Unbound(requestedLine, nextDapBreakpointID());
 			}
 		}
+		NativeDebuggerListener.retainBreakpointsForFile(serverPath.get(), ids.keySet());
+		lineBreakpointIds.put(canonFile, ids);
 
 		return result;
 	}
@@ -324,12 +445,40 @@ public class NativeLuceeVm implements ILuceeVm {
 	@Override
 	public void clearAllBreakpoints() {
 		NativeDebuggerListener.clearAllBreakpoints();
+		lineBreakpointIds.clear();
+	}
+
+	/**
+	 * Set function breakpoints (replaces all existing).
+	 * Arrays are parallel; conditions and hitConditions may be null.
+	 * @return one bound breakpoint per name, in order
+	 */
+	public IBreakpoint[] bindFunctionBreakpoints(String[] names, String[] conditions, String[] hitConditions) {
+		DapBreakpointID[] previousIds = functionBreakpointIds;
+		int[] previous = NativeDebuggerListener.setFunctionBreakpoints(names, conditions, hitConditions);
+		DapBreakpointID[] ids = new DapBreakpointID[names.length];
+		IBreakpoint[] result = new IBreakpoint[names.length];
+		for (int i = 0; i < names.length; i++) {
+			// Kept breakpoints keep their DAP id, and stay disabled once capped
+			boolean kept = i < previous.length && previous[i] >= 0 && previous[i] < previousIds.length;
+			ids[i] = kept ? previousIds[previous[i]] : nextDapBreakpointID();
+			result[i] = kept && NativeDebuggerListener.isFunctionBreakpointCapped(i)
+				? Breakpoint.Disabled(0, ids[i], CAPPED_MESSAGE)
+				: Breakpoint.Bound(0, ids[i]);
+		}
+		functionBreakpointIds = ids;
+		return result;
 	}
 
 	// ========== Execution control ==========
 
 	@Override
 	public void continue_(long threadID) {
+		if (threadID == 0 || threadID == ALL_THREADS_VIRTUAL_ID) {
+			// Continue on "All CFML Threads" ends a pause-all and releases every thread
+			continueAll();
+			return;
+		}
 		evictFramesForThread(threadID);
 		NativeDebuggerListener.resumeNativeThread(threadID);
 	}
@@ -450,7 +599,7 @@ public class NativeLuceeVm implements ILuceeVm {
 					ThreadLocalPageContext.release();
 				}
 			} catch (Throwable e) {
-				Log.debug("getMetadata failed: " + e.getMessage());
+				Log.debug("getMetadata failed: {}", e.getMessage());
 				result.value = "\"Error: " + e.getMessage().replace("\"", "\\\"") + "\"";
 			}
 		});
@@ -535,7 +684,7 @@ public class NativeLuceeVm implements ILuceeVm {
 					ThreadLocalPageContext.release();
 				}
 			} catch (Throwable e) {
-				Log.debug("dump failed: " + e.getMessage());
+				Log.debug("dump failed: {}", e.getMessage());
 				result.value = asJson
 					? "\"Error: " + e.getMessage().replace("\"", "\\\"") + "\""
 					: "<div>Error: " + e.getMessage() + "</div>";
@@ -626,7 +775,7 @@ public class NativeLuceeVm implements ILuceeVm {
 					ThreadLocalPageContext.release();
 				}
 			} catch (Throwable e) {
-				Log.debug("getApplicationSettings failed: " + e.getMessage());
+				Log.debug("getApplicationSettings failed: {}", e.getMessage());
 				result.value = "\"Error: " + e.getMessage().replace("\"", "\\\"") + "\"";
 			}
 		});
@@ -716,7 +865,7 @@ public class NativeLuceeVm implements ILuceeVm {
 					}
 				} catch (Exception e) {
 					// Evaluation failed, return empty
-					Log.debug("Completion evaluation failed: " + e.getMessage());
+					Log.debug("Completion evaluation failed: {}", e.getMessage());
 				}
 			} else {
 				// No base - complete from scope names and top-level scope variables
@@ -738,15 +887,17 @@ public class NativeLuceeVm implements ILuceeVm {
 				try { addScopeCompletions(pc.argumentsScope(), prefix, results); } catch (Exception e) {}
 			}
 		} catch (Exception e) {
-			Log.debug("Completion failed: " + e.getMessage());
+			Log.debug("Completion failed: {}", e.getMessage());
 		}
 
 		// Sort by label and limit
 		results.sort((a, b) -> a.getLabel().compareToIgnoreCase(b.getLabel()));
 
-		Log.debug("Completions for '" + partialExpr + "': returning " + results.size() + " items");
-		for (var item : results) {
-			Log.debug("  - " + item.getLabel());
+		if (Log.isDebugEnabled()) {
+			Log.debug("Completions for '{}': returning {} items", partialExpr, results.size());
+			for (var item : results) {
+				Log.debug("  - " + item.getLabel());
+			}
 		}
 
 		if (results.size() > 100) {
@@ -782,6 +933,10 @@ public class NativeLuceeVm implements ILuceeVm {
 			return Either.Left("Frame not found: " + frameID);
 		}
 
+		if (frame instanceof SnapshotFrame) {
+			return Either.Left("Can't evaluate in a snapshot - the request has moved on; expand its scopes instead");
+		}
+
 		if (!(frame instanceof NativeDebugFrame)) {
 			// Fall back to JDWP mode if available
 			if (GlobalIDebugManagerHolder.debugManager != null) {
@@ -863,7 +1018,7 @@ public class NativeLuceeVm implements ILuceeVm {
 
 		// Build the full variable path
 		String fullPath = parentPath + "." + name;
-		Log.debug("setVariable: " + fullPath + " = " + value);
+		Log.debug("setVariable: {} = {}", fullPath, value);
 
 		try {
 			// Evaluate implements Function, not BIF — use reflection rather than loadBIF.
@@ -905,7 +1060,7 @@ public class NativeLuceeVm implements ILuceeVm {
 			if (msg == null) {
 				msg = cause.getClass().getName();
 			}
-			Log.debug("setVariable failed: " + msg);
+			Log.debug("setVariable failed: {}", msg);
 			return Either.Left("Error setting variable: " + msg);
 		}
 	}
@@ -920,6 +1075,11 @@ public class NativeLuceeVm implements ILuceeVm {
 		pauseEventCallback = cb;
 	}
 
+	@Override
+	public void registerContinuedEventCallback(Consumer<Long> cb) {
+		continuedEventCallback = cb;
+	}
+
 	@Override
 	public void pause(long threadID) {
 		NativeDebuggerListener.requestPause(threadID);
@@ -931,6 +1091,151 @@ public class NativeLuceeVm implements ILuceeVm {
 		return loc != null ? loc.exception : null;
 	}
 
+	// ========== Profiler ==========
+
+	@Override
+	public ProfilerStatus startProfiler(int intervalMs, boolean reset) {
+		profiler.start(intervalMs, reset);
+		return getProfilerStatus();
+	}
+
+	@Override
+	public ProfilerStatus stopProfiler() {
+		profiler.stop();
+		return getProfilerStatus();
+	}
+
+	@Override
+	public ProfilerStatus getProfilerStatus() {
+		var status = new ProfilerStatus();
+		status.running = profiler.isRunning();
+		status.intervalMs = profiler.intervalMs();
+		status.samples = profiler.samples();
+		status.truncatedSamples = profiler.truncatedSamples();
+		status.nodes = profiler.nodeCount();
+		status.elapsedMs = profiler.elapsedMillis();
+		return status;
+	}
+
+	@Override
+	public String getProfileCollapsed() {
+		return profiler.toCollapsed();
+	}
+
+	// ========== Coverage ==========
+
+	@Override
+	public CoverageStatus startCoverage(boolean reset) {
+		NativeDebuggerListener.startCoverage(reset);
+		return getCoverageStatus();
+	}
+
+	@Override
+	public CoverageStatus stopCoverage() {
+		NativeDebuggerListener.stopCoverage();
+		return getCoverageStatus();
+	}
+
+	@Override
+	public CoverageStatus getCoverageStatus() {
+		LineCoverage data = NativeDebuggerListener.getCoverageData();
+		var status = new CoverageStatus();
+		status.running = NativeDebuggerListener.isCoverageRunning();
+		status.files = data.fileCount();
+		status.linesHit = data.linesHit();
+		return status;
+	}
+
+	@Override
+	public String getCoverageLcov(UnaryOperator<String> pathMapper) {
+		// Executable lines give LCOV its unexecuted (DA:n,0) entries
+		return NativeDebuggerListener.getCoverageData().toLcov(pathMapper, NativeDebuggerListener::getExecutableLines);
+	}
+
+	// ========== Request tracing ==========
+
+	/**
+	 * The running tracer, or the last one stopped, so status survives a stop.
+	 */
+	private volatile RequestTracer lastTracer;
+
+	@Override
+	public TraceStatus startTracing(String urlFilter, String threadFilter, String directory, int maxEvents, int maxConcurrent) throws IOException {
+		Path dir = directory == null || directory.isEmpty()
+			? Paths.get(System.getProperty("java.io.tmpdir"), "luceedebug-traces")
+			: Paths.get(directory);
+		int events = maxEvents <= 0 ? RequestTracer.DEFAULT_MAX_EVENTS : Math.min(maxEvents, RequestTracer.MAX_EVENTS_LIMIT);
+		int concurrent = maxConcurrent <= 0 ? RequestTracer.DEFAULT_MAX_CONCURRENT : Math.min(maxConcurrent, RequestTracer.MAX_CONCURRENT_LIMIT);
+		RequestTracer tracer = new RequestTracer(emptyToNull(urlFilter), emptyToNull(threadFilter), dir.toAbsolutePath(),
+			events, concurrent, NativeLuceeVm::getActivePageContexts);
+		NativeDebuggerListener.startTracing(tracer);
+		lastTracer = tracer;
+		return getTracingStatus();
+	}
+
+	@Override
+	public TraceStatus stopTracing() {
+		NativeDebuggerListener.stopTracing();
+		return getTracingStatus();
+	}
+
+	@Override
+	public TraceStatus getTracingStatus() {
+		var status = new TraceStatus();
+		RequestTracer tracer = lastTracer;
+		if (tracer == null) {
+			status.files = new String[0];
+			return status;
+		}
+		status.running = tracer.isRunning();
+		status.urlFilter = tracer.urlFilter();
+		status.threadFilter = tracer.threadFilter();
+		status.directory = tracer.directory().toString();
+		status.maxEvents = tracer.maxEvents();
+		status.tracesWritten = tracer.tracesWritten();
+		status.droppedRequests = tracer.droppedRequests();
+		status.truncatedTraces = tracer.truncatedTraces();
+		status.files = tracer.recentFiles();
+		return status;
+	}
+
+	// ========== Snapshots ==========
+
+	@Override
+	public void configureSnapshots(int maxDepth, int maxValues, int maxCount) {
+		snapshots.configure(maxDepth, maxValues, maxCount);
+	}
+
+	@Override
+	public SnapshotInfo[] getSnapshots() {
+		List<SnapshotStore.Snapshot> list = snapshots.list();
+		SnapshotInfo[] result = new SnapshotInfo[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			SnapshotStore.Snapshot s = list.get(i);
+			var info = new SnapshotInfo();
+			info.id = s.id;
+			info.threadId = s.threadId();
+			info.file = s.file;
+			info.line = s.line;
+			info.threadName = s.threadName;
+			info.timestamp = s.capturedAt;
+			info.frames = s.frames.length;
+			info.values = s.values;
+			info.truncated = s.truncated;
+			result[i] = info;
+		}
+		return result;
+	}
+
+	@Override
+	public int clearSnapshots() {
+		return snapshots.clear();
+	}
+
+	private static String emptyToNull(String s) {
+		return s == null || s.isEmpty() ? null : s;
+	}
+
 	/**
 	 * Get executable line numbers for a file.
 	 * Used by DAP breakpointLocations request.
@@ -0,0 +1,61 @@
+package org.lucee.extension.debugger.coreinject;
+
+/**
+ * Pause-all as a broadcast. Pausing the "All CFML Threads" entry opens a new
+ * epoch, and every thread that reaches a CFML line while it is open pauses
+ * once - including requests that start after the pause was requested - until
+ * resume-all closes it.
+ *
+ * Nothing is recorded per thread when the pause is requested. Each thread keeps
+ * the last epoch it paused for in a thread-local and compares it with the open
+ * epoch, which shouldSuspend() reads from the suspend gate along with
+ * everything else. Opening or closing a pause is one write however many
+ * threads are running, and a thread that was resumed on its own doesn't stop
+ * again for the same pause. Epochs only grow, so a value left on a pooled
+ * request thread never matches a later pause.
+ */
+final class PauseEpoch {
+
+	private long counter;       // guarded by this
+	private volatile long open; // 0 = no pause-all open
+
+	private final ThreadLocal<long[]> seen = ThreadLocal.withInitial( () -> new long[1] );
+
+	/**
+	 * Open a new pause-all; every thread pauses once more, even one already paused for the previous epoch.
+	 * @return the new epoch
+	 */
+	synchronized long open() {
+		return open = ++counter;
+	}
+
+	/**
+	 * End the pause-all; threads that haven't paused yet keep running.
+	 * @return true if a pause-all was open
+	 */
+	synchronized boolean close() {
+		boolean wasOpen = open != 0;
+		open = 0;
+		return wasOpen;
+	}
+
+	/**
+	 * @return the open epoch, or 0 if no pause-all is open
+	 */
+	long current() {
+		return open;
+	}
+
+	/**
+	 * Called on the request thread with an open epoch.
+	 * @return true the first time this thread sees the epoch - it should pause
+	 */
+	boolean claim( long epoch ) {
+		long[] last = seen.get();
+		if ( last[0] == epoch ) {
+			return false;
+		}
+		last[0] = epoch;
+		return true;
+	}
+}
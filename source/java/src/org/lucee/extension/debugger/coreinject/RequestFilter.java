@@ -0,0 +1,251 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+import lucee.runtime.PageContext;
+import lucee.runtime.PageSource;
+
+import org.lucee.extension.debugger.Log;
+import org.lucee.extension.debugger.util.Glob;
+
+/**
+ * Request attributes a request must match for breakpoints to fire on it, so a
+ * debugger attached to a shared server only stops our own traffic. Set from the
+ * attach config's requestFilter:
+ *
+ *   "requestFilter": {
+ *     "remoteAddr": [ "127.0.0.1", "10.1.0.0/16" ],  // glob or IPv4 CIDR; any may match
+ *     "path": "/api/*",                               // glob on the request URI; any may match
+ *     "headers": { "X-Debug-User": "alice" },         // glob per header; all must match
+ *     "cookies": { "DEBUG": "1" }                     // glob per cookie; all must match
+ *   }
+ *
+ * Every attribute given must match. Globs are case-insensitive (see Glob).
+ * Matchers are prepared once in of(); the request is checked the first time a
+ * thread reaches a breakpoint and the verdict is kept for the rest of the
+ * request (see RequestVerdicts).
+ */
+final class RequestFilter {
+
+	private final String[] addrGlobs;
+	private final int[] cidrBases;
+	private final int[] cidrMasks;
+	private final String[] pathGlobs;
+	private final String[] headerNames;
+	private final String[] headerGlobs;
+	private final String[] cookieNames;
+	private final String[] cookieGlobs;
+	private final String description;
+	private final RequestVerdicts<Void> verdicts = new RequestVerdicts<>( "Request filter", ( pc, none ) -> evaluate( pc ) );
+
+	private RequestFilter( String[] addrGlobs, int[] cidrBases, int[] cidrMasks, String[] pathGlobs,
+			String[] headerNames, String[] headerGlobs, String[] cookieNames, String[] cookieGlobs, String description ) {
+		this.addrGlobs = addrGlobs;
+		this.cidrBases = cidrBases;
+		this.cidrMasks = cidrMasks;
+		this.pathGlobs = pathGlobs;
+		this.headerNames = headerNames;
+		this.headerGlobs = headerGlobs;
+		this.cookieNames = cookieNames;
+		this.cookieGlobs = cookieGlobs;
+		this.description = description;
+	}
+
+	/**
+	 * @param config the attach config's requestFilter object
+	 * @return the filter, or null if config is not a map or sets nothing (invalid entries are logged and skipped)
+	 */
+	static RequestFilter of( Object config ) {
+		if ( !( config instanceof Map ) ) {
+			return null;
+		}
+		Map<?, ?> map = (Map<?, ?>) config;
+
+		List<String> addrGlobs = new ArrayList<>();
+		List<int[]> cidrs = new ArrayList<>();
+		for ( String addr : RequestVerdicts.strings( map.get( "remoteAddr" ) ) ) {
+			int slash = addr.indexOf( '/' );
+			if ( slash < 0 ) {
+				addrGlobs.add( addr );
+				continue;
+			}
+			long base = parseIpv4( addr.substring( 0, slash ) );
+			int bits;
+			try {
+				bits = Integer.parseInt( addr.substring( slash + 1 ) );
+			}
+			catch ( NumberFormatException e ) {
+				bits = -1;
+			}
+			if ( base < 0 || bits < 0 || bits > 32 ) {
+				Log.warn( "Ignoring invalid requestFilter remoteAddr: " + addr );
+				continue;
+			}
+			int mask = bits == 0 ? 0 : -1 << ( 32 - bits );
+			cidrs.add( new int[] { (int) base & mask, mask } );
+		}
+		List<String> pathGlobs = RequestVerdicts.strings( map.get( "path" ) );
+
+		List<String> headerNames = new ArrayList<>();
+		List<String> headerGlobs = new ArrayList<>();
+		pairs( map.get( "headers" ), headerNames, headerGlobs );
+		List<String> cookieNames = new ArrayList<>();
+		List<String> cookieGlobs = new ArrayList<>();
+		pairs( map.get( "cookies" ), cookieNames, cookieGlobs );
+
+		if ( addrGlobs.isEmpty() && cidrs.isEmpty() && pathGlobs.isEmpty() && headerNames.isEmpty() && cookieNames.isEmpty() ) {
+			return null;
+		}
+		int[] cidrBases = new int[cidrs.size()];
+		int[] cidrMasks = new int[cidrs.size()];
+		for ( int i = 0; i < cidrs.size(); i++ ) {
+			cidrBases[i] = cidrs.get( i )[0];
+			cidrMasks[i] = cidrs.get( i )[1];
+		}
+		StringBuilder desc = new StringBuilder();
+		if ( !addrGlobs.isEmpty() || !cidrs.isEmpty() ) desc.append( "remoteAddr=" ).append( RequestVerdicts.strings( map.get( "remoteAddr" ) ) ).append( ' ' );
+		if ( !pathGlobs.isEmpty() ) desc.append( "path=" ).append( pathGlobs ).append( ' ' );
+		if ( !headerNames.isEmpty() ) desc.append( "headers=" ).append( headerNames ).append( ' ' );
+		if ( !cookieNames.isEmpty() ) desc.append( "cookies=" ).append( cookieNames ).append( ' ' );
+		return new RequestFilter( addrGlobs.toArray( new String[0] ), cidrBases, cidrMasks, pathGlobs.toArray( new String[0] ),
+			headerNames.toArray( new String[0] ), headerGlobs.toArray( new String[0] ),
+			cookieNames.toArray( new String[0] ), cookieGlobs.toArray( new String[0] ), desc.toString().trim() );
+	}
+
+	/**
+	 * Does the request pc is running pass the filter? Evaluated once per request per thread.
+	 */
+	boolean matches( PageContext pc ) {
+		return verdicts.matches( pc, null );
+	}
+
+	private boolean evaluate( PageContext pc ) {
+		HttpServletRequest req;
+		try {
+			req = pc.getHttpServletRequest();
+		}
+		catch ( Throwable t ) {
+			req = null;
+		}
+		if ( req == null ) {
+			// No servlet request (e.g. a CLI or task context) - only a path filter can match
+			PageSource base = pc.getBasePageSource();
+			return test( null, base != null ? base.getDisplayPath() : null, name -> null, name -> null );
+		}
+		final HttpServletRequest request = req;
+		return test( request.getRemoteAddr(), request.getRequestURI(), request::getHeader, name -> cookie( request, name ) );
+	}
+
+	private static String cookie( HttpServletRequest req, String name ) {
+		Cookie[] cookies = req.getCookies();
+		if ( cookies != null ) {
+			for ( Cookie c : cookies ) {
+				if ( name.equalsIgnoreCase( c.getName() ) ) {
+					return c.getValue();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The matching rules, separate from the servlet API.
+	 * @param header header value by name, null if absent
+	 * @param cookie cookie value by name, null if absent
+	 */
+	boolean test( String remoteAddr, String path, UnaryOperator<String> header, UnaryOperator<String> cookie ) {
+		if ( ( addrGlobs.length > 0 || cidrBases.length > 0 ) && !addrMatches( remoteAddr ) ) {
+			return false;
+		}
+		if ( pathGlobs.length > 0 && !RequestVerdicts.anyGlob( pathGlobs, path ) ) {
+			return false;
+		}
+		for ( int i = 0; i < headerNames.length; i++ ) {
+			if ( !Glob.matches( headerGlobs[i], header.apply( headerNames[i] ) ) ) {
+				return false;
+			}
+		}
+		for ( int i = 0; i < cookieNames.length; i++ ) {
+			if ( !Glob.matches( cookieGlobs[i], cookie.apply( cookieNames[i] ) ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean addrMatches( String remoteAddr ) {
+		if ( remoteAddr == null ) {
+			return false;
+		}
+		if ( RequestVerdicts.anyGlob( addrGlobs, remoteAddr ) ) {
+			return true;
+		}
+		if ( cidrBases.length > 0 ) {
+			long parsed = parseIpv4( remoteAddr );
+			if ( parsed >= 0 ) {
+				int addr = (int) parsed;
+				for ( int i = 0; i < cidrBases.length; i++ ) {
+					if ( ( addr & cidrMasks[i] ) == cidrBases[i] ) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the address as an unsigned 32-bit value, or -1 if it is not a dotted IPv4 address
+	 */
+	static long parseIpv4( String s ) {
+		long result = 0;
+		int octets = 0;
+		int value = -1;
+		for ( int i = 0; i <= s.length(); i++ ) {
+			char c = i < s.length() ? s.charAt( i ) : '.';
+			if ( c == '.' ) {
+				if ( value < 0 || ++octets > 4 ) {
+					return -1;
+				}
+				result = ( result << 8 ) | value;
+				value = -1;
+			}
+			else if ( c >= '0' && c <= '9' ) {
+				value = ( value < 0 ? 0 : value * 10 ) + ( c - '0' );
+				if ( value > 255 ) {
+					return -1; // before enough digits make value * 10 overflow
+				}
+			}
+			else {
+				return -1;
+			}
+		}
+		return octets == 4 ? result : -1;
+	}
+
+	private static void pairs( Object value, List<String> names, List<String> globs ) {
+		if ( !( value instanceof Map ) ) {
+			return;
+		}
+		for ( Map.Entry<?, ?> e : ( (Map<?, ?>) value ).entrySet() ) {
+			if ( e.getKey() instanceof String && e.getValue() instanceof String ) {
+				names.add( (String) e.getKey() );
+				globs.add( (String) e.getValue() );
+			}
+			else {
+				Log.warn( "Ignoring invalid requestFilter entry: " + e.getKey() );
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return description;
+	}
+}
@@ -0,0 +1,529 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import lucee.runtime.PageContext;
+import lucee.runtime.PageContextImpl;
+import lucee.runtime.PageSource;
+
+import org.lucee.extension.debugger.Log;
+import org.lucee.extension.debugger.util.Glob;
+import org.lucee.extension.debugger.util.MpscRingBuffer;
+
+/**
+ * Per-request execution timeline capture, written as Chrome trace-event JSON.
+ *
+ * Fed from NativeDebuggerListener: onFunctionEntry() for every UDF call and
+ * shouldSuspend() for every line. Lucee has no function-exit or request-end
+ * callback, so both are inferred:
+ * - exits from the DebuggerFrame count - when a line runs with fewer frames
+ *   than we have open, the difference has returned
+ * - request end from the PageContext - a different PageContext (or the same
+ *   pooled one with a new id/start time) on the thread means the previous
+ *   request is over; requests that end with no follow-up are found by the
+ *   writer thread's sweep of active PageContexts and their cfthread children
+ *
+ * The URL and thread filters are evaluated once, on a request's first event.
+ * A matching request takes a preallocated TraceBuffer from a fixed pool; with
+ * none free the request is counted as dropped. From then on recording only
+ * writes into that buffer - no allocation on the request thread, except for
+ * a copy of the frames when the stack grew by frames it never saw enter.
+ *
+ * Finished buffers go through a ring to the "luceedebug-trace-writer" thread,
+ * which serializes them to files and returns them to the pool. A buffer the
+ * sweep takes from a live thread is only written and reused once that thread
+ * has left the callback it may have been in.
+ */
+final class RequestTracer {
+
+	static final int DEFAULT_MAX_EVENTS = 50_000;
+	static final int DEFAULT_MAX_CONCURRENT = 4;
+	static final int MAX_EVENTS_LIMIT = 5_000_000;
+	static final int MAX_CONCURRENT_LIMIT = 64;
+	static final int MAX_RECENT_FILES = 50;
+	private static final long WRITE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos( 50 );
+	private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos( 200 );
+	private static final long STOP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos( 1 );
+
+	/**
+	 * Recording state of one thread. Only the owning thread writes the fields
+	 * and its buffer; the writer thread reads them in its sweep and may take the
+	 * buffer away, which is why buffer ownership goes through CAS.
+	 *
+	 * events is odd while the owner is inside onLine/onFunctionEntry. The owner
+	 * bumps it before reading buffer, and the sweep reads it after taking
+	 * buffer, so a buffer taken while events was even, or once events has moved
+	 * on, is no longer written by the owner.
+	 */
+	static final class ThreadTrace {
+		final Thread thread;
+		volatile PageContext pc;
+		volatile int pcId;
+		volatile long pcStart;
+		volatile int events;
+		int depth; // functions entered and not yet seen to return
+		final AtomicReference<TraceBuffer> buffer = new AtomicReference<>();
+
+		// Writer thread only: taken while the owner was inside a callback
+		TraceBuffer reclaimed;
+		int reclaimedAt;
+
+		ThreadTrace( Thread thread ) {
+			this.thread = thread;
+		}
+	}
+
+	private final String urlFilter;
+	private final String threadFilter;
+	private final Path directory;
+	private final int maxEvents;
+	private final Supplier<List<PageContext>> activePageContexts;
+
+	// Free buffers. Fixed slots, so taking and returning one never allocates.
+	private final AtomicReferenceArray<TraceBuffer> pool;
+	private final MpscRingBuffer<TraceBuffer> finished;
+
+	private final ThreadLocal<ThreadTrace> threadTraces = ThreadLocal.withInitial( this::register );
+	private final Set<ThreadTrace> registered = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong tracesWritten = new AtomicLong();
+	private final AtomicLong droppedRequests = new AtomicLong();
+	private final AtomicLong truncatedTraces = new AtomicLong();
+	private final ArrayDeque<String> recentFiles = new ArrayDeque<>();
+	private long fileSeq;
+
+	private volatile Thread writer;
+	private volatile boolean writerIdle;
+
+	/**
+	 * @param urlFilter glob on the request URI, null for any
+	 * @param threadFilter glob on the thread name, null for any
+	 * @param directory where trace files are written
+	 * @param maxEvents events per request; later events are dropped and the trace marked truncated
+	 * @param maxConcurrent requests traced at the same time (pool size)
+	 */
+	RequestTracer( String urlFilter, String threadFilter, Path directory, int maxEvents, int maxConcurrent,
+			Supplier<List<PageContext>> activePageContexts ) {
+		this.urlFilter = urlFilter;
+		this.threadFilter = threadFilter;
+		this.directory = directory;
+		this.maxEvents = maxEvents;
+		this.activePageContexts = activePageContexts;
+		this.pool = new AtomicReferenceArray<>( maxConcurrent );
+		for ( int i = 0; i < maxConcurrent; i++ ) {
+			pool.set( i, new TraceBuffer( maxEvents ) );
+		}
+		this.finished = new MpscRingBuffer<>( maxConcurrent * 2 );
+	}
+
+	void start() throws IOException {
+		Files.createDirectories( directory );
+		Thread t = new Thread( this::run, "luceedebug-trace-writer" );
+		t.setDaemon( true );
+		writer = t;
+		t.start();
+		Log.info( "Request tracing started, writing to " + directory
+			+ ( urlFilter != null ? ", url " + urlFilter : "" )
+			+ ( threadFilter != null ? ", thread " + threadFilter : "" ) );
+	}
+
+	/**
+	 * Stop the writer. No request starts being traced after this; the writer
+	 * writes out the requests still being traced before it exits.
+	 */
+	void stop() {
+		Thread t = writer;
+		if ( t == null ) {
+			return;
+		}
+		writer = null;
+		LockSupport.unpark( t );
+		Log.info( "Request tracing stopped" );
+	}
+
+	boolean isRunning() {
+		return writer != null;
+	}
+
+	String urlFilter() {
+		return urlFilter;
+	}
+
+	String threadFilter() {
+		return threadFilter;
+	}
+
+	Path directory() {
+		return directory;
+	}
+
+	int maxEvents() {
+		return maxEvents;
+	}
+
+	long tracesWritten() {
+		return tracesWritten.get();
+	}
+
+	long droppedRequests() {
+		return droppedRequests.get();
+	}
+
+	long truncatedTraces() {
+		return truncatedTraces.get();
+	}
+
+	/**
+	 * Most recently written trace files, oldest first.
+	 */
+	String[] recentFiles() {
+		synchronized ( recentFiles ) {
+			return recentFiles.toArray( new String[0] );
+		}
+	}
+
+	// ========== Request thread ==========
+
+	/**
+	 * A line is about to run. Hot path.
+	 */
+	void onLine( PageContext pc, String file, int line ) {
+		ThreadTrace tt = threadTraces.get();
+		tt.events++;
+		try {
+			TraceBuffer buf = forRequest( tt, pc );
+			if ( buf == null ) {
+				return;
+			}
+			long now = System.nanoTime();
+			syncDepth( tt, buf, pc, frameCount( pc ), now );
+			buf.line( now, file, line );
+		}
+		finally {
+			tt.events++;
+		}
+	}
+
+	/**
+	 * A UDF was called; its frame is already on the stack. Hot path.
+	 */
+	void onFunctionEntry( PageContext pc, String functionName, String componentName, String file, int startLine ) {
+		ThreadTrace tt = threadTraces.get();
+		tt.events++;
+		try {
+			TraceBuffer buf = forRequest( tt, pc );
+			if ( buf == null ) {
+				return;
+			}
+			long now = System.nanoTime();
+			syncDepth( tt, buf, pc, frameCount( pc ) - 1, now );
+			buf.enter( now, functionName, componentName, file, startLine );
+			tt.depth++;
+		}
+		finally {
+			tt.events++;
+		}
+	}
+
+	/**
+	 * Roll the calling thread's state over to pc's request if it changed.
+	 * @return the buffer to record into, null if this request isn't traced
+	 */
+	private TraceBuffer forRequest( ThreadTrace tt, PageContext pc ) {
+		int id = pc.getId();
+		long start = pc.getStartTime();
+		if ( tt.pc != pc || tt.pcId != id || tt.pcStart != start ) {
+			handOff( tt );
+			tt.pc = pc;
+			tt.pcId = id;
+			tt.pcStart = start;
+			tt.depth = 0;
+			String url = requestUrl( pc );
+			String threadName = tt.thread.getName();
+			if ( writer != null
+					&& ( urlFilter == null || Glob.matches( urlFilter, url ) )
+					&& ( threadFilter == null || Glob.matches( threadFilter, threadName ) ) ) {
+				TraceBuffer buf = take();
+				if ( buf == null ) {
+					droppedRequests.incrementAndGet();
+				}
+				else {
+					buf.begin( tt.thread.getId(), threadName, url, System.nanoTime() );
+					tt.buffer.set( buf );
+				}
+			}
+		}
+		return tt.buffer.get();
+	}
+
+	/**
+	 * Bring the open-function count in line with the frames actually on the stack:
+	 * close functions that have returned, open frames we never saw enter (the
+	 * request was already inside them, or they are includes). Only opening
+	 * needs the frames themselves, so only then are they copied.
+	 */
+	private static void syncDepth( ThreadTrace tt, TraceBuffer buf, PageContext pc, int frames, long now ) {
+		if ( frames < 0 ) {
+			return; // unknown - leave as is
+		}
+		while ( tt.depth > frames ) {
+			buf.exit( now );
+			tt.depth--;
+		}
+		if ( tt.depth < frames ) {
+			try {
+				Object[] stack = StackDepthTracker.getFrames( pc );
+				for ( int i = tt.depth; i < frames && i < stack.length; i++ ) {
+					String name = StackDepthTracker.getFunctionName( stack[i] );
+					buf.enter( now, name != null ? name : "<include>", null, null, 0 );
+				}
+			}
+			catch ( Throwable t ) {
+				// Count them anyway so we don't retry every line
+			}
+			tt.depth = frames;
+		}
+	}
+
+	private static int frameCount( PageContext pc ) {
+		try {
+			return StackDepthTracker.frameCount( pc );
+		}
+		catch ( Throwable t ) {
+			return -1;
+		}
+	}
+
+	private static String requestUrl( PageContext pc ) {
+		try {
+			return pc.getHttpServletRequest().getRequestURI();
+		}
+		catch ( Throwable t ) {
+			// No servlet request (e.g. a CLI or task context)
+			PageSource base = pc.getBasePageSource();
+			return base != null ? base.getDisplayPath() : null;
+		}
+	}
+
+	private TraceBuffer take() {
+		for ( int i = 0; i < pool.length(); i++ ) {
+			TraceBuffer buf = pool.get( i );
+			if ( buf != null && pool.compareAndSet( i, buf, null ) ) {
+				return buf;
+			}
+		}
+		return null;
+	}
+
+	private void giveBack( TraceBuffer buf ) {
+		buf.reset();
+		for ( int i = 0; i < pool.length(); i++ ) {
+			if ( pool.get( i ) == null && pool.compareAndSet( i, null, buf ) ) {
+				return;
+			}
+		}
+		// Can't happen - there are exactly pool.length() buffers
+	}
+
+	/**
+	 * Pass tt's buffer, if it still owns one, to the writer. Owning thread only.
+	 */
+	private void handOff( ThreadTrace tt ) {
+		TraceBuffer buf = tt.buffer.get();
+		if ( buf != null && tt.buffer.compareAndSet( buf, null ) ) {
+			if ( !finished.offer( buf ) ) {
+				giveBack( buf ); // ring holds twice the buffer count, so not expected
+				return;
+			}
+			if ( writerIdle ) {
+				LockSupport.unpark( writer );
+			}
+		}
+	}
+
+	private ThreadTrace register() {
+		ThreadTrace tt = new ThreadTrace( Thread.currentThread() );
+		registered.add( tt );
+		return tt;
+	}
+
+	// ========== Writer thread ==========
+
+	private void run() {
+		Thread self = Thread.currentThread();
+		long nextSweep = System.nanoTime() + SWEEP_INTERVAL_NANOS;
+		while ( writer == self ) {
+			try {
+				writeFinished();
+				if ( System.nanoTime() - nextSweep >= 0 ) {
+					sweep( false );
+					nextSweep = System.nanoTime() + SWEEP_INTERVAL_NANOS;
+				}
+			}
+			catch ( Throwable t ) {
+				Log.debug( "Tracer: write round failed: {}", t );
+			}
+			writerIdle = true;
+			if ( finished.isEmpty() ) {
+				LockSupport.parkNanos( this, WRITE_INTERVAL_NANOS );
+			}
+			writerIdle = false;
+		}
+		// Stopped: write what's left, waiting for threads still inside a callback to leave it
+		try {
+			long deadline = System.nanoTime() + STOP_TIMEOUT_NANOS;
+			writeFinished();
+			while ( sweep( true ) ) {
+				if ( System.nanoTime() - deadline >= 0 ) {
+					Log.debug( "Tracer: gave up waiting for threads to leave their trace callbacks" );
+					break;
+				}
+				LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos( 1 ) );
+			}
+			writeFinished();
+		}
+		catch ( Throwable t ) {
+			Log.debug( "Tracer: final write failed: {}", t );
+		}
+		registered.clear();
+	}
+
+	private void writeFinished() {
+		TraceBuffer buf;
+		while ( ( buf = finished.poll() ) != null ) {
+			write( buf );
+			giveBack( buf );
+		}
+	}
+
+	/**
+	 * Take buffers from threads whose request has ended without a follow-up
+	 * request to notice it (or from every thread, when stopping), and write
+	 * out the ones taken earlier whose thread has since left its callback.
+	 * @return whether a taken buffer is still waiting for its thread
+	 */
+	private boolean sweep( boolean all ) {
+		Set<PageContext> running = null;
+		boolean waiting = false;
+		for ( ThreadTrace tt : registered ) {
+			boolean alive = tt.thread.isAlive();
+			if ( tt.reclaimed != null ) {
+				if ( alive && tt.events == tt.reclaimedAt ) {
+					waiting = true;
+					continue;
+				}
+				write( tt.reclaimed );
+				giveBack( tt.reclaimed );
+				tt.reclaimed = null;
+			}
+			TraceBuffer buf = tt.buffer.get();
+			if ( buf == null ) {
+				if ( !alive ) {
+					registered.remove( tt );
+				}
+				continue;
+			}
+			if ( !all && alive ) {
+				if ( running == null ) {
+					running = runningPageContexts();
+				}
+				if ( isRunning( tt, running ) ) {
+					continue;
+				}
+			}
+			if ( tt.buffer.compareAndSet( buf, null ) ) {
+				int events = tt.events;
+				if ( alive && ( events & 1 ) != 0 ) {
+					// The owner may be writing into it right now
+					tt.reclaimed = buf;
+					tt.reclaimedAt = events;
+					waiting = true;
+				}
+				else {
+					write( buf );
+					giveBack( buf );
+				}
+			}
+		}
+		return waiting;
+	}
+
+	/**
+	 * Whether tt's request is still running: its PageContext is active, still
+	 * on tt's thread and not recycled for another request.
+	 */
+	private static boolean isRunning( ThreadTrace tt, Set<PageContext> running ) {
+		PageContext pc = tt.pc;
+		if ( pc == null || !running.contains( pc ) || pc.getId() != tt.pcId || pc.getStartTime() != tt.pcStart ) {
+			return false;
+		}
+		Thread thread = pc.getThread();
+		return thread == null || thread == tt.thread;
+	}
+
+	/**
+	 * Active PageContexts plus the child PageContexts of their running cfthreads,
+	 * which the factory doesn't list as active.
+	 */
+	private Set<PageContext> runningPageContexts() {
+		Set<PageContext> running = Collections.newSetFromMap( new IdentityHashMap<PageContext, Boolean>() );
+		ArrayDeque<PageContext> pending = new ArrayDeque<>( activePageContexts.get() );
+		PageContext pc;
+		while ( ( pc = pending.poll() ) != null ) {
+			if ( running.add( pc ) && pc instanceof PageContextImpl ) {
+				try {
+					Queue<PageContext> children = ( (PageContextImpl) pc ).getChildPageContexts();
+					if ( children != null ) {
+						pending.addAll( children );
+					}
+				}
+				catch ( Throwable t ) {
+					// No child list on this core - its cfthreads look finished
+				}
+			}
+		}
+		return running;
+	}
+
+	private void write( TraceBuffer buf ) {
+		if ( buf.size() == 0 ) {
+			return;
+		}
+		Path file = directory.resolve( "trace-" + buf.startMillis + "-" + buf.threadId + "-" + ( ++fileSeq ) + ".json" );
+		try ( Writer out = Files.newBufferedWriter( file, StandardCharsets.UTF_8 ) ) {
+			buf.writeChromeTrace( out );
+		}
+		catch ( IOException e ) {
+			Log.error( "Failed to write trace " + file, e );
+			return;
+		}
+		tracesWritten.incrementAndGet();
+		if ( buf.truncated ) {
+			truncatedTraces.incrementAndGet();
+		}
+		synchronized ( recentFiles ) {
+			if ( recentFiles.size() == MAX_RECENT_FILES ) {
+				recentFiles.removeFirst();
+			}
+			recentFiles.addLast( file.toString() );
+		}
+		Log.debug( "Trace written: {}", file );
+	}
+}
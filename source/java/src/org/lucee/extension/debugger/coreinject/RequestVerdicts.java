@@ -0,0 +1,94 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+import lucee.runtime.PageContext;
+
+import org.lucee.extension.debugger.Log;
+import org.lucee.extension.debugger.util.Glob;
+
+/**
+ * A filter's verdict for the request each thread is running, shared by
+ * RequestFilter and AppFilter, plus the attach-config parsing they share.
+ *
+ * The verdict is worked out once per request and kept in a thread-local, so
+ * later checks are a thread-local read and a few field compares. The request
+ * is identified the way RequestTracer does: PageContexts are pooled, so the
+ * id and start time tell a reused one apart. A filter may add a key of its
+ * own that the verdict also depends on (AppFilter: the application context).
+ *
+ * Each filter has its own instance, so replacing a filter drops every cached verdict.
+ *
+ * @param <K> the filter's own key, Void for none
+ */
+final class RequestVerdicts<K> {
+
+	private static final class Verdict {
+		PageContext pc;
+		int pcId;
+		long pcStart;
+		Object key;
+		boolean pass;
+	}
+
+	private final String name;
+	private final BiPredicate<PageContext, K> evaluator;
+	private final ThreadLocal<Verdict> verdicts = ThreadLocal.withInitial( Verdict::new );
+
+	/**
+	 * @param name for the debug log, e.g. "Request filter"
+	 * @param evaluator works out the verdict for a request and key
+	 */
+	RequestVerdicts( String name, BiPredicate<PageContext, K> evaluator ) {
+		this.name = name;
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * The verdict for the request pc is running, evaluated again only when the
+	 * request or key changes.
+	 */
+	boolean matches( PageContext pc, K key ) {
+		Verdict v = verdicts.get();
+		int id = pc.getId();
+		long start = pc.getStartTime();
+		if ( v.pc != pc || v.pcId != id || v.pcStart != start || v.key != key ) {
+			v.pc = pc;
+			v.pcId = id;
+			v.pcStart = start;
+			v.key = key;
+			v.pass = evaluator.test( pc, key );
+			if ( Log.isDebugEnabled() ) {
+				Log.debug( name + " " + ( v.pass ? "matched" : "rejected" ) + " request on " + Thread.currentThread().getName() );
+			}
+		}
+		return v.pass;
+	}
+
+	/**
+	 * A config value that is a string or a list of strings, trimmed, blanks dropped.
+	 */
+	static List<String> strings( Object value ) {
+		List<String> result = new ArrayList<>();
+		if ( value instanceof String ) {
+			if ( !( (String) value ).trim().isEmpty() ) result.add( ( (String) value ).trim() );
+		}
+		else if ( value instanceof List ) {
+			for ( Object o : (List<?>) value ) {
+				if ( o instanceof String && !( (String) o ).trim().isEmpty() ) result.add( ( (String) o ).trim() );
+			}
+		}
+		return result;
+	}
+
+	static boolean anyGlob( String[] globs, String text ) {
+		for ( String glob : globs ) {
+			if ( Glob.matches( glob, text ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
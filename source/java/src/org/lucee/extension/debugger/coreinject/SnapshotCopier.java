@@ -0,0 +1,246 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lucee.runtime.Component;
+import lucee.runtime.type.Array;
+import lucee.runtime.type.Collection;
+import lucee.runtime.type.Query;
+import lucee.runtime.type.UDF;
+
+import org.lucee.extension.debugger.coreinject.CfValueDebuggerBridge.MarkerTrait;
+
+/**
+ * Deep copy of CFML values for snapshot breakpoints, within a depth and size budget.
+ *
+ * Runs on the request thread at the breakpoint, which then continues and may
+ * change everything it references - so structs, arrays and query rows are
+ * copied into detached MarkerTrait.Snapshot values that CfValueDebuggerBridge
+ * renders like the live ones. Simple values are kept as they are; strings are
+ * cut at maxStringLength.
+ *
+ * Every copied value counts against maxValues for the whole snapshot; once
+ * it is spent, containers stop taking members. Containers nested more than
+ * maxDepth levels below a scope are summarized (label only). Either marks the
+ * copy truncated. A container already being copied higher up is summarized as
+ * a cycle.
+ *
+ * One instance per snapshot; not thread-safe.
+ */
+final class SnapshotCopier {
+
+	static final String CYCLE = "<<cycle>>";
+
+	private final int maxDepth;
+	private final int maxStringLength;
+	private int remaining;
+	private boolean truncated;
+	private int copied;
+	// Containers on the current copy path, for cycle detection
+	private final IdentityHashMap<Object, Boolean> inProgress = new IdentityHashMap<>();
+
+	SnapshotCopier( int maxDepth, int maxValues, int maxStringLength ) {
+		this.maxDepth = maxDepth;
+		this.remaining = maxValues;
+		this.maxStringLength = maxStringLength;
+	}
+
+	/**
+	 * True if anything was summarized or cut short to stay within budget.
+	 */
+	boolean truncated() {
+		return truncated;
+	}
+
+	/**
+	 * Number of values copied so far.
+	 */
+	int copied() {
+		return copied;
+	}
+
+	/**
+	 * Copy a scope. Its members start at depth 1.
+	 * @return the copy, or null if scope is null
+	 */
+	MarkerTrait.Snapshot copyScope( Map<?, ?> scope ) {
+		if ( scope == null ) {
+			return null;
+		}
+		Object copy = copy( scope, 0 );
+		return copy instanceof MarkerTrait.Snapshot ? (MarkerTrait.Snapshot) copy : null;
+	}
+
+	Object copy( Object value, int depth ) {
+		if ( value == null || value instanceof Number || value instanceof Boolean || value instanceof Date || value instanceof Character ) {
+			take();
+			return value;
+		}
+		if ( value instanceof CharSequence ) {
+			take();
+			String s = value.toString();
+			if ( s.length() > maxStringLength ) {
+				truncated = true;
+				return s.substring( 0, maxStringLength ) + "... (" + s.length() + " chars)";
+			}
+			return s;
+		}
+		if ( value instanceof UDF ) {
+			take();
+			return new MarkerTrait.Snapshot( "function " + ( (UDF) value ).getFunctionName() + "()", null, null );
+		}
+		if ( value instanceof Query ) {
+			return copyQuery( (Query) value, depth );
+		}
+		if ( value instanceof Array ) {
+			return copyArray( (Array) value, depth );
+		}
+		if ( value instanceof List ) {
+			return copyList( (List<?>) value, depth );
+		}
+		if ( value instanceof Map ) {
+			return copyMap( (Map<?, ?>) value, depth );
+		}
+		take();
+		return new MarkerTrait.Snapshot( value.getClass().getName(), null, null );
+	}
+
+	private Object copyMap( Map<?, ?> map, int depth ) {
+		String label;
+		if ( map instanceof Component ) {
+			label = "cfc<" + ( (Component) map ).getName() + ">";
+		}
+		else {
+			label = "{} (" + map.size() + " members)";
+		}
+		Object summary = enter( map, label, depth );
+		if ( summary != null ) {
+			return summary;
+		}
+		try {
+			Map<String, Object> members = new LinkedHashMap<>();
+			for ( Map.Entry<?, ?> entry : map.entrySet() ) {
+				Object v = entry.getValue();
+				if ( CfValueDebuggerBridge.isNoisyComponentFunction( v ) ) {
+					continue; // same filter as the live view
+				}
+				if ( remaining <= 0 ) {
+					truncated = true;
+					break;
+				}
+				members.put( String.valueOf( entry.getKey() ), copy( v, depth + 1 ) );
+			}
+			return new MarkerTrait.Snapshot( label, members, null );
+		}
+		finally {
+			inProgress.remove( map );
+		}
+	}
+
+	private Object copyArray( Array array, int depth ) {
+		int size = array.size();
+		Object summary = enter( array, "Array (" + size + ")", depth );
+		if ( summary != null ) {
+			return summary;
+		}
+		try {
+			List<Object> items = new ArrayList<>( Math.max( 0, Math.min( size, remaining ) ) );
+			for ( int i = 1; i <= size; i++ ) {
+				if ( remaining <= 0 ) {
+					truncated = true;
+					break;
+				}
+				items.add( copy( array.get( i, null ), depth + 1 ) );
+			}
+			return new MarkerTrait.Snapshot( "Array (" + size + ")", null, items );
+		}
+		finally {
+			inProgress.remove( array );
+		}
+	}
+
+	private Object copyList( List<?> list, int depth ) {
+		int size = list.size();
+		Object summary = enter( list, "Array (" + size + ")", depth );
+		if ( summary != null ) {
+			return summary;
+		}
+		try {
+			List<Object> items = new ArrayList<>( Math.max( 0, Math.min( size, remaining ) ) );
+			for ( Object item : list ) {
+				if ( remaining <= 0 ) {
+					truncated = true;
+					break;
+				}
+				items.add( copy( item, depth + 1 ) );
+			}
+			return new MarkerTrait.Snapshot( "Array (" + size + ")", null, items );
+		}
+		finally {
+			inProgress.remove( list );
+		}
+	}
+
+	/**
+	 * A query becomes an array of row structs, like the live view.
+	 */
+	private Object copyQuery( Query query, int depth ) {
+		int rows = query.getRecordcount();
+		String label = "Query (" + rows + " rows)";
+		Object summary = enter( query, label, depth );
+		if ( summary != null ) {
+			return summary;
+		}
+		try {
+			Collection.Key[] columns = query.getColumnNames();
+			List<Object> items = new ArrayList<>( Math.max( 0, Math.min( rows, remaining ) ) );
+			for ( int row = 1; row <= rows; row++ ) {
+				if ( remaining <= 0 || depth + 1 > maxDepth ) {
+					truncated = true;
+					break;
+				}
+				take();
+				Map<String, Object> members = new LinkedHashMap<>();
+				for ( Collection.Key column : columns ) {
+					if ( remaining <= 0 ) {
+						truncated = true;
+						break;
+					}
+					members.put( column.getString(), copy( query.getAt( column, row, null ), depth + 2 ) );
+				}
+				items.add( new MarkerTrait.Snapshot( "{} (" + columns.length + " members)", members, null ) );
+			}
+			return new MarkerTrait.Snapshot( label, null, items );
+		}
+		finally {
+			inProgress.remove( query );
+		}
+	}
+
+	/**
+	 * Account for a container about to be copied.
+	 * @return a summary to use instead of copying it, or null to go ahead
+	 */
+	private Object enter( Object container, String label, int depth ) {
+		take();
+		if ( inProgress.containsKey( container ) ) {
+			return new MarkerTrait.Snapshot( CYCLE, null, null );
+		}
+		if ( depth > maxDepth ) {
+			truncated = true;
+			return new MarkerTrait.Snapshot( label, null, null );
+		}
+		inProgress.put( container, Boolean.TRUE );
+		return null;
+	}
+
+	private void take() {
+		remaining--;
+		copied++;
+	}
+}
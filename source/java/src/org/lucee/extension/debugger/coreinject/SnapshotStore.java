@@ -0,0 +1,194 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lucee.runtime.PageContext;
+
+import org.lucee.extension.debugger.IDebugFrame;
+import org.lucee.extension.debugger.Log;
+import org.lucee.extension.debugger.coreinject.CfValueDebuggerBridge.MarkerTrait;
+import org.lucee.extension.debugger.coreinject.frame.NativeDebugFrame;
+import org.lucee.extension.debugger.coreinject.frame.SnapshotFrame;
+
+/**
+ * In-memory store of snapshots taken by snapshot breakpoints.
+ *
+ * A snapshot is the request's native frames at the breakpoint, each with
+ * copies of its local, arguments and variables scopes (see SnapshotCopier),
+ * taken on the request thread, which then continues. The budgets apply to the
+ * whole snapshot, newest frame first, so the frame that hit gets the most.
+ *
+ * Each snapshot is addressed by a virtual thread id (THREAD_ID_BASE + id) so
+ * the ordinary stackTrace / scopes / variables requests can browse it. The
+ * oldest snapshots are dropped beyond maxCount.
+ */
+final class SnapshotStore {
+
+	static final int DEFAULT_MAX_DEPTH = 3;
+	static final int DEFAULT_MAX_VALUES = 5_000;
+	static final int DEFAULT_MAX_COUNT = 100;
+	static final int MAX_STRING_LENGTH = 10_000;
+	/**
+	 * Above any real Java thread id, within the int range DAP uses for thread ids.
+	 */
+	static final long THREAD_ID_BASE = 1_000_000_000L;
+
+	/**
+	 * One captured request state.
+	 */
+	static final class Snapshot {
+		final int id;
+		final long capturedAt; // epoch millis
+		final String file;
+		final int line;
+		final String threadName;
+		final SnapshotFrame[] frames;
+		final int values;
+		final boolean truncated;
+
+		Snapshot( int id, long capturedAt, String file, int line, String threadName, SnapshotFrame[] frames, int values, boolean truncated ) {
+			this.id = id;
+			this.capturedAt = capturedAt;
+			this.file = file;
+			this.line = line;
+			this.threadName = threadName;
+			this.frames = frames;
+			this.values = values;
+			this.truncated = truncated;
+		}
+
+		long threadId() {
+			return THREAD_ID_BASE + id;
+		}
+	}
+
+	private final ArrayDeque<Snapshot> snapshots = new ArrayDeque<>();
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	private volatile int maxDepth = DEFAULT_MAX_DEPTH;
+	private volatile int maxValues = DEFAULT_MAX_VALUES;
+	private volatile int maxCount = DEFAULT_MAX_COUNT;
+
+	/**
+	 * Set the budgets; values <= 0 keep the current setting.
+	 */
+	void configure( int maxDepth, int maxValues, int maxCount ) {
+		if ( maxDepth > 0 ) this.maxDepth = maxDepth;
+		if ( maxValues > 0 ) this.maxValues = maxValues;
+		if ( maxCount > 0 ) {
+			this.maxCount = maxCount;
+			synchronized ( snapshots ) {
+				while ( snapshots.size() > maxCount ) {
+					snapshots.removeFirst();
+				}
+			}
+		}
+	}
+
+	static boolean isSnapshotThreadId( long threadId ) {
+		return threadId > THREAD_ID_BASE;
+	}
+
+	/**
+	 * Capture pc's frames. Runs on the request thread.
+	 * @return the snapshot, or null if there were no frames to capture
+	 */
+	Snapshot capture( PageContext pc, String file, int line, ValTracker valTracker, ClassLoader luceeClassLoader ) {
+		NativeDebugFrame[] live = NativeDebugFrame.getNativeFramesAt( pc, valTracker, file, line, luceeClassLoader );
+		if ( live == null ) {
+			return null;
+		}
+		SnapshotCopier copier = new SnapshotCopier( maxDepth, maxValues, MAX_STRING_LENGTH );
+		// Frames of one template share its variables scope - copy it once
+		IdentityHashMap<Object, MarkerTrait.Snapshot> copies = new IdentityHashMap<>();
+		SnapshotFrame[] frames = new SnapshotFrame[live.length];
+		for ( int i = 0; i < live.length; i++ ) {
+			Map<String, MarkerTrait.Snapshot> scopes = new LinkedHashMap<>();
+			putScope( scopes, "local", live[i].getLocalScope(), copier, copies );
+			putScope( scopes, "arguments", live[i].getArgumentsScope(), copier, copies );
+			putScope( scopes, "variables", live[i].getVariablesScope(), copier, copies );
+			// The top frame's line may not have been advanced yet; the breakpoint line is where we are
+			frames[i] = new SnapshotFrame( live[i], i == 0 ? line : live[i].getLine(), scopes, valTracker );
+		}
+		Snapshot snapshot = new Snapshot( nextId.incrementAndGet(), System.currentTimeMillis(), file, line,
+			Thread.currentThread().getName(), frames, copier.copied(), copier.truncated() );
+		synchronized ( snapshots ) {
+			snapshots.addLast( snapshot );
+			while ( snapshots.size() > maxCount ) {
+				snapshots.removeFirst();
+			}
+		}
+		if ( Log.isDebugEnabled() ) {
+			Log.debug( "Snapshot " + snapshot.id + " at " + file + ":" + line + ": " + frames.length + " frames, "
+				+ snapshot.values + " values" + ( snapshot.truncated ? " (truncated)" : "" ) );
+		}
+		return snapshot;
+	}
+
+	private static void putScope( Map<String, MarkerTrait.Snapshot> scopes, String name, Object scope,
+			SnapshotCopier copier, IdentityHashMap<Object, MarkerTrait.Snapshot> copies ) {
+		if ( !( scope instanceof Map ) ) {
+			return;
+		}
+		MarkerTrait.Snapshot copy = copies.get( scope );
+		if ( copy == null ) {
+			try {
+				copy = copier.copyScope( (Map<?, ?>) scope );
+			}
+			catch ( Throwable t ) {
+				// Scope changed under us (shared struct written by another thread) - keep what we can say
+				copy = new MarkerTrait.Snapshot( "<<unreadable: " + t.getClass().getSimpleName() + ">>", null, null );
+			}
+			if ( copy == null ) {
+				return;
+			}
+			copies.put( scope, copy );
+		}
+		scopes.put( name, copy );
+	}
+
+	/**
+	 * @return the snapshot for a virtual thread id, or null if unknown or dropped
+	 */
+	Snapshot get( long threadId ) {
+		synchronized ( snapshots ) {
+			for ( Snapshot s : snapshots ) {
+				if ( s.threadId() == threadId ) {
+					return s;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Stored snapshots, oldest first.
+	 */
+	List<Snapshot> list() {
+		synchronized ( snapshots ) {
+			return new ArrayList<>( snapshots );
+		}
+	}
+
+	/**
+	 * @return number of snapshots removed
+	 */
+	int clear() {
+		synchronized ( snapshots ) {
+			int n = snapshots.size();
+			snapshots.clear();
+			return n;
+		}
+	}
+
+	IDebugFrame[] frames( long threadId ) {
+		Snapshot s = get( threadId );
+		return s != null ? s.frames : null;
+	}
+}
@@ -0,0 +1,236 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import lucee.runtime.PageContext;
+
+import org.lucee.extension.debugger.Log;
+
+/**
+ * CFML stack depth for native stepping.
+ *
+ * Depth is the number of DebuggerFrames with line > 0 (frames start at line 0
+ * until their first ExecutionLog.start()), matching NativeDebugFrame filtering.
+ *
+ * A full count needs getLine() on every frame, on every line while stepping.
+ * An instance of this class remembers the frames it saw last time plus a
+ * running count per frame. Only the top frame's line can change while it stays
+ * on the stack - callers are parked at their call site - so after matching the
+ * shared prefix by identity, only new frames and the current top need a
+ * getLine() call. Plain stepping inside one function is one getLine() per line.
+ *
+ * getDebuggerFrames() and DebuggerFrame.getLine() are Lucee 7.1 core APIs not
+ * in the loader, so they are reached through MethodHandles cached per class.
+ *
+ * Instances are not thread-safe; each belongs to one stepping thread.
+ */
+final class StackDepthTracker {
+
+	private static final MethodType FRAMES_TYPE = MethodType.methodType( Object[].class, Object.class );
+	private static final MethodType LINE_TYPE = MethodType.methodType( int.class, Object.class );
+	private static final MethodType NAME_TYPE = MethodType.methodType( String.class, Object.class );
+
+	/**
+	 * Names of the private PageContextImpl field that holds the DebuggerFrames, by
+	 * Lucee version (7.1: ArrayList<DebuggerFrame> debuggerFrames). Only a field
+	 * with one of these names and a Collection of DebuggerFrame type is read.
+	 */
+	private static final String[] FRAME_FIELDS = { "debuggerFrames" };
+
+	private static volatile boolean loggedFrameCountFallback;
+
+	private static volatile ClassHandle framesHandle;
+	private static volatile ClassHandle countHandle;
+	private static volatile ClassHandle lineHandle;
+	private static volatile ClassHandle nameHandle;
+
+	/**
+	 * A handle plus the receiver class it was resolved for.
+	 */
+	private static final class ClassHandle {
+		final Class<?> owner;
+		final MethodHandle handle;
+
+		ClassHandle( Class<?> owner, MethodHandle handle ) {
+			this.owner = owner;
+			this.handle = handle;
+		}
+	}
+
+	private Object[] lastFrames = new Object[0];
+	// countBelow[i] = frames with line > 0 among lastFrames[0..i-1]
+	private int[] countBelow = new int[0];
+
+	/**
+	 * Full walk: fetch frames and count those with line > 0.
+	 */
+	static int fullDepth( PageContext pc ) throws Throwable {
+		return fullDepth( getFrames( pc ) );
+	}
+
+	static int fullDepth( Object[] frames ) throws Throwable {
+		if ( frames == null ) {
+			return 0;
+		}
+		int count = 0;
+		for ( Object frame : frames ) {
+			if ( getLine( frame ) > 0 ) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Incremental depth for this tracker's thread.
+	 */
+	int depth( PageContext pc ) throws Throwable {
+		return depth( getFrames( pc ) );
+	}
+
+	int depth( Object[] frames ) throws Throwable {
+		int n = frames == null ? 0 : frames.length;
+		if ( n == 0 ) {
+			lastFrames = new Object[0];
+			return 0;
+		}
+
+		// Longest shared prefix. Frames are pushed/popped one at a time, so this
+		// is almost always min(n, last) or one less - a couple of compares.
+		Object[] last = lastFrames;
+		// A reused (non-copied) array would compare equal to itself - assume nothing is shared
+		int shared = frames == last ? 0 : Math.min( n, last.length );
+		while ( shared > 0 && frames[shared - 1] != last[shared - 1] ) {
+			shared--;
+		}
+		// Frames below the topmost shared frame stayed parked since last time, so
+		// their counts hold. The topmost shared frame itself may have run since.
+		int start = shared > 0 ? shared - 1 : 0;
+
+		int[] counts = countBelow;
+		if ( counts.length < n ) {
+			int[] grown = new int[Math.max( n, counts.length * 2 )];
+			System.arraycopy( counts, 0, grown, 0, Math.min( start + 1, counts.length ) );
+			counts = grown;
+			countBelow = counts;
+		}
+		int running = start == 0 ? 0 : counts[start];
+		for ( int i = start; i < n - 1; i++ ) {
+			if ( getLine( frames[i] ) > 0 ) running++;
+			counts[i + 1] = running;
+		}
+		lastFrames = frames;
+		return running + ( getLine( frames[n - 1] ) > 0 ? 1 : 0 );
+	}
+
+	static Object[] getFrames( PageContext pc ) throws Throwable {
+		Class<?> cls = pc.getClass();
+		ClassHandle h = framesHandle;
+		if ( h == null || h.owner != cls ) {
+			h = new ClassHandle( cls, resolve( cls, "getDebuggerFrames", FRAMES_TYPE ) );
+			framesHandle = h;
+		}
+		return (Object[]) h.handle.invokeExact( (Object) pc );
+	}
+
+	/**
+	 * Number of DebuggerFrames on pc's stack, for the owning thread. Where
+	 * PageContextImpl keeps them in a known Collection field (FRAME_FIELDS) this
+	 * reads its size, without the copy getDebuggerFrames() makes; otherwise it
+	 * counts that copy.
+	 */
+	static int frameCount( PageContext pc ) throws Throwable {
+		Class<?> cls = pc.getClass();
+		ClassHandle h = countHandle;
+		if ( h == null || h.owner != cls ) {
+			h = new ClassHandle( cls, resolveFrameCount( cls ) );
+			countHandle = h;
+		}
+		return (int) h.handle.invokeExact( (Object) pc );
+	}
+
+	static int getLine( Object frame ) throws Throwable {
+		Class<?> cls = frame.getClass();
+		ClassHandle h = lineHandle;
+		if ( h == null || h.owner != cls ) {
+			h = new ClassHandle( cls, resolve( cls, "getLine", LINE_TYPE ) );
+			lineHandle = h;
+		}
+		return (int) h.handle.invokeExact( frame );
+	}
+
+	/**
+	 * DebuggerFrame.functionName, null for include frames.
+	 */
+	static String getFunctionName( Object frame ) throws Throwable {
+		Class<?> cls = frame.getClass();
+		ClassHandle h = nameHandle;
+		if ( h == null || h.owner != cls ) {
+			h = new ClassHandle( cls, MethodHandles.publicLookup().unreflectGetter( cls.getField( "functionName" ) ).asType( NAME_TYPE ) );
+			nameHandle = h;
+		}
+		return (String) h.handle.invokeExact( frame );
+	}
+
+	private static MethodHandle resolve( Class<?> cls, String name, MethodType type ) throws ReflectiveOperationException {
+		return MethodHandles.publicLookup().unreflect( cls.getMethod( name ) ).asType( type );
+	}
+
+	private static MethodHandle resolveFrameCount( Class<?> cls ) throws ReflectiveOperationException {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		Field f = frameField( cls );
+		if ( f != null ) {
+			return MethodHandles.filterReturnValue(
+				lookup.unreflectGetter( f ).asType( MethodType.methodType( Collection.class, Object.class ) ),
+				lookup.findStatic( StackDepthTracker.class, "size", MethodType.methodType( int.class, Collection.class ) ) );
+		}
+		if ( !loggedFrameCountFallback ) {
+			loggedFrameCountFallback = true;
+			Log.info( "No known DebuggerFrame list in " + cls.getName() + " - frame counts copy getDebuggerFrames()" );
+		}
+		return MethodHandles.filterReturnValue( resolve( cls, "getDebuggerFrames", FRAMES_TYPE ),
+			lookup.findStatic( StackDepthTracker.class, "length", MethodType.methodType( int.class, Object[].class ) ) );
+	}
+
+	/**
+	 * The field named in FRAME_FIELDS declared by cls or a superclass, if it is a
+	 * Collection of DebuggerFrames and accessible; null otherwise.
+	 */
+	private static Field frameField( Class<?> cls ) {
+		for ( Class<?> c = cls; c != null; c = c.getSuperclass() ) {
+			for ( String name : FRAME_FIELDS ) {
+				Field f;
+				try {
+					f = c.getDeclaredField( name );
+				}
+				catch ( NoSuchFieldException e ) {
+					continue;
+				}
+				if ( !Modifier.isStatic( f.getModifiers() ) && Collection.class.isAssignableFrom( f.getType() )
+						&& f.getGenericType() instanceof ParameterizedType
+						&& isDebuggerFrame( ( (ParameterizedType) f.getGenericType() ).getActualTypeArguments()[0] )
+						&& f.trySetAccessible() ) {
+					return f;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean isDebuggerFrame( Type type ) {
+		return type instanceof Class && ( (Class<?>) type ).getSimpleName().equals( "DebuggerFrame" );
+	}
+
+	private static int size( Collection<?> frames ) {
+		return frames == null ? 0 : frames.size();
+	}
+
+	private static int length( Object[] frames ) {
+		return frames == null ? 0 : frames.length;
+	}
+}
@@ -0,0 +1,91 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts threads suspended at once against a limit, so a breakpoint on a busy
+ * code path can't park every worker thread in the pool. One instance caps all
+ * suspensions (maxSuspendedThreads in the attach config); a breakpoint's
+ * "threads N" limit clause gets its own (see BreakpointLimits).
+ *
+ * A slot is taken with a CAS before the thread suspends and given back when
+ * it is resumed, so the limit holds however many threads hit at once. Hits
+ * turned away are counted so they can be reported: skip() returns 1 for the
+ * first hit turned away since the last release, release() hands back how many
+ * were turned away meanwhile.
+ */
+final class SuspendLimiter {
+
+	private volatile int max; // 0 = unlimited
+	private final AtomicInteger suspended = new AtomicInteger();
+	private final AtomicLong skipped = new AtomicLong();
+	private final AtomicLong skippedTotal = new AtomicLong();
+
+	SuspendLimiter( int max ) {
+		this.max = Math.max( 0, max );
+	}
+
+	/**
+	 * Change the limit. Threads already suspended stay suspended; a lower limit
+	 * only turns hits away until enough of them resume.
+	 */
+	void setMax( int max ) {
+		this.max = Math.max( 0, max );
+	}
+
+	int getMax() {
+		return max;
+	}
+
+	/**
+	 * Take a slot if the limit allows.
+	 * @return false if the limit is reached - the caller should skip the hit and call skip()
+	 */
+	boolean tryAcquire() {
+		int limit = max;
+		for ( ;; ) {
+			int n = suspended.get();
+			if ( limit > 0 && n >= limit ) {
+				return false;
+			}
+			if ( suspended.compareAndSet( n, n + 1 ) ) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Take a slot regardless of the limit, for a suspension the user asked for
+	 * on that thread (stepping, pausing it, a breakpoint() call) - it still counts.
+	 */
+	void acquire() {
+		suspended.incrementAndGet();
+	}
+
+	/**
+	 * Give a slot back.
+	 * @return hits skipped since the previous release, 0 if none
+	 */
+	long release() {
+		suspended.decrementAndGet();
+		return skipped.get() == 0 ? 0 : skipped.getAndSet( 0 );
+	}
+
+	/**
+	 * Count a hit turned away at the limit.
+	 * @return hits skipped since the last release, 1 when the limit was just reached
+	 */
+	long skip() {
+		skippedTotal.incrementAndGet();
+		return skipped.incrementAndGet();
+	}
+
+	int getSuspended() {
+		return suspended.get();
+	}
+
+	long getSkippedTotal() {
+		return skippedTotal.get();
+	}
+}
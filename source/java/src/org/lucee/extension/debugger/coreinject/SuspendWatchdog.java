@@ -0,0 +1,194 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.lucee.extension.debugger.Log;
+
+/**
+ * Fires when a thread has been suspended longer than its budget, so a
+ * forgotten breakpoint can't hold a request's DB connections and locks for
+ * hours (maxSuspendSeconds in the attach config).
+ *
+ * One daemon thread drives a hashed timer wheel rather than a timer per
+ * suspension: WHEEL_SIZE buckets, one per tick, and a timeout further out than
+ * one turn waits a number of extra rounds in its bucket. Threads suspending or
+ * resuming never touch the wheel - schedule() queues the timeout for the
+ * wheel thread to place, and cancel() just marks it, so it is dropped when the
+ * wheel next passes its bucket. With nothing scheduled the thread parks until
+ * schedule() wakes it.
+ */
+final class SuspendWatchdog {
+
+	static final long DEFAULT_TICK_MS = 250;
+	private static final int WHEEL_SIZE = 512; // power of two
+
+	/**
+	 * A scheduled expiry. Cancelled by the thread that resumes the suspended one.
+	 */
+	static final class Timeout {
+		final long threadId;
+		final Object owner;
+		final long deadline;
+		private volatile boolean cancelled;
+		// Wheel thread only
+		long rounds;
+		Timeout next;
+
+		Timeout( long threadId, Object owner, long deadline ) {
+			this.threadId = threadId;
+			this.owner = owner;
+			this.deadline = deadline;
+		}
+
+		void cancel() {
+			cancelled = true;
+		}
+
+		boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	private final Consumer<Timeout> expired;
+	private final long tickNanos;
+	private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+
+	// Wheel thread only
+	private final Timeout[] buckets = new Timeout[WHEEL_SIZE];
+	private long tick;
+	private long startTime;
+	private int scheduled;
+
+	private volatile Thread worker;
+
+	/**
+	 * @param expired called on the wheel thread for each timeout reached and not cancelled
+	 */
+	SuspendWatchdog( Consumer<Timeout> expired ) {
+		this( expired, DEFAULT_TICK_MS );
+	}
+
+	SuspendWatchdog( Consumer<Timeout> expired, long tickMs ) {
+		this.expired = expired;
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos( tickMs );
+	}
+
+	/**
+	 * Schedule an expiry; the wheel thread starts on first use.
+	 * Fires up to one tick late, never early.
+	 * @param owner identifies the suspension, so a late expiry can tell it apart from a newer one on the same thread
+	 */
+	Timeout schedule( long threadId, Object owner, long delayNanos ) {
+		Timeout timeout = new Timeout( threadId, owner, System.nanoTime() + delayNanos );
+		incoming.add( timeout );
+		Thread t = worker;
+		if ( t == null ) {
+			t = start();
+		}
+		LockSupport.unpark( t );
+		return timeout;
+	}
+
+	private synchronized Thread start() {
+		if ( worker == null ) {
+			Thread t = new Thread( this::run, "luceedebug-suspend-watchdog" );
+			t.setDaemon( true );
+			worker = t;
+			t.start();
+		}
+		return worker;
+	}
+
+	private void run() {
+		startTime = System.nanoTime();
+		for ( ;; ) {
+			if ( scheduled == 0 && incoming.isEmpty() ) {
+				// Idle - wait for schedule(), then restart the clock from now
+				LockSupport.park( this );
+				if ( incoming.isEmpty() ) {
+					continue;
+				}
+				startTime = System.nanoTime() - tick * tickNanos;
+			}
+			long tickDeadline = startTime + ( tick + 1 ) * tickNanos;
+			long sleep = tickDeadline - System.nanoTime();
+			if ( sleep > 0 ) {
+				LockSupport.parkNanos( this, sleep );
+				if ( tickDeadline - System.nanoTime() > 0 ) {
+					// Woken early by schedule() - place the new timeouts, then keep waiting
+					transferIncoming();
+					continue;
+				}
+			}
+			transferIncoming();
+			expireBucket( (int) ( tick & ( WHEEL_SIZE - 1 ) ), System.nanoTime() );
+			tick++;
+		}
+	}
+
+	private void transferIncoming() {
+		Timeout timeout;
+		while ( ( timeout = incoming.poll() ) != null ) {
+			if ( timeout.isCancelled() ) {
+				continue;
+			}
+			// The tick whose end is at or past the deadline; never one already processed
+			long due = Math.max( tick, ( timeout.deadline - startTime + tickNanos - 1 ) / tickNanos - 1 );
+			timeout.rounds = ( due - tick ) / WHEEL_SIZE;
+			int bucket = (int) ( due & ( WHEEL_SIZE - 1 ) );
+			timeout.next = buckets[bucket];
+			buckets[bucket] = timeout;
+			scheduled++;
+		}
+	}
+
+	private void expireBucket( int bucket, long now ) {
+		Timeout prev = null;
+		Timeout timeout = buckets[bucket];
+		while ( timeout != null ) {
+			Timeout next = timeout.next;
+			boolean remove;
+			if ( timeout.isCancelled() ) {
+				remove = true;
+			}
+			else if ( timeout.rounds > 0 ) {
+				timeout.rounds--;
+				remove = false;
+			}
+			else if ( timeout.deadline - now <= 0 ) {
+				remove = true;
+				fire( timeout );
+			}
+			else {
+				// Not due within this tick (clock jitter) - look again next turn
+				remove = false;
+			}
+			if ( remove ) {
+				if ( prev == null ) {
+					buckets[bucket] = next;
+				}
+				else {
+					prev.next = next;
+				}
+				timeout.next = null;
+				scheduled--;
+			}
+			else {
+				prev = timeout;
+			}
+			timeout = next;
+		}
+	}
+
+	private void fire( Timeout timeout ) {
+		try {
+			expired.accept( timeout );
+		}
+		catch ( Throwable t ) {
+			Log.error( "Suspend watchdog callback failed", t );
+		}
+	}
+}
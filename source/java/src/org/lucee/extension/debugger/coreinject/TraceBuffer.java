@@ -0,0 +1,251 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * One request's execution timeline for RequestTracer: function enter/exit and
+ * line events in preallocated parallel arrays.
+ *
+ * Recording (enter/exit/line) runs on the request thread and only writes
+ * primitives and existing String references into the arrays - no allocation.
+ * When the buffer is full further events are dropped and the trace is marked
+ * truncated. Serialization (writeChromeTrace) runs on the writer thread after
+ * the request ends; the buffer is then reset and reused.
+ */
+final class TraceBuffer {
+
+	static final byte ENTER = 1;
+	static final byte EXIT = 2;
+	static final byte LINE = 3;
+
+	private final long[] nanos;
+	private final byte[] kinds;
+	private final int[] lines;
+	private final String[] names;
+	private final String[] components;
+	private final String[] files;
+	private int size;
+
+	// Per-request metadata, set by begin()
+	long threadId;
+	String threadName;
+	String url;
+	long startNanos;
+	long startMillis; // wall clock, for file names
+	boolean truncated;
+
+	TraceBuffer( int capacity ) {
+		nanos = new long[capacity];
+		kinds = new byte[capacity];
+		lines = new int[capacity];
+		names = new String[capacity];
+		components = new String[capacity];
+		files = new String[capacity];
+	}
+
+	int capacity() {
+		return nanos.length;
+	}
+
+	int size() {
+		return size;
+	}
+
+	void begin( long threadId, String threadName, String url, long startNanos ) {
+		this.threadId = threadId;
+		this.threadName = threadName;
+		this.url = url;
+		this.startNanos = startNanos;
+		this.startMillis = System.currentTimeMillis();
+		this.truncated = false;
+		this.size = 0;
+	}
+
+	/**
+	 * Drop references so a pooled buffer doesn't pin Strings from the last request.
+	 */
+	void reset() {
+		for ( int i = 0; i < size; i++ ) {
+			names[i] = null;
+			components[i] = null;
+			files[i] = null;
+		}
+		size = 0;
+		threadName = null;
+		url = null;
+	}
+
+	void enter( long ts, String name, String component, String file, int line ) {
+		int i = next();
+		if ( i < 0 ) return;
+		nanos[i] = ts;
+		kinds[i] = ENTER;
+		names[i] = name;
+		components[i] = component;
+		files[i] = file;
+		lines[i] = line;
+	}
+
+	void exit( long ts ) {
+		int i = next();
+		if ( i < 0 ) return;
+		nanos[i] = ts;
+		kinds[i] = EXIT;
+		names[i] = null;
+		components[i] = null;
+		files[i] = null;
+		lines[i] = 0;
+	}
+
+	void line( long ts, String file, int line ) {
+		int i = next();
+		if ( i < 0 ) return;
+		nanos[i] = ts;
+		kinds[i] = LINE;
+		names[i] = null;
+		components[i] = null;
+		files[i] = file;
+		lines[i] = line;
+	}
+
+	private int next() {
+		if ( size == nanos.length ) {
+			truncated = true;
+			return -1;
+		}
+		return size++;
+	}
+
+	// ========== Chrome trace-event JSON (writer thread) ==========
+
+	/**
+	 * Write the trace as Chrome trace-event JSON (chrome://tracing, Perfetto, speedscope).
+	 *
+	 * Functions become B/E pairs. Each line becomes an X slice that lasts until
+	 * the next line in the same function, or the function's exit, so a line's
+	 * slice contains the calls it makes. There is no request-end event, so
+	 * whatever is still open is closed at the last recorded event.
+	 */
+	void writeChromeTrace( Appendable out ) throws IOException {
+		long end = size > 0 ? nanos[size - 1] : startNanos;
+		String tid = Long.toString( threadId );
+
+		out.append( "{\"traceEvents\":[\n" );
+		out.append( "{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" ).append( tid ).append( ",\"args\":{\"name\":" );
+		appendString( out, url != null ? url : "request" );
+		out.append( "}},\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" ).append( tid ).append( ",\"args\":{\"name\":" );
+		appendString( out, threadName != null ? threadName : tid );
+		out.append( "}}" );
+
+		// Open line slice per function depth; depth 0 is code outside any function
+		int[] openLine = new int[16]; // event index of the open line slice, -1 = none
+		openLine[0] = -1;
+		int depth = 0;
+		for ( int i = 0; i < size; i++ ) {
+			switch ( kinds[i] ) {
+				case ENTER:
+					out.append( ",\n{\"name\":" );
+					appendString( out, components[i] != null ? components[i] + "." + names[i] : String.valueOf( names[i] ) );
+					out.append( ",\"cat\":\"function\",\"ph\":\"B\",\"ts\":" );
+					appendMicros( out, nanos[i] - startNanos );
+					out.append( ",\"pid\":1,\"tid\":" ).append( tid ).append( ",\"args\":{\"file\":" );
+					appendString( out, files[i] );
+					out.append( ",\"line\":" ).append( Integer.toString( lines[i] ) ).append( "}}" );
+					depth++;
+					if ( depth == openLine.length ) {
+						openLine = Arrays.copyOf( openLine, depth * 2 );
+					}
+					openLine[depth] = -1;
+					break;
+				case EXIT:
+					closeLine( out, openLine, depth, nanos[i], tid );
+					if ( depth > 0 ) {
+						out.append( ",\n{\"ph\":\"E\",\"ts\":" );
+						appendMicros( out, nanos[i] - startNanos );
+						out.append( ",\"pid\":1,\"tid\":" ).append( tid ).append( "}" );
+						depth--;
+					}
+					break;
+				case LINE:
+					closeLine( out, openLine, depth, nanos[i], tid );
+					openLine[depth] = i;
+					break;
+				default:
+					break;
+			}
+		}
+		for ( ; depth >= 0; depth-- ) {
+			closeLine( out, openLine, depth, end, tid );
+			if ( depth > 0 ) {
+				out.append( ",\n{\"ph\":\"E\",\"ts\":" );
+				appendMicros( out, end - startNanos );
+				out.append( ",\"pid\":1,\"tid\":" ).append( tid ).append( "}" );
+			}
+		}
+
+		out.append( "\n],\"displayTimeUnit\":\"ms\",\"otherData\":{\"url\":" );
+		appendString( out, url );
+		out.append( ",\"thread\":" );
+		appendString( out, threadName );
+		out.append( ",\"events\":" ).append( Integer.toString( size ) );
+		out.append( ",\"truncated\":" ).append( truncated ? "true" : "false" );
+		out.append( "}}\n" );
+	}
+
+	private void closeLine( Appendable out, int[] openLine, int depth, long now, String tid ) throws IOException {
+		int i = openLine[depth];
+		if ( i < 0 ) {
+			return;
+		}
+		openLine[depth] = -1;
+		String file = files[i];
+		String base = file == null ? "?" : file.substring( Math.max( file.lastIndexOf( '/' ), file.lastIndexOf( '\\' ) ) + 1 );
+		out.append( ",\n{\"name\":" );
+		appendString( out, base + ":" + lines[i] );
+		out.append( ",\"cat\":\"line\",\"ph\":\"X\",\"ts\":" );
+		appendMicros( out, nanos[i] - startNanos );
+		out.append( ",\"dur\":" );
+		appendMicros( out, Math.max( 0, now - nanos[i] ) );
+		out.append( ",\"pid\":1,\"tid\":" ).append( tid ).append( ",\"args\":{\"file\":" );
+		appendString( out, file );
+		out.append( ",\"line\":" ).append( Integer.toString( lines[i] ) ).append( "}}" );
+	}
+
+	/**
+	 * Nanoseconds as microseconds with three decimals - trace-event timestamps are in µs.
+	 */
+	static void appendMicros( Appendable out, long nanos ) throws IOException {
+		long frac = nanos % 1000;
+		out.append( Long.toString( nanos / 1000 ) ).append( '.' );
+		if ( frac < 100 ) out.append( '0' );
+		if ( frac < 10 ) out.append( '0' );
+		out.append( Long.toString( frac ) );
+	}
+
+	static void appendString( Appendable out, String s ) throws IOException {
+		if ( s == null ) {
+			out.append( "null" );
+			return;
+		}
+		out.append( '"' );
+		for ( int i = 0; i < s.length(); i++ ) {
+			char c = s.charAt( i );
+			switch ( c ) {
+				case '"': out.append( "\\\"" ); break;
+				case '\\': out.append( "\\\\" ); break;
+				case '\n': out.append( "\\n" ); break;
+				case '\r': out.append( "\\r" ); break;
+				case '\t': out.append( "\\t" ); break;
+				default:
+					if ( c < 0x20 ) {
+						out.append( String.format( "\\u%04x", (int) c ) );
+					}
+					else {
+						out.append( c );
+					}
+			}
+		}
+		out.append( '"' );
+	}
+}
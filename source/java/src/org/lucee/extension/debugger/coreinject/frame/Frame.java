@@ -3,7 +3,6 @@ package org.lucee.extension.debugger.coreinject.frame;
 import lucee.runtime.Component;
 import lucee.runtime.ComponentScope;
 import lucee.runtime.PageContext;
-import lucee.runtime.PageContextImpl;
 import lucee.runtime.type.Collection;
 import lucee.runtime.type.Struct;
 import lucee.runtime.type.scope.Argument;
@@ -115,16 +114,26 @@ public class Frame extends DebugFrame {
         // throws an ExpressionException.
         //
         private FrameContext(PageContext pageContext, FrameContext root) {
+            this(
+                pageContext,
+                root,
+                getScopelikeOrNull(() -> pageContext.argumentsScope()),
+                getScopelikeOrNull(() -> pageContext.localScope()),
+                getScopelikeOrNull(() -> pageContext.variablesScope())
+            );
+        }
+
+        private FrameContext(PageContext pageContext, FrameContext root, Argument arguments, Local local, Variables variables) {
             this.pageContext = pageContext;
             this.application = root != null ? root.application : getScopelikeOrNull(() -> pageContext.applicationScope());
-            this.arguments   = getScopelikeOrNull(() -> pageContext.argumentsScope());
+            this.arguments   = arguments;
             this.form        = root != null ? root.form : getScopelikeOrNull(() -> pageContext.formScope());
-            this.local       = getScopelikeOrNull(() -> pageContext.localScope());
+            this.local       = local;
             this.request     = root != null ? root.request : getScopelikeOrNull(() -> pageContext.requestScope());
             this.session     = root != null ? root.session : getScopelikeOrNull(() -> pageContext.getApplicationContext().isSetSessionManagement() ? pageContext.sessionScope() : null);
             this.server      = root != null ? root.server : getScopelikeOrNull(() -> pageContext.serverScope());
             this.url         = root != null ? root.url : getScopelikeOrNull(() -> pageContext.urlScope());
-            this.variables   = getScopelikeOrNull(() -> pageContext.variablesScope());
+            this.variables   = variables;
             this.this_       = getScopelikeOrNull(() -> {
                 // there is also `PageContextImpl.thisGet()` but it can create a `this` property on the variables scope, which seems like
                 // something we don't want to do, since it mutates the user's scopes instead of just reading from them.
@@ -148,6 +157,22 @@ public class Frame extends DebugFrame {
             this.static_ = this.this_ instanceof Component ? ((Component)this.this_).staticScope() : null;
         }
 
+        /**
+         * Context of the first frame of a request, read on the request's own thread: reading some scopes
+         * (session) can run more CFML.
+         */
+        public static FrameContext capture(PageContext pageContext) {
+            return new FrameContext(pageContext, null);
+        }
+
+        /**
+         * Context of a frame above the first, from the function scopes recorded when it was pushed;
+         * the request-wide scopes are root's.
+         */
+        public static FrameContext of(PageContext pageContext, FrameContext root, Local local, Argument arguments, Variables variables) {
+            return new FrameContext(pageContext, Objects.requireNonNull(root), arguments, local, variables);
+        }
+
         public ArrayList<ClosureScope> getCapturedScopeChain() {
             if (capturedScopeChain == null) {
                 capturedScopeChain = getCapturedScopeChain(variables);
@@ -186,7 +211,7 @@ public class Frame extends DebugFrame {
         // scopes that are "garbage" scopes ("LocalNotSupportedScope") should be filtered away elsewhere
         // we especially are interested in when we swap out scopes during expression evaluation that we restore the scopes
         // as they were prior to; which might be troublesome if "getting a scope throws so we return null, but it doesn't make sense to restore the scope to null"
-        private <T> T getScopelikeOrNull(SupplierOrNull<T> f) {
+        private static <T> T getScopelikeOrNull(SupplierOrNull<T> f) {
             try {
                 return f.get();
             }
@@ -227,12 +252,8 @@ public class Frame extends DebugFrame {
         }
     }
 
-    Frame(String sourceFilePath, int depth, ValTracker valTracker, PageContext pageContext, FrameContext root) {
-        this(sourceFilePath, depth, valTracker, pageContext, Frame.tryGetFrameName(pageContext), root);
-    }
-
-    private Frame(String sourceFilePath, int depth, ValTracker valTracker, PageContext pageContext, String name, FrameContext root) {
-        this.frameContext_ = new FrameContext(pageContext, root);
+    private Frame(String sourceFilePath, int depth, ValTracker valTracker, FrameContext frameContext, String name) {
+        this.frameContext_ = Objects.requireNonNull(frameContext);
         this.sourceFilePath = Objects.requireNonNull(sourceFilePath);
         this.valTracker = Objects.requireNonNull(valTracker);
         this.id = nextId.incrementAndGet();
@@ -240,19 +261,21 @@ public class Frame extends DebugFrame {
         this.depth = depth;
     }
 
-    private static String tryGetFrameName(PageContext pageContext) {
+    /**
+     * A frame, with a fresh id, for a call the agent-mode stack recorded earlier (see CfStack).
+     * @param calledName the engine's active UDF called name at push, null if none
+     */
+    public static Frame of(String sourceFilePath, int depth, ValTracker valTracker, FrameContext frameContext, Collection.Key calledName) {
         String frameName = "??";
         try {
-            final PageContextImpl pageContextImpl = (PageContextImpl)pageContext;
-            final Collection.Key key = pageContextImpl.getActiveUDFCalledName();
-            if (key != null) {
-                frameName = key.getString();
+            if (calledName != null) {
+                frameName = calledName.getString();
             }
         }
         catch (Throwable e) {
-            // discard, cast was bad for some reason?
+            // discard
         }
-        return frameName;
+        return new Frame(sourceFilePath, depth, valTracker, frameContext, frameName);
     }
 
     private void checkedPutScopeRef(String name, Map<?,?> scope) {
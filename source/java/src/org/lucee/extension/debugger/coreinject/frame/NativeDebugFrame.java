@@ -68,7 +68,7 @@ public class NativeDebugFrame implements IDebugFrame {
 		this.nativeFrame = nativeFrame;
 		this.pageContext = pageContext;
 		this.valTracker = valTracker;
-		this.id = nextId.incrementAndGet();
+		this.id = nextFrameId();
 		this.depth = depth;
 		this.exception = exception;
 
@@ -94,7 +94,7 @@ public class NativeDebugFrame implements IDebugFrame {
 		this.nativeFrame = null; // synthetic - no native frame
 		this.pageContext = pageContext;
 		this.valTracker = valTracker;
-		this.id = nextId.incrementAndGet();
+		this.id = nextFrameId();
 		this.depth = 0;
 		this.syntheticLine = line;
 		this.sourceFilePath = file;
@@ -206,6 +206,27 @@ public class NativeDebugFrame implements IDebugFrame {
 		}
 	}
 
+	/**
+	 * The frame's local scope, or null (top-level code).
+	 */
+	public Object getLocalScope() {
+		return local;
+	}
+
+	/**
+	 * The frame's arguments scope, or null (top-level code).
+	 */
+	public Object getArgumentsScope() {
+		return arguments;
+	}
+
+	/**
+	 * The frame's variables scope.
+	 */
+	public Object getVariablesScope() {
+		return variables;
+	}
+
 	/**
 	 * Get the PageContext for this frame.
 	 * Used by setVariable to execute Lucee code in the correct context.
@@ -462,27 +483,17 @@ public class NativeDebugFrame implements IDebugFrame {
 			var location = NativeDebuggerListener.getSuspendLocation( threadId );
 			Throwable exception = (location != null) ? location.exception : null;
 
-			ArrayList<IDebugFrame> result = new ArrayList<>();
-
-			if ( nativeFrames != null && nativeFrames.length > 0 ) {
-				// Native frames are in push order (oldest first), DAP expects newest first.
-				// Don't filter line-0 frames: at function-breakpoint entry the just-pushed
-				// UDF frame legitimately has line=0 until DebuggerExecutionLog advances it,
-				// and dropping it loses the function name the test/UI needs to show.
-				for ( int i = nativeFrames.length - 1; i >= 0; i-- ) {
-					Object nf = nativeFrames[i];
-
-					// Only pass exception to the topmost frame (first one added to result)
-					Throwable frameException = result.isEmpty() ? exception : null;
-					result.add( new NativeDebugFrame( nf, pageContext, valTracker, i, frameException ) );
-				}
-			}
+			ArrayList<IDebugFrame> result = wrapFrames( nativeFrames, pageContext, valTracker, exception );
 
 			// If no frames from native stack, try to create synthetic frame from suspend location
 			if ( result.isEmpty() && threadId >= 0 ) {
-				Log.trace( "Checking suspend location for thread " + threadId + ": " + (location != null ? location.file + ":" + location.line : "null") );
+				if ( Log.isTraceEnabled() ) {
+					Log.trace( "Checking suspend location for thread " + threadId + ": " + (location != null ? location.file + ":" + location.line : "null") );
+				}
 				if ( location != null && location.file != null && location.line > 0 ) {
-					Log.trace( "Creating synthetic frame for top-level code: " + location.file + ":" + location.line + (location.label != null ? " label=" + location.label : "") );
+					if ( Log.isTraceEnabled() ) {
+						Log.trace( "Creating synthetic frame for top-level code: " + location.file + ":" + location.line + (location.label != null ? " label=" + location.label : "") );
+					}
 					result.add( new NativeDebugFrame( pageContext, valTracker, location.file, location.line, location.label, exception ) );
 				}
 			}
@@ -498,4 +509,54 @@ public class NativeDebugFrame implements IDebugFrame {
 			return null;
 		}
 	}
+
+	/**
+	 * Get frames of a running (not suspended) request at file:line, for snapshot
+	 * breakpoints. Must be called on the request's own thread.
+	 * @return Array of debug frames, newest first, or null if not available
+	 */
+	public static NativeDebugFrame[] getNativeFramesAt( PageContext pageContext, ValTracker valTracker, String file, int line, ClassLoader luceeClassLoader ) {
+		if ( !isNativeFrameSupportAvailable( luceeClassLoader ) ) {
+			return null;
+		}
+		try {
+			Object[] nativeFrames = (Object[]) getDebuggerFramesMethod.invoke( pageContext );
+			ArrayList<IDebugFrame> result = wrapFrames( nativeFrames, pageContext, valTracker, null );
+			if ( result.isEmpty() && file != null && line > 0 ) {
+				result.add( new NativeDebugFrame( pageContext, valTracker, file, line, null, null ) );
+			}
+			return result.isEmpty() ? null : result.toArray( new NativeDebugFrame[0] );
+		} catch ( Throwable e ) {
+			Log.debug( "getNativeFramesAt: {}", e );
+			return null;
+		}
+	}
+
+	/**
+	 * Wrap native frames, newest first.
+	 */
+	private static ArrayList<IDebugFrame> wrapFrames( Object[] nativeFrames, PageContext pageContext, ValTracker valTracker, Throwable exception ) throws Exception {
+		ArrayList<IDebugFrame> result = new ArrayList<>();
+		if ( nativeFrames != null && nativeFrames.length > 0 ) {
+			// Native frames are in push order (oldest first), DAP expects newest first.
+			// Don't filter line-0 frames: at function-breakpoint entry the just-pushed
+			// UDF frame legitimately has line=0 until DebuggerExecutionLog advances it,
+			// and dropping it loses the function name the test/UI needs to show.
+			for ( int i = nativeFrames.length - 1; i >= 0; i-- ) {
+				Object nf = nativeFrames[i];
+
+				// Only pass exception to the topmost frame (first one added to result)
+				Throwable frameException = result.isEmpty() ? exception : null;
+				result.add( new NativeDebugFrame( nf, pageContext, valTracker, i, frameException ) );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Next frame id. Shared with SnapshotFrame so cached frame ids never collide.
+	 */
+	static long nextFrameId() {
+		return nextId.incrementAndGet();
+	}
 }
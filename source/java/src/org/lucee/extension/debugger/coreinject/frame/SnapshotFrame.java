@@ -0,0 +1,88 @@
+package org.lucee.extension.debugger.coreinject.frame;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.lucee.extension.debugger.IDebugEntity;
+import org.lucee.extension.debugger.IDebugFrame;
+import org.lucee.extension.debugger.coreinject.CfValueDebuggerBridge;
+import org.lucee.extension.debugger.coreinject.CfValueDebuggerBridge.MarkerTrait;
+import org.lucee.extension.debugger.coreinject.DebugEntity;
+import org.lucee.extension.debugger.coreinject.ValTracker;
+
+/**
+ * A frame captured by a snapshot breakpoint: where a NativeDebugFrame was, plus
+ * detached copies of its scopes. The request it came from has moved on, so
+ * there is no PageContext - no evaluation, no setVariable - and the line is fixed.
+ */
+public class SnapshotFrame implements IDebugFrame {
+	private final long id;
+	private final String name;
+	private final String sourceFilePath;
+	private final int line;
+	private final int depth;
+	private final ValTracker valTracker;
+	// Captured scopes in display order; the frame keeps them alive, ValTracker only holds weak refs
+	private final LinkedHashMap<String, MarkerTrait.Snapshot> scopes;
+
+	/**
+	 * @param from the live frame the copy was taken from; only its name and location are used
+	 * @param scopes captured scopes by name, in display order
+	 */
+	public SnapshotFrame( NativeDebugFrame from, int line, Map<String, MarkerTrait.Snapshot> scopes, ValTracker valTracker ) {
+		this.id = NativeDebugFrame.nextFrameId();
+		this.name = from.getName();
+		this.sourceFilePath = from.getSourceFilePath();
+		this.line = line;
+		this.depth = from.getDepth();
+		this.valTracker = valTracker;
+		this.scopes = new LinkedHashMap<>( scopes );
+	}
+
+	@Override
+	public String getSourceFilePath() {
+		return sourceFilePath;
+	}
+
+	@Override
+	public long getId() {
+		return id;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int getDepth() {
+		return depth;
+	}
+
+	@Override
+	public int getLine() {
+		return line;
+	}
+
+	@Override
+	public void setLine( int line ) {
+		// Captured - the line is where the snapshot was taken
+	}
+
+	@Override
+	public IDebugEntity[] getScopes() {
+		IDebugEntity[] result = new IDebugEntity[scopes.size()];
+		int i = 0;
+		for ( var kv : scopes.entrySet() ) {
+			var bridge = new CfValueDebuggerBridge( valTracker, kv.getValue() );
+			var entity = new DebugEntity();
+			entity.name = kv.getKey();
+			entity.namedVariables = bridge.getNamedVariablesCount();
+			entity.indexedVariables = bridge.getIndexedVariablesCount();
+			entity.expensive = false; // already copied, nothing to fetch
+			entity.variablesReference = bridge.id;
+			result[i++] = entity;
+		}
+		return result;
+	}
+}
@@ -1,5 +1,6 @@
 package org.lucee.extension.debugger.extension;
 
+import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -23,11 +24,20 @@ public class ExtensionActivator {
 	private static ClassLoader luceeLoader;
 	private static ClassLoader extensionLoader;
 	private static boolean listenerRegistered = false;
+	private static lucee.runtime.config.Config luceeConfig;
+	// Present while we have the execution log turned on; survives a restart
+	private static File executionLogMarker;
+	// We turned the execution log on for the attached client and turn it off on detach
+	private static boolean executionLogOwned = false;
+	// The server config turns the execution log on itself - never toggle it
+	private static boolean executionLogPreconfigured = false;
 	private static boolean alreadyActivated = false;
 	// Keep a static reference to prevent GC from collecting the instance
 	// (Lucee's startup-hook discards its reference immediately)
 	private static ExtensionActivator instance;
 
+	private static final String EXECUTION_LOG_MARKER = "luceedebug-execution-log.enabled";
+
 	/**
 	 * Constructor called by Lucee's startup-hook mechanism.
 	 * Lucee passes the Config object automatically.
@@ -54,10 +64,12 @@ public class ExtensionActivator {
 			// Store classloaders for later listener registration
 			extensionLoader = this.getClass().getClassLoader();
 			luceeLoader = luceeConfig.getClass().getClassLoader();
+			ExtensionActivator.luceeConfig = luceeConfig;
 
 			// Determine filesystem case sensitivity from Lucee's config location
 			String configPath = luceeConfig.getConfigDir().getAbsolutePath();
 			boolean fsCaseSensitive = Config.checkIfFileSystemIsCaseSensitive(configPath);
+			executionLogMarker = new File(configPath, EXECUTION_LOG_MARKER);
 
 			// Create luceedebug config
 			Config config = new Config(fsCaseSensitive);
@@ -78,6 +90,8 @@ public class ExtensionActivator {
 			System.out.println("[luceedebug] DAP server thread started");
 			System.out.flush();
 			try {
+				// Off until a client attaches; not done in the startup-hook, the config is still loading there
+				checkExecutionLogAtStartup();
 				System.out.println("[luceedebug] Calling DapServer.createForSocket on " + host + ":" + port);
 				System.out.flush();
 				DapServer.createForSocket(luceeVm, finalConfig, host, port);
@@ -109,6 +123,7 @@ public class ExtensionActivator {
 	 * Register the debugger listener with Lucee using the client-provided secret.
 	 * Called from DapServer.attach() when client connects.
 	 * Secret is validated on every connection, not just the first one.
+	 * Also turns the execution log on for the session (see enableExecutionLog()).
 	 *
 	 * @param secret The secret from launch.json
 	 * @return true if registration succeeded
@@ -136,6 +151,7 @@ public class ExtensionActivator {
 				return false;
 			}
 		}
+		enableExecutionLog();
 		return true;
 	}
 
@@ -155,14 +171,83 @@ public class ExtensionActivator {
 	}
 
 	/**
-	 * Enable DebuggerExecutionLog via ConfigAdmin.
-	 * This triggers template recompilation with exeLogStart()/exeLogEnd() bytecode
+	 * Turn DebuggerExecutionLog on for an attached client.
+	 * Called from registerListener() on every attach, before the attach response,
+	 * so the reload has finished by the time the client sends its breakpoints.
+	 * A no-op if the log was already on in the server config - we leave that alone.
+	 */
+	private static void enableExecutionLog() {
+		if (executionLogOwned || executionLogPreconfigured) {
+			return;
+		}
+		try {
+			// Marker first, so a JVM killed while attached still has the log turned off at next startup
+			executionLogMarker.createNewFile();
+		} catch (Exception e) {
+			Log.warn("Could not write " + executionLogMarker + " - the execution log may stay on if the server stops while a client is attached");
+		}
+		if (updateExecutionLog(true)) {
+			executionLogOwned = true;
+			Log.info("Enabled DebuggerExecutionLog - templates will recompile with debugger bytecode");
+		}
+	}
+
+	/**
+	 * Turn DebuggerExecutionLog off again once the client has gone, so CFML lines
+	 * stop paying for the per-line callback while nobody is debugging.
+	 * Called from DapServer when the client connection closes.
+	 */
+	public static synchronized void disableExecutionLog() {
+		if (!executionLogOwned) {
+			return;
+		}
+		if (updateExecutionLog(false)) {
+			executionLogOwned = false;
+			executionLogMarker.delete();
+			Log.info("Disabled DebuggerExecutionLog - no client attached");
+		}
+	}
+
+	/**
+	 * At startup: turn off an execution log we left on (the marker is still there,
+	 * so the server stopped while a client was attached), and note one the server
+	 * config turns on itself so attach and detach never touch it.
+	 */
+	private static synchronized void checkExecutionLogAtStartup() {
+		boolean enabled = isExecutionLogEnabled();
+		if (executionLogMarker.exists()) {
+			if (!enabled || updateExecutionLog(false)) {
+				executionLogMarker.delete();
+				if (enabled) {
+					Log.info("Disabled DebuggerExecutionLog left on by a previous debugging session");
+				}
+			}
+		} else if (enabled) {
+			executionLogPreconfigured = true;
+			Log.info("Execution log is enabled in the server config - leaving it on while detached");
+		}
+	}
+
+	private static boolean isExecutionLogEnabled() {
+		try {
+			return (Boolean) luceeConfig.getClass().getMethod("getExecutionLogEnabled").invoke(luceeConfig);
+		} catch (Throwable e) {
+			Log.debug("Could not read execution log state: " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * Enable or disable DebuggerExecutionLog via ConfigAdmin.
+	 * Enabling triggers template recompilation with exeLogStart()/exeLogEnd() bytecode
 	 * which calls DebuggerRegistry.shouldSuspend() on each line.
 	 *
 	 * Note: During startup-hook, we receive ConfigServer (not ConfigWeb).
 	 * We need to find a ConfigAdmin.newInstance() method that works with ConfigServer.
+	 *
+	 * @return true if the config was updated and reloaded
 	 */
-	private void enableDebuggerExecutionLog(Config luceeConfig, ClassLoader luceeLoader) {
+	private static boolean updateExecutionLog(boolean enabled) {
 		try {
 			// Load ConfigAdmin class from Lucee core
 			Class<?> configAdminClass = luceeLoader.loadClass("lucee.runtime.config.ConfigAdmin");
@@ -189,7 +274,7 @@ public class ExtensionActivator {
 								configAdmin = m.invoke(null, luceeConfig, null, true);
 							}
 							if (configAdmin != null) {
-								Log.info("Created ConfigAdmin using " + m);
+								Log.debug("Created ConfigAdmin using " + m);
 								break;
 							}
 						} catch (Exception e) {
@@ -207,7 +292,7 @@ public class ExtensionActivator {
 						Log.info("  " + m);
 					}
 				}
-				return;
+				return false;
 			}
 
 			// Create ClassDefinition for DebuggerExecutionLog
@@ -217,27 +302,29 @@ public class ExtensionActivator {
 			// Create empty Struct for arguments
 			Object emptyStruct = structImplClass.getConstructor().newInstance();
 
-			// admin.updateExecutionLog(classDefinition, arguments, enabled=true)
+			// admin.updateExecutionLog(classDefinition, arguments, enabled)
 			Method updateMethod = configAdminClass.getMethod("updateExecutionLog",
 				classDefClass, structClass, boolean.class);
-			updateMethod.invoke(configAdmin, classDefinition, emptyStruct, true);
+			updateMethod.invoke(configAdmin, classDefinition, emptyStruct, enabled);
 
 			// Persist and reload config - this triggers template recompilation
 			Method storeMethod = configAdminClass.getMethod("storeAndReload");
 			storeMethod.invoke(configAdmin);
-
-			Log.info("Enabled DebuggerExecutionLog - templates will recompile with debugger bytecode");
+			return true;
 		} catch (ClassNotFoundException e) {
-			Log.error("ConfigAdmin not found - cannot enable execution log: " + e.getMessage());
+			Log.error("ConfigAdmin not found - cannot " + (enabled ? "enable" : "disable") + " execution log: " + e.getMessage());
 		} catch (Throwable e) {
-			Log.error("Failed to enable execution log", e);
+			Log.error("Failed to " + (enabled ? "enable" : "disable") + " execution log", e);
 		}
+		return false;
 	}
 
 	/**
-	 * Register native debugger listener using cross-classloader proxy.
+	 * Register native debugger listener with Lucee's DebuggerRegistry.
 	 * DebuggerRegistry and DebuggerListener are in Lucee's core (luceeLoader).
 	 * NativeDebuggerListener is in our extension bundle (extensionLoader).
+	 * Prefers an ASM-generated listener (direct static calls); falls back to a
+	 * reflective Proxy if generation fails.
 	 * Requires the correct secret to register.
 	 */
 	private static boolean registerNativeDebuggerListener(ClassLoader luceeLoader, ClassLoader extensionLoader, String secret) {
@@ -245,57 +332,19 @@ public class ExtensionActivator {
 			// Load Lucee core classes
 			Class<?> registryClass = luceeLoader.loadClass("lucee.runtime.debug.DebuggerRegistry");
 			Class<?> listenerInterface = luceeLoader.loadClass("lucee.runtime.debug.DebuggerListener");
-			Class<?> pageContextClass = luceeLoader.loadClass("lucee.runtime.PageContext");
-
-			// Load our implementation from extension bundle
-			Class<?> nativeListenerClass = extensionLoader.loadClass(
-				"org.lucee.extension.debugger.coreinject.NativeDebuggerListener");
-
-			// Cache method lookups
-			final Method getNameMethod = nativeListenerClass.getMethod("getName");
-			final Method onSuspendMethod = nativeListenerClass.getMethod("onSuspend",
-				pageContextClass, String.class, int.class, String.class);
-			final Method onResumeMethod = nativeListenerClass.getMethod("onResume", pageContextClass);
-			final Method shouldSuspendMethod = nativeListenerClass.getMethod("shouldSuspend",
-				pageContextClass, String.class, int.class);
-			final Method isDapClientConnectedMethod = nativeListenerClass.getMethod("isDapClientConnected");
-			final Method onExceptionMethod = nativeListenerClass.getMethod("onException",
-				pageContextClass, Throwable.class, boolean.class);
-			final Method onOutputMethod = nativeListenerClass.getMethod("onOutput",
-				String.class, boolean.class);
-			final Method onFunctionEntryMethod = nativeListenerClass.getMethod("onFunctionEntry",
-				pageContextClass, String.class, String.class, String.class, int.class);
-
-			// Create proxy in Lucee's classloader, delegating to extension's implementation
-			Object listenerProxy = Proxy.newProxyInstance(
-				luceeLoader,
-				new Class<?>[] { listenerInterface },
-				(proxy, method, args) -> {
-					try {
-						switch (method.getName()) {
-							case "getName": return getNameMethod.invoke(null);
-							case "isClientConnected": return isDapClientConnectedMethod.invoke(null);
-							case "onSuspend": return onSuspendMethod.invoke(null, args);
-							case "onResume": return onResumeMethod.invoke(null, args);
-							case "shouldSuspend": return shouldSuspendMethod.invoke(null, args);
-							case "onException": return onExceptionMethod.invoke(null, args);
-							case "onOutput": return onOutputMethod.invoke(null, args);
-							case "onFunctionEntry": return onFunctionEntryMethod.invoke(null, args);
-							default: return null;
-						}
-					} catch (InvocationTargetException e) {
-						Throwable cause = e.getCause();
-						Log.error("Proxy invocation failed for " + method.getName(), cause);
-						// Return safe defaults for boolean methods
-						if (method.getReturnType() == boolean.class) return false;
-						return null;
-					}
-				}
-			);
+
+			Object listener;
+			try {
+				listener = NativeListenerGenerator.createListener(listenerInterface, luceeLoader, extensionLoader);
+				Log.debug("Using generated native debugger listener");
+			} catch (Throwable t) {
+				Log.info("Generated listener unavailable, using reflective proxy: " + t);
+				listener = createProxyListener(listenerInterface, luceeLoader, extensionLoader);
+			}
 
 			// Register with Lucee (requires secret)
 			Method setListener = registryClass.getMethod("setListener", listenerInterface, String.class);
-			Boolean success = (Boolean) setListener.invoke(null, listenerProxy, secret);
+			Boolean success = (Boolean) setListener.invoke(null, listener, secret);
 
 			if (success) {
 				Log.info("Registered native debugger listener");
@@ -316,6 +365,60 @@ public class ExtensionActivator {
 		}
 	}
 
+	/**
+	 * Fallback listener: cross-classloader proxy delegating via reflection.
+	 */
+	private static Object createProxyListener(Class<?> listenerInterface, ClassLoader luceeLoader, ClassLoader extensionLoader)
+			throws ClassNotFoundException, NoSuchMethodException {
+		Class<?> pageContextClass = luceeLoader.loadClass("lucee.runtime.PageContext");
+
+		// Load our implementation from extension bundle
+		Class<?> nativeListenerClass = extensionLoader.loadClass(
+			"org.lucee.extension.debugger.coreinject.NativeDebuggerListener");
+
+		// Cache method lookups
+		final Method getNameMethod = nativeListenerClass.getMethod("getName");
+		final Method onSuspendMethod = nativeListenerClass.getMethod("onSuspend",
+			pageContextClass, String.class, int.class, String.class);
+		final Method onResumeMethod = nativeListenerClass.getMethod("onResume", pageContextClass);
+		final Method shouldSuspendMethod = nativeListenerClass.getMethod("shouldSuspend",
+			pageContextClass, String.class, int.class);
+		final Method isDapClientConnectedMethod = nativeListenerClass.getMethod("isDapClientConnected");
+		final Method onExceptionMethod = nativeListenerClass.getMethod("onException",
+			pageContextClass, Throwable.class, boolean.class);
+		final Method onOutputMethod = nativeListenerClass.getMethod("onOutput",
+			String.class, boolean.class);
+		final Method onFunctionEntryMethod = nativeListenerClass.getMethod("onFunctionEntry",
+			pageContextClass, String.class, String.class, String.class, int.class);
+
+		// Create proxy in Lucee's classloader, delegating to extension's implementation
+		return Proxy.newProxyInstance(
+			luceeLoader,
+			new Class<?>[] { listenerInterface },
+			(proxy, method, args) -> {
+				try {
+					switch (method.getName()) {
+						case "getName": return getNameMethod.invoke(null);
+						case "isClientConnected": return isDapClientConnectedMethod.invoke(null);
+						case "onSuspend": return onSuspendMethod.invoke(null, args);
+						case "onResume": return onResumeMethod.invoke(null, args);
+						case "shouldSuspend": return shouldSuspendMethod.invoke(null, args);
+						case "onException": return onExceptionMethod.invoke(null, args);
+						case "onOutput": return onOutputMethod.invoke(null, args);
+						case "onFunctionEntry": return onFunctionEntryMethod.invoke(null, args);
+						default: return null;
+					}
+				} catch (InvocationTargetException e) {
+					Throwable cause = e.getCause();
+					Log.error("Proxy invocation failed for " + method.getName(), cause);
+					// Return safe defaults for boolean methods
+					if (method.getReturnType() == boolean.class) return false;
+					return null;
+				}
+			}
+		);
+	}
+
 	// Note: finalize() was removed - it was being called by GC prematurely
 	// and shutting down the DAP server. Now we keep a static reference to
 	// prevent GC, and rely on DapServer.shutdown() being called explicitly
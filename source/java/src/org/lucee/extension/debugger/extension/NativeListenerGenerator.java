@@ -0,0 +1,208 @@
+package org.lucee.extension.debugger.extension;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import org.lucee.extension.debugger.Log;
+
+/**
+ * Generates a concrete DebuggerListener implementation whose methods invoke
+ * NativeDebuggerListener's static methods directly (plain invokestatic).
+ *
+ * The java.lang.reflect.Proxy listener routes every shouldSuspend() call through
+ * InvocationHandler + Method.invoke with a boxed Object[] args array. shouldSuspend
+ * runs on every executed CFML line while a client is attached, so that cost adds up.
+ * The generated class is a normal final class the JIT can inline through.
+ *
+ * DebuggerListener lives in Lucee's loader; NativeDebuggerListener lives in ours.
+ * The class is defined in a small bridge loader parented to Lucee's loader that
+ * delegates our own package to the extension loader, so both sides link normally.
+ */
+public final class NativeListenerGenerator {
+	private static final String TARGET_CLASS = "org.lucee.extension.debugger.coreinject.NativeDebuggerListener";
+	private static final String GENERATED_CLASS = "org.lucee.extension.debugger.extension.GeneratedNativeDebuggerListener";
+	private static final String EXTENSION_PACKAGE_PREFIX = "org.lucee.extension.debugger.";
+
+	private NativeListenerGenerator() {}
+
+	/**
+	 * Called from the generated class when a delegated method throws.
+	 * Mirrors the Proxy handler: log and let the caller return a safe default.
+	 */
+	public static void onListenerError(String methodName, Throwable t) {
+		Log.error("Listener invocation failed for " + methodName, t);
+	}
+
+	/**
+	 * Generate, define and instantiate the listener.
+	 *
+	 * @return an instance implementing listenerInterface
+	 * @throws Throwable if ASM is unavailable or class definition fails; callers fall back to the Proxy listener
+	 */
+	static Object createListener(Class<?> listenerInterface, ClassLoader luceeLoader, ClassLoader extensionLoader) throws Throwable {
+		Class<?> targetClass = extensionLoader.loadClass(TARGET_CLASS);
+		byte[] bytes = generate(listenerInterface, targetClass);
+		BridgeClassLoader loader = new BridgeClassLoader(luceeLoader, extensionLoader);
+		Class<?> generated = loader.define(GENERATED_CLASS, bytes);
+		return generated.getConstructor().newInstance();
+	}
+
+	static byte[] generate(Class<?> listenerInterface, Class<?> targetClass) {
+		String internalName = GENERATED_CLASS.replace('.', '/');
+		String targetInternalName = Type.getInternalName(targetClass);
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V11, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, internalName, null,
+			"java/lang/Object", new String[] { Type.getInternalName(listenerInterface) });
+
+		MethodVisitor ctor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		ctor.visitCode();
+		ctor.visitVarInsn(Opcodes.ALOAD, 0);
+		ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		ctor.visitInsn(Opcodes.RETURN);
+		ctor.visitMaxs(0, 0);
+		ctor.visitEnd();
+
+		for (Method m : listenerInterface.getMethods()) {
+			if (!Modifier.isAbstract(m.getModifiers())) {
+				continue;
+			}
+			Method target = findTarget(targetClass, m);
+			if (target == null) {
+				// Interface grew a method we don't know about - answer with a safe default
+				Log.info("No native handler for DebuggerListener." + m.getName() + " - using default");
+			}
+			emitMethod(cw, m, target, targetInternalName);
+		}
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static Method findTarget(Class<?> targetClass, Method interfaceMethod) {
+		String name = interfaceMethod.getName();
+		if (name.equals("isClientConnected")) {
+			name = "isDapClientConnected";
+		}
+		try {
+			Method target = targetClass.getMethod(name, interfaceMethod.getParameterTypes());
+			if (Modifier.isStatic(target.getModifiers()) && target.getReturnType() == interfaceMethod.getReturnType()) {
+				return target;
+			}
+		} catch (NoSuchMethodException e) {
+			// fall through
+		}
+		return null;
+	}
+
+	/**
+	 * public R name(args) {
+	 *   try { return NativeDebuggerListener.name(args); }
+	 *   catch (Throwable t) { NativeListenerGenerator.onListenerError("name", t); return default; }
+	 * }
+	 */
+	private static void emitMethod(ClassWriter cw, Method m, Method target, String targetInternalName) {
+		String descriptor = Type.getMethodDescriptor(m);
+		Type returnType = Type.getReturnType(m);
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, m.getName(), descriptor, null, null);
+		mv.visitCode();
+
+		if (target == null) {
+			pushDefault(mv, returnType);
+			mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+			return;
+		}
+
+		Label tryStart = new Label();
+		Label tryEnd = new Label();
+		Label handler = new Label();
+		mv.visitTryCatchBlock(tryStart, tryEnd, handler, "java/lang/Throwable");
+
+		mv.visitLabel(tryStart);
+		int slot = 1;
+		for (Type arg : Type.getArgumentTypes(descriptor)) {
+			mv.visitVarInsn(arg.getOpcode(Opcodes.ILOAD), slot);
+			slot += arg.getSize();
+		}
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, targetInternalName, target.getName(), Type.getMethodDescriptor(target), false);
+		mv.visitLabel(tryEnd);
+		mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+
+		mv.visitLabel(handler);
+		mv.visitVarInsn(Opcodes.ASTORE, slot);
+		mv.visitLdcInsn(m.getName());
+		mv.visitVarInsn(Opcodes.ALOAD, slot);
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(NativeListenerGenerator.class), "onListenerError",
+			"(Ljava/lang/String;Ljava/lang/Throwable;)V", false);
+		pushDefault(mv, returnType);
+		mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static void pushDefault(MethodVisitor mv, Type type) {
+		switch (type.getSort()) {
+			case Type.VOID:
+				return;
+			case Type.BOOLEAN:
+			case Type.CHAR:
+			case Type.BYTE:
+			case Type.SHORT:
+			case Type.INT:
+				mv.visitInsn(Opcodes.ICONST_0);
+				return;
+			case Type.LONG:
+				mv.visitInsn(Opcodes.LCONST_0);
+				return;
+			case Type.FLOAT:
+				mv.visitInsn(Opcodes.FCONST_0);
+				return;
+			case Type.DOUBLE:
+				mv.visitInsn(Opcodes.DCONST_0);
+				return;
+			default:
+				mv.visitInsn(Opcodes.ACONST_NULL);
+		}
+	}
+
+	/**
+	 * Parent-first to Lucee's loader, except our own package which resolves
+	 * through the extension loader. Lucee core classes therefore resolve to the
+	 * same Class objects from both sides.
+	 */
+	private static final class BridgeClassLoader extends ClassLoader {
+		private final ClassLoader extensionLoader;
+
+		BridgeClassLoader(ClassLoader luceeLoader, ClassLoader extensionLoader) {
+			super(luceeLoader);
+			this.extensionLoader = extensionLoader;
+		}
+
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.startsWith(EXTENSION_PACKAGE_PREFIX)) {
+				synchronized (getClassLoadingLock(name)) {
+					Class<?> c = findLoadedClass(name);
+					if (c == null) {
+						c = extensionLoader.loadClass(name);
+					}
+					return c;
+				}
+			}
+			return super.loadClass(name, resolve);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.lucee.extension.debugger.instrumenter;
 
+import org.lucee.extension.debugger.DebugHooks;
 import org.objectweb.asm.*;
 import org.objectweb.asm.commons.AdviceAdapter;
 import org.objectweb.asm.commons.GeneratorAdapter;
@@ -8,9 +9,19 @@ import org.objectweb.asm.commons.Method;
 public class CfmOrCfc extends ClassVisitor {
     private Type thisType = null; // is not initialized until `visit`
     private String sourceName = "??????"; // is not initialized until `visitSource`
+    // invokedynamic needs class version 51+; cleared in `visit` for older classes
+    private boolean useInvokeDynamic;
 
     public CfmOrCfc(int api, ClassWriter cw, String className) {
+        this(api, cw, className, true);
+    }
+
+    /**
+     * @param useInvokeDynamic false to always call the DebugManager directly, as before DebugHooks (benchmarks)
+     */
+    CfmOrCfc(int api, ClassWriter cw, String className, boolean useInvokeDynamic) {
         super(api, cw);
+        this.useInvokeDynamic = useInvokeDynamic;
     }
 
     @Override
@@ -23,19 +34,22 @@ public class CfmOrCfc extends ClassVisitor {
         String[] interfaces
     ) {
         this.thisType = Type.getType("L" + name + ";");
+        if ((version & 0xFFFF) < Opcodes.V1_7) {
+            useInvokeDynamic = false;
+        }
         super.visit(version, access, name, signature, superName, interfaces);
     }
 
     static class IDebugManager_t {
         static final Type type = Type.getType("Lorg/lucee/extension/debugger/IDebugManager;");
-        // pushCfFrame : (_ : PageContext, filenameAbsPath : string, distanceToFrame : int) => void
-        static final Method m_pushCfFrame = Method.getMethod("void pushCfFrame(lucee.runtime.PageContext, String)");
-        // pushCfFunctionDefaultValueInitializationFrame : (_ : PageContext, filenameAbsPath : string, distanceToFrame : int) => void
-        static final Method m_pushCfFunctionDefaultValueInitializationFrame = Method.getMethod("void pushCfFunctionDefaultValueInitializationFrame(lucee.runtime.PageContext, String)");
+        // pushCfFrame : (_ : PageContext, filenameAbsPath : string) => frame : Object
+        static final Method m_pushCfFrame = Method.getMethod("Object pushCfFrame(lucee.runtime.PageContext, String)");
+        // pushCfFunctionDefaultValueInitializationFrame : (_ : PageContext, filenameAbsPath : string) => frame : Object
+        static final Method m_pushCfFunctionDefaultValueInitializationFrame = Method.getMethod("Object pushCfFunctionDefaultValueInitializationFrame(lucee.runtime.PageContext, String)");
         // popCfFrame : () => void 
         static final Method m_popCfFrame = Method.getMethod("void popCfFrame()");
-        // step : (currentLine : int) => void
-        static final Method m_step = Method.getMethod("void luceedebug_stepNotificationEntry_step(int)");
+        // step : (frame : Object, currentLine : int) => void
+        static final Method m_step = Method.getMethod("void luceedebug_stepNotificationEntry_step(Object, int)");
         // stepAfterCompletedUdfCall : () => void
         static final Method m_stepAfterCompletedUdfCall = Method.getMethod("void luceedebug_stepNotificationEntry_stepAfterCompletedUdfCall()");
     }
@@ -44,6 +58,49 @@ public class CfmOrCfc extends ClassVisitor {
         static final Type type = Type.getType("Lorg/lucee/extension/debugger/GlobalIDebugManagerHolder;");
     }
 
+    static class DebugHooks_t {
+        static final Handle bootstrap = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            "org/lucee/extension/debugger/DebugHooks",
+            DebugHooks.BOOTSTRAP_NAME,
+            DebugHooks.BOOTSTRAP_DESCRIPTOR,
+            false
+        );
+        // push : (_ : PageContext, filenameAbsPath : string) => frame : Object, null if not pushed
+        static final String pushDescriptor = "(Llucee/runtime/PageContext;Ljava/lang/String;)Ljava/lang/Object;";
+    }
+
+    static final Type frameHandleType = Type.getType(Object.class);
+
+    /**
+     * The delegate takes the frame handle the wrapper got from pushCfFrame as an extra, last, argument
+     * and passes it to the step hook on every line, so updating the line doesn't need a per-thread lookup.
+     */
+    static String delegateDescriptor(String descriptor) {
+        final var args = Type.getArgumentTypes(descriptor);
+        final var withFrame = java.util.Arrays.copyOf(args, args.length + 1);
+        withFrame[args.length] = frameHandleType;
+        return Type.getMethodDescriptor(Type.getReturnType(descriptor), withFrame);
+    }
+
+    /**
+     * Notify the debugger of a line; [<empty>] -> [<empty>].
+     * Either way the call is a 5 byte instruction the step handler can set a breakpoint after.
+     */
+    private void emitStep(GeneratorAdapter ga, int frame, int line) {
+        if (useInvokeDynamic) {
+            ga.loadLocal(frame);
+            ga.push(line);
+            ga.invokeDynamic(DebugHooks.STEP, IDebugManager_t.m_step.getDescriptor(), DebugHooks_t.bootstrap);
+        }
+        else {
+            ga.getStatic(GlobalIDebugManagerHolder_t.type, "debugManager", IDebugManager_t.type);
+            ga.loadLocal(frame);
+            ga.push(line);
+            ga.invokeInterface(IDebugManager_t.type, IDebugManager_t.m_step);
+        }
+    }
+
     @Override
     public void visitSource(String source, String debug) {
         this.sourceName = source;
@@ -60,8 +117,8 @@ public class CfmOrCfc extends ClassVisitor {
      * 
      * Object udfCallX(...) throws ... {
      *    try {
-     *       DebugManager.pushCfFrame();
-     *       return __luceedebug__udfCallX(...args); // "real" method is renamed
+     *       frame = DebugManager.pushCfFrame();
+     *       return __luceedebug__udfCallX(...args, frame); // "real" method is renamed
      *    }
      *    finally {
      *       DebugManager.popCfFrame();
@@ -82,6 +139,13 @@ public class CfmOrCfc extends ClassVisitor {
             final var argCount = Type.getArgumentTypes(descriptor).length;
             final var mv = visitMethod(access, name, descriptor, signature, exceptions);
             final var ga = new GeneratorAdapter(mv, access, name, descriptor);
+            final boolean isDefaultValueInit = name.startsWith("udfDefaultValue");
+
+            // The frame this call pushed, null if none, so it pops exactly what it pushed
+            // even if a client attaches or detaches while it runs
+            final int frame = ga.newLocal(frameHandleType);
+            ga.visitInsn(Opcodes.ACONST_NULL);
+            ga.storeLocal(frame);
 
             final var tryStart = ga.mark();
 
@@ -92,7 +156,24 @@ public class CfmOrCfc extends ClassVisitor {
                 // [<empty-stack>]
 
                 // pushCfFrame
-                {
+                if (useInvokeDynamic) {
+                    ga.loadArg(0); // should be PageContextImpl as PageContext
+                    // [PageContext]
+
+                    ga.push(sourceName);
+                    // [PageContext, String]
+
+                    ga.invokeDynamic(
+                        isDefaultValueInit ? DebugHooks.PUSH_CF_FUNCTION_DEFAULT_VALUE_INITIALIZATION_FRAME : DebugHooks.PUSH_CF_FRAME,
+                        DebugHooks_t.pushDescriptor,
+                        DebugHooks_t.bootstrap
+                    );
+                    // [Object]
+
+                    ga.storeLocal(frame);
+                    // [<empty>]
+                }
+                else {
                     ga.getStatic(GlobalIDebugManagerHolder_t.type, "debugManager", IDebugManager_t.type);
                     // [IDebugManager_t]
 
@@ -102,12 +183,15 @@ public class CfmOrCfc extends ClassVisitor {
                     ga.push(sourceName);
                     // [IDebugManager_t, PageContext, String]
 
-                    if (name.startsWith("udfDefaultValue")) {
+                    if (isDefaultValueInit) {
                         ga.invokeInterface(IDebugManager_t.type, IDebugManager_t.m_pushCfFunctionDefaultValueInitializationFrame);
                     }
                     else {
                         ga.invokeInterface(IDebugManager_t.type, IDebugManager_t.m_pushCfFrame);
                     }
+                    // [Object]
+
+                    ga.storeLocal(frame);
                     // [<empty>]
                 }
 
@@ -117,22 +201,27 @@ public class CfmOrCfc extends ClassVisitor {
                 for (int i = 0; i < argCount; ++i) {
                     ga.loadArg(i);
                 }
-                // [<this>, ...args]
+                ga.loadLocal(frame);
+                // [<this>, ...args, frame]
 
-                ga.invokeVirtual(thisType, new Method(delegateToName, descriptor));
+                ga.invokeVirtual(thisType, new Method(delegateToName, delegateDescriptor(descriptor)));
                 // [<return-value>]
 
                 // popCfFrame
                 {
-                    ga.getStatic(GlobalIDebugManagerHolder_t.type, "debugManager", IDebugManager_t.type);
-                    ga.invokeInterface(IDebugManager_t.type, IDebugManager_t.m_popCfFrame);
+                    emitPopIfPushed(ga, frame);
 
                     // non-exceptional function return gets a step notification,
                     // with the exception of udfDefaultValue frames (serves to set function default args), which behave sort of weirdly
                     // (as if they're merged with their associated UDF? not clear at the moment)
                     if (!name.equals("udfDefaultValue")) {
-                        ga.getStatic(GlobalIDebugManagerHolder_t.type, "debugManager", IDebugManager_t.type);
-                        ga.invokeInterface(IDebugManager_t.type, IDebugManager_t.m_stepAfterCompletedUdfCall);
+                        if (useInvokeDynamic) {
+                            ga.invokeDynamic(DebugHooks.STEP_AFTER_COMPLETED_UDF_CALL, IDebugManager_t.m_stepAfterCompletedUdfCall.getDescriptor(), DebugHooks_t.bootstrap);
+                        }
+                        else {
+                            ga.getStatic(GlobalIDebugManagerHolder_t.type, "debugManager", IDebugManager_t.type);
+                            ga.invokeInterface(IDebugManager_t.type, IDebugManager_t.m_stepAfterCompletedUdfCall);
+                        }
                     }
                 }
                 
@@ -151,8 +240,7 @@ public class CfmOrCfc extends ClassVisitor {
 
                 // popCfFrame
                 {
-                    ga.getStatic(GlobalIDebugManagerHolder_t.type, "debugManager", IDebugManager_t.type);
-                    ga.invokeInterface(IDebugManager_t.type, IDebugManager_t.m_popCfFrame);
+                    emitPopIfPushed(ga, frame);
 
                     //
                     // n.b exceptional function return DOES NOT get a step notification
@@ -172,6 +260,20 @@ public class CfmOrCfc extends ClassVisitor {
         }
     }
 
+    /**
+     * popCfFrame, if this call pushed a frame; [...] -> [...].
+     * A direct call, not a hook: a frame pushed while attached is popped even if the client has gone since.
+     * While detached `frame` is the constant null, so the JIT drops the whole thing.
+     */
+    private void emitPopIfPushed(GeneratorAdapter ga, int frame) {
+        final var skip = ga.newLabel();
+        ga.loadLocal(frame);
+        ga.ifNull(skip);
+        ga.getStatic(GlobalIDebugManagerHolder_t.type, "debugManager", IDebugManager_t.type);
+        ga.invokeInterface(IDebugManager_t.type, IDebugManager_t.m_popCfFrame);
+        ga.mark(skip);
+    }
+
     @Override
     public MethodVisitor visitMethod(
         final int access,
@@ -210,17 +312,28 @@ public class CfmOrCfc extends ClassVisitor {
 
             createWrapperMethod(access, name, descriptor, signature, exceptions, delegateToName);
 
-            final var mv = super.visitMethod(access, delegateToName, descriptor, signature, exceptions);
+            // no generic signature: it wouldn't match the extra argument
+            final var mv = super.visitMethod(access, delegateToName, delegateDescriptor(descriptor), null, exceptions);
 
+            // Built for the original descriptor, so the body's own locals are renumbered from where the
+            // arguments ended; the slot reserved first is the one the extra frame argument arrives in.
             return new AdviceAdapter(this.api, mv, access, delegateToName, descriptor) {
+                private int frame = -1;
+
+                @Override
+                public void visitCode() {
+                    super.visitCode();
+                    frame = newLocal(frameHandleType);
+                    final int argSlots = (Type.getArgumentsAndReturnSizes(descriptor) >> 2) - ((access & Opcodes.ACC_STATIC) != 0 ? 1 : 0);
+                    if (frame != argSlots) {
+                        throw new IllegalStateException("frame argument of " + delegateToName + " expected in slot " + argSlots + ", reserved " + frame);
+                    }
+                }
+
                 @Override
                 public void visitLineNumber(int line, Label start) {
                     // step
-                    {
-                        this.getStatic(GlobalIDebugManagerHolder_t.type, "debugManager", IDebugManager_t.type);
-                        this.push(line);
-                        this.invokeInterface(IDebugManager_t.type, IDebugManager_t.m_step);
-                    }
+                    emitStep(this, frame, line);
 
                     super.visitLineNumber(line, this.mark());
                 }
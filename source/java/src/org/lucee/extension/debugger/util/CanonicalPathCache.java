@@ -0,0 +1,149 @@
+package org.lucee.extension.debugger.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, concurrent cache of canonicalized file paths.
+ *
+ * Lucee hands us the same path String instances over and over (one per
+ * PageSource), so lookups first try a small direct-mapped identity table keyed
+ * by System.identityHashCode - a hit there is a reference compare. Misses fall
+ * back to an equals-keyed ConcurrentHashMap, and only then to canonicalizing.
+ *
+ * Both tables are bounded: the identity table by its fixed size (slots are
+ * simply overwritten), the equals table by clearing it when it fills up.
+ */
+public class CanonicalPathCache {
+
+	private static final int IDENTITY_SLOTS = 1024; // power of two
+
+	private static final class Entry {
+		final String key;
+		final String value;
+
+		Entry(String key, String value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	private final int maxSize;
+	private final boolean caseSensitive;
+	// Racy reads are fine: Entry is immutable, a stale or missing slot just means a slower path
+	private final Entry[] identity = new Entry[IDENTITY_SLOTS];
+	private final ConcurrentHashMap<String, String> byValue = new ConcurrentHashMap<>();
+
+	private final LongAdder identityHits = new LongAdder();
+	private final LongAdder equalsHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param maxSize maximum entries in the equals-keyed table
+	 * @param caseSensitive if false, paths are lowercased
+	 */
+	public CanonicalPathCache(int maxSize, boolean caseSensitive) {
+		this.maxSize = maxSize;
+		this.caseSensitive = caseSensitive;
+	}
+
+	public boolean isCaseSensitive() {
+		return caseSensitive;
+	}
+
+	/**
+	 * Get the canonical form of path, computing and caching it if needed.
+	 */
+	public String get(String path) {
+		int slot = System.identityHashCode(path) & (IDENTITY_SLOTS - 1);
+		Entry e = identity[slot];
+		if (e != null && e.key == path) {
+			identityHits.increment();
+			return e.value;
+		}
+
+		String canon = byValue.get(path);
+		if (canon != null) {
+			equalsHits.increment();
+		}
+		else {
+			misses.increment();
+			canon = canonicalize(path, caseSensitive);
+			if (byValue.size() >= maxSize) {
+				byValue.clear();
+			}
+			byValue.put(path, canon);
+		}
+		identity[slot] = new Entry(path, canon);
+		return canon;
+	}
+
+	public long getIdentityHits() {
+		return identityHits.sum();
+	}
+
+	public long getEqualsHits() {
+		return equalsHits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public int size() {
+		return byValue.size();
+	}
+
+	@Override
+	public String toString() {
+		return "identityHits=" + getIdentityHits()
+			+ " equalsHits=" + getEqualsHits()
+			+ " misses=" + getMisses()
+			+ " size=" + size();
+	}
+
+	/**
+	 * Collapse runs of '/' and '\' into a single '/', and lowercase unless caseSensitive.
+	 * Single pass, no regex; returns path itself when it is already canonical.
+	 */
+	public static String canonicalize(String path, boolean caseSensitive) {
+		int len = path.length();
+		int i = 0;
+		// Scan for the first char that needs changing
+		for (; i < len; i++) {
+			char c = path.charAt(i);
+			if (c == '\\') break;
+			if (c == '/' && i + 1 < len && (path.charAt(i + 1) == '/' || path.charAt(i + 1) == '\\')) break;
+			if (!caseSensitive && (c >= 'A' && c <= 'Z' || c >= 0x80)) break;
+		}
+		if (i == len) {
+			return path;
+		}
+
+		StringBuilder sb = new StringBuilder(len);
+		sb.append(path, 0, i);
+		boolean nonAscii = false;
+		boolean lastWasSep = false;
+		for (; i < len; i++) {
+			char c = path.charAt(i);
+			if (c == '/' || c == '\\') {
+				if (!lastWasSep) sb.append('/');
+				lastWasSep = true;
+				continue;
+			}
+			lastWasSep = false;
+			if (!caseSensitive) {
+				if (c >= 'A' && c <= 'Z') {
+					c = (char) (c + ('a' - 'A'));
+				}
+				else if (c >= 0x80) {
+					nonAscii = true;
+				}
+			}
+			sb.append(c);
+		}
+		String result = sb.toString();
+		// Non-ASCII case mapping can change length (locale-specific rules) - defer to String
+		return nonAscii ? result.toLowerCase() : result;
+	}
+}
@@ -0,0 +1,55 @@
+package org.lucee.extension.debugger.util;
+
+/**
+ * Case-insensitive glob match: '*' matches any run of characters (including
+ * none), '?' matches exactly one. No other metacharacters.
+ *
+ * Matching walks the strings in place with single-star backtracking, so it
+ * never allocates - usable once per request on a request thread.
+ */
+public final class Glob {
+
+	private Glob() {
+	}
+
+	public static boolean matches(String pattern, CharSequence text) {
+		if (pattern == null || text == null) {
+			return false;
+		}
+		int p = 0;
+		int t = 0;
+		int starP = -1; // position after the last '*' seen
+		int starT = -1; // text position that '*' is currently matched up to
+		int plen = pattern.length();
+		int tlen = text.length();
+		while (t < tlen) {
+			if (p < plen) {
+				char pc = pattern.charAt(p);
+				if (pc == '*') {
+					starP = ++p;
+					starT = t;
+					continue;
+				}
+				if (pc == '?' || same(pc, text.charAt(t))) {
+					p++;
+					t++;
+					continue;
+				}
+			}
+			if (starP < 0) {
+				return false;
+			}
+			// Let the last '*' swallow one more character and retry
+			p = starP;
+			t = ++starT;
+		}
+		while (p < plen && pattern.charAt(p) == '*') {
+			p++;
+		}
+		return p == plen;
+	}
+
+	private static boolean same(char a, char b) {
+		return a == b || Character.toLowerCase(a) == Character.toLowerCase(b);
+	}
+}
@@ -0,0 +1,84 @@
+package org.lucee.extension.debugger.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer: many producers, one consumer.
+ *
+ * Producers claim a slot with a CAS on the tail and then publish into it;
+ * offer() never blocks and returns false when the ring is full. The consumer
+ * (one thread at a time - callers serialize it) takes published slots in
+ * order. A slot that has been claimed but not yet published stops poll() until
+ * the next call, which keeps ordering without the consumer ever waiting.
+ */
+public class MpscRingBuffer<E> {
+
+	private final AtomicReferenceArray<E> slots;
+	private final int capacity;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong(); // next slot to claim
+	private final AtomicLong head = new AtomicLong(); // next slot to consume
+
+	/**
+	 * @param capacity rounded up to a power of two
+	 */
+	public MpscRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.slots = new AtomicReferenceArray<>(size);
+		this.capacity = size;
+		this.mask = size - 1;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Add an element if there is room.
+	 * @return false if the ring is full (the element is not added)
+	 */
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		long t;
+		do {
+			t = tail.get();
+			if (t - head.get() >= capacity) {
+				return false;
+			}
+		} while (!tail.compareAndSet(t, t + 1));
+		slots.lazySet((int) (t & mask), e);
+		return true;
+	}
+
+	/**
+	 * Take the next element. Consumer side - callers must not poll concurrently.
+	 * @return the element, or null if none is published yet
+	 */
+	public E poll() {
+		long h = head.get();
+		int idx = (int) (h & mask);
+		E e = slots.get(idx);
+		if (e == null) {
+			return null;
+		}
+		// Clear before advancing head, so a producer that sees the new head finds an empty slot
+		slots.lazySet(idx, null);
+		head.lazySet(h + 1);
+		return e;
+	}
+
+	/**
+	 * Approximate number of claimed slots (published or not).
+	 */
+	public int size() {
+		long size = tail.get() - head.get();
+		return (int) Math.max(0, Math.min(size, capacity));
+	}
+
+	public boolean isEmpty() {
+		return tail.get() == head.get();
+	}
+}
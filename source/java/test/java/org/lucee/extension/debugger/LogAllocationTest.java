@@ -0,0 +1,92 @@
+package org.lucee.extension.debugger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Disabled log levels must cost nothing on hot paths: the parameterized and
+ * Supplier overloads, the level guards, and Log.exception with no DAP client
+ * should not allocate at INFO.
+ */
+class LogAllocationTest {
+	private static final int ITERATIONS = 200_000;
+	// ThreadMXBean itself allocates a little per call; anything per-iteration would be MBs
+	private static final long SLACK_BYTES = 16 * 1024;
+
+	private static final String FILE = "/var/www/app/handlers/Main.cfc";
+	private static final Object COMPONENT = new Object() {
+		@Override
+		public String toString() {
+			return "handlers.Main";
+		}
+	};
+	private static final Throwable EXCEPTION = new IllegalStateException("boom");
+
+	@BeforeEach
+	void setUp() {
+		assumeTrue(isLevelOnly(), "LUCEE_DEBUGGER_DEBUG is set - debug output is always on");
+		Log.setLogLevel(Log.LogLevel.INFO);
+		Log.setDapClient(null);
+	}
+
+	@AfterEach
+	void tearDown() {
+		Log.setLogLevel(Log.LogLevel.INFO);
+	}
+
+	@Test
+	void guardsReflectLevel() {
+		assertFalse(Log.isDebugEnabled());
+		assertFalse(Log.isTraceEnabled());
+		Log.setLogLevel(Log.LogLevel.DEBUG);
+		assertTrue(Log.isDebugEnabled());
+		assertFalse(Log.isTraceEnabled());
+	}
+
+	@Test
+	void formatSubstitutesPlaceholdersInOrder() {
+		assertEquals("a=1 b=x", Log.format("a={} b={}", 1, "x"));
+		assertEquals("a=1 b={}", Log.format("a={} b={}", 1));
+		assertEquals("no placeholders", Log.format("no placeholders", 1, 2));
+		assertEquals("null", Log.format("{}", (Object) null));
+	}
+
+	@Test
+	void disabledLoggingDoesNotAllocateAtInfo() {
+		run(1_000); // warm up / class init
+		run(ITERATIONS); // let the JIT compile the loop
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(tid);
+		run(ITERATIONS);
+		long allocated = threads.getThreadAllocatedBytes(tid) - before;
+
+		assertTrue(allocated < SLACK_BYTES,
+			"Expected no log-related allocation at INFO, got " + allocated + " bytes for " + ITERATIONS + " iterations");
+	}
+
+	private static void run(int iterations) {
+		for (int i = 0; i < iterations; i++) {
+			Log.debug("onSuspend: file={} component={}", FILE, COMPONENT);
+			Log.debug("onException returning: {}", Boolean.FALSE);
+			Log.trace("getStackTrace: {} {} {}", FILE, COMPONENT, FILE);
+			Log.debug(() -> "supplier: " + FILE);
+			if (Log.isDebugEnabled()) {
+				Log.debug("guarded: " + i + " " + FILE);
+			}
+			Log.exception(EXCEPTION);
+		}
+	}
+
+	private static boolean isLevelOnly() {
+		String env = System.getenv("LUCEE_DEBUGGER_DEBUG");
+		return env == null || env.isEmpty() || env.equals("0") || env.equalsIgnoreCase("false");
+	}
+}
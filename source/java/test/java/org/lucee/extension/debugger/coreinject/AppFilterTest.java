@@ -0,0 +1,56 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class AppFilterTest {
+
+	@Test
+	void emptyConfigHasNoFilter() {
+		assertNull( AppFilter.of( null ) );
+		assertNull( AppFilter.of( "not a map" ) );
+		assertNull( AppFilter.of( Map.of() ) );
+		assertNull( AppFilter.of( Map.of( "applications", "", "webroots", List.of() ) ) );
+	}
+
+	@Test
+	void applicationNameGlobs() {
+		AppFilter filter = AppFilter.of( Map.of( "applications", List.of( "shop", "admin-*" ) ) );
+		assertTrue( filter.test( "shop", null, null ) );
+		assertTrue( filter.test( "SHOP", null, null ) );
+		assertTrue( filter.test( "admin-eu", null, null ) );
+		assertFalse( filter.test( "shopfront", null, null ) );
+		// Application.cfc not run yet
+		assertFalse( filter.test( null, "/var/www/shop", "/" ) );
+	}
+
+	@Test
+	void webrootsIgnoreSlashStyleAndTrailingSlash() {
+		AppFilter filter = AppFilter.of( Map.of( "webroots", List.of( "C:\\www\\shop\\", "/var/www/blog*" ) ) );
+		assertTrue( filter.test( null, "C:/www/shop", null ) );
+		assertTrue( filter.test( null, "c:\\www\\shop\\", null ) );
+		assertTrue( filter.test( null, "/var/www/blog-staging/", null ) );
+		assertFalse( filter.test( null, "C:/www/shop2", null ) );
+		assertFalse( filter.test( null, "/var/www/other", null ) );
+	}
+
+	@Test
+	void mappings() {
+		AppFilter filter = AppFilter.of( Map.of( "mappings", "/shop/" ) );
+		assertTrue( filter.test( null, null, "/shop" ) );
+		assertFalse( filter.test( null, null, "/" ) );
+		assertFalse( filter.test( null, null, "/shopping" ) );
+	}
+
+	@Test
+	void anyAttributeMayMatch() {
+		AppFilter filter = AppFilter.of( Map.of( "applications", "shop", "mappings", "/legacy" ) );
+		assertTrue( filter.test( "shop", "/var/www", "/" ) );
+		assertTrue( filter.test( "blog", "/var/www", "/legacy" ) );
+		assertFalse( filter.test( "blog", "/var/www", "/" ) );
+	}
+}
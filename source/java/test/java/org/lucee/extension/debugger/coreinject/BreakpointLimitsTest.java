@@ -0,0 +1,178 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class BreakpointLimitsTest {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	@Test
+	void parsesLimitClauses() {
+		BreakpointLimits limits = BreakpointLimits.of( "rate 5/s; sample 10%, max=100" );
+		assertEquals( 5.0, limits.ratePerSecond );
+		assertEquals( 0.1, limits.sample, 1e-9 );
+		assertEquals( 100, limits.maxHits );
+
+		assertEquals( 0.25, BreakpointLimits.of( "sample 0.25" ).sample, 1e-9 );
+		assertEquals( 0.5, BreakpointLimits.of( "RATE: 0.5" ).ratePerSecond );
+		assertNull( limits.threads );
+	}
+
+	@Test
+	void threadsClauseGetsItsOwnLimiter() {
+		BreakpointLimits limits = BreakpointLimits.of( ">=2, threads 1" );
+		assertEquals( 1, limits.threads.getMax() );
+		assertTrue( limits.admit() );
+		assertEquals( BreakpointLimits.FIRED, limits.fire() );
+		assertEquals( ">=2", BreakpointLimits.countCondition( ">=2, threads 1" ) );
+		assertNull( BreakpointLimits.of( "threads 0" ) );
+	}
+
+	@Test
+	void plainHitConditionsHaveNoLimits() {
+		assertNull( BreakpointLimits.of( null ) );
+		assertNull( BreakpointLimits.of( ">=5" ) );
+		assertNull( BreakpointLimits.of( "%3" ) );
+		// invalid clauses are ignored
+		assertNull( BreakpointLimits.of( "rate fast" ) );
+		assertNull( BreakpointLimits.of( "sample 150%" ) );
+		assertNull( BreakpointLimits.of( "max 0" ) );
+	}
+
+	@Test
+	void countConditionKeepsOnlyTheHitCount() {
+		assertEquals( ">=5", BreakpointLimits.countCondition( ">=5; rate 2/s" ) );
+		assertEquals( "%3", BreakpointLimits.countCondition( "max 10, %3" ) );
+		assertNull( BreakpointLimits.countCondition( "rate 2/s; max 10" ) );
+		assertNull( BreakpointLimits.countCondition( null ) );
+		assertEquals( "10", BreakpointLimits.countCondition( "10" ) );
+	}
+
+	@Test
+	void tokenBucketAllowsBurstThenSteadyRate() {
+		BreakpointLimits limits = BreakpointLimits.of( "rate 4/s" );
+		long now = System.nanoTime();
+
+		// a full bucket holds one second's worth
+		for ( int i = 0; i < 4; i++ ) {
+			assertTrue( limits.takeToken( now ), "burst hit " + i );
+		}
+		assertFalse( limits.takeToken( now ) );
+
+		// one token comes back every 250ms
+		assertFalse( limits.takeToken( now + SECOND / 8 ) );
+		assertTrue( limits.takeToken( now + SECOND / 4 ) );
+		assertFalse( limits.takeToken( now + SECOND / 4 ) );
+
+		// idle time refills the bucket, but only up to its size
+		long later = now + 60 * SECOND;
+		int admitted = 0;
+		for ( int i = 0; i < 10; i++ ) {
+			if ( limits.takeToken( later ) ) admitted++;
+		}
+		assertEquals( 4, admitted );
+	}
+
+	@Test
+	void fractionalRateAllowsOneHitPerInterval() {
+		BreakpointLimits limits = BreakpointLimits.of( "rate 0.5/s" );
+		long now = System.nanoTime();
+		assertTrue( limits.takeToken( now ) );
+		assertFalse( limits.takeToken( now + SECOND ) );
+		assertTrue( limits.takeToken( now + 2 * SECOND ) );
+	}
+
+	@Test
+	void capDisablesAfterMaxHits() {
+		BreakpointLimits limits = BreakpointLimits.of( "max 3" );
+		assertTrue( limits.admit() );
+		assertEquals( BreakpointLimits.FIRED, limits.fire() );
+		assertEquals( BreakpointLimits.FIRED, limits.fire() );
+		assertFalse( limits.isExhausted() );
+		assertEquals( BreakpointLimits.LAST, limits.fire() );
+		assertTrue( limits.isExhausted() );
+		assertFalse( limits.admit() );
+		// a hit admitted before the cap was reached, finishing late
+		assertEquals( BreakpointLimits.REJECTED, limits.fire() );
+	}
+
+	@Test
+	void capIsExactUnderContention() throws Exception {
+		BreakpointLimits limits = BreakpointLimits.of( "max 1000" );
+		int threads = 8;
+		int[] fired = new int[threads];
+		int[] last = new int[threads];
+		Thread[] workers = new Thread[threads];
+		for ( int t = 0; t < threads; t++ ) {
+			final int idx = t;
+			workers[t] = new Thread( () -> {
+				for ( int i = 0; i < 1000; i++ ) {
+					int r = limits.fire();
+					if ( r != BreakpointLimits.REJECTED ) fired[idx]++;
+					if ( r == BreakpointLimits.LAST ) last[idx]++;
+				}
+			} );
+			workers[t].start();
+		}
+		int total = 0;
+		int lastTotal = 0;
+		for ( int t = 0; t < threads; t++ ) {
+			workers[t].join();
+			total += fired[t];
+			lastTotal += last[t];
+		}
+		assertEquals( 1000, total );
+		assertEquals( 1, lastTotal );
+	}
+
+	@Test
+	void samplingAdmitsAboutTheRequestedShare() {
+		BreakpointLimits limits = BreakpointLimits.of( "sample 10%" );
+		int admitted = 0;
+		for ( int i = 0; i < 100_000; i++ ) {
+			if ( limits.admit() ) admitted++;
+		}
+		assertTrue( admitted > 8_000 && admitted < 12_000, "admitted " + admitted );
+	}
+
+	@Test
+	void resentFunctionBreakpointsKeepTheirCap() {
+		FunctionBreakpointMatcher first = FunctionBreakpointMatcher.of( new String[] { "load", "save" }, null, new String[] { "max 1", null } );
+		assertEquals( BreakpointLimits.LAST, first.entries()[0].limits.fire() );
+
+		// The client resends both when a third is added; "save" changes its hit condition
+		FunctionBreakpointMatcher second = FunctionBreakpointMatcher.of(
+			new String[] { "init", "load", "save" }, null, new String[] { null, "max 1", ">=2" }, first );
+		FunctionBreakpointMatcher.Entry[] entries = second.entries();
+		assertEquals( -1, entries[0].previousIndex );
+		assertEquals( 0, entries[1].previousIndex );
+		assertTrue( entries[1].limits.isExhausted() );
+		assertEquals( -1, entries[2].previousIndex );
+
+		// A changed spec starts over
+		FunctionBreakpointMatcher third = FunctionBreakpointMatcher.of( new String[] { "load" }, null, new String[] { "max 2" }, second );
+		assertEquals( -1, third.entries()[0].previousIndex );
+		assertFalse( third.entries()[0].limits.isExhausted() );
+	}
+
+	@Test
+	void lineBreakpointSpecComparesEverySetting() {
+		BreakpointIndex.LineBreakpoint capped = new BreakpointIndex.LineBreakpoint( 7, null, null, BreakpointLimits.of( "max 1" ), null, false );
+		assertTrue( capped.sameSpec( new BreakpointIndex.LineBreakpoint( 7, null, null, BreakpointLimits.of( "max 1" ), null, false ) ) );
+		assertFalse( capped.sameSpec( new BreakpointIndex.LineBreakpoint( 7, null, null, BreakpointLimits.of( "max 2" ), null, false ) ) );
+		assertFalse( capped.sameSpec( new BreakpointIndex.LineBreakpoint( 7, null, null, BreakpointLimits.of( "max 1" ), null, true ) ) );
+		assertFalse( capped.sameSpec( new BreakpointIndex.LineBreakpoint( 8, null, null, BreakpointLimits.of( "max 1" ), null, false ) ) );
+
+		BreakpointIndex index = BreakpointIndex.EMPTY.with( "/app/a.cfm", capped )
+			.with( "/app/a.cfm", new BreakpointIndex.LineBreakpoint( 9, null ) );
+		assertSame( capped, index.get( "/app/a.cfm", 7 ) );
+		BreakpointIndex retained = index.retainLines( "/app/a.cfm", Set.of( 7 ) );
+		assertSame( capped, retained.get( "/app/a.cfm", 7 ) );
+		assertFalse( retained.contains( "/app/a.cfm", 9 ) );
+		assertSame( retained, retained.retainLines( "/app/a.cfm", Set.of( 7 ) ) );
+	}
+}
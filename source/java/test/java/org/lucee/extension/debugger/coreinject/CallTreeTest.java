@@ -0,0 +1,70 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class CallTreeTest {
+
+	private static void add( CallTree tree, String... frames ) {
+		String[] functions = new String[frames.length];
+		String[] files = new String[frames.length];
+		int[] lines = new int[frames.length];
+		for ( int i = 0; i < frames.length; i++ ) {
+			String[] parts = frames[i].split( ":" );
+			functions[i] = parts[0];
+			files[i] = "/app/" + parts[1];
+			lines[i] = Integer.parseInt( parts[2] );
+		}
+		tree.add( functions, files, lines, frames.length );
+	}
+
+	@Test
+	void foldsSharedPrefixesAndCountsSelfSamples() {
+		CallTree tree = new CallTree( 100 );
+		add( tree, "<request>:index.cfm:0", "load:svc.cfc:10" );
+		add( tree, "<request>:index.cfm:0", "load:svc.cfc:10" );
+		add( tree, "<request>:index.cfm:0", "load:svc.cfc:12" );
+		add( tree, "<request>:index.cfm:0" );
+
+		assertEquals( 4, tree.samples() );
+		assertEquals( 3, tree.nodeCount() );
+		assertEquals(
+			"<request> (/app/index.cfm:0) 1\n"
+			+ "<request> (/app/index.cfm:0);load (/app/svc.cfc:10) 2\n"
+			+ "<request> (/app/index.cfm:0);load (/app/svc.cfc:12) 1\n",
+			tree.toCollapsed() );
+	}
+
+	@Test
+	void stopsGrowingAtMaxNodes() {
+		CallTree tree = new CallTree( 3 ); // root + 2
+		add( tree, "<request>:index.cfm:0", "a:x.cfc:1" );
+		add( tree, "<request>:index.cfm:0", "b:x.cfc:2" );
+
+		assertEquals( 2, tree.nodeCount() );
+		assertEquals( 1, tree.truncatedSamples() );
+		// the truncated sample is charged to the deepest node that exists
+		assertEquals(
+			"<request> (/app/index.cfm:0) 1\n"
+			+ "<request> (/app/index.cfm:0);a (/app/x.cfc:1) 1\n",
+			tree.toCollapsed() );
+	}
+
+	@Test
+	void sanitizesFrameSeparators() {
+		CallTree tree = new CallTree( 10 );
+		tree.add( new String[] { "odd;name" }, new String[] { null }, new int[] { 5 }, 1 );
+		assertEquals( "odd:name (??:5) 1\n", tree.toCollapsed() );
+	}
+
+	@Test
+	void clearDiscardsEverything() {
+		CallTree tree = new CallTree( 10 );
+		add( tree, "<request>:index.cfm:0", "a:x.cfc:1" );
+		tree.clear();
+		assertEquals( 0, tree.samples() );
+		assertEquals( 0, tree.nodeCount() );
+		assertEquals( "", tree.toCollapsed() );
+	}
+}
@@ -0,0 +1,92 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.ref.Cleaner;
+
+import org.junit.jupiter.api.Test;
+import org.lucee.extension.debugger.coreinject.frame.Frame;
+
+/**
+ * No engine here: pushes get a null PageContext, so every scope reads as null,
+ * the way FrameContext treats a scope it can't read.
+ */
+class CfStackTest {
+
+	private final ValTracker valTracker = new ValTracker( Cleaner.create() );
+
+	@Test
+	void pushAndPopMakeNoFrames() {
+		CfStack stack = new CfStack();
+		stack.push( null, "/a.cfm", 0 );
+		stack.setLine( 3 );
+		stack.push( null, "/b.cfc", 0 );
+		stack.setLine( 7 );
+		stack.setLine( 8 );
+
+		assertEquals( 2, stack.size() );
+		assertEquals( 3, stack.getLine( 0 ) );
+		assertEquals( 8, stack.getLine( 1 ) );
+		assertNull( stack.pop() );
+		assertNull( stack.pop() );
+		assertEquals( 0, stack.size() );
+	}
+
+	@Test
+	void materializedFramesKeepTheirIdUntilPopped() {
+		CfStack stack = new CfStack();
+		stack.push( null, "/a.cfm", 0 );
+		stack.setLine( 3 );
+		stack.push( null, "/b.cfc", 0 );
+		stack.setLine( 7 );
+
+		Frame top = stack.materialize( 1, valTracker );
+		assertEquals( "/b.cfc", top.getSourceFilePath() );
+		assertEquals( 1, top.getDepth() );
+		assertEquals( 7, top.getLine() );
+		assertEquals( "??", top.getName() );
+
+		stack.setLine( 9 );
+		assertSame( top, stack.materialize( 1, valTracker ) );
+		assertEquals( 9, top.getLine() );
+		assertEquals( 3, stack.materialize( 0, valTracker ).getLine() );
+
+		assertSame( top, stack.pop() );
+		stack.push( null, "/c.cfc", 0 );
+		Frame next = stack.materialize( 1, valTracker );
+		assertNotEquals( top.getId(), next.getId() );
+		assertEquals( "/c.cfc", next.getSourceFilePath() );
+	}
+
+	@Test
+	void defaultValueInitFlagReachesTheFrame() {
+		CfStack stack = new CfStack();
+		stack.push( null, "/a.cfm", 0 );
+		stack.push( null, "/a.cfm", CfStack.UDF_DEFAULT_VALUE_INIT );
+
+		assertFalse( stack.isUdfDefaultValueInit( 0 ) );
+		assertTrue( stack.isUdfDefaultValueInit( 1 ) );
+		assertTrue( stack.isTracked( 1 ) );
+		assertTrue( stack.materialize( 1, valTracker ).isUdfDefaultValueInitFrame );
+		assertFalse( stack.materialize( 0, valTracker ).isUdfDefaultValueInitFrame );
+	}
+
+	@Test
+	void growsPastItsInitialCapacity() {
+		CfStack stack = new CfStack();
+		for ( int i = 0; i < 100; i++ ) {
+			stack.push( null, "/f" + i + ".cfc", 0 );
+			stack.setLine( i + 1 );
+		}
+		Frame deep = stack.materialize( 80, valTracker );
+		assertEquals( "/f80.cfc", deep.getSourceFilePath() );
+		assertEquals( 81, deep.getLine() );
+
+		for ( int i = 99; i >= 0; i-- ) {
+			assertEquals( i + 1, stack.getLine( i ) );
+			Frame popped = stack.pop();
+			assertTrue( i == 80 ? popped == deep : popped == null );
+		}
+		assertEquals( 0, stack.size() );
+	}
+}
@@ -0,0 +1,97 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.lucee.extension.debugger.testutils.PageContextStubs;
+
+import lucee.runtime.PageContext;
+import lucee.runtime.PageSource;
+
+/**
+ * No engine here: the PageContext is a stub whose DebuggerFrames are plain
+ * objects with the fields and getLine() the profiler reads.
+ */
+class CfmlProfilerTest {
+
+	private static final PageSource INDEX = pageSource( "/app/index.cfm" );
+	private static final PageSource SVC = pageSource( "/app/svc.cfc" );
+
+	public abstract static class FramesPageContext extends PageContext {
+		Object[] frames = new Object[0];
+
+		@Override
+		public Thread getThread() {
+			return Thread.currentThread();
+		}
+
+		@Override
+		public PageSource getBasePageSource() {
+			return INDEX;
+		}
+
+		public Object[] getDebuggerFrames() {
+			return frames;
+		}
+	}
+
+	public static final class DebuggerFrame {
+		public final String functionName;
+		public final PageSource pageSource;
+		private final int line;
+
+		DebuggerFrame( String functionName, PageSource pageSource, int line ) {
+			this.functionName = functionName;
+			this.pageSource = pageSource;
+			this.line = line;
+		}
+
+		public int getLine() {
+			return line;
+		}
+	}
+
+	@Test
+	void samplesFunctionAndIncludeFrames() throws Throwable {
+		FramesPageContext pc = PageContextStubs.stub( FramesPageContext.class );
+		pc.frames = new Object[] { new DebuggerFrame( null, INDEX, 4 ), new DebuggerFrame( "load", SVC, 12 ) };
+		CfmlProfiler profiler = new CfmlProfiler( () -> List.of( pc ) );
+
+		profiler.sampleAll();
+		profiler.sampleAll();
+
+		assertEquals( 2, profiler.samples() );
+		assertEquals(
+			"<request> (/app/index.cfm:0);index.cfm (/app/index.cfm:4);load (/app/svc.cfc:12) 2\n",
+			profiler.toCollapsed() );
+	}
+
+	@Test
+	void requestWithoutFramesIsItsBaseTemplate() throws Throwable {
+		FramesPageContext pc = PageContextStubs.stub( FramesPageContext.class );
+		CfmlProfiler profiler = new CfmlProfiler( () -> List.of( pc ) );
+
+		profiler.sampleAll();
+
+		assertEquals( "<request> (/app/index.cfm:0) 1\n", profiler.toCollapsed() );
+	}
+
+	private static PageSource pageSource( String displayPath ) {
+		return (PageSource) Proxy.newProxyInstance( PageSource.class.getClassLoader(), new Class<?>[] { PageSource.class },
+			( proxy, method, args ) -> {
+				switch ( method.getName() ) {
+					case "getDisplayPath":
+						return displayPath;
+					case "hashCode":
+						return System.identityHashCode( proxy );
+					case "equals":
+						return proxy == args[0];
+					default:
+						throw new UnsupportedOperationException( method.getName() );
+				}
+			} );
+	}
+}
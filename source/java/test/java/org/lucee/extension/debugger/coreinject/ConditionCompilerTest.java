@@ -0,0 +1,119 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Expected values are what Lucee's Evaluate returns for the same expression
+ * and variables; FALLBACK means the condition must go to CFML instead.
+ */
+class ConditionCompilerTest {
+
+	/**
+	 * Variables by dotted, lowercased path.
+	 */
+	private static final ConditionCompiler.Resolver RESOLVER = new ConditionCompiler.Resolver() {
+		@Override
+		public Object prepare( String[] path ) {
+			return String.join( ".", path );
+		}
+
+		@Override
+		@SuppressWarnings( "unchecked" )
+		public Object lookup( Object context, Object prepared ) {
+			Map<String, Object> vars = (Map<String, Object>) context;
+			return vars.containsKey( prepared ) ? vars.get( prepared ) : ConditionCompiler.MISSING;
+		}
+	};
+
+	private static final Map<String, Object> VARS = new HashMap<>();
+	static {
+		VARS.put( "arguments.id", 42.0 );
+		VARS.put( "idstring", "42" );
+		VARS.put( "name", "abc" );
+		VARS.put( "flag", "yes" );
+		VARS.put( "items", List.of( 1, 2, 3 ) );
+		VARS.put( "word", "abc1" );
+	}
+
+	@Test
+	void compilesTheSupportedSubset() {
+		for ( String expression : new String[] {
+				"arguments.id == 0",
+				"id eq 42",
+				"arguments.userId eq \"abc\"",
+				"len(items) gt 100",
+				"isNull(x)",
+				"a.b.c neq 'x' and not (y lte 2.5)",
+				"a is not b || c ge d && e le f",
+				"x != true" } ) {
+			assertNotNull( compile( expression ), expression );
+		}
+	}
+
+	@Test
+	void leavesEverythingElseToCfml() {
+		for ( String expression : new String[] {
+				"arguments.id == -1", // no unary minus
+				"arguments.id + 0 == 42",
+				"a[1] == 2",
+				"name contains 'a'",
+				"name == '#other#'",
+				"this.x == 1",
+				"left(name, 1) == 'a'",
+				"x == 1e3",
+				"x ==",
+				"(x == 1" } ) {
+			assertNull( compile( expression ), expression );
+		}
+	}
+
+	@Test
+	void evaluatesLikeCfml() {
+		assertTest( true, "arguments.id == 42" );
+		assertTest( false, "arguments.id == 0" );
+		assertTest( true, "ARGUMENTS.ID EQ 42.0" );
+		assertTest( true, "idString == 42" ); // numeric strings compare as numbers
+		assertTest( true, "idString lt 100" );
+		assertTest( true, "name eq 'ABC'" ); // case-insensitive
+		assertTest( true, "name lt 'abd'" );
+		assertTest( true, "name is not 'abd'" );
+		assertTest( true, "flag" ); // "yes" is true
+		assertTest( true, "len(items) == 3" );
+		assertTest( true, "len(name) gte 3 and not isNull(name)" );
+		assertTest( true, "isNull(undefinedVar)" );
+		assertTest( true, "arguments.id == 0 || name == 'abc'" );
+		assertTest( false, "!(arguments.id == 42)" );
+	}
+
+	@Test
+	void fallsBackWhereCfmlSemanticsDiffer() {
+		assertFallback( "undefinedVar == 1" ); // CFML raises "variable is undefined"
+		assertFallback( "name == 1" ); // number vs non-numeric string
+		assertFallback( "word == 'abc'" ); // might be a date
+		assertFallback( "arguments.id == true" ); // boolean vs number
+		assertFallback( "len(arguments.id) == 2" ); // number formatting
+	}
+
+	private static ConditionCompiler.Compiled compile( String expression ) {
+		return ConditionCompiler.compile( expression, RESOLVER );
+	}
+
+	private static void assertTest( boolean expected, String expression ) {
+		ConditionCompiler.Compiled c = compile( expression );
+		assertNotNull( c, expression );
+		assertEquals( expected, c.test( VARS ), expression );
+	}
+
+	private static void assertFallback( String expression ) {
+		ConditionCompiler.Compiled c = compile( expression );
+		assertNotNull( c, expression );
+		RuntimeException e = assertThrows( RuntimeException.class, () -> c.test( VARS ), expression );
+		assertSame( ConditionCompiler.FALLBACK, e, expression );
+	}
+}
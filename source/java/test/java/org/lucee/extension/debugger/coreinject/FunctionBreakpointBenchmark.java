@@ -0,0 +1,180 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Rough benchmark for function breakpoint matching on UDF entry: the previous
+ * linear scan (lowercase + substring per wildcard) against FunctionBreakpointMatcher.
+ *
+ * Not a unit test (surefire only picks up *Test classes); run it directly:
+ *   java -cp target/classes:target/test-classes:... org.lucee.extension.debugger.coreinject.FunctionBreakpointBenchmark [breakpoints] [calls]
+ *
+ * Breakpoints are a mix of exact names, component-qualified names and wildcards;
+ * the call stream is framework-style accessors and lifecycle methods where only
+ * a small fraction matches. A first untimed pass checks both matchers agree on
+ * every call. Allocation is measured with com.sun.management.ThreadMXBean.
+ */
+public class FunctionBreakpointBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	private static final String[] VERBS = { "get", "set", "is", "has", "load", "save", "find", "build", "validate", "render" };
+	private static final String[] NOUNS = { "User", "Order", "Cart", "Session", "Config", "Item", "Price", "Token", "Route", "View", "Cache", "Address" };
+	private static final String[] LIFECYCLE = { "init", "onRequestStart", "onRequest", "onRequestEnd", "onApplicationStart", "onSessionStart", "preHandler", "postHandler", "onMissingMethod" };
+	private static final String[] COMPONENTS = { "UserService", "OrderService", "CartService", "BaseHandler", "Application", "models.User", "models.Order", null };
+
+	public static void main( String[] args ) throws Throwable {
+		int bpCount = args.length > 0 ? Integer.parseInt( args[0] ) : 300;
+		int calls = args.length > 1 ? Integer.parseInt( args[1] ) : 1_000_000;
+
+		Random random = new Random( 42 );
+		String[] names = breakpointNames( bpCount, random );
+		String[][] stream = callStream( calls, random );
+
+		Linear linear = new Linear( names );
+		FunctionBreakpointMatcher matcher = FunctionBreakpointMatcher.of( names, null );
+
+		int hits = 0;
+		for ( String[] call : stream ) {
+			boolean expected = linear.matches( call[0], call[1] );
+			boolean actual = matcher.match( null, call[0], call[1] ) != null;
+			if ( expected != actual ) {
+				throw new AssertionError( call[1] + "." + call[0] + ": linear=" + expected + " matcher=" + actual );
+			}
+			if ( actual ) hits++;
+		}
+		System.out.printf( "%d breakpoints, %d calls per round, %.2f%% match%n", bpCount, calls, 100.0 * hits / calls );
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+		for ( int round = 1; round <= ROUNDS; round++ ) {
+			long sink = 0;
+			long alloc = threads.getThreadAllocatedBytes( tid );
+			long start = System.nanoTime();
+			for ( String[] call : stream ) {
+				if ( linear.matches( call[0], call[1] ) ) sink++;
+			}
+			long linearNs = System.nanoTime() - start;
+			long linearAlloc = threads.getThreadAllocatedBytes( tid ) - alloc;
+
+			alloc = threads.getThreadAllocatedBytes( tid );
+			start = System.nanoTime();
+			for ( String[] call : stream ) {
+				if ( matcher.match( null, call[0], call[1] ) != null ) sink++;
+			}
+			long matcherNs = System.nanoTime() - start;
+			long matcherAlloc = threads.getThreadAllocatedBytes( tid ) - alloc;
+
+			System.out.printf( "round %d: linear %6.1f ns/call %5.1f B/call, matcher %6.1f ns/call %5.1f B/call (%d)%n",
+				round, (double) linearNs / calls, (double) linearAlloc / calls,
+				(double) matcherNs / calls, (double) matcherAlloc / calls, sink );
+		}
+	}
+
+	private static String[] breakpointNames( int count, Random random ) {
+		List<String> names = new ArrayList<>();
+		for ( int i = 0; names.size() < count; i++ ) {
+			String verb = VERBS[random.nextInt( VERBS.length )];
+			String noun = NOUNS[random.nextInt( NOUNS.length )];
+			switch ( i % 6 ) {
+				case 0:
+					// wildcard on a rare prefix
+					names.add( verb + noun + "Async*" );
+					break;
+				case 1:
+					names.add( COMPONENTS[random.nextInt( COMPONENTS.length - 1 )] + "." + verb + noun + "ById" );
+					break;
+				default:
+					names.add( verb + noun + "Field" + i );
+			}
+		}
+		names.add( "onError*" );
+		return names.toArray( new String[0] );
+	}
+
+	private static String[][] callStream( int count, Random random ) {
+		String[][] stream = new String[count][];
+		for ( int i = 0; i < count; i++ ) {
+			String name;
+			int kind = random.nextInt( 100 );
+			if ( kind < 60 ) {
+				name = VERBS[random.nextInt( VERBS.length )] + NOUNS[random.nextInt( NOUNS.length )];
+			}
+			else if ( kind < 85 ) {
+				name = LIFECYCLE[random.nextInt( LIFECYCLE.length )];
+			}
+			else if ( kind < 99 ) {
+				name = VERBS[random.nextInt( VERBS.length )] + NOUNS[random.nextInt( NOUNS.length )] + "ById";
+			}
+			else {
+				name = VERBS[random.nextInt( VERBS.length )] + NOUNS[random.nextInt( NOUNS.length )] + "Field" + random.nextInt( 400 );
+			}
+			stream[i] = new String[] { name, COMPONENTS[random.nextInt( COMPONENTS.length )] };
+		}
+		return stream;
+	}
+
+	/**
+	 * The previous onFunctionEntry algorithm: length bounds, lowercase, linear scan.
+	 */
+	private static final class Linear {
+		final String[] names;
+		final String[] comps;
+		final boolean[] wilds;
+		final int minLen;
+		final int maxLen;
+
+		Linear( String[] specs ) {
+			names = new String[specs.length];
+			comps = new String[specs.length];
+			wilds = new boolean[specs.length];
+			int min = Integer.MAX_VALUE;
+			int max = Integer.MIN_VALUE;
+			for ( int i = 0; i < specs.length; i++ ) {
+				String name = specs[i].trim();
+				int dot = name.lastIndexOf( '.' );
+				String funcName = name;
+				if ( dot > 0 ) {
+					comps[i] = name.substring( 0, dot ).toLowerCase();
+					funcName = name.substring( dot + 1 );
+				}
+				wilds[i] = funcName.endsWith( "*" );
+				names[i] = funcName.toLowerCase();
+				int effectiveLen = wilds[i] ? funcName.length() - 1 : funcName.length();
+				min = Math.min( min, effectiveLen );
+				max = wilds[i] ? Integer.MAX_VALUE : Math.max( max, effectiveLen );
+			}
+			minLen = min;
+			maxLen = max;
+		}
+
+		boolean matches( String functionName, String componentName ) {
+			int len = functionName.length();
+			if ( len < minLen || len > maxLen ) {
+				return false;
+			}
+			String lowerFunc = functionName.toLowerCase();
+			String lowerComp = componentName != null ? componentName.toLowerCase() : null;
+			for ( int i = 0; i < names.length; i++ ) {
+				if ( comps[i] != null && ( lowerComp == null || !lowerComp.equals( comps[i] ) ) ) {
+					continue;
+				}
+				boolean match;
+				if ( wilds[i] ) {
+					String prefix = names[i].substring( 0, names[i].length() - 1 );
+					match = lowerFunc.startsWith( prefix );
+				}
+				else {
+					match = lowerFunc.equals( names[i] );
+				}
+				if ( match ) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+class LineCoverageTest {
+
+	@Test
+	void recordsLinesAcrossGrowth() {
+		LineCoverage coverage = new LineCoverage();
+		coverage.hit( "/app/a.cfm", 3 );
+		coverage.hit( "/app/a.cfm", 3 );
+		coverage.hit( "/app/a.cfm", 64 );
+		coverage.hit( "/app/a.cfm", 5000 ); // beyond the initial bitset
+		coverage.hit( "/app/a.cfm", 0 );    // not a line
+		coverage.hit( "/app/b.cfm", 1 );
+
+		assertArrayEquals( new int[] { 3, 64, 5000 }, coverage.forFile( "/app/a.cfm" ).lines() );
+		assertEquals( 2, coverage.fileCount() );
+		assertEquals( 4, coverage.linesHit() );
+	}
+
+	@Test
+	void concurrentWritersLoseNoLines() throws Exception {
+		final int threads = 4;
+		final int maxLine = 20_000;
+		LineCoverage coverage = new LineCoverage();
+		CountDownLatch start = new CountDownLatch( 1 );
+		Thread[] workers = new Thread[threads];
+		for ( int t = 0; t < threads; t++ ) {
+			final int offset = t;
+			// Interleaved lines, ascending, so writers race each other through every grow
+			workers[t] = new Thread( () -> {
+				try {
+					start.await();
+				}
+				catch ( InterruptedException e ) {
+					return;
+				}
+				for ( int line = 1 + offset; line <= maxLine; line += threads ) {
+					coverage.hit( "/app/hot.cfm", line );
+				}
+			} );
+			workers[t].start();
+		}
+		start.countDown();
+		for ( Thread w : workers ) {
+			w.join();
+		}
+		assertEquals( maxLine, coverage.forFile( "/app/hot.cfm" ).lines().length );
+	}
+
+	@Test
+	void lcovIncludesUnexecutedLines() {
+		LineCoverage coverage = new LineCoverage();
+		coverage.hit( "/srv/b.cfm", 2 );
+		coverage.hit( "/srv/a.cfm", 4 );
+		coverage.hit( "/srv/a.cfm", 2 );
+
+		String lcov = coverage.toLcov(
+			path -> path.replace( "/srv/", "/ide/" ),
+			path -> path.endsWith( "a.cfm" ) ? new int[] { 6, 2, 4 } : null );
+
+		assertEquals(
+			"TN:\n"
+			+ "SF:/ide/a.cfm\n"
+			+ "DA:2,1\n"
+			+ "DA:4,1\n"
+			+ "DA:6,0\n"
+			+ "LF:3\n"
+			+ "LH:2\n"
+			+ "end_of_record\n"
+			+ "TN:\n"
+			+ "SF:/ide/b.cfm\n"
+			+ "DA:2,1\n"
+			+ "LF:1\n"
+			+ "LH:1\n"
+			+ "end_of_record\n",
+			lcov );
+	}
+}
@@ -0,0 +1,99 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+class PauseEpochTest {
+
+	@Test
+	void eachThreadClaimsAnEpochOnce() {
+		PauseEpoch pause = new PauseEpoch();
+		assertEquals( 0, pause.current() );
+
+		long first = pause.open();
+		assertEquals( first, pause.current() );
+		assertTrue( pause.claim( first ) );
+		assertFalse( pause.claim( first ) );
+
+		// a new pause-all stops the thread again
+		long second = pause.open();
+		assertNotEquals( first, second );
+		assertTrue( pause.claim( second ) );
+
+		assertTrue( pause.close() );
+		assertEquals( 0, pause.current() );
+		assertFalse( pause.close() );
+	}
+
+	/**
+	 * Hundreds of request threads running lines while pause-all is opened under
+	 * them, some starting only after it opened: every thread pauses exactly once,
+	 * and once resume-all closes the pause none stops again.
+	 */
+	@Test
+	void broadcastPauseUnderLoad() throws Exception {
+		PauseEpoch pause = new PauseEpoch();
+		int threads = 400;
+		int late = 100;
+		AtomicIntegerArray pauses = new AtomicIntegerArray( threads + late );
+		AtomicInteger stray = new AtomicInteger();
+		CountDownLatch allPaused = new CountDownLatch( threads + late );
+		CountDownLatch resumed = new CountDownLatch( 1 );
+		CountDownLatch done = new CountDownLatch( threads + late );
+
+		Thread[] workers = new Thread[threads + late];
+		for ( int t = 0; t < workers.length; t++ ) {
+			final int idx = t;
+			workers[t] = new Thread( () -> {
+				try {
+					// run lines until this thread pauses
+					for ( ;; ) {
+						long epoch = pause.current();
+						if ( epoch != 0 && pause.claim( epoch ) ) {
+							break;
+						}
+						Thread.yield();
+					}
+					pauses.incrementAndGet( idx );
+					allPaused.countDown();
+					// suspended until resume-all
+					resumed.await();
+					for ( int line = 0; line < 10_000; line++ ) {
+						long epoch = pause.current();
+						if ( epoch != 0 && pause.claim( epoch ) ) {
+							stray.incrementAndGet();
+						}
+					}
+				}
+				catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			} );
+		}
+		for ( int t = 0; t < threads; t++ ) {
+			workers[t].start();
+		}
+		pause.open();
+		// requests that start while the pause is open stop as well
+		for ( int t = threads; t < workers.length; t++ ) {
+			workers[t].start();
+		}
+		assertTrue( allPaused.await( 30, TimeUnit.SECONDS ), "every thread should pause" );
+
+		assertTrue( pause.close() );
+		resumed.countDown();
+		assertTrue( done.await( 30, TimeUnit.SECONDS ) );
+
+		for ( int t = 0; t < workers.length; t++ ) {
+			assertEquals( 1, pauses.get( t ), "thread " + t + " pauses once" );
+		}
+		assertEquals( 0, stray.get(), "no pauses after resume-all" );
+	}
+}
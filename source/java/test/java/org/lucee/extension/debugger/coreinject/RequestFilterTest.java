@@ -0,0 +1,81 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+class RequestFilterTest {
+
+	private static final UnaryOperator<String> NONE = name -> null;
+
+	@Test
+	void emptyConfigHasNoFilter() {
+		assertNull( RequestFilter.of( null ) );
+		assertNull( RequestFilter.of( "not a map" ) );
+		assertNull( RequestFilter.of( Map.of() ) );
+		assertNull( RequestFilter.of( Map.of( "path", "", "remoteAddr", List.of() ) ) );
+	}
+
+	@Test
+	void remoteAddrGlobsAndCidrs() {
+		RequestFilter filter = RequestFilter.of( Map.of( "remoteAddr", List.of( "127.0.0.1", "10.1.0.0/16", "192.168.*" ) ) );
+		assertTrue( filter.test( "127.0.0.1", "/", NONE, NONE ) );
+		assertTrue( filter.test( "10.1.200.3", "/", NONE, NONE ) );
+		assertFalse( filter.test( "10.2.0.1", "/", NONE, NONE ) );
+		assertTrue( filter.test( "192.168.5.5", "/", NONE, NONE ) );
+		assertFalse( filter.test( "8.8.8.8", "/", NONE, NONE ) );
+		assertFalse( filter.test( null, "/", NONE, NONE ) );
+		assertFalse( filter.test( "::1", "/", NONE, NONE ) );
+	}
+
+	@Test
+	void pathGlob() {
+		RequestFilter filter = RequestFilter.of( Map.of( "path", "/api/*" ) );
+		assertTrue( filter.test( "1.2.3.4", "/api/users", NONE, NONE ) );
+		assertTrue( filter.test( "1.2.3.4", "/API/users", NONE, NONE ) );
+		assertFalse( filter.test( "1.2.3.4", "/index.cfm", NONE, NONE ) );
+		assertFalse( filter.test( "1.2.3.4", null, NONE, NONE ) );
+	}
+
+	@Test
+	void everyHeaderAndCookieMustMatch() {
+		RequestFilter filter = RequestFilter.of( Map.of(
+			"headers", Map.of( "X-Debug-User", "alice*" ),
+			"cookies", Map.of( "DEBUG", "1" ) ) );
+		Map<String, String> headers = Map.of( "X-Debug-User", "alice.smith" );
+		Map<String, String> cookies = Map.of( "DEBUG", "1" );
+		assertTrue( filter.test( "1.2.3.4", "/", headers::get, cookies::get ) );
+		assertFalse( filter.test( "1.2.3.4", "/", headers::get, NONE ) );
+		assertFalse( filter.test( "1.2.3.4", "/", NONE, cookies::get ) );
+		assertFalse( filter.test( "1.2.3.4", "/", Map.of( "X-Debug-User", "bob" )::get, cookies::get ) );
+	}
+
+	@Test
+	void allAttributesMustMatch() {
+		RequestFilter filter = RequestFilter.of( Map.of( "remoteAddr", "127.0.0.1", "path", "/admin/*" ) );
+		assertTrue( filter.test( "127.0.0.1", "/admin/x.cfm", NONE, NONE ) );
+		assertFalse( filter.test( "127.0.0.2", "/admin/x.cfm", NONE, NONE ) );
+		assertFalse( filter.test( "127.0.0.1", "/x.cfm", NONE, NONE ) );
+	}
+
+	@Test
+	void invalidCidrIsSkipped() {
+		assertNull( RequestFilter.of( Map.of( "remoteAddr", List.of( "10.0.0.0/40", "nope/8" ) ) ) );
+	}
+
+	@Test
+	void parsesIpv4() {
+		assertEquals( 0x7f000001L, RequestFilter.parseIpv4( "127.0.0.1" ) );
+		assertEquals( 0xffffffffL, RequestFilter.parseIpv4( "255.255.255.255" ) );
+		assertEquals( -1L, RequestFilter.parseIpv4( "256.0.0.1" ) );
+		assertEquals( -1L, RequestFilter.parseIpv4( "4294967297.0.0.1" ) ); // 2^32 + 1
+		assertEquals( -1L, RequestFilter.parseIpv4( "1.2.3" ) );
+		assertEquals( -1L, RequestFilter.parseIpv4( "1.2.3.4.5" ) );
+		assertEquals( -1L, RequestFilter.parseIpv4( "1..3.4" ) );
+		assertEquals( -1L, RequestFilter.parseIpv4( "::1" ) );
+	}
+}
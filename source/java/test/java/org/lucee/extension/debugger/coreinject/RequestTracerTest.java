@@ -0,0 +1,164 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.lucee.extension.debugger.testutils.PageContextStubs;
+
+import lucee.runtime.PageContext;
+
+/**
+ * No engine here: the PageContext is a stub that keeps its DebuggerFrames in a
+ * list, the way PageContextImpl does.
+ */
+class RequestTracerTest {
+
+	private static final int ITERATIONS = 200_000;
+	// ThreadMXBean itself allocates a little per call; anything per-iteration would be MBs
+	private static final long SLACK_BYTES = 16 * 1024;
+	private static final String FILE = "/app/svc.cfc";
+	private static final DebuggerFrame BASE = new DebuggerFrame( null );
+	private static final DebuggerFrame LOAD = new DebuggerFrame( "load" );
+
+	public abstract static class FramesPageContext extends PageContext {
+		final ArrayList<DebuggerFrame> debuggerFrames = new ArrayList<>();
+
+		public Object[] getDebuggerFrames() {
+			return debuggerFrames.toArray();
+		}
+	}
+
+	/**
+	 * Frames in a field frameCount() doesn't know, so it has to count a copy.
+	 */
+	public abstract static class RenamedFramesPageContext extends PageContext {
+		final ArrayList<DebuggerFrame> frames = new ArrayList<>();
+
+		public Object[] getDebuggerFrames() {
+			return frames.toArray();
+		}
+	}
+
+	public static final class DebuggerFrame {
+		public final String functionName;
+
+		DebuggerFrame( String functionName ) {
+			this.functionName = functionName;
+		}
+	}
+
+	private Path directory;
+	private FramesPageContext pc;
+	private final List<PageContext> active = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		directory = Files.createTempDirectory( "luceedebug-trace" );
+		pc = PageContextStubs.stub( FramesPageContext.class );
+		pc.debuggerFrames.add( BASE );
+		active.add( pc );
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		try ( Stream<Path> files = Files.walk( directory ) ) {
+			files.sorted( Comparator.reverseOrder() ).forEach( p -> p.toFile().delete() );
+		}
+	}
+
+	@Test
+	void recordingDoesNotAllocate() throws Exception {
+		RequestTracer tracer = new RequestTracer( null, null, directory, 1_000, 1, () -> active );
+		tracer.start();
+		try {
+			run( tracer, 1_000 ); // warm up / first event of the request
+			run( tracer, ITERATIONS ); // let the JIT compile the loop
+
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			long tid = Thread.currentThread().getId();
+			long before = threads.getThreadAllocatedBytes( tid );
+			run( tracer, ITERATIONS );
+			long allocated = threads.getThreadAllocatedBytes( tid ) - before;
+
+			assertTrue( allocated < SLACK_BYTES,
+				"Expected no allocation while recording, got " + allocated + " bytes for " + ITERATIONS + " iterations" );
+		}
+		finally {
+			tracer.stop();
+		}
+	}
+
+	@Test
+	void runningRequestIsWrittenWhenStopped() throws Exception {
+		RequestTracer tracer = new RequestTracer( null, null, directory, 1_000, 1, () -> active );
+		tracer.start();
+		run( tracer, 1 );
+		Thread.sleep( 500 ); // a couple of sweeps: the request is still running, so it keeps its buffer
+		run( tracer, 1 );
+		tracer.stop();
+
+		assertTrue( await( () -> tracer.tracesWritten() == 1 ), "trace should be written on stop" );
+		String json = Files.readString( Path.of( tracer.recentFiles()[0] ) );
+		assertEquals( 2, json.split( "\"name\":\"svc.load\"", -1 ).length - 1 );
+	}
+
+	@Test
+	void endedRequestIsWrittenBySweep() throws Exception {
+		RequestTracer tracer = new RequestTracer( null, null, directory, 1_000, 1, () -> active );
+		tracer.start();
+		try {
+			run( tracer, 1 );
+			active.clear();
+
+			assertTrue( await( () -> tracer.tracesWritten() == 1 ), "sweep should write the ended request" );
+			assertEquals( 0, tracer.droppedRequests() );
+		}
+		finally {
+			tracer.stop();
+		}
+	}
+
+	@Test
+	void frameCountReadsOnlyAKnownField() throws Throwable {
+		pc.debuggerFrames.add( LOAD );
+		assertEquals( 2, StackDepthTracker.frameCount( pc ) );
+
+		RenamedFramesPageContext renamed = PageContextStubs.stub( RenamedFramesPageContext.class );
+		renamed.frames.add( BASE );
+		assertEquals( 1, StackDepthTracker.frameCount( renamed ) );
+		renamed.frames.add( LOAD );
+		assertEquals( 2, StackDepthTracker.frameCount( renamed ) );
+	}
+
+	/**
+	 * Each iteration: a line, a call to load() with a line in it, and its return.
+	 */
+	private void run( RequestTracer tracer, int iterations ) {
+		for ( int i = 0; i < iterations; i++ ) {
+			tracer.onLine( pc, FILE, 3 );
+			pc.debuggerFrames.add( LOAD );
+			tracer.onFunctionEntry( pc, "load", "svc", FILE, 10 );
+			tracer.onLine( pc, FILE, 11 );
+			pc.debuggerFrames.remove( pc.debuggerFrames.size() - 1 );
+		}
+	}
+
+	private static boolean await( BooleanSupplier condition ) throws InterruptedException {
+		for ( int i = 0; i < 500 && !condition.getAsBoolean(); i++ ) {
+			Thread.sleep( 10 );
+		}
+		return condition.getAsBoolean();
+	}
+}
@@ -0,0 +1,111 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import org.lucee.extension.debugger.coreinject.CfValueDebuggerBridge.MarkerTrait;
+
+class SnapshotCopierTest {
+
+	@Test
+	void copiesDetachedFromTheOriginal() {
+		Map<String, Object> scope = new LinkedHashMap<>();
+		List<Object> items = new ArrayList<>( List.of( 1, 2, 3 ) );
+		scope.put( "name", "alice" );
+		scope.put( "items", items );
+
+		SnapshotCopier copier = new SnapshotCopier( 3, 100, 1000 );
+		MarkerTrait.Snapshot copy = copier.copyScope( scope );
+		scope.put( "name", "bob" );
+		items.add( 4 );
+
+		assertEquals( "alice", copy.members.get( "name" ) );
+		MarkerTrait.Snapshot copiedItems = (MarkerTrait.Snapshot) copy.members.get( "items" );
+		assertEquals( List.of( 1, 2, 3 ), copiedItems.items );
+		assertEquals( "Array (3)", copiedItems.label );
+		assertFalse( copier.truncated() );
+		// scope, name, items and its three members
+		assertEquals( 6, copier.copied() );
+	}
+
+	@Test
+	void summarizesContainersBelowMaxDepth() {
+		Map<String, Object> inner = new LinkedHashMap<>();
+		inner.put( "deep", "value" );
+		Map<String, Object> outer = new LinkedHashMap<>();
+		outer.put( "inner", inner );
+		Map<String, Object> scope = new LinkedHashMap<>();
+		scope.put( "outer", outer );
+
+		SnapshotCopier copier = new SnapshotCopier( 1, 100, 1000 );
+		MarkerTrait.Snapshot copy = copier.copyScope( scope );
+
+		MarkerTrait.Snapshot outerCopy = (MarkerTrait.Snapshot) copy.members.get( "outer" );
+		MarkerTrait.Snapshot innerCopy = (MarkerTrait.Snapshot) outerCopy.members.get( "inner" );
+		assertNull( innerCopy.members );
+		assertEquals( "{} (1 members)", innerCopy.label );
+		assertFalse( innerCopy.isExpandable() );
+		assertTrue( copier.truncated() );
+	}
+
+	@Test
+	void stopsAtTheValueBudget() {
+		Map<String, Object> scope = new LinkedHashMap<>();
+		for ( int i = 0; i < 100; i++ ) {
+			scope.put( "k" + i, i );
+		}
+
+		SnapshotCopier copier = new SnapshotCopier( 3, 10, 1000 );
+		MarkerTrait.Snapshot copy = copier.copyScope( scope );
+
+		// the scope itself is one value, leaving nine for members
+		assertEquals( 9, copy.members.size() );
+		assertEquals( 10, copier.copied() );
+		assertTrue( copier.truncated() );
+	}
+
+	@Test
+	void summarizesCycles() {
+		Map<String, Object> a = new LinkedHashMap<>();
+		Map<String, Object> b = new LinkedHashMap<>();
+		a.put( "b", b );
+		b.put( "a", a );
+
+		SnapshotCopier copier = new SnapshotCopier( 10, 100, 1000 );
+		MarkerTrait.Snapshot copy = copier.copyScope( a );
+
+		MarkerTrait.Snapshot bCopy = (MarkerTrait.Snapshot) copy.members.get( "b" );
+		MarkerTrait.Snapshot aAgain = (MarkerTrait.Snapshot) bCopy.members.get( "a" );
+		assertEquals( SnapshotCopier.CYCLE, aAgain.label );
+	}
+
+	@Test
+	void sharedValuesAreNotCycles() {
+		List<Object> shared = new ArrayList<>( List.of( "x" ) );
+		Map<String, Object> scope = new LinkedHashMap<>();
+		scope.put( "first", shared );
+		scope.put( "second", shared );
+
+		MarkerTrait.Snapshot copy = new SnapshotCopier( 3, 100, 1000 ).copyScope( scope );
+
+		assertEquals( List.of( "x" ), ( (MarkerTrait.Snapshot) copy.members.get( "second" ) ).items );
+	}
+
+	@Test
+	void cutsLongStrings() {
+		Map<String, Object> scope = new LinkedHashMap<>();
+		scope.put( "body", "x".repeat( 50 ) );
+
+		SnapshotCopier copier = new SnapshotCopier( 3, 100, 10 );
+		MarkerTrait.Snapshot copy = copier.copyScope( scope );
+
+		assertEquals( "xxxxxxxxxx... (50 chars)", copy.members.get( "body" ) );
+		assertTrue( copier.truncated() );
+	}
+}
@@ -0,0 +1,93 @@
+package org.lucee.extension.debugger.coreinject;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Rough benchmark for the stack depth computed on every line while stepping
+ * over/out of deep CFML stacks: the old reflective walk, a full walk through
+ * cached MethodHandles, and the incremental StackDepthTracker.
+ *
+ * Not a unit test (surefire only picks up *Test classes); run it directly:
+ *   java -cp target/classes:target/test-classes:... org.lucee.extension.debugger.coreinject.StackDepthBenchmark [depth] [lines]
+ *
+ * Simulated workload: the top frame executes lines, and every 8th line calls a
+ * function that runs a few lines and returns. Each "line" copies the frame
+ * array, as PageContextImpl.getDebuggerFrames() does. A first untimed pass
+ * checks the incremental result against the full walk on every line.
+ */
+public class StackDepthBenchmark {
+
+	/**
+	 * Stand-in for Lucee's DebuggerFrame - only getLine() matters here.
+	 */
+	public static class Frame {
+		int line;
+
+		public int getLine() {
+			return line;
+		}
+	}
+
+	private static final int ROUNDS = 5;
+
+	public static void main( String[] args ) throws Throwable {
+		int depth = args.length > 0 ? Integer.parseInt( args[0] ) : 200;
+		int lines = args.length > 1 ? Integer.parseInt( args[1] ) : 200_000;
+
+		Method getLine = Frame.class.getMethod( "getLine" );
+		System.out.println( "stack depth " + depth + ", " + lines + " lines per round" );
+		run( depth, lines, ( frames, tracker ) -> tracker.depth( frames ), true );
+		for ( int round = 1; round <= ROUNDS; round++ ) {
+			long reflective = run( depth, lines, ( frames, tracker ) -> {
+				int count = 0;
+				for ( Object f : frames ) {
+					if ( (int) getLine.invoke( f ) > 0 ) count++;
+				}
+				return count;
+			}, false );
+			long fullWalk = run( depth, lines, ( frames, tracker ) -> StackDepthTracker.fullDepth( frames ), false );
+			long incremental = run( depth, lines, ( frames, tracker ) -> tracker.depth( frames ), false );
+			System.out.printf( "round %d: reflective %6.1f ns/line, handles %6.1f ns/line, incremental %6.1f ns/line%n",
+				round, (double) reflective / lines, (double) fullWalk / lines, (double) incremental / lines );
+		}
+	}
+
+	interface DepthFn {
+		int depth( Object[] frames, StackDepthTracker tracker ) throws Throwable;
+	}
+
+	private static long run( int depth, int lines, DepthFn fn, boolean verify ) throws Throwable {
+		Frame[] stack = new Frame[depth + 4];
+		int size = 0;
+		for ( ; size < depth; size++ ) {
+			stack[size] = new Frame();
+			stack[size].line = 10 + size;
+		}
+		StackDepthTracker tracker = new StackDepthTracker();
+		long sink = 0;
+		long start = System.nanoTime();
+		for ( int i = 0; i < lines; i++ ) {
+			int phase = i & 7;
+			if ( phase == 3 ) {
+				// call: the new frame is still at line 0 for its first check
+				stack[size++] = new Frame();
+			}
+			else {
+				if ( phase == 7 && size > depth ) {
+					size--; // return
+				}
+				stack[size - 1].line = 1 + ( i & 63 );
+			}
+			Object[] frames = Arrays.copyOf( stack, size, Object[].class );
+			int d = fn.depth( frames, tracker );
+			if ( verify && d != StackDepthTracker.fullDepth( frames ) ) {
+				throw new AssertionError( "line " + i + ": depth " + d + " != " + StackDepthTracker.fullDepth( frames ) );
+			}
+			sink += d;
+		}
+		long elapsed = System.nanoTime() - start;
+		if ( sink == 42 ) System.out.println(); // keep the loop alive
+		return elapsed;
+	}
+}
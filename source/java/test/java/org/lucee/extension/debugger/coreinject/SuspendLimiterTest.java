@@ -0,0 +1,88 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class SuspendLimiterTest {
+
+	@Test
+	void limitsSlotsAndCountsSkips() {
+		SuspendLimiter limiter = new SuspendLimiter( 2 );
+		assertTrue( limiter.tryAcquire() );
+		assertTrue( limiter.tryAcquire() );
+		assertFalse( limiter.tryAcquire() );
+
+		// the first skip since a release is the one to report
+		assertEquals( 1, limiter.skip() );
+		assertEquals( 2, limiter.skip() );
+		assertEquals( 2, limiter.release() );
+		assertTrue( limiter.tryAcquire() );
+		assertEquals( 1, limiter.skip() );
+		assertEquals( 3, limiter.getSkippedTotal() );
+	}
+
+	@Test
+	void forcedSlotsCountAgainstTheLimit() {
+		SuspendLimiter limiter = new SuspendLimiter( 1 );
+		limiter.acquire();
+		limiter.acquire();
+		assertEquals( 2, limiter.getSuspended() );
+		assertFalse( limiter.tryAcquire() );
+		limiter.release();
+		assertFalse( limiter.tryAcquire() );
+		limiter.release();
+		assertTrue( limiter.tryAcquire() );
+	}
+
+	@Test
+	void zeroIsUnlimited() {
+		SuspendLimiter limiter = new SuspendLimiter( 0 );
+		for ( int i = 0; i < 1000; i++ ) {
+			assertTrue( limiter.tryAcquire() );
+		}
+		limiter.setMax( 10 );
+		assertFalse( limiter.tryAcquire() );
+	}
+
+	@Test
+	void limitHoldsUnderContention() throws Exception {
+		int max = 5;
+		SuspendLimiter limiter = new SuspendLimiter( max );
+		AtomicInteger held = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+		int threads = 32;
+		CountDownLatch start = new CountDownLatch( 1 );
+		Thread[] workers = new Thread[threads];
+		for ( int t = 0; t < threads; t++ ) {
+			workers[t] = new Thread( () -> {
+				try {
+					start.await();
+				}
+				catch ( InterruptedException e ) {
+					return;
+				}
+				for ( int i = 0; i < 10_000; i++ ) {
+					if ( limiter.tryAcquire() ) {
+						peak.accumulateAndGet( held.incrementAndGet(), Math::max );
+						held.decrementAndGet();
+						limiter.release();
+					}
+					else {
+						limiter.skip();
+					}
+				}
+			} );
+			workers[t].start();
+		}
+		start.countDown();
+		for ( Thread w : workers ) {
+			w.join();
+		}
+		assertTrue( peak.get() <= max, "peak " + peak.get() );
+		assertEquals( 0, limiter.getSuspended() );
+	}
+}
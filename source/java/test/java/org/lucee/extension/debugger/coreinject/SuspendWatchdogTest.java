@@ -0,0 +1,93 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class SuspendWatchdogTest {
+
+	private static final long TICK_MS = 10;
+
+	@Test
+	void firesAfterTheDelayNeverBefore() throws Exception {
+		BlockingQueue<Long> fired = new ArrayBlockingQueue<>( 10 );
+		SuspendWatchdog watchdog = new SuspendWatchdog( t -> fired.add( System.nanoTime() - t.deadline ), TICK_MS );
+
+		watchdog.schedule( 1, "a", TimeUnit.MILLISECONDS.toNanos( 50 ) );
+		Long lateness = fired.poll( 5, TimeUnit.SECONDS );
+		assertNotNull( lateness, "timeout should fire" );
+		assertTrue( lateness >= 0, "fired early by " + -lateness + "ns" );
+	}
+
+	@Test
+	void cancelledTimeoutsDontFire() throws Exception {
+		List<Long> fired = new CopyOnWriteArrayList<>();
+		SuspendWatchdog watchdog = new SuspendWatchdog( t -> fired.add( t.threadId ), TICK_MS );
+
+		SuspendWatchdog.Timeout cancelled = watchdog.schedule( 1, "a", TimeUnit.MILLISECONDS.toNanos( 30 ) );
+		watchdog.schedule( 2, "b", TimeUnit.MILLISECONDS.toNanos( 30 ) );
+		cancelled.cancel();
+
+		Thread.sleep( 200 );
+		assertEquals( List.of( 2L ), fired );
+	}
+
+	@Test
+	void timeoutsPastOneTurnWaitExtraRounds() throws Exception {
+		BlockingQueue<SuspendWatchdog.Timeout> fired = new ArrayBlockingQueue<>( 10 );
+		// 512 buckets of 1ms: a 1.2s delay goes round the wheel twice first
+		SuspendWatchdog watchdog = new SuspendWatchdog( fired::add, 1 );
+		long start = System.nanoTime();
+		watchdog.schedule( 7, "x", TimeUnit.MILLISECONDS.toNanos( 1200 ) );
+
+		SuspendWatchdog.Timeout t = fired.poll( 10, TimeUnit.SECONDS );
+		assertNotNull( t );
+		assertEquals( 7, t.threadId );
+		assertTrue( System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos( 1200 ) );
+	}
+
+	@Test
+	void manySuspensionsShareOneThread() throws Exception {
+		int count = 1000;
+		BlockingQueue<SuspendWatchdog.Timeout> fired = new ArrayBlockingQueue<>( count );
+		SuspendWatchdog watchdog = new SuspendWatchdog( fired::add, TICK_MS );
+		int threadsBefore = Thread.activeCount();
+
+		for ( int i = 0; i < count; i++ ) {
+			SuspendWatchdog.Timeout t = watchdog.schedule( i, "s" + i, TimeUnit.MILLISECONDS.toNanos( 20 + i % 100 ) );
+			if ( i % 2 == 1 ) {
+				t.cancel();
+			}
+		}
+		assertTrue( Thread.activeCount() <= threadsBefore + 1 );
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 10 );
+		int received = 0;
+		while ( received < count / 2 && System.nanoTime() < deadline ) {
+			SuspendWatchdog.Timeout t = fired.poll( 100, TimeUnit.MILLISECONDS );
+			if ( t != null ) {
+				assertEquals( 0, t.threadId % 2, "cancelled timeout fired" );
+				received++;
+			}
+		}
+		assertEquals( count / 2, received );
+	}
+
+	@Test
+	void restartsAfterIdling() throws Exception {
+		BlockingQueue<Long> fired = new ArrayBlockingQueue<>( 10 );
+		SuspendWatchdog watchdog = new SuspendWatchdog( t -> fired.add( t.threadId ), TICK_MS );
+
+		watchdog.schedule( 1, "a", TimeUnit.MILLISECONDS.toNanos( 20 ) );
+		assertEquals( Long.valueOf( 1 ), fired.poll( 5, TimeUnit.SECONDS ) );
+		Thread.sleep( 100 );
+		watchdog.schedule( 2, "b", TimeUnit.MILLISECONDS.toNanos( 20 ) );
+		assertEquals( Long.valueOf( 2 ), fired.poll( 5, TimeUnit.SECONDS ) );
+	}
+}
@@ -0,0 +1,86 @@
+package org.lucee.extension.debugger.coreinject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class TraceBufferTest {
+
+	private static final long T0 = 1_000_000_000L;
+
+	private static String json( TraceBuffer buf ) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		buf.writeChromeTrace( sb );
+		return sb.toString();
+	}
+
+	@Test
+	void writesFunctionsAndLineSlices() throws Exception {
+		TraceBuffer buf = new TraceBuffer( 16 );
+		buf.begin( 7, "http-nio-1", "/index.cfm", T0 );
+		buf.line( T0 + 1_000, "/app/index.cfm", 3 );
+		buf.enter( T0 + 2_000, "load", "svc", "/app/svc.cfc", 10 );
+		buf.line( T0 + 2_500, "/app/svc.cfc", 11 );
+		buf.exit( T0 + 5_000 );
+		buf.line( T0 + 6_000, "/app/index.cfm", 4 );
+
+		String out = json( buf );
+		assertTrue( out.startsWith( "{\"traceEvents\":[" ) );
+		assertTrue( out.contains( "\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"tid\":7,\"args\":{\"name\":\"/index.cfm\"}" ) );
+		assertTrue( out.contains( "\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":7,\"args\":{\"name\":\"http-nio-1\"}" ) );
+		assertTrue( out.contains( "{\"name\":\"svc.load\",\"cat\":\"function\",\"ph\":\"B\",\"ts\":2.000," ) );
+		// line 11 runs until the function returns
+		assertTrue( out.contains( "{\"name\":\"svc.cfc:11\",\"cat\":\"line\",\"ph\":\"X\",\"ts\":2.500,\"dur\":2.500," ) );
+		assertTrue( out.contains( "{\"ph\":\"E\",\"ts\":5.000,\"pid\":1,\"tid\":7}" ) );
+		// line 3 contains the call it made, up to the next line at its depth
+		assertTrue( out.contains( "{\"name\":\"index.cfm:3\",\"cat\":\"line\",\"ph\":\"X\",\"ts\":1.000,\"dur\":5.000," ) );
+		// the last line is closed at the last event
+		assertTrue( out.contains( "{\"name\":\"index.cfm:4\",\"cat\":\"line\",\"ph\":\"X\",\"ts\":6.000,\"dur\":0.000," ) );
+		assertTrue( out.contains( "\"events\":5,\"truncated\":false" ) );
+	}
+
+	@Test
+	void closesOpenFunctionsAtEnd() throws Exception {
+		TraceBuffer buf = new TraceBuffer( 16 );
+		buf.begin( 1, "t", "/u", T0 );
+		buf.enter( T0 + 1_000, "outer", null, "/a.cfm", 1 );
+		buf.enter( T0 + 2_000, "inner", null, "/a.cfm", 5 );
+		buf.line( T0 + 3_000, "/a.cfm", 6 );
+
+		String out = json( buf );
+		int begins = out.split( "\"ph\":\"B\"", -1 ).length - 1;
+		int ends = out.split( "\"ph\":\"E\"", -1 ).length - 1;
+		assertEquals( 2, begins );
+		assertEquals( 2, ends );
+	}
+
+	@Test
+	void marksTruncatedWhenFull() throws Exception {
+		TraceBuffer buf = new TraceBuffer( 2 );
+		buf.begin( 1, "t", "/u", T0 );
+		buf.line( T0 + 1, "/a.cfm", 1 );
+		buf.line( T0 + 2, "/a.cfm", 2 );
+		buf.line( T0 + 3, "/a.cfm", 3 );
+		assertEquals( 2, buf.size() );
+		assertTrue( json( buf ).contains( "\"events\":2,\"truncated\":true" ) );
+
+		buf.reset();
+		buf.begin( 2, "t2", "/v", T0 );
+		assertEquals( 0, buf.size() );
+		assertTrue( json( buf ).contains( "\"truncated\":false" ) );
+	}
+
+	@Test
+	void escapesStrings() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		TraceBuffer.appendString( sb, "a\"b\\c\nd\u0001" );
+		assertEquals( "\"a\\\"b\\\\c\\nd\\u0001\"", sb.toString() );
+	}
+
+	@Test
+	void formatsMicros() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		TraceBuffer.appendMicros( sb, 1_234_005 );
+		assertEquals( "1234.005", sb.toString() );
+	}
+}
@@ -0,0 +1,80 @@
+package org.lucee.extension.debugger.instrumenter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import org.lucee.extension.debugger.DebugHooks;
+import org.lucee.extension.debugger.GlobalIDebugManagerHolder;
+
+import lucee.runtime.PageContext;
+
+/**
+ * Rough benchmark for the hooks CfmOrCfc puts in every page in agent mode:
+ * page throughput uninstrumented, with the previous direct DebugManager calls,
+ * and with the DebugHooks invokedynamic call sites, detached and attached.
+ *
+ * Not a unit test (surefire only picks up *Test classes); run it directly:
+ *   java -cp target/classes:target/test-classes:... org.lucee.extension.debugger.instrumenter.DebugHooksBenchmark [calls]
+ *
+ * The page is DebugHooksTest.Page: a loop of 1000 UDF calls, each a few lines.
+ * The DebugManager is a proxy that does nothing, so these numbers are the
+ * dispatch alone and the JIT can inline the direct calls away as well. The
+ * real DebugManager looks up and updates the thread's frame stack on every
+ * push, pop and line, which the direct calls pay whether a client is attached
+ * or not, and the hooks pay only while one is.
+ */
+public class DebugHooksBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main( String[] args ) throws Throwable {
+		int calls = args.length > 0 ? Integer.parseInt( args[0] ) : 20_000;
+
+		GlobalIDebugManagerHolder.debugManager = DebugHooksTest.countingDebugManager( null );
+		MethodHandle plain = callHandle( DebugHooksTest.Page.class );
+		MethodHandle legacy = callHandle( DebugHooksTest.instrument( DebugHooksTest.Page.class, false ) );
+		MethodHandle hooks = callHandle( DebugHooksTest.instrument( DebugHooksTest.Page.class, true ) );
+
+		System.out.println( calls + " page calls per round, 1000 UDF calls per page" );
+		// Each state gets rounds of its own: relinking deoptimizes the pages, and
+		// the first round after it pays for recompiling them
+		phase( "detached", false, plain, legacy, hooks, calls );
+		phase( "attached", true, plain, legacy, hooks, calls );
+		phase( "detached again", false, plain, legacy, hooks, calls );
+		DebugHooks.setAttached( false );
+	}
+
+	private static void phase( String state, boolean attached, MethodHandle plain, MethodHandle legacy, MethodHandle hooks, int calls ) throws Throwable {
+		DebugHooks.setAttached( attached );
+		for ( int round = 1; round <= ROUNDS; round++ ) {
+			long uninstrumented = run( plain, calls );
+			long direct = run( legacy, calls );
+			long viaHooks = run( hooks, calls );
+			System.out.printf( "%s round %d: uninstrumented %6.2f, direct calls %6.2f, hooks %6.2f us/page%n",
+				state, round, us( uninstrumented, calls ), us( direct, calls ), us( viaHooks, calls ) );
+		}
+	}
+
+	private static MethodHandle callHandle( Class<?> page ) throws Throwable {
+		Object instance = page.getConstructor().newInstance();
+		return MethodHandles.publicLookup()
+			.findVirtual( page, "call", MethodType.methodType( Object.class, PageContext.class ) )
+			.bindTo( instance );
+	}
+
+	private static long run( MethodHandle page, int calls ) throws Throwable {
+		long sink = 0;
+		long start = System.nanoTime();
+		for ( int i = 0; i < calls; i++ ) {
+			sink += (long) (Object) page.invoke( (PageContext) null );
+		}
+		long elapsed = System.nanoTime() - start;
+		if ( sink == 42 ) System.out.println(); // keep the loop alive
+		return elapsed;
+	}
+
+	private static double us( long nanos, int calls ) {
+		return nanos / 1000.0 / calls;
+	}
+}
@@ -0,0 +1,216 @@
+package org.lucee.extension.debugger.instrumenter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.lucee.extension.debugger.DebugHooks;
+import org.lucee.extension.debugger.GlobalIDebugManagerHolder;
+import org.lucee.extension.debugger.IDebugManager;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import lucee.runtime.PageContext;
+
+class DebugHooksTest {
+
+	/**
+	 * Stand-in for a compiled CFML page: `call` runs a loop that calls a UDF.
+	 * Copies instrumented by CfmOrCfc are defined in their own loader.
+	 */
+	public static class Page {
+		public static Runnable midCall;
+
+		public Object call( PageContext pc ) {
+			long sum = 0;
+			for ( int i = 0; i < 1000; i++ ) {
+				sum += udfCall( pc, i );
+			}
+			return sum;
+		}
+
+		public long udfCall( PageContext pc, int i ) {
+			if ( i == 500 && midCall != null ) {
+				midCall.run();
+			}
+			long x = i * 31L;
+			x ^= x >>> 7;
+			return x + 1;
+		}
+	}
+
+	@Test
+	void detachedHooksDontReachTheDebugManager() throws Exception {
+		Map<String, Integer> calls = new HashMap<>();
+		IDebugManager saved = GlobalIDebugManagerHolder.debugManager;
+		try {
+			GlobalIDebugManagerHolder.debugManager = countingDebugManager( calls );
+			DebugHooks.setAttached( false );
+			Class<?> page = instrument( Page.class, true );
+			assertEquals( run( Page.class ), run( page ) );
+			assertEquals( Map.of(), calls );
+		}
+		finally {
+			GlobalIDebugManagerHolder.debugManager = saved;
+		}
+	}
+
+	@Test
+	void attachedHooksReachTheDebugManager() throws Exception {
+		Map<String, Integer> calls = new HashMap<>();
+		IDebugManager saved = GlobalIDebugManagerHolder.debugManager;
+		try {
+			GlobalIDebugManagerHolder.debugManager = countingDebugManager( calls );
+			Class<?> page = instrument( Page.class, true );
+			DebugHooks.setAttached( true );
+			assertEquals( run( Page.class ), run( page ) );
+			assertEquals( 1001, (int) calls.get( "pushCfFrame" ) );
+			assertEquals( 1001, (int) calls.get( "popCfFrame" ) );
+			assertEquals( 1001, (int) calls.get( "luceedebug_stepNotificationEntry_stepAfterCompletedUdfCall" ) );
+			assertTrue( calls.get( "luceedebug_stepNotificationEntry_step" ) > 4000 );
+
+			// and back to no-ops on detach
+			DebugHooks.setAttached( false );
+			calls.clear();
+			run( page );
+			assertEquals( Map.of(), calls );
+		}
+		finally {
+			DebugHooks.setAttached( false );
+			GlobalIDebugManagerHolder.debugManager = saved;
+		}
+	}
+
+	@Test
+	void framesStayBalancedWhenTheClientComesOrGoesMidCall() throws Exception {
+		Map<String, Integer> calls = new HashMap<>();
+		IDebugManager saved = GlobalIDebugManagerHolder.debugManager;
+		try {
+			GlobalIDebugManagerHolder.debugManager = countingDebugManager( calls );
+			Class<?> page = instrument( Page.class, true );
+
+			// attach half way through: the outer call pushed nothing, so it pops nothing
+			DebugHooks.setAttached( false );
+			page.getField( "midCall" ).set( null, (Runnable) () -> DebugHooks.setAttached( true ) );
+			run( page );
+			assertEquals( 499, (int) calls.get( "pushCfFrame" ) );
+			assertEquals( calls.get( "pushCfFrame" ), calls.get( "popCfFrame" ) );
+
+			// detach half way through: the outer call still pops the frame it pushed
+			calls.clear();
+			page.getField( "midCall" ).set( null, (Runnable) () -> DebugHooks.setAttached( false ) );
+			run( page );
+			assertEquals( 502, (int) calls.get( "pushCfFrame" ) );
+			assertEquals( calls.get( "pushCfFrame" ), calls.get( "popCfFrame" ) );
+		}
+		finally {
+			DebugHooks.setAttached( false );
+			GlobalIDebugManagerHolder.debugManager = saved;
+		}
+	}
+
+	@Test
+	void eachLineGetsTheHandleItsFramePushed() throws Exception {
+		ArrayDeque<Object> frames = new ArrayDeque<>();
+		int[] steps = { 0 };
+		IDebugManager saved = GlobalIDebugManagerHolder.debugManager;
+		try {
+			GlobalIDebugManagerHolder.debugManager = (IDebugManager) Proxy.newProxyInstance( IDebugManager.class.getClassLoader(), new Class<?>[] { IDebugManager.class },
+				( proxy, method, args ) -> {
+					switch ( method.getName() ) {
+						case "pushCfFrame":
+							frames.push( new Object() );
+							return frames.peek();
+						case "popCfFrame":
+							frames.pop();
+							return null;
+						case "luceedebug_stepNotificationEntry_step":
+							assertSame( frames.peek(), args[0] );
+							steps[0]++;
+							return null;
+						default:
+							return null;
+					}
+				} );
+			Class<?> page = instrument( Page.class, true );
+			DebugHooks.setAttached( true );
+			run( page );
+			assertTrue( steps[0] > 4000 );
+			assertTrue( frames.isEmpty() );
+		}
+		finally {
+			DebugHooks.setAttached( false );
+			GlobalIDebugManagerHolder.debugManager = saved;
+		}
+	}
+
+	@Test
+	void legacyHooksAlwaysCallTheDebugManager() throws Exception {
+		Map<String, Integer> calls = new HashMap<>();
+		IDebugManager saved = GlobalIDebugManagerHolder.debugManager;
+		try {
+			GlobalIDebugManagerHolder.debugManager = countingDebugManager( calls );
+			DebugHooks.setAttached( false );
+			run( instrument( Page.class, false ) );
+			assertEquals( 1001, (int) calls.get( "pushCfFrame" ) );
+			assertEquals( 1001, (int) calls.get( "popCfFrame" ) );
+		}
+		finally {
+			GlobalIDebugManagerHolder.debugManager = saved;
+		}
+	}
+
+	/**
+	 * An IDebugManager whose methods do nothing but count calls per method name.
+	 * Pushes return the proxy itself as the frame handle.
+	 * @param calls null to not count
+	 */
+	static IDebugManager countingDebugManager( Map<String, Integer> calls ) {
+		return (IDebugManager) Proxy.newProxyInstance( IDebugManager.class.getClassLoader(), new Class<?>[] { IDebugManager.class },
+			( proxy, method, args ) -> {
+				if ( method.getDeclaringClass() == Object.class ) {
+					return method.getName().equals( "equals" ) ? proxy == args[0]
+						: method.getName().equals( "hashCode" ) ? System.identityHashCode( proxy )
+						: "countingDebugManager";
+				}
+				if ( calls != null ) {
+					calls.merge( method.getName(), 1, Integer::sum );
+				}
+				return method.getReturnType() == Object.class ? proxy : null;
+			} );
+	}
+
+	/**
+	 * Instrument a copy of page the way LuceeTransformer instruments CFML pages, in a loader of its own.
+	 */
+	static Class<?> instrument( Class<?> page, boolean useInvokeDynamic ) throws Exception {
+		String name = page.getName();
+		byte[] bytes;
+		try ( InputStream in = page.getResourceAsStream( "/" + name.replace( '.', '/' ) + ".class" ) ) {
+			bytes = in.readAllBytes();
+		}
+		ClassWriter writer = new ClassWriter( ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS ) {
+			@Override
+			protected ClassLoader getClassLoader() {
+				return page.getClassLoader();
+			}
+		};
+		new ClassReader( bytes ).accept( new CfmOrCfc( Opcodes.ASM9, writer, name, useInvokeDynamic ), ClassReader.EXPAND_FRAMES );
+		byte[] instrumented = writer.toByteArray();
+		return new ClassLoader( page.getClassLoader() ) {
+			Class<?> define() {
+				return defineClass( name, instrumented, 0, instrumented.length );
+			}
+		}.define();
+	}
+
+	static Object run( Class<?> page ) throws Exception {
+		return page.getMethod( "call", PageContext.class ).invoke( page.getConstructor().newInstance(), (Object) null );
+	}
+}
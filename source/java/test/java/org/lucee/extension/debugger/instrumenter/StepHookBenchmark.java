@@ -0,0 +1,127 @@
+package org.lucee.extension.debugger.instrumenter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.lucee.extension.debugger.DebugHooks;
+import org.lucee.extension.debugger.GlobalIDebugManagerHolder;
+import org.lucee.extension.debugger.coreinject.DebugManager;
+import org.lucee.extension.debugger.testutils.PageContextStubs;
+
+import lucee.runtime.PageContext;
+
+/**
+ * Rough benchmark for the per-line step hook with a client attached: the
+ * frame handle the page passes on every line, against looking the thread's
+ * stack up in a ConcurrentHashMap keyed by Thread on every line, as before.
+ *
+ * Not a unit test (surefire only picks up *Test classes); run it directly:
+ *   java -cp target/classes:target/test-classes:... org.lucee.extension.debugger.instrumenter.StepHookBenchmark [calls]
+ *
+ * The page is CPU-bound CFML compiled to a tight loop: each UDF call runs
+ * around 300 lines of arithmetic. Both variants use the real DebugManager.
+ * There is no engine: the PageContext is a stub (PageContextStubs), so every
+ * scope reads as null, and a base frame stands in for the request's base
+ * template.
+ */
+public class StepHookBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	/**
+	 * Stand-in for a compiled CPU-bound CFML page.
+	 */
+	public static class Page {
+		public Object call( PageContext pc ) {
+			long sum = 0;
+			for ( int i = 0; i < 20; i++ ) {
+				sum += udfCall( pc, i );
+			}
+			return sum;
+		}
+
+		public long udfCall( PageContext pc, int n ) {
+			long x = n;
+			for ( int i = 0; i < 100; i++ ) {
+				x = x * 31 + i;
+				x ^= x >>> 13;
+			}
+			return x;
+		}
+	}
+
+	/**
+	 * The step hook as it was: ignores the handle and finds the thread's stack by Thread.
+	 */
+	public static class LookupByThread extends DebugManager {
+		private final ConcurrentHashMap<Thread, Object> stackByThread = new ConcurrentHashMap<>();
+
+		@Override
+		public Object pushCfFrame( PageContext pageContext, String sourceFilePath ) {
+			Object frame = super.pushCfFrame( pageContext, sourceFilePath );
+			stackByThread.putIfAbsent( Thread.currentThread(), frame );
+			return frame;
+		}
+
+		@Override
+		public void luceedebug_stepNotificationEntry_step( Object frame, int lineNumber ) {
+			super.luceedebug_stepNotificationEntry_step( stackByThread.get( Thread.currentThread() ), lineNumber );
+		}
+	}
+
+	public static void main( String[] args ) throws Throwable {
+		int calls = args.length > 0 ? Integer.parseInt( args[0] ) : 20_000;
+
+		GlobalIDebugManagerHolder.luceeCoreLoader = DebugManager.class.getClassLoader();
+		DebugManager handle = new DebugManager();
+		DebugManager lookup = new LookupByThread();
+		PageContext pc = PageContextStubs.stub( PageContext.class );
+		handle.pushCfFrame( pc, "/base.cfm" );
+		lookup.pushCfFrame( pc, "/base.cfm" );
+
+		MethodHandle plain = callHandle( Page.class );
+		MethodHandle hooks = callHandle( DebugHooksTest.instrument( Page.class, true ) );
+
+		System.out.println( calls + " page calls per round, 20 UDF calls and ~6000 lines per page" );
+		for ( int round = 1; round <= ROUNDS; round++ ) {
+			long uninstrumented = run( plain, pc, calls );
+			long withHandle = attachedRun( handle, hooks, pc, calls );
+			long withLookup = attachedRun( lookup, hooks, pc, calls );
+			System.out.printf( "round %d: uninstrumented %6.1f, frame handle %6.1f, lookup by thread %6.1f us/page%n",
+				round, us( uninstrumented, calls ), us( withHandle, calls ), us( withLookup, calls ) );
+		}
+		DebugHooks.setAttached( false );
+	}
+
+	private static long attachedRun( DebugManager debugManager, MethodHandle page, PageContext pc, int calls ) throws Throwable {
+		DebugHooks.setAttached( false );
+		GlobalIDebugManagerHolder.debugManager = debugManager;
+		DebugHooks.setAttached( true );
+		run( page, pc, calls / 10 ); // recompile after relinking
+		return run( page, pc, calls );
+	}
+
+	private static MethodHandle callHandle( Class<?> page ) throws Throwable {
+		Object instance = page.getConstructor().newInstance();
+		return MethodHandles.publicLookup()
+			.findVirtual( page, "call", MethodType.methodType( Object.class, PageContext.class ) )
+			.bindTo( instance );
+	}
+
+	private static long run( MethodHandle page, PageContext pc, int calls ) throws Throwable {
+		long sink = 0;
+		long start = System.nanoTime();
+		for ( int i = 0; i < calls; i++ ) {
+			sink += (long) (Object) page.invoke( pc );
+		}
+		long elapsed = System.nanoTime() - start;
+		if ( sink == 42 ) System.out.println(); // keep the loop alive
+		return elapsed;
+	}
+
+	private static double us( long nanos, int calls ) {
+		return nanos / 1000.0 / calls;
+	}
+}
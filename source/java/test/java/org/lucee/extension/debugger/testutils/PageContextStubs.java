@@ -0,0 +1,153 @@
+package org.lucee.extension.debugger.testutils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import lucee.runtime.PageContext;
+
+/**
+ * PageContext test doubles without an engine. PageContext is abstract with a
+ * couple of hundred methods, so stub() generates a concrete subclass of an
+ * abstract base - PageContext itself, or a test's own partial implementation -
+ * whose remaining abstract methods return null, 0 or false.
+ */
+public final class PageContextStubs {
+
+	// Generated once per base, in base's package
+	private static final ClassValue<Class<?>> STUBS = new ClassValue<>() {
+		@Override
+		protected Class<?> computeValue( Class<?> base ) {
+			try {
+				return MethodHandles.privateLookupIn( base, MethodHandles.lookup() ).defineClass( generate( base ) );
+			}
+			catch ( ReflectiveOperationException | IOException e ) {
+				throw new IllegalStateException( "Can't stub " + base.getName(), e );
+			}
+		}
+	};
+
+	private PageContextStubs() {}
+
+	/**
+	 * @param base abstract PageContext subclass with a no-arg constructor, not private
+	 */
+	public static <T extends PageContext> T stub( Class<T> base ) {
+		try {
+			return base.cast( STUBS.get( base ).getDeclaredConstructor().newInstance() );
+		}
+		catch ( ReflectiveOperationException e ) {
+			throw new IllegalStateException( "Can't stub " + base.getName(), e );
+		}
+	}
+
+	private static byte[] generate( Class<?> base ) throws IOException {
+		String superName = Type.getInternalName( base );
+		ClassWriter cw = new ClassWriter( ClassWriter.COMPUTE_MAXS );
+		cw.visit( Opcodes.V11, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, superName + "$Stub", null, superName, null );
+
+		MethodVisitor init = cw.visitMethod( Opcodes.ACC_PUBLIC, "<init>", "()V", null, null );
+		init.visitCode();
+		init.visitVarInsn( Opcodes.ALOAD, 0 );
+		init.visitMethodInsn( Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false );
+		init.visitInsn( Opcodes.RETURN );
+		init.visitMaxs( 0, 0 );
+		init.visitEnd();
+
+		for ( String[] m : abstractMethods( base ).values() ) {
+			Type returnType = Type.getReturnType( m[2] );
+			int access = Integer.parseInt( m[0] ) & ( Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED );
+			MethodVisitor mv = cw.visitMethod( access, m[1], m[2], null, null );
+			mv.visitCode();
+			switch ( returnType.getSort() ) {
+				case Type.VOID:
+					break;
+				case Type.LONG:
+					mv.visitInsn( Opcodes.LCONST_0 );
+					break;
+				case Type.FLOAT:
+					mv.visitInsn( Opcodes.FCONST_0 );
+					break;
+				case Type.DOUBLE:
+					mv.visitInsn( Opcodes.DCONST_0 );
+					break;
+				case Type.OBJECT:
+				case Type.ARRAY:
+					mv.visitInsn( Opcodes.ACONST_NULL );
+					break;
+				default: // boolean, char, byte, short, int
+					mv.visitInsn( Opcodes.ICONST_0 );
+			}
+			mv.visitInsn( returnType.getOpcode( Opcodes.IRETURN ) );
+			mv.visitMaxs( 0, 0 );
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Methods of base's classes and interfaces with no implementation, as
+	 * access/name/descriptor by name and descriptor. Read from the class files:
+	 * reflection would load every parameter type, and not all of them (javax.el)
+	 * are on the test classpath.
+	 */
+	private static Map<String, String[]> abstractMethods( Class<?> base ) throws IOException {
+		Set<String> implemented = new HashSet<>();
+		Map<String, String[]> missing = new LinkedHashMap<>();
+		ArrayDeque<Class<?>> interfaces = new ArrayDeque<>();
+		for ( Class<?> c = base; c != null; c = c.getSuperclass() ) {
+			collect( c, implemented, missing );
+			interfaces.addAll( List.of( c.getInterfaces() ) );
+		}
+		Set<Class<?>> seen = new HashSet<>();
+		Class<?> i;
+		while ( ( i = interfaces.poll() ) != null ) {
+			if ( seen.add( i ) ) {
+				collect( i, implemented, missing );
+				interfaces.addAll( List.of( i.getInterfaces() ) );
+			}
+		}
+		return missing;
+	}
+
+	private static void collect( Class<?> c, Set<String> implemented, Map<String, String[]> missing ) throws IOException {
+		ClassLoader loader = c.getClassLoader() != null ? c.getClassLoader() : ClassLoader.getSystemClassLoader();
+		byte[] bytes;
+		try ( InputStream in = loader.getResourceAsStream( Type.getInternalName( c ) + ".class" ) ) {
+			bytes = in.readAllBytes();
+		}
+		new ClassReader( bytes ).accept( new ClassVisitor( Opcodes.ASM9 ) {
+			@Override
+			public MethodVisitor visitMethod( int access, String name, String descriptor, String signature, String[] exceptions ) {
+				if ( ( access & ( Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE ) ) != 0 || name.startsWith( "<" ) ) {
+					return null;
+				}
+				String key = name + descriptor;
+				if ( implemented.contains( key ) || missing.containsKey( key ) ) {
+					return null; // overridden further down
+				}
+				if ( ( access & Opcodes.ACC_ABSTRACT ) != 0 ) {
+					missing.put( key, new String[] { Integer.toString( access ), name, descriptor } );
+				}
+				else {
+					implemented.add( key );
+				}
+				return null;
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES );
+	}
+}
@@ -0,0 +1,45 @@
+package org.lucee.extension.debugger.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class GlobTest {
+
+	@Test
+	void literalMatchIsCaseInsensitive() {
+		assertTrue(Glob.matches("/api/Users.cfm", "/API/users.cfm"));
+		assertFalse(Glob.matches("/api/users.cfm", "/api/users.cfml"));
+	}
+
+	@Test
+	void starMatchesAnyRun() {
+		assertTrue(Glob.matches("/api/*", "/api/"));
+		assertTrue(Glob.matches("/api/*", "/api/v1/orders.cfm"));
+		assertTrue(Glob.matches("*orders*", "/api/v1/orders.cfm"));
+		assertTrue(Glob.matches("*.cfc", "/a.b/c.cfc"));
+		assertFalse(Glob.matches("/api/*.cfc", "/api/v1/orders.cfm"));
+		assertTrue(Glob.matches("*", ""));
+	}
+
+	@Test
+	void backtracksPastEarlierCandidates() {
+		// first "ab" after the star is a false start
+		assertTrue(Glob.matches("*abc", "xxabxabc"));
+		assertTrue(Glob.matches("a*b*c", "axxbyybzzc"));
+		assertFalse(Glob.matches("a*b*c", "axxbyy"));
+	}
+
+	@Test
+	void questionMarkMatchesOneChar() {
+		assertTrue(Glob.matches("http-nio-?", "http-nio-8"));
+		assertFalse(Glob.matches("http-nio-?", "http-nio-"));
+		assertFalse(Glob.matches("http-nio-?", "http-nio-80"));
+	}
+
+	@Test
+	void nullNeverMatches() {
+		assertFalse(Glob.matches(null, "x"));
+		assertFalse(Glob.matches("*", null));
+	}
+}
@@ -0,0 +1,83 @@
+package org.lucee.extension.debugger.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+class MpscRingBufferTest {
+
+	@Test
+	void capacityRoundsUpToPowerOfTwo() {
+		assertEquals(8, new MpscRingBuffer<String>(5).capacity());
+		assertEquals(8, new MpscRingBuffer<String>(8).capacity());
+		assertEquals(2, new MpscRingBuffer<String>(0).capacity());
+	}
+
+	@Test
+	void rejectsWhenFullAndKeepsOrder() {
+		MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(ring.offer(i));
+		}
+		assertFalse(ring.offer(99));
+		assertEquals(4, ring.size());
+
+		assertEquals(0, (int) ring.poll());
+		assertTrue(ring.offer(4));
+		for (int i = 1; i <= 4; i++) {
+			assertEquals(i, (int) ring.poll());
+		}
+		assertNull(ring.poll());
+		assertTrue(ring.isEmpty());
+	}
+
+	@Test
+	void concurrentProducersLoseNothingAndKeepPerProducerOrder() throws Exception {
+		final int producers = 4;
+		final int perProducer = 200_000;
+		MpscRingBuffer<long[]> ring = new MpscRingBuffer<>(1024);
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			final int id = p;
+			threads[p] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < perProducer; i++) {
+					long[] item = { id, i };
+					while (!ring.offer(item)) {
+						Thread.yield();
+					}
+				}
+			});
+			threads[p].start();
+		}
+		start.countDown();
+
+		long[] next = new long[producers];
+		int received = 0;
+		long deadline = System.nanoTime() + 60_000_000_000L;
+		while (received < producers * perProducer) {
+			long[] item = ring.poll();
+			if (item == null) {
+				assertTrue(System.nanoTime() < deadline, "timed out after " + received + " items");
+				Thread.yield();
+				continue;
+			}
+			int id = (int) item[0];
+			assertEquals(next[id], item[1], "producer " + id + " out of order");
+			next[id]++;
+			received++;
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertNull(ring.poll());
+		assertTrue(ring.isEmpty());
+	}
+}